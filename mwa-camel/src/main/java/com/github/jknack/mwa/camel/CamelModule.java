@@ -3,11 +3,13 @@ package com.github.jknack.mwa.camel;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.apache.camel.CamelContext;
 import org.apache.camel.ConsumerTemplate;
@@ -32,6 +34,9 @@ import org.springframework.core.env.Environment;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.env.PropertySource;
 
+import com.github.jknack.mwa.PropertySnapshot;
+import com.github.jknack.mwa.StartupTasks;
+
 /**
  * <h3>The Apache Camel Module</h3>
  * <p>
@@ -67,12 +72,20 @@ import org.springframework.core.env.PropertySource;
  * <li>camel.streamCaching: Sets whether stream caching is enabled or not. Default is disabled.</li>
  * <li>camel.tracing: Sets whether tracing is enabled or not (default is disabled).</li>
  * </ul>
+ * <p>
+ * The {@link CamelContext} is started by the {@link #STARTUP_TASK} task, see {@link StartupTasks}.
+ * </p>
  *
  * @author edgar.espina
  */
 @Configuration
 public class CamelModule {
 
+  /**
+   * The name of the startup task that starts the {@link CamelContext}.
+   */
+  public static final String STARTUP_TASK = "camel";
+
   /**
    * An {@link ApplicationContext} camel registry.
    *
@@ -185,9 +198,17 @@ public class CamelModule {
       for (RoutesBuilder route : routes) {
         camelContext.addRoutes(route);
       }
-      camelContext.start();
-      context.getBean(ProducerTemplate.class).start();
-      context.getBean(ConsumerTemplate.class).start();
+      final ProducerTemplate producer = context.getBean(ProducerTemplate.class);
+      final ConsumerTemplate consumer = context.getBean(ConsumerTemplate.class);
+      StartupTasks.get(context).submit(STARTUP_TASK, new Callable<Void>() {
+        @Override
+        public Void call() throws Exception {
+          camelContext.start();
+          producer.start();
+          consumer.start();
+          return null;
+        }
+      });
     }
 
     @Override
@@ -284,19 +305,25 @@ public class CamelModule {
   private static PropertiesComponent camelProperties(final ApplicationContext applicationContext) {
     ConfigurableEnvironment env = (ConfigurableEnvironment) applicationContext.getEnvironment();
     final MutablePropertySources propertySources = env.getPropertySources();
+    final PropertySnapshot snapshot = PropertySnapshot.get(env);
     List<String> names = new ArrayList<String>();
     for (PropertySource<?> propertySource : propertySources) {
       names.add(propertySource.getName());
     }
+    final String[] locations = names.toArray(new String[names.size()]);
 
-    PropertiesComponent properties = new PropertiesComponent(
-        names.toArray(new String[names.size()]));
+    PropertiesComponent properties = new PropertiesComponent(locations);
     properties.setPropertiesResolver(new PropertiesResolver() {
       @Override
       public Properties resolveProperties(final CamelContext context,
           final boolean ignoreMissingLocation,
           final String... names) throws Exception {
         Properties properties = new Properties();
+        if (Arrays.equals(locations, names)) {
+          // All the property sources have been requested: use the snapshot.
+          properties.putAll(snapshot.asMap());
+          return properties;
+        }
         // Add in reverse order to preserve precedence.
         for (int i = names.length - 1; i >= 0; i--) {
           PropertySource<?> propertySource = propertySources.get(names[i]);
@@ -39,6 +39,68 @@ public final class ApplicationConstants {
    */
   public static final String APP_STARTUP_CLASS = "application.startup.class";
 
+  /**
+   * Use the compile-time {@link ComponentIndex} (if present) instead of classpath scanning.
+   * Default is: true.
+   */
+  public static final String APP_INDEX = "application.index";
+
+  /**
+   * Initialize infrastructure modules concurrently. See {@link StartupTasks}. Default is: false.
+   */
+  public static final String APP_STARTUP_PARALLEL = "application.startup.parallel";
+
+  /**
+   * Max number of threads for initializing infrastructure modules. Default is: number of
+   * processors.
+   */
+  public static final String APP_STARTUP_THREADS = "application.startup.threads";
+
+  /**
+   * Log a startup report and save the startup timeline. See {@link StartupProfiler}. Default is:
+   * false.
+   */
+  public static final String APP_STARTUP_PROFILE = "application.startup.profile";
+
+  /**
+   * The startup timeline file. Default is: ${java.io.tmpdir}/${application.name}-startup.json.
+   */
+  public static final String APP_STARTUP_PROFILE_FILE = "application.startup.profile.file";
+
+  /**
+   * Number of events in the startup report. Default is: 25.
+   */
+  public static final String APP_STARTUP_PROFILE_TOP = "application.startup.profile.top";
+
+  /**
+   * Save the components found at startup and reuse them while the classpath and properties don't
+   * change. See {@link StartupSnapshot}. Default is: false.
+   */
+  public static final String APP_STARTUP_SNAPSHOT = "application.startup.snapshot";
+
+  /**
+   * The startup snapshot file. Default is:
+   * ${java.io.tmpdir}/${application.name}-startup.snapshot.
+   */
+  public static final String APP_STARTUP_SNAPSHOT_FILE = "application.startup.snapshot.file";
+
+  /**
+   * Create the beans of infrastructure modules on first use. See {@link LazyModules}. Default is:
+   * false.
+   */
+  public static final String APP_LAZY = "application.lazy";
+
+  /**
+   * Comma separated list of modules (simple or full class name) that are always created at
+   * startup.
+   */
+  public static final String APP_LAZY_EXCLUDE = "application.lazy.exclude";
+
+  /**
+   * Comma separated list of bean names that are always created at startup.
+   */
+  public static final String APP_LAZY_PREWARM = "application.lazy.prewarm";
+
   /**
    * Not allowed.
    */
@@ -1,18 +1,15 @@
 package com.github.jknack.mwa;
 
+import static com.github.jknack.mwa.ApplicationConstants.APP_LAZY;
 import static com.github.jknack.mwa.ApplicationConstants.APP_MODE;
+import static com.github.jknack.mwa.ApplicationConstants.APP_STARTUP_PARALLEL;
+import static com.github.jknack.mwa.ApplicationConstants.APP_STARTUP_PROFILE;
+import static com.github.jknack.mwa.ApplicationConstants.APP_STARTUP_THREADS;
 import static org.apache.commons.lang3.Validate.notNull;
-import static org.springframework.core.GenericTypeResolver.resolveTypeArgument;
 import static org.springframework.core.annotation.AnnotationUtils.getValue;
 
 import java.lang.annotation.Annotation;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.inject.Named;
@@ -20,19 +17,16 @@ import javax.inject.Named;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.BeanInitializationException;
 import org.springframework.beans.factory.annotation.QualifierAnnotationAutowireCandidateResolver;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.support.DefaultListableBeanFactory;
-import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
-import org.springframework.core.OrderComparator;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MutablePropertySources;
@@ -46,6 +40,8 @@ import org.springframework.util.StringValueResolver;
  * <li>Add a {@link Mode} bean and {@link ModeAware} support. Default mode is: 'dev'.</li>
  * <li>Enable a Spring profile that matches the configured mode.</li>
  * <li>Enable Named/Value annotation for injection environment properties</li>
+ * <li>Publish the {@link StartupTasks} of infrastructure modules.</li>
+ * <li>Optionally, create the beans of infrastructure modules on first use.</li>
  * </ul>
  *
  * @author edgar.espina
@@ -69,9 +65,9 @@ public final class ApplicationContextConfigurer {
     private final Set<Class<? extends Annotation>> valueAnnotationTypes;
 
     /**
-     * The application environment.
+     * The property snapshot of the application environment.
      */
-    private Environment environment;
+    private PropertySnapshot environment;
 
     /**
      * Creates a new {@link EnvironmentPropertyResolver}.
@@ -79,12 +75,12 @@ public final class ApplicationContextConfigurer {
      * @param environment The application environment.
      * @param beanFactory The application bean factory.
      */
-    public EnvironmentPropertyResolver(final Environment environment,
+    public EnvironmentPropertyResolver(final ConfigurableEnvironment environment,
         final DefaultListableBeanFactory beanFactory) {
       valueAnnotationTypes = new HashSet<Class<? extends Annotation>>();
       valueAnnotationTypes.add(Value.class);
       valueAnnotationTypes.add(Named.class);
-      this.environment = environment;
+      this.environment = PropertySnapshot.get(environment);
       beanFactory.setAutowireCandidateResolver(this);
       beanFactory.addEmbeddedValueResolver(this);
     }
@@ -142,51 +138,79 @@ public final class ApplicationContextConfigurer {
   }
 
   /**
-   * Looks for all the {@link ComponentConfigurer} and call them all.
+   * Looks for all the {@link ComponentConfigurer} and call them all. Configurers are applied once
+   * per bean factory: refresh events of child contexts or repeated events are ignored.
    *
    * @author edgar.espina
    *
    */
   private static class ConfigureComponents implements ApplicationListener<ContextRefreshedEvent> {
+
+    /**
+     * The application's context.
+     */
+    private final ConfigurableApplicationContext context;
+
+    /**
+     * The startup tasks.
+     */
+    private final StartupTasks tasks;
+
+    /**
+     * The startup profiler.
+     */
+    private final StartupProfiler profiler;
+
+    /**
+     * The last configured bean factory.
+     */
+    private ConfigurableListableBeanFactory configured;
+
+    /**
+     * Creates a new {@link ConfigureComponents}.
+     *
+     * @param context The application's context.
+     * @param tasks The startup tasks.
+     * @param profiler The startup profiler.
+     */
+    public ConfigureComponents(final ConfigurableApplicationContext context,
+        final StartupTasks tasks, final StartupProfiler profiler) {
+      this.context = context;
+      this.tasks = tasks;
+      this.profiler = profiler;
+    }
+
     @Override
-    @SuppressWarnings({"rawtypes", "unchecked" })
     public void onApplicationEvent(final ContextRefreshedEvent event) {
-      ApplicationContext context = event.getApplicationContext();
-      Collection<ComponentConfigurer> configurers = context.getBeansOfType(
-          ComponentConfigurer.class).values();
-      Map<Class, List<ComponentConfigurer>> orderedMap =
-          new HashMap<Class, List<ComponentConfigurer>>();
-      // Dump all the configurer in the orderedMap
-      for (ComponentConfigurer configurer : configurers) {
-        Class componentType = resolveTypeArgument(configurer.getClass(), ComponentConfigurer.class);
-        notNull(componentType, "Missing component's type for: %s", configurer);
-        List<ComponentConfigurer> configurerList = orderedMap.get(componentType);
-        if (configurerList == null) {
-          configurerList = new ArrayList<ComponentConfigurer>();
-          orderedMap.put(componentType, configurerList);
-        }
-        configurerList.add(configurer);
+      if (event.getApplicationContext() != context) {
+        logger.debug("Ignoring refresh of: {}", event.getApplicationContext());
+        return;
       }
-      // Call each configurer by precedence
-      for (Entry<Class, List<ComponentConfigurer>> entry : orderedMap.entrySet()) {
-        Class componentType = entry.getKey();
-        List<ComponentConfigurer> configurerList = entry.getValue();
-        OrderComparator.sort(configurerList);
-        for (ComponentConfigurer configurer : configurerList) {
-          notNull(componentType, "Missing component type for: " + configurer);
-          Iterable beans = context.getBeansOfType(componentType).values();
-          for (Object bean : beans) {
-            try {
-              configurer.configure(bean);
-            } catch (Exception ex) {
-              throw new BeanInitializationException("Cannot configurer bean: " + componentType, ex);
-            }
-          }
+      ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+      synchronized (this) {
+        if (configured == beanFactory) {
+          logger.debug("Ignoring repeated refresh of: {}", context);
+          return;
         }
+        configured = beanFactory;
       }
+      new ComponentConfigurers(beanFactory, tasks, profiler).configure();
+      // Wait for the startup tasks
+      tasks.await();
+      profiler.finish(context.getEnvironment());
     }
   }
 
+  /**
+   * The bean's name of the {@link StartupTasks}.
+   */
+  public static final String STARTUP_TASKS = "startupTasks";
+
+  /**
+   * The bean's name of the {@link StartupProfiler}.
+   */
+  public static final String STARTUP_PROFILER = "startupProfiler";
+
   /**
    * The logging system.
    */
@@ -213,6 +237,27 @@ public final class ApplicationContextConfigurer {
    */
   public static ConfigurableApplicationContext configure(
       final ConfigurableApplicationContext context, final MutablePropertySources propertySources) {
+    return configure(context, propertySources, new StartupProfiler());
+  }
+
+  /**
+   * Configure an application's context with:
+   * <ul>
+   * <li>Extra property sources</li>
+   * <li>Add a {@link Mode} bean and {@link ModeAware} support. Default mode is: 'dev'.</li>
+   * <li>Enable a Spring profile that matches the configured mode.</li>
+   * <li>Enable Named/Value annotation for injection environment properties</li>
+   * </ul>
+   *
+   * @param context The application's context. Required.
+   * @param propertySources The property sources. Required.
+   * @param profiler The startup profiler. Required.
+   * @return The given application's context.
+   */
+  public static ConfigurableApplicationContext configure(
+      final ConfigurableApplicationContext context, final MutablePropertySources propertySources,
+      final StartupProfiler profiler) {
+    notNull(profiler, "The profiler is required.");
     ConfigurableEnvironment env = configureEnvironment(context, propertySources);
 
     String modeProperty = env.getProperty(APP_MODE);
@@ -227,7 +272,11 @@ public final class ApplicationContextConfigurer {
     // Activate the default profile
     env.setActiveProfiles(mode.name());
 
-    complement(context, mode);
+    if (!env.getProperty(APP_STARTUP_PROFILE, Boolean.class, false)) {
+      // Stop recording: nobody is going to read the events.
+      profiler.finish(env);
+    }
+    complement(context, mode, profiler);
 
     return context;
   }
@@ -236,22 +285,42 @@ public final class ApplicationContextConfigurer {
    * <ul>
    * <li>Add {@link ModeAware} support.</li>
    * <li>Publish 'mode' in the given environment.</li>
+   * <li>Publish the {@link StartupTasks} and wait for them once the context has been refreshed.
+   * </li>
+   * <li>Publish the {@link StartupProfiler} and measure beans and component configurers.</li>
    * <li>Configure Named annotation for injecting environment's properties.
    * </ul>
    *
    * @param context The application's context.
    * @param mode The application's mode.
+   * @param profiler The startup profiler.
    */
-  private static void complement(final ConfigurableApplicationContext context, final Mode mode) {
-    context.addApplicationListener(new ConfigureComponents());
+  private static void complement(final ConfigurableApplicationContext context, final Mode mode,
+      final StartupProfiler profiler) {
+    Environment env = context.getEnvironment();
+    final StartupTasks tasks = new StartupTasks(
+        env.getProperty(APP_STARTUP_PARALLEL, Boolean.class, false)
+            ? env.getProperty(APP_STARTUP_THREADS, Integer.class,
+                Runtime.getRuntime().availableProcessors())
+            : 0, profiler);
+    context.addApplicationListener(new ConfigureComponents(context, tasks, profiler));
     context.addBeanFactoryPostProcessor(new BeanFactoryPostProcessor() {
       @Override
       public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) {
+        if (profiler.isRecording()) {
+          profiler.profile((DefaultListableBeanFactory) beanFactory);
+        }
         beanFactory.addBeanPostProcessor(modeAwareBeanPostProcessor(mode));
         beanFactory.registerSingleton(APP_MODE, mode);
+        beanFactory.registerSingleton(STARTUP_TASKS, tasks);
+        beanFactory.registerSingleton(STARTUP_PROFILER, profiler);
         // Enable @Named and @Value
         new EnvironmentPropertyResolver(context.getEnvironment(),
             (DefaultListableBeanFactory) beanFactory);
+        // Lazy modules
+        if (context.getEnvironment().getProperty(APP_LAZY, boolean.class, false)) {
+          new LazyModules(context.getEnvironment()).postProcessBeanFactory(beanFactory);
+        }
       }
     });
   }
@@ -312,10 +381,16 @@ public final class ApplicationContextConfigurer {
         mutablePropertySources.addLast(propertySource);
       }
     }
+    // Property sources changed, discard the current snapshot (if any)
+    PropertySnapshot snapshot = PropertySnapshot.get(env);
+    snapshot.invalidate();
     // Enable @Value
     PropertySourcesPlaceholderConfigurer placeholderConfigurer =
         new PropertySourcesPlaceholderConfigurer();
-    placeholderConfigurer.setEnvironment(env);
+    MutablePropertySources placeholderSources = new MutablePropertySources();
+    placeholderSources.addFirst(snapshot.asPropertySource(
+        PropertySourcesPlaceholderConfigurer.ENVIRONMENT_PROPERTIES_PROPERTY_SOURCE_NAME));
+    placeholderConfigurer.setPropertySources(placeholderSources);
     context.addBeanFactoryPostProcessor(placeholderConfigurer);
     return env;
   }
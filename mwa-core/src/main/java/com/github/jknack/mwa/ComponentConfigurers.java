@@ -0,0 +1,294 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+import static org.springframework.core.GenericTypeResolver.resolveTypeArgument;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.core.OrderComparator;
+
+/**
+ * Apply {@link ComponentConfigurer} to the beans of a bean factory:
+ * <ul>
+ * <li>The component type of a configurer is resolved once per configurer class.</li>
+ * <li>Beans are matched against all the component types in a single pass over the bean names.
+ * </li>
+ * <li>Configurers of the same component type are called by precedence (see
+ * {@link OrderComparator}).</li>
+ * <li>Component types that don't share any bean are independent and they are configured as
+ * separated {@link StartupTasks}, so they run concurrently if
+ * {@link ApplicationConstants#APP_STARTUP_PARALLEL} is on.</li>
+ * <li>Lazy beans (see {@link LazyModules}) are configured on first use.</li>
+ * </ul>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+final class ComponentConfigurers {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ComponentConfigurers.class);
+
+  /**
+   * Component types by configurer class.
+   */
+  private static final Map<Class<?>, Class<?>> componentTypes =
+      new ConcurrentHashMap<Class<?>, Class<?>>();
+
+  /**
+   * The bean factory.
+   */
+  private final ConfigurableListableBeanFactory beanFactory;
+
+  /**
+   * The startup tasks.
+   */
+  private final StartupTasks tasks;
+
+  /**
+   * The startup profiler.
+   */
+  private final StartupProfiler profiler;
+
+  /**
+   * Creates a new {@link ComponentConfigurers}.
+   *
+   * @param beanFactory The bean factory. Required.
+   * @param tasks The startup tasks. Required.
+   * @param profiler The startup profiler. Required.
+   */
+  public ComponentConfigurers(final ConfigurableListableBeanFactory beanFactory,
+      final StartupTasks tasks, final StartupProfiler profiler) {
+    this.beanFactory = notNull(beanFactory, "The bean factory is required.");
+    this.tasks = notNull(tasks, "The startup tasks are required.");
+    this.profiler = notNull(profiler, "The profiler is required.");
+  }
+
+  /**
+   * Call all the {@link ComponentConfigurer} of the bean factory. Configuration might complete
+   * in a background thread, see {@link StartupTasks#await()}.
+   */
+  @SuppressWarnings("rawtypes")
+  public void configure() {
+    Map<Class<?>, List<ComponentConfigurer>> configurers = configurers();
+    if (configurers.isEmpty()) {
+      return;
+    }
+    Map<Class<?>, List<Object>> components = components(configurers.keySet());
+    for (final Map<Class<?>, List<Object>> group : groups(components)) {
+      String name = "configure: " + group.keySet().iterator().next().getName();
+      logger.debug("Configuring: {}", group.keySet());
+      final Map<Class<?>, List<ComponentConfigurer>> selection =
+          new LinkedHashMap<Class<?>, List<ComponentConfigurer>>();
+      for (Class<?> componentType : group.keySet()) {
+        selection.put(componentType, configurers.get(componentType));
+      }
+      tasks.submit(name, new Callable<Void>() {
+        @Override
+        public Void call() {
+          for (Entry<Class<?>, List<ComponentConfigurer>> entry : selection.entrySet()) {
+            configure(entry.getKey(), entry.getValue(), group.get(entry.getKey()));
+          }
+          return null;
+        }
+      });
+    }
+  }
+
+  /**
+   * Call all the {@link ComponentConfigurer} that apply to the given component. Configurers are
+   * executed in the caller thread.
+   *
+   * @param component The component to configure. Required.
+   */
+  @SuppressWarnings("rawtypes")
+  public void configure(final Object component) {
+    notNull(component, "The component is required.");
+    for (Entry<Class<?>, List<ComponentConfigurer>> entry : configurers().entrySet()) {
+      if (entry.getKey().isInstance(component)) {
+        configure(entry.getKey(), entry.getValue(), Collections.singletonList(component));
+      }
+    }
+  }
+
+  /**
+   * Call the configurers of a component type.
+   *
+   * @param componentType The component type.
+   * @param configurers The configurers sorted by precedence.
+   * @param components The components to configure.
+   */
+  @SuppressWarnings({"rawtypes", "unchecked" })
+  private void configure(final Class<?> componentType, final List<ComponentConfigurer> configurers,
+      final List<Object> components) {
+    for (ComponentConfigurer configurer : configurers) {
+      for (Object component : components) {
+        StartupProfiler.Timer timer = profiler.start(StartupProfiler.CONFIGURER,
+            configurer.getClass().getSimpleName() + ": " + componentType.getSimpleName());
+        try {
+          configurer.configure(component);
+        } catch (Exception ex) {
+          throw new BeanInitializationException("Cannot configurer bean: " + componentType, ex);
+        } finally {
+          timer.stop();
+        }
+      }
+    }
+  }
+
+  /**
+   * Find all the configurers and group them by component type. Configurers are sorted by
+   * precedence.
+   *
+   * @return All the configurers grouped by component type.
+   */
+  @SuppressWarnings("rawtypes")
+  private Map<Class<?>, List<ComponentConfigurer>> configurers() {
+    Collection<ComponentConfigurer> configurers =
+        beanFactory.getBeansOfType(ComponentConfigurer.class).values();
+    Map<Class<?>, List<ComponentConfigurer>> result =
+        new LinkedHashMap<Class<?>, List<ComponentConfigurer>>();
+    for (ComponentConfigurer configurer : configurers) {
+      Class<?> componentType = componentType(configurer.getClass());
+      List<ComponentConfigurer> configurerList = result.get(componentType);
+      if (configurerList == null) {
+        configurerList = new ArrayList<ComponentConfigurer>();
+        result.put(componentType, configurerList);
+      }
+      configurerList.add(configurer);
+    }
+    for (List<ComponentConfigurer> configurerList : result.values()) {
+      OrderComparator.sort(configurerList);
+    }
+    return result;
+  }
+
+  /**
+   * Find the beans of each component type in a single pass over the bean names.
+   *
+   * @param types The component types.
+   * @return The beans of each component type.
+   */
+  private Map<Class<?>, List<Object>> components(final Set<Class<?>> types) {
+    Map<Class<?>, List<Object>> result = new LinkedHashMap<Class<?>, List<Object>>();
+    for (Class<?> componentType : types) {
+      result.put(componentType, new ArrayList<Object>());
+    }
+    Set<String> beanNames = new LinkedHashSet<String>();
+    Collections.addAll(beanNames, beanFactory.getBeanDefinitionNames());
+    Collections.addAll(beanNames, beanFactory.getSingletonNames());
+    for (String beanName : beanNames) {
+      if (beanName.startsWith(LazyModules.TARGET_PREFIX)) {
+        // configured on first use
+        continue;
+      }
+      if (beanFactory.containsBeanDefinition(beanName)
+          && beanFactory.getBeanDefinition(beanName).isAbstract()) {
+        continue;
+      }
+      Class<?> beanType = beanFactory.getType(beanName);
+      if (beanType == null) {
+        continue;
+      }
+      Object bean = null;
+      for (Entry<Class<?>, List<Object>> entry : result.entrySet()) {
+        if (entry.getKey().isAssignableFrom(beanType)) {
+          if (bean == null) {
+            bean = beanFactory.getBean(beanName);
+            if (LazyModules.isLazy(bean)) {
+              // configured on first use
+              break;
+            }
+          }
+          entry.getValue().add(bean);
+        }
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Split the component types in groups. Two component types are in the same group if they share
+   * at least one bean.
+   *
+   * @param components The beans of each component type.
+   * @return The component type groups.
+   */
+  private static List<Map<Class<?>, List<Object>>> groups(
+      final Map<Class<?>, List<Object>> components) {
+    List<Map<Class<?>, List<Object>>> groups = new ArrayList<Map<Class<?>, List<Object>>>();
+    Map<Object, Map<Class<?>, List<Object>>> owners =
+        new IdentityHashMap<Object, Map<Class<?>, List<Object>>>();
+    for (Entry<Class<?>, List<Object>> entry : components.entrySet()) {
+      Map<Class<?>, List<Object>> group = new LinkedHashMap<Class<?>, List<Object>>();
+      group.put(entry.getKey(), entry.getValue());
+      for (Object bean : entry.getValue()) {
+        Map<Class<?>, List<Object>> owner = owners.get(bean);
+        if (owner != null && owner != group) {
+          // merge the two groups
+          group.putAll(owner);
+          for (List<Object> beans : owner.values()) {
+            for (Object candidate : beans) {
+              owners.put(candidate, group);
+            }
+          }
+          removeGroup(groups, owner);
+        }
+        owners.put(bean, group);
+      }
+      groups.add(group);
+    }
+    return groups;
+  }
+
+  /**
+   * Remove a group by identity.
+   *
+   * @param groups The groups.
+   * @param group The group to remove.
+   */
+  private static void removeGroup(final List<Map<Class<?>, List<Object>>> groups,
+      final Map<Class<?>, List<Object>> group) {
+    Iterator<Map<Class<?>, List<Object>>> it = groups.iterator();
+    while (it.hasNext()) {
+      if (it.next() == group) {
+        it.remove();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Resolve the component type of a configurer class.
+   *
+   * @param configurerClass The configurer class.
+   * @return The component type.
+   */
+  private static Class<?> componentType(final Class<?> configurerClass) {
+    Class<?> componentType = componentTypes.get(configurerClass);
+    if (componentType == null) {
+      componentType = resolveTypeArgument(configurerClass, ComponentConfigurer.class);
+      notNull(componentType, "Missing component's type for: %s", configurerClass.getName());
+      componentTypes.put(configurerClass, componentType);
+    }
+    return componentType;
+  }
+}
@@ -0,0 +1,362 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.util.StringUtils;
+
+/**
+ * A compile-time index of Spring components and persistent classes. The index is generated by the
+ * {@link ComponentIndexProcessor} and saved at {@link #LOCATION}. Each entry of the index is: the
+ * class name and the list of stereotypes (annotation names) of the class. The processor also
+ * saves the packages it compiled at {@link #PACKAGES}.
+ * <p>
+ * Modules use the index (if present) for avoiding classpath scanning at startup time, but only
+ * for the packages the index lists (see {@link #covers(String)}): any other package is scanned,
+ * even if some of its sub-packages are indexed. The index can be ignored by setting the
+ * {@link ApplicationConstants#APP_INDEX} property to false.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see ComponentIndexProcessor
+ */
+public final class ComponentIndex {
+
+  /**
+   * The location of the index files.
+   */
+  public static final String LOCATION = "META-INF/mwa.components";
+
+  /**
+   * The location of the files with the packages compiled by the {@link ComponentIndexProcessor}.
+   */
+  public static final String PACKAGES = "META-INF/mwa.packages";
+
+  /**
+   * Spring component stereotype. Also, it is recorded for classes annotated with a Spring
+   * stereotype, like: Service, Repository, Controller or Configuration.
+   */
+  public static final String COMPONENT = "org.springframework.stereotype.Component";
+
+  /**
+   * JSR-330 named stereotype.
+   */
+  public static final String NAMED = "javax.inject.Named";
+
+  /**
+   * JPA entity stereotype.
+   */
+  public static final String JPA_ENTITY = "javax.persistence.Entity";
+
+  /**
+   * JPA embeddable stereotype.
+   */
+  public static final String JPA_EMBEDDABLE = "javax.persistence.Embeddable";
+
+  /**
+   * JPA mapped super class stereotype.
+   */
+  public static final String JPA_MAPPED_SUPERCLASS = "javax.persistence.MappedSuperclass";
+
+  /**
+   * Morphia entity stereotype.
+   */
+  public static final String MORPHIA_ENTITY = "com.github.jmkgreen.morphia.annotations.Entity";
+
+  /**
+   * Morphia embedded stereotype.
+   */
+  public static final String MORPHIA_EMBEDDED = "com.github.jmkgreen.morphia.annotations.Embedded";
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ComponentIndex.class);
+
+  /**
+   * Index cache per class loader.
+   */
+  private static final Map<ClassLoader, ComponentIndex> CACHE =
+      new WeakHashMap<ClassLoader, ComponentIndex>();
+
+  /**
+   * Empty index, used when no index file is present.
+   */
+  private static final ComponentIndex EMPTY =
+      new ComponentIndex(new TreeMap<String, Set<String>>(), new TreeSet<String>());
+
+  /**
+   * Stereotypes per class name.
+   */
+  private final Map<String, Set<String>> entries;
+
+  /**
+   * The packages compiled by the {@link ComponentIndexProcessor}.
+   */
+  private final Set<String> packages;
+
+  /**
+   * Creates a new {@link ComponentIndex}.
+   *
+   * @param entries Stereotypes per class name.
+   * @param packages The packages compiled by the {@link ComponentIndexProcessor}.
+   */
+  ComponentIndex(final Map<String, Set<String>> entries, final Set<String> packages) {
+    this.entries = entries;
+    this.packages = packages;
+  }
+
+  /**
+   * Find all the classes under the given packages (recursively) that have one of the given
+   * stereotypes. Only classes of the indexed packages are returned.
+   *
+   * @param packages The base packages. Required.
+   * @param stereotypes The stereotypes. Required.
+   * @return All the class names that matches.
+   */
+  public Set<String> candidates(final String[] packages, final String... stereotypes) {
+    notNull(packages, "The packages are required.");
+    notNull(stereotypes, "The stereotypes are required.");
+    List<String> stereotypeList = Arrays.asList(stereotypes);
+    Set<String> candidates = new LinkedHashSet<String>();
+    for (Entry<String, Set<String>> entry : entries.entrySet()) {
+      String className = entry.getKey();
+      if (inPackage(className, packages) && indexed(className)
+          && !Collections.disjoint(entry.getValue(), stereotypeList)) {
+        candidates.add(className);
+      }
+    }
+    return candidates;
+  }
+
+  /**
+   * True if the given base package was compiled by the {@link ComponentIndexProcessor}: the index
+   * lists the package itself. Indexed sub-packages don't make a base package covered, because the
+   * base package or one of its other sub-packages might have been compiled without the processor.
+   *
+   * @param basePackage The base package. Required.
+   * @return True if the index covers the given base package.
+   */
+  public boolean covers(final String basePackage) {
+    notNull(basePackage, "The base package is required.");
+    return packages.contains(basePackage.trim());
+  }
+
+  /**
+   * The base packages covered by the index.
+   *
+   * @param basePackages The base packages. Required.
+   * @return The base packages covered by the index.
+   * @see #covers(String)
+   */
+  public String[] covered(final String[] basePackages) {
+    return filter(basePackages, true);
+  }
+
+  /**
+   * The base packages that aren't covered by the index. They must be scanned.
+   *
+   * @param basePackages The base packages. Required.
+   * @return The base packages that aren't covered by the index.
+   * @see #covers(String)
+   */
+  public String[] uncovered(final String[] basePackages) {
+    return filter(basePackages, false);
+  }
+
+  /**
+   * Filter the base packages by coverage.
+   *
+   * @param basePackages The base packages.
+   * @param covered True, for the covered packages.
+   * @return The filtered packages.
+   */
+  private String[] filter(final String[] basePackages, final boolean covered) {
+    notNull(basePackages, "The base packages are required.");
+    List<String> result = new ArrayList<String>();
+    for (String basePackage : basePackages) {
+      if (covers(basePackage) == covered) {
+        result.add(basePackage);
+      }
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  /**
+   * The stereotypes of the given class.
+   *
+   * @param className The class name.
+   * @return The stereotypes of the given class.
+   */
+  public Set<String> stereotypes(final String className) {
+    Set<String> stereotypes = entries.get(className);
+    return stereotypes == null ? Collections.<String> emptySet()
+        : Collections.unmodifiableSet(stereotypes);
+  }
+
+  /**
+   * True if the index has no entries and covers no package.
+   *
+   * @return True if the index has no entries and covers no package.
+   */
+  public boolean isEmpty() {
+    return entries.isEmpty() && packages.isEmpty();
+  }
+
+  /**
+   * Number of entries.
+   *
+   * @return Number of entries.
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * True if the package of the class is listed by the index.
+   *
+   * @param className The class name.
+   * @return True if the package of the class is listed by the index.
+   */
+  private boolean indexed(final String className) {
+    // nested classes: '$' isn't a package separator
+    int dot = className.lastIndexOf('.');
+    return packages.contains(dot < 0 ? "" : className.substring(0, dot));
+  }
+
+  /**
+   * True if the class belongs to one of the packages.
+   *
+   * @param className The class name.
+   * @param packages The packages.
+   * @return True if the class belongs to one of the packages.
+   */
+  private static boolean inPackage(final String className, final String[] packages) {
+    for (String pkg : packages) {
+      String prefix = pkg.trim();
+      if (prefix.length() == 0 || className.startsWith(prefix + ".")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Get the component index for the given class loader.
+   *
+   * @param env The application's environment. Required.
+   * @param classLoader The class loader. Required.
+   * @return The component index or <code>null</code> if there is no index or the index has been
+   *         disabled via {@link ApplicationConstants#APP_INDEX}. Callers must scan the packages
+   *         the index doesn't cover.
+   */
+  public static ComponentIndex get(final Environment env, final ClassLoader classLoader) {
+    notNull(env, "The environment is required.");
+    if (!env.getProperty(ApplicationConstants.APP_INDEX, Boolean.class, true)) {
+      logger.debug("Component index is disabled");
+      return null;
+    }
+    ComponentIndex index = get(classLoader);
+    return index.isEmpty() ? null : index;
+  }
+
+  /**
+   * Get the component index for the given class loader.
+   *
+   * @param classLoader The class loader. Required.
+   * @return The component index. It might be empty, but never null.
+   */
+  public static ComponentIndex get(final ClassLoader classLoader) {
+    notNull(classLoader, "The class loader is required.");
+    synchronized (CACHE) {
+      ComponentIndex index = CACHE.get(classLoader);
+      if (index == null) {
+        index = load(classLoader);
+        CACHE.put(classLoader, index);
+      }
+      return index;
+    }
+  }
+
+  /**
+   * Load all the index files from the given class loader.
+   *
+   * @param classLoader The class loader.
+   * @return The component index.
+   */
+  private static ComponentIndex load(final ClassLoader classLoader) {
+    try {
+      Set<String> packages = new TreeSet<String>();
+      Enumeration<URL> packageResources = classLoader.getResources(PACKAGES);
+      while (packageResources.hasMoreElements()) {
+        packages.addAll(read(packageResources.nextElement()).stringPropertyNames());
+      }
+      Enumeration<URL> resources = classLoader.getResources(LOCATION);
+      Map<String, Set<String>> entries = new TreeMap<String, Set<String>>();
+      while (resources.hasMoreElements()) {
+        URL resource = resources.nextElement();
+        logger.debug("Loading component index: {}", resource);
+        Properties properties = read(resource);
+        for (String className : properties.stringPropertyNames()) {
+          Set<String> stereotypes = entries.get(className);
+          if (stereotypes == null) {
+            stereotypes = new LinkedHashSet<String>();
+            entries.put(className, stereotypes);
+          }
+          stereotypes.addAll(StringUtils.commaDelimitedListToSet(
+              properties.getProperty(className)));
+        }
+      }
+      if (packages.isEmpty()) {
+        // Index files without packages are useless: we can't tell what they cover.
+        return EMPTY;
+      }
+      logger.info("Component index found: {} entries, packages: {}", entries.size(), packages);
+      return new ComponentIndex(entries, packages);
+    } catch (IOException ex) {
+      logger.warn("Component index cannot be loaded, classpath scanning will be used", ex);
+      return EMPTY;
+    }
+  }
+
+  /**
+   * Read an index file.
+   *
+   * @param resource The index file.
+   * @return The index file content.
+   * @throws IOException If the file cannot be read.
+   */
+  private static Properties read(final URL resource) throws IOException {
+    InputStream in = null;
+    try {
+      in = resource.openStream();
+      Properties properties = new Properties();
+      properties.load(in);
+      return properties;
+    } finally {
+      if (in != null) {
+        in.close();
+      }
+    }
+  }
+}
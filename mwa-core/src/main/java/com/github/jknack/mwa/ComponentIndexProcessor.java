@@ -0,0 +1,266 @@
+package com.github.jknack.mwa;
+
+import java.io.Closeable;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic.Kind;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+import org.springframework.util.StringUtils;
+
+/**
+ * Generates the {@link ComponentIndex} at compile time. The processor is registered as a service,
+ * so it runs automatically when <code>mwa-core</code> is on the compiler's classpath. Besides the
+ * index, it saves the packages it compiled, so the index is trusted for those packages only.
+ * <p>
+ * Indexed classes are: Spring components (including Spring stereotypes and Configuration
+ * classes), JSR-330 named classes, JPA entities, embeddables and mapped super classes and Morphia
+ * entities and embedded classes.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see ComponentIndex
+ */
+@SupportedAnnotationTypes("*")
+public class ComponentIndexProcessor extends AbstractProcessor {
+
+  /**
+   * Stereotypes recorded when present on a class.
+   */
+  private static final List<String> STEREOTYPES = Arrays.asList(
+      ComponentIndex.COMPONENT,
+      ComponentIndex.NAMED,
+      ComponentIndex.JPA_ENTITY,
+      ComponentIndex.JPA_EMBEDDABLE,
+      ComponentIndex.JPA_MAPPED_SUPERCLASS,
+      ComponentIndex.MORPHIA_ENTITY,
+      ComponentIndex.MORPHIA_EMBEDDED);
+
+  /**
+   * Stereotypes that can be present on abstract classes.
+   */
+  private static final List<String> ABSTRACT_STEREOTYPES = Arrays.asList(
+      ComponentIndex.JPA_MAPPED_SUPERCLASS);
+
+  /**
+   * Stereotypes per class name.
+   */
+  private final Map<String, Set<String>> index = new TreeMap<String, Set<String>>();
+
+  /**
+   * Classes processed in this compilation.
+   */
+  private final Set<String> processed = new HashSet<String>();
+
+  /**
+   * Packages processed in this compilation.
+   */
+  private final Set<String> packages = new TreeSet<String>();
+
+  @Override
+  public SourceVersion getSupportedSourceVersion() {
+    return SourceVersion.latestSupported();
+  }
+
+  @Override
+  public boolean process(final Set<? extends TypeElement> annotations,
+      final RoundEnvironment roundEnv) {
+    if (roundEnv.processingOver()) {
+      write();
+    } else {
+      for (Element element : roundEnv.getRootElements()) {
+        collect(element);
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Collect the stereotypes of a type and its static member types.
+   *
+   * @param element The candidate element.
+   */
+  private void collect(final Element element) {
+    if (!(element instanceof TypeElement)) {
+      return;
+    }
+    TypeElement type = (TypeElement) element;
+    boolean independent = type.getNestingKind() == NestingKind.TOP_LEVEL
+        || type.getNestingKind() == NestingKind.MEMBER
+        && type.getModifiers().contains(Modifier.STATIC);
+    if (!independent) {
+      return;
+    }
+    packages.add(processingEnv.getElementUtils().getPackageOf(type).getQualifiedName()
+        .toString());
+    if (type.getKind() == ElementKind.CLASS) {
+      String className = processingEnv.getElementUtils().getBinaryName(type).toString();
+      processed.add(className);
+      boolean isAbstract = type.getModifiers().contains(Modifier.ABSTRACT);
+      Set<String> stereotypes = new LinkedHashSet<String>();
+      for (AnnotationMirror annotation : type.getAnnotationMirrors()) {
+        TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+        String annotationName = annotationType.getQualifiedName().toString();
+        if (STEREOTYPES.contains(annotationName)) {
+          stereotypes.add(annotationName);
+        } else if (isComponent(annotationType, new HashSet<String>())) {
+          stereotypes.add(ComponentIndex.COMPONENT);
+        }
+      }
+      if (isAbstract) {
+        stereotypes.retainAll(ABSTRACT_STEREOTYPES);
+      }
+      if (stereotypes.size() > 0) {
+        index.put(className, stereotypes);
+      }
+    }
+    for (Element member : type.getEnclosedElements()) {
+      collect(member);
+    }
+  }
+
+  /**
+   * True if the annotation is meta-annotated with the Spring component annotation.
+   *
+   * @param annotationType The annotation type.
+   * @param visited The visited annotations.
+   * @return True if the annotation is meta-annotated with the Spring component annotation.
+   */
+  private boolean isComponent(final TypeElement annotationType, final Set<String> visited) {
+    String annotationName = annotationType.getQualifiedName().toString();
+    if (annotationName.startsWith("java.lang.annotation.") || !visited.add(annotationName)) {
+      return false;
+    }
+    for (AnnotationMirror annotation : annotationType.getAnnotationMirrors()) {
+      TypeElement metaAnnotation = (TypeElement) annotation.getAnnotationType().asElement();
+      if (ComponentIndex.COMPONENT.equals(metaAnnotation.getQualifiedName().toString())
+          || isComponent(metaAnnotation, visited)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Merge the collected entries and packages with the previous index (if any) and save the index
+   * files.
+   */
+  private void write() {
+    Properties previousPackages = read(ComponentIndex.PACKAGES);
+    packages.addAll(previousPackages.stringPropertyNames());
+    if (packages.isEmpty()) {
+      return;
+    }
+    Properties packageIndex = new Properties();
+    for (String pkg : packages) {
+      packageIndex.setProperty(pkg, "");
+    }
+    write(ComponentIndex.PACKAGES, packageIndex);
+
+    Map<String, Set<String>> entries = new TreeMap<String, Set<String>>();
+    Properties previous = read(ComponentIndex.LOCATION);
+    for (String className : previous.stringPropertyNames()) {
+      // keep entries of classes that weren't compiled this time, but still exist.
+      if (!processed.contains(className)
+          && processingEnv.getElementUtils().getTypeElement(className.replace('$', '.')) != null) {
+        entries.put(className,
+            StringUtils.commaDelimitedListToSet(previous.getProperty(className)));
+      }
+    }
+    entries.putAll(index);
+    // An empty index is still written: no components in the compiled packages.
+    Properties properties = new Properties();
+    for (Entry<String, Set<String>> entry : entries.entrySet()) {
+      properties.setProperty(entry.getKey(),
+          StringUtils.collectionToCommaDelimitedString(entry.getValue()));
+    }
+    write(ComponentIndex.LOCATION, properties);
+  }
+
+  /**
+   * Save an index file.
+   *
+   * @param location The file's location.
+   * @param properties The file's content.
+   */
+  private void write(final String location, final Properties properties) {
+    OutputStream out = null;
+    try {
+      FileObject file = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+          location);
+      out = file.openOutputStream();
+      properties.store(out, null);
+    } catch (IOException ex) {
+      processingEnv.getMessager().printMessage(Kind.WARNING,
+          "Unable to write: " + location + ", " + ex.getMessage());
+    } finally {
+      close(out);
+    }
+  }
+
+  /**
+   * Read a previous index file (if any).
+   *
+   * @param location The file's location.
+   * @return The previous index file or an empty one.
+   */
+  private Properties read(final String location) {
+    Properties properties = new Properties();
+    InputStream in = null;
+    try {
+      FileObject file = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "",
+          location);
+      in = file.openInputStream();
+      properties.load(in);
+    } catch (FileNotFoundException ex) {
+      // no previous index
+    } catch (IOException ex) {
+      // no previous index
+    } catch (IllegalArgumentException ex) {
+      // no previous index
+    } finally {
+      close(in);
+    }
+    return properties;
+  }
+
+  /**
+   * Close a stream and ignore errors.
+   *
+   * @param closeable The stream.
+   */
+  private static void close(final Closeable closeable) {
+    if (closeable != null) {
+      try {
+        closeable.close();
+      } catch (IOException ex) {
+        // ignored
+      }
+    }
+  }
+}
@@ -0,0 +1,29 @@
+package com.github.jknack.mwa;
+
+/**
+ * Receive the {@link TraceEvent}s of MWA hot paths. Recorders are registered with
+ * {@link TraceEvent#addRecorder(EventRecorder)} or found with {@link java.util.ServiceLoader}
+ * (<code>META-INF/services/com.github.jknack.mwa.EventRecorder</code>), so a Flight Recorder
+ * bridge can be dropped in the classpath of a JDK that has one.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public interface EventRecorder {
+
+  /**
+   * True, if events of the given type should be recorded. Called before an event is created, it
+   * must be cheap.
+   *
+   * @param type The event's type. See {@link TraceEvent} constants.
+   * @return True, if events of the given type should be recorded.
+   */
+  boolean isEnabled(String type);
+
+  /**
+   * Record a completed event.
+   *
+   * @param event The event.
+   */
+  void record(TraceEvent event);
+}
@@ -0,0 +1,142 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of durations. Durations are counted in power of two buckets of
+ * microseconds, so percentiles are approximated by the upper bound of a bucket (at most 2x the
+ * real value). Count, mean and max are exact.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class Histogram {
+
+  /**
+   * Number of buckets: 1us to ~35min.
+   */
+  private static final int BUCKETS = 32;
+
+  /**
+   * The counts per bucket. Bucket <code>i</code> counts durations up to <code>2^i</code>
+   * microseconds.
+   */
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+  /**
+   * Number of durations.
+   */
+  private final AtomicLong count = new AtomicLong();
+
+  /**
+   * Sum of durations in nanos.
+   */
+  private final AtomicLong sum = new AtomicLong();
+
+  /**
+   * The max duration in nanos.
+   */
+  private final AtomicLong max = new AtomicLong();
+
+  /**
+   * Record a duration.
+   *
+   * @param duration The duration.
+   * @param unit The duration's unit.
+   */
+  public void record(final long duration, final TimeUnit unit) {
+    long nanos = Math.max(0, unit.toNanos(duration));
+    long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+    int bucket = micros <= 1 ? 0
+        : Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(micros - 1));
+    buckets.incrementAndGet(bucket);
+    count.incrementAndGet();
+    sum.addAndGet(nanos);
+    long current = max.get();
+    while (nanos > current && !max.compareAndSet(current, nanos)) {
+      current = max.get();
+    }
+  }
+
+  /**
+   * Number of recorded durations.
+   *
+   * @return Number of recorded durations.
+   */
+  public long getCount() {
+    return count.get();
+  }
+
+  /**
+   * The sum of recorded durations.
+   *
+   * @param unit The time unit.
+   * @return The sum of recorded durations.
+   */
+  public long getSum(final TimeUnit unit) {
+    return unit.convert(sum.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The mean duration.
+   *
+   * @param unit The time unit.
+   * @return The mean duration.
+   */
+  public long getMean(final TimeUnit unit) {
+    long n = count.get();
+    return n == 0 ? 0 : unit.convert(sum.get() / n, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The max duration.
+   *
+   * @param unit The time unit.
+   * @return The max duration.
+   */
+  public long getMax(final TimeUnit unit) {
+    return unit.convert(max.get(), TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The approximated duration at the given percentile.
+   *
+   * @param percentile The percentile: a number between 0 and 100.
+   * @param unit The time unit.
+   * @return The approximated duration at the given percentile.
+   */
+  public long getPercentile(final double percentile, final TimeUnit unit) {
+    isTrue(percentile >= 0 && percentile <= 100, "The percentile must be between 0 and 100.");
+    long[] counts = new long[BUCKETS];
+    long total = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+      if (seen >= rank && counts[i] > 0) {
+        long upper = TimeUnit.MICROSECONDS.toNanos(1L << i);
+        return unit.convert(Math.min(upper, max.get()), TimeUnit.NANOSECONDS);
+      }
+    }
+    return getMax(unit);
+  }
+
+  @Override
+  public String toString() {
+    TimeUnit unit = TimeUnit.MICROSECONDS;
+    return "count: " + getCount() + ", mean: " + getMean(unit) + "us, p50: "
+        + getPercentile(50, unit) + "us, p99: " + getPercentile(99, unit) + "us, max: "
+        + getMax(unit) + "us";
+  }
+}
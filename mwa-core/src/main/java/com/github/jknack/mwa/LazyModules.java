@@ -0,0 +1,293 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.framework.Advised;
+import org.springframework.aop.framework.ProxyFactory;
+import org.springframework.aop.target.LazyInitTargetSource;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.FactoryBean;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.Lifecycle;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Activate infrastructure modules on first use. Beans declared by a module (a @Bean method of a
+ * configuration class outside the application's namespace) are replaced by a proxy. The real
+ * bean is created, and configured by the {@link ComponentConfigurer}s, the first time a proxy's
+ * method is called.
+ * <p>
+ * Configuration:
+ * </p>
+ * <ul>
+ * <li>{@link ApplicationConstants#APP_LAZY}: turn on lazy activation. Default is: false.</li>
+ * <li>{@link ApplicationConstants#APP_LAZY_EXCLUDE}: modules (simple or full class name) that are
+ * always created at startup. <code>WebDefaults</code> and <code>MvcModule</code> are always
+ * excluded.</li>
+ * <li>{@link ApplicationConstants#APP_LAZY_PREWARM}: beans that are always created at startup.
+ * </li>
+ * </ul>
+ * <p>
+ * Post-processors, listeners, lifecycle beans, component configurers, factory beans and beans
+ * that can't be proxied (final classes or classes without a default constructor) are always
+ * created at startup.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+final class LazyModules implements BeanFactoryPostProcessor {
+
+  /**
+   * The target source of lazy proxies.
+   *
+   * @author edgar.espina
+   */
+  private static final class LazyTarget extends LazyInitTargetSource {
+
+    /**
+     * Default serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+  }
+
+  /**
+   * The prefix of the real bean's name.
+   */
+  public static final String TARGET_PREFIX = "lazyTarget.";
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(LazyModules.class);
+
+  /**
+   * Beans of these types are always created at startup.
+   */
+  private static final Class<?>[] EAGER_TYPES = {BeanPostProcessor.class,
+      BeanFactoryPostProcessor.class, ApplicationListener.class, Lifecycle.class,
+      ComponentConfigurer.class, FactoryBean.class };
+
+  /**
+   * Modules that are always created at startup.
+   */
+  private final Set<String> excludes = new HashSet<String>(Arrays.asList("WebDefaults",
+      "MvcModule"));
+
+  /**
+   * Beans that are always created at startup.
+   */
+  private final Set<String> prewarm = new HashSet<String>();
+
+  /**
+   * The application's namespace.
+   */
+  private final String[] namespace;
+
+  /**
+   * Creates a new {@link LazyModules}.
+   *
+   * @param env The application's environment. Required.
+   */
+  public LazyModules(final Environment env) {
+    notNull(env, "The environment is required.");
+    excludes.addAll(Arrays.asList(StringUtils.split(
+        env.getProperty(ApplicationConstants.APP_LAZY_EXCLUDE, ""), ", ")));
+    prewarm.addAll(Arrays.asList(StringUtils.split(
+        env.getProperty(ApplicationConstants.APP_LAZY_PREWARM, ""), ", ")));
+    namespace = StringUtils.split(env.getProperty(ApplicationConstants.APP_NAMESPACE, ""), ", ");
+  }
+
+  @Override
+  public void postProcessBeanFactory(final ConfigurableListableBeanFactory beanFactory) {
+    BeanDefinitionRegistry registry = (BeanDefinitionRegistry) beanFactory;
+    Set<String> lazyBeans = new LinkedHashSet<String>();
+    for (String beanName : beanFactory.getBeanDefinitionNames()) {
+      BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+      Class<?> type = lazyType(beanFactory, beanName, beanDefinition);
+      if (type != null) {
+        AbstractBeanDefinition target = (AbstractBeanDefinition) beanDefinition;
+        target.setLazyInit(true);
+        target.setAutowireCandidate(false);
+        registry.removeBeanDefinition(beanName);
+        registry.registerBeanDefinition(TARGET_PREFIX + beanName, target);
+
+        RootBeanDefinition proxy = new RootBeanDefinition(LazyModules.class);
+        proxy.setFactoryMethodName("proxy");
+        proxy.setAutowireMode(RootBeanDefinition.AUTOWIRE_CONSTRUCTOR);
+        proxy.getConstructorArgumentValues().addIndexedArgumentValue(0, TARGET_PREFIX + beanName);
+        proxy.getConstructorArgumentValues().addIndexedArgumentValue(1, type);
+        proxy.setTargetType(type);
+        // Proxies are cheap and they must not be registered as singletons: a @Bean method creates
+        // the real bean only if there isn't a singleton with the method's name.
+        proxy.setScope(RootBeanDefinition.SCOPE_PROTOTYPE);
+        proxy.setPrimary(target.isPrimary());
+        proxy.setDescription("Lazy proxy of: " + beanName);
+        registry.registerBeanDefinition(beanName, proxy);
+        lazyBeans.add(beanName);
+      }
+    }
+    if (lazyBeans.size() > 0) {
+      logger.info("Lazy beans: {}", lazyBeans);
+      beanFactory.addBeanPostProcessor(activate(beanFactory));
+    }
+  }
+
+  /**
+   * Apply the {@link ComponentConfigurer}s to a lazy bean once it has been created.
+   *
+   * @param beanFactory The bean factory.
+   * @return A bean post processor.
+   */
+  private static BeanPostProcessor activate(final ConfigurableListableBeanFactory beanFactory) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        return bean;
+      }
+
+      @Override
+      public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        if (beanName.startsWith(TARGET_PREFIX)) {
+          logger.info("Activating: {}", beanName.substring(TARGET_PREFIX.length()));
+          new ComponentConfigurers(beanFactory, new StartupTasks(0), StartupProfiler.noop())
+              .configure(bean);
+        }
+        return bean;
+      }
+    };
+  }
+
+  /**
+   * Get the type of a module's bean if the bean can be created on first use.
+   *
+   * @param beanFactory The bean factory.
+   * @param beanName The bean's name.
+   * @param beanDefinition The bean definition.
+   * @return The bean's type or <code>null</code> if the bean must be created at startup.
+   */
+  private Class<?> lazyType(final ConfigurableListableBeanFactory beanFactory,
+      final String beanName, final BeanDefinition beanDefinition) {
+    String factoryMethodName = beanDefinition.getFactoryMethodName();
+    if (factoryMethodName == null || prewarm.contains(beanName)
+        || beanName.startsWith(TARGET_PREFIX) || !beanDefinition.isSingleton()
+        || beanDefinition.isAbstract()
+        || beanDefinition.getRole() != BeanDefinition.ROLE_APPLICATION
+        || !(beanDefinition instanceof AbstractBeanDefinition)) {
+      return null;
+    }
+    String factoryBeanName = beanDefinition.getFactoryBeanName();
+    String moduleClassName = factoryBeanName == null ? beanDefinition.getBeanClassName()
+        : beanFactory.getBeanDefinition(factoryBeanName).getBeanClassName();
+    if (moduleClassName == null) {
+      return null;
+    }
+    Class<?> module = ClassUtils.getUserClass(ClassUtils.resolveClassName(moduleClassName,
+        beanFactory.getBeanClassLoader()));
+    if (excludes.contains(module.getSimpleName()) || excludes.contains(module.getName())) {
+      return null;
+    }
+    String pkg = ClassUtils.getPackageName(module);
+    for (String ns : namespace) {
+      if (pkg.equals(ns) || pkg.startsWith(ns + ".")) {
+        // Application's beans
+        return null;
+      }
+    }
+    Class<?> type = null;
+    for (Method method : ReflectionUtils.getAllDeclaredMethods(module)) {
+      if (method.getName().equals(factoryMethodName)) {
+        if (type != null && type != method.getReturnType()) {
+          // ambiguous
+          return null;
+        }
+        type = method.getReturnType();
+      }
+    }
+    if (type == null || !proxiable(type)) {
+      return null;
+    }
+    return type;
+  }
+
+  /**
+   * True if a proxy can be created for the given type.
+   *
+   * @param type The bean's type.
+   * @return True if a proxy can be created for the given type.
+   */
+  private static boolean proxiable(final Class<?> type) {
+    for (Class<?> eagerType : EAGER_TYPES) {
+      if (eagerType.isAssignableFrom(type)) {
+        return false;
+      }
+    }
+    if (type.isInterface()) {
+      return true;
+    }
+    if (type.isPrimitive() || type.isArray() || Modifier.isFinal(type.getModifiers())) {
+      return false;
+    }
+    for (Constructor<?> constructor : type.getDeclaredConstructors()) {
+      if (constructor.getParameterTypes().length == 0
+          && !Modifier.isPrivate(constructor.getModifiers())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Creates the proxy of a lazy bean.
+   *
+   * @param targetBeanName The name of the real bean.
+   * @param type The bean's type.
+   * @param beanFactory The bean factory.
+   * @return A lazy proxy.
+   */
+  static Object proxy(final String targetBeanName, final Class<?> type,
+      final BeanFactory beanFactory) {
+    LazyTarget targetSource = new LazyTarget();
+    targetSource.setTargetBeanName(targetBeanName);
+    targetSource.setTargetClass(type);
+    targetSource.setBeanFactory(beanFactory);
+    ProxyFactory factory = new ProxyFactory();
+    factory.setTargetSource(targetSource);
+    if (type.isInterface()) {
+      factory.addInterface(type);
+    } else {
+      factory.setProxyTargetClass(true);
+    }
+    return factory.getProxy(type.getClassLoader());
+  }
+
+  /**
+   * True, if the given bean is a lazy proxy.
+   *
+   * @param bean The bean.
+   * @return True, if the given bean is a lazy proxy.
+   */
+  public static boolean isLazy(final Object bean) {
+    return bean instanceof Advised && ((Advised) bean).getTargetSource() instanceof LazyTarget;
+  }
+}
@@ -3,6 +3,9 @@ package com.github.jknack.mwa;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.lang3.Validate;
 import org.springframework.util.ReflectionUtils;
@@ -24,11 +27,22 @@ public final class Mode {
    */
   public static final Mode DEV = new Mode(DEV_NAME);
 
+  /**
+   * The callback methods (by name) of a {@link ModeCallback} class.
+   */
+  private static final Map<Class<?>, Map<String, Method>> callbacks =
+      new ConcurrentHashMap<Class<?>, Map<String, Method>>();
+
   /**
    * The mode's name. Required.
    */
   private final String name;
 
+  /**
+   * The name of the callback method for this mode.
+   */
+  private final String callbackName;
+
   /**
    * Creates a new {@link Mode}.
    *
@@ -36,6 +50,8 @@ public final class Mode {
    */
   private Mode(final String name) {
     this.name = name.toLowerCase();
+    this.callbackName = "on" + Character.toUpperCase(this.name.charAt(0))
+        + this.name.substring(1);
   }
 
   /**
@@ -115,16 +131,41 @@ public final class Mode {
     if (isDev()) {
       return callback.onDev();
     }
-    String methodName =
-        "on" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
-    Method method = ReflectionUtils.findMethod(callback.getClass(), methodName);
+    Method method = callbacks(callback.getClass()).get(callbackName);
     if (method == null) {
       return callback.on(this);
     }
-    ReflectionUtils.makeAccessible(method);
     return (T) ReflectionUtils.invokeMethod(method, callback);
   }
 
+  /**
+   * Get or build the dispatch table of a {@link ModeCallback} class: all the no-args methods
+   * starting with <code>on</code>. Methods of a subclass hide the ones of the superclass.
+   *
+   * @param callbackClass The callback class.
+   * @return The callback methods by name.
+   */
+  private static Map<String, Method> callbacks(final Class<?> callbackClass) {
+    Map<String, Method> methods = callbacks.get(callbackClass);
+    if (methods == null) {
+      methods = new HashMap<String, Method>();
+      Class<?> type = callbackClass;
+      while (type != null && type != ModeCallback.class) {
+        for (Method method : type.getDeclaredMethods()) {
+          String methodName = method.getName();
+          if (methodName.startsWith("on") && method.getParameterTypes().length == 0
+              && !methods.containsKey(methodName)) {
+            ReflectionUtils.makeAccessible(method);
+            methods.put(methodName, method);
+          }
+        }
+        type = type.getSuperclass();
+      }
+      callbacks.put(callbackClass, methods);
+    }
+    return methods;
+  }
+
   /**
    * Factory method for {@link Mode}.
    *
@@ -0,0 +1,237 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.PropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.env.SystemEnvironmentPropertySource;
+
+/**
+ * A {@link org.springframework.core.env.PropertyResolver} over a flattened copy of the
+ * {@link PropertySources} of an {@link Environment}. All the enumerable property sources are
+ * merged (by precedence) into a single hash map, so a property lookup doesn't have to walk the
+ * property source chain. Non-enumerable property sources (like JNDI) and the system environment
+ * (which matches names like <code>db.url</code> against <code>DB_URL</code>) are consulted in
+ * their original order when a property isn't in the map. Missing properties are remembered too.
+ * <p>
+ * The snapshot is built on first use. Code that changes the property sources of the environment
+ * (or the system properties) after that must call {@link #invalidate()}.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class PropertySnapshot extends PropertySourcesPropertyResolver {
+
+  /**
+   * The flattened property sources of an environment.
+   *
+   * @author edgar.espina
+   */
+  private static final class FlattenedPropertySources implements PropertySources {
+
+    /**
+     * The name of the flattened property source.
+     */
+    private static final String NAME = "propertySnapshot";
+
+    /**
+     * The original property sources.
+     */
+    private final PropertySources propertySources;
+
+    /**
+     * The flattened property sources or null if the snapshot must be built.
+     */
+    private volatile List<PropertySource<?>> snapshot;
+
+    /**
+     * Creates a new {@link FlattenedPropertySources}.
+     *
+     * @param propertySources The original property sources.
+     */
+    public FlattenedPropertySources(final PropertySources propertySources) {
+      this.propertySources = propertySources;
+    }
+
+    @Override
+    public Iterator<PropertySource<?>> iterator() {
+      return snapshot().iterator();
+    }
+
+    @Override
+    public boolean contains(final String name) {
+      return get(name) != null;
+    }
+
+    @Override
+    public PropertySource<?> get(final String name) {
+      for (PropertySource<?> propertySource : snapshot()) {
+        if (propertySource.getName().equals(name)) {
+          return propertySource;
+        }
+      }
+      return null;
+    }
+
+    /**
+     * Get or build the flattened property sources.
+     *
+     * @return The flattened property sources.
+     */
+    @SuppressWarnings("rawtypes")
+    private List<PropertySource<?>> snapshot() {
+      List<PropertySource<?>> result = snapshot;
+      if (result == null) {
+        List<PropertySource<?>> sources = new ArrayList<PropertySource<?>>();
+        for (PropertySource<?> propertySource : propertySources) {
+          sources.add(propertySource);
+        }
+        Map<String, Object> properties = new HashMap<String, Object>();
+        List<PropertySource<?>> fallback = new ArrayList<PropertySource<?>>();
+        // Add in reverse order to preserve precedence.
+        for (int i = sources.size() - 1; i >= 0; i--) {
+          PropertySource<?> propertySource = sources.get(i);
+          if (propertySource instanceof EnumerablePropertySource) {
+            for (String name : ((EnumerablePropertySource) propertySource).getPropertyNames()) {
+              Object value = propertySource.getProperty(name);
+              if (value != null) {
+                properties.put(name, value);
+              }
+            }
+          }
+          if (!(propertySource instanceof EnumerablePropertySource)
+              || propertySource instanceof SystemEnvironmentPropertySource) {
+            fallback.add(0, propertySource);
+          }
+        }
+        result = new ArrayList<PropertySource<?>>(fallback.size() + 1);
+        result.add(new MapPropertySource(NAME, properties));
+        result.addAll(fallback);
+        result = Collections.unmodifiableList(result);
+        snapshot = result;
+      }
+      return result;
+    }
+  }
+
+  /**
+   * The snapshots by environment.
+   */
+  private static final Map<Environment, PropertySnapshot> snapshots =
+      new WeakHashMap<Environment, PropertySnapshot>();
+
+  /**
+   * The flattened property sources.
+   */
+  private final FlattenedPropertySources propertySources;
+
+  /**
+   * Name of the properties that don't exist.
+   */
+  private final Set<String> missing =
+      Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * Creates a new {@link PropertySnapshot}.
+   *
+   * @param propertySources The flattened property sources.
+   */
+  private PropertySnapshot(final FlattenedPropertySources propertySources) {
+    super(propertySources);
+    this.propertySources = propertySources;
+  }
+
+  /**
+   * Creates a new {@link PropertySnapshot}.
+   *
+   * @param propertySources The property sources. Required.
+   */
+  public PropertySnapshot(final PropertySources propertySources) {
+    this(new FlattenedPropertySources(notNull(propertySources,
+        "The property sources are required.")));
+  }
+
+  /**
+   * Discard the snapshot. A new snapshot is built on the next property lookup.
+   */
+  public void invalidate() {
+    propertySources.snapshot = null;
+    missing.clear();
+  }
+
+  @Override
+  protected <T> T getProperty(final String key, final Class<T> targetValueType,
+      final boolean resolveNestedPlaceholders) {
+    if (missing.contains(key)) {
+      return null;
+    }
+    T value = super.getProperty(key, targetValueType, resolveNestedPlaceholders);
+    if (value == null) {
+      missing.add(key);
+    }
+    return value;
+  }
+
+  /**
+   * Expose the snapshot as a {@link PropertySource}.
+   *
+   * @param name The property source's name. Required.
+   * @return A {@link PropertySource} backed by this snapshot.
+   */
+  public PropertySource<PropertySnapshot> asPropertySource(final String name) {
+    return new PropertySource<PropertySnapshot>(name, this) {
+      @Override
+      public Object getProperty(final String property) {
+        return source.getProperty(property);
+      }
+    };
+  }
+
+  /**
+   * All the properties of the enumerable property sources, merged by precedence.
+   *
+   * @return All the properties of the enumerable property sources. Unmodifiable.
+   */
+  @SuppressWarnings("unchecked")
+  public Map<String, Object> asMap() {
+    Map<String, Object> properties =
+        (Map<String, Object>) propertySources.snapshot().get(0).getSource();
+    return Collections.unmodifiableMap(properties);
+  }
+
+  /**
+   * Get the {@link PropertySnapshot} of the given environment. Snapshots are created on demand
+   * and they are shared by all the callers of the same environment.
+   *
+   * @param environment The application's environment. Required.
+   * @return The {@link PropertySnapshot} of the given environment.
+   */
+  public static PropertySnapshot get(final ConfigurableEnvironment environment) {
+    notNull(environment, "The environment is required.");
+    synchronized (snapshots) {
+      PropertySnapshot snapshot = snapshots.get(environment);
+      if (snapshot == null) {
+        snapshot = new PropertySnapshot(environment.getPropertySources());
+        snapshot.setConversionService(environment.getConversionService());
+        snapshots.put(environment, snapshot);
+      }
+      return snapshot;
+    }
+  }
+}
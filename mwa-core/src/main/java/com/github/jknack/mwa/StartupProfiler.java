@@ -0,0 +1,622 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.AbstractAutowireCapableBeanFactory;
+import org.springframework.beans.factory.support.CglibSubclassingInstantiationStrategy;
+import org.springframework.beans.factory.support.InstantiationStrategy;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Record a timeline of the application's startup: property sources, module registration, bean
+ * creation and initialization, {@link ComponentConfigurer} calls, {@link StartupTasks} and
+ * fixtures.
+ * <p>
+ * Events are recorded while the application starts up. Once the application's context has been
+ * refreshed, a report (slowest events first) is logged and the timeline is saved as a JSON file,
+ * if {@link ApplicationConstants#APP_STARTUP_PROFILE} is true. Each event of the timeline has:
+ * category, name, thread, start (millis since startup), time and self time (millis).
+ * </p>
+ * <h3>Configuration</h3>
+ * <ul>
+ * <li>application.startup.profile: turn on/off the profiler. Default is: false.</li>
+ * <li>application.startup.profile.file: the timeline file. Default is:
+ * ${java.io.tmpdir}/${application.name}-startup.json</li>
+ * <li>application.startup.profile.top: number of events to log. Default is: 25.</li>
+ * </ul>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class StartupProfiler {
+
+  /**
+   * Property source category.
+   */
+  public static final String PROPERTY_SOURCE = "propertySource";
+
+  /**
+   * Module category. A module is a bean marked as {@link Configuration}.
+   */
+  public static final String MODULE = "module";
+
+  /**
+   * Bean category.
+   */
+  public static final String BEAN = "bean";
+
+  /**
+   * Component configurer category.
+   */
+  public static final String CONFIGURER = "configurer";
+
+  /**
+   * Startup task category.
+   */
+  public static final String TASK = "task";
+
+  /**
+   * Fixture category.
+   */
+  public static final String FIXTURE = "fixture";
+
+  /**
+   * A timeline event.
+   *
+   * @author edgar.espina
+   */
+  public static final class Event {
+
+    /**
+     * The event's category.
+     */
+    private final String category;
+
+    /**
+     * The event's name.
+     */
+    private final String name;
+
+    /**
+     * The thread's name.
+     */
+    private final String thread;
+
+    /**
+     * Start time in nanos since startup.
+     */
+    private final long start;
+
+    /**
+     * Time in nanos.
+     */
+    private final long time;
+
+    /**
+     * Time in nanos, excluding nested events.
+     */
+    private final long selfTime;
+
+    /**
+     * Creates a new {@link Event}.
+     *
+     * @param category The event's category.
+     * @param name The event's name.
+     * @param thread The thread's name.
+     * @param start Start time in nanos since startup.
+     * @param time Time in nanos.
+     * @param selfTime Time in nanos, excluding nested events.
+     */
+    Event(final String category, final String name, final String thread, final long start,
+        final long time, final long selfTime) {
+      this.category = category;
+      this.name = name;
+      this.thread = thread;
+      this.start = start;
+      this.time = time;
+      this.selfTime = selfTime;
+    }
+
+    /**
+     * The event's category.
+     *
+     * @return The event's category.
+     */
+    public String getCategory() {
+      return category;
+    }
+
+    /**
+     * The event's name.
+     *
+     * @return The event's name.
+     */
+    public String getName() {
+      return name;
+    }
+
+    /**
+     * The thread's name.
+     *
+     * @return The thread's name.
+     */
+    public String getThread() {
+      return thread;
+    }
+
+    /**
+     * Start time in millis since startup.
+     *
+     * @return Start time in millis since startup.
+     */
+    public long getStart() {
+      return TimeUnit.NANOSECONDS.toMillis(start);
+    }
+
+    /**
+     * Time in millis.
+     *
+     * @return Time in millis.
+     */
+    public long getTime() {
+      return TimeUnit.NANOSECONDS.toMillis(time);
+    }
+
+    /**
+     * Time in millis, excluding nested events.
+     *
+     * @return Time in millis, excluding nested events.
+     */
+    public long getSelfTime() {
+      return TimeUnit.NANOSECONDS.toMillis(selfTime);
+    }
+
+    @Override
+    public String toString() {
+      return String.format("%8dms %8dms  %-15s %s [%s]", getTime(), getSelfTime(), category,
+          name, thread);
+    }
+  }
+
+  /**
+   * Measure the time of an event.
+   *
+   * @author edgar.espina
+   */
+  public final class Timer {
+
+    /**
+     * The event's category.
+     */
+    private final String category;
+
+    /**
+     * The event's name.
+     */
+    private final String name;
+
+    /**
+     * Start time in nanos.
+     */
+    private final long start;
+
+    /**
+     * Time of nested events in nanos.
+     */
+    private long nested;
+
+    /**
+     * Creates a new {@link Timer}.
+     *
+     * @param category The event's category.
+     * @param name The event's name.
+     */
+    private Timer(final String category, final String name) {
+      this.category = category;
+      this.name = name;
+      this.start = System.nanoTime();
+    }
+
+    /**
+     * Stop the timer and record the event.
+     */
+    public void stop() {
+      long time = System.nanoTime() - start;
+      List<Timer> stack = stack();
+      if (stack.remove(this) && stack.size() > 0) {
+        stack.get(0).nested += time;
+      }
+      record(new Event(category, name, Thread.currentThread().getName(), start - startTime, time,
+          time - nested));
+    }
+  }
+
+  /**
+   * Default value for {@link ApplicationConstants#APP_STARTUP_PROFILE_TOP}.
+   */
+  private static final int DEFAULT_TOP = 25;
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(StartupProfiler.class);
+
+  /**
+   * Running timers per thread (most recent first).
+   */
+  private final ThreadLocal<List<Timer>> timers = new ThreadLocal<List<Timer>>() {
+    @Override
+    protected List<Timer> initialValue() {
+      return new LinkedList<Timer>();
+    }
+  };
+
+  /**
+   * The recorded events.
+   */
+  private final List<Event> events = new ArrayList<Event>();
+
+  /**
+   * Startup time in nanos.
+   */
+  private final long startTime = System.nanoTime();
+
+  /**
+   * True while recording events.
+   */
+  private volatile boolean recording = true;
+
+  /**
+   * Creates a new {@link StartupProfiler}. Events are recorded until {@link #finish(Environment)}
+   * is called.
+   */
+  public StartupProfiler() {
+  }
+
+  /**
+   * Start a timer.
+   *
+   * @param category The event's category. Required.
+   * @param name The event's name. Required.
+   * @return A new timer. Call {@link Timer#stop()} to record the event.
+   */
+  public Timer start(final String category, final String name) {
+    notEmpty(category, "The category is required.");
+    notEmpty(name, "The name is required.");
+    Timer timer = new Timer(category, name);
+    if (recording) {
+      stack().add(0, timer);
+    }
+    return timer;
+  }
+
+  /**
+   * True while recording events.
+   *
+   * @return True while recording events.
+   */
+  public boolean isRecording() {
+    return recording;
+  }
+
+  /**
+   * Measure the creation (instantiation, dependency injection and initialization) of beans and
+   * modules of the given bean factory.
+   *
+   * @param beanFactory The bean factory. Required.
+   */
+  public void profile(final AbstractAutowireCapableBeanFactory beanFactory) {
+    notNull(beanFactory, "The bean factory is required.");
+    final InstantiationStrategy strategy = new CglibSubclassingInstantiationStrategy();
+    // @Bean methods don't get the BeanPostProcessor#postProcessBeforeInstantiation callback, so
+    // the instantiation strategy is the only place where all the beans start.
+    beanFactory.setInstantiationStrategy(new InstantiationStrategy() {
+      @Override
+      public Object instantiate(final RootBeanDefinition beanDefinition, final String beanName,
+          final BeanFactory owner, final Object factoryBean, final Method factoryMethod,
+          final Object[] args) {
+        begin(beanDefinition, beanName, factoryMethod.getReturnType());
+        return strategy.instantiate(beanDefinition, beanName, owner, factoryBean, factoryMethod,
+            args);
+      }
+
+      @Override
+      public Object instantiate(final RootBeanDefinition beanDefinition, final String beanName,
+          final BeanFactory owner, final Constructor<?> ctor, final Object[] args) {
+        begin(beanDefinition, beanName, ctor.getDeclaringClass());
+        return strategy.instantiate(beanDefinition, beanName, owner, ctor, args);
+      }
+
+      @Override
+      public Object instantiate(final RootBeanDefinition beanDefinition, final String beanName,
+          final BeanFactory owner) {
+        begin(beanDefinition, beanName, null);
+        return strategy.instantiate(beanDefinition, beanName, owner);
+      }
+    });
+    beanFactory.addBeanPostProcessor(new BeanPostProcessor() {
+      @Override
+      public Object postProcessBeforeInitialization(final Object bean, final String beanName) {
+        return bean;
+      }
+
+      @Override
+      public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+        end(beanName);
+        return bean;
+      }
+    });
+  }
+
+  /**
+   * Start the timer of a bean.
+   *
+   * @param beanDefinition The bean definition.
+   * @param beanName The bean's name.
+   * @param type The bean's type or <code>null</code>.
+   */
+  private void begin(final RootBeanDefinition beanDefinition, final String beanName,
+      final Class<?> type) {
+    if (recording && beanName != null) {
+      Class<?> beanClass = type;
+      if (beanDefinition.hasBeanClass()) {
+        beanClass = beanDefinition.getBeanClass();
+      }
+      boolean module = beanClass != null && AnnotationUtils.findAnnotation(
+          ClassUtils.getUserClass(beanClass), Configuration.class) != null;
+      start(module ? MODULE : BEAN, beanName);
+    }
+  }
+
+  /**
+   * Stop the timer of a bean (if any). Timers of beans that failed are discarded.
+   *
+   * @param beanName The bean's name.
+   */
+  private void end(final String beanName) {
+    if (recording) {
+      List<Timer> stack = stack();
+      Timer timer = null;
+      for (Timer candidate : stack) {
+        if (candidate.name.equals(beanName)) {
+          timer = candidate;
+          break;
+        }
+      }
+      if (timer != null) {
+        Iterator<Timer> it = stack.iterator();
+        while (it.next() != timer) {
+          it.remove();
+        }
+        timer.stop();
+      }
+    }
+  }
+
+  /**
+   * The recorded events, slowest first.
+   *
+   * @return The recorded events, slowest first.
+   */
+  public List<Event> events() {
+    List<Event> result;
+    synchronized (events) {
+      result = new ArrayList<Event>(events);
+    }
+    Collections.sort(result, new Comparator<Event>() {
+      @Override
+      public int compare(final Event e1, final Event e2) {
+        return e1.time < e2.time ? 1 : e1.time == e2.time ? 0 : -1;
+      }
+    });
+    return result;
+  }
+
+  /**
+   * A text report with the slowest events.
+   *
+   * @param top Max number of events.
+   * @return A text report.
+   */
+  public String report(final int top) {
+    List<Event> slowest = events();
+    long total = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime);
+    StringBuilder buffer = new StringBuilder();
+    buffer.append("startup: ").append(total).append("ms, events: ").append(slowest.size())
+        .append("\n").append(String.format("%10s %10s  %-15s %s", "time", "self", "category",
+            "name"));
+    for (Event event : slowest.subList(0, Math.min(top, slowest.size()))) {
+      buffer.append("\n").append(event);
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Save the timeline (ordered by start time) as JSON.
+   *
+   * @param file The output file. Required.
+   * @throws IOException If the file cannot be written.
+   */
+  public void write(final File file) throws IOException {
+    notNull(file, "The file is required.");
+    List<Event> timeline;
+    synchronized (events) {
+      timeline = new ArrayList<Event>(events);
+    }
+    Collections.sort(timeline, new Comparator<Event>() {
+      @Override
+      public int compare(final Event e1, final Event e2) {
+        return e1.start < e2.start ? -1 : e1.start == e2.start ? 0 : 1;
+      }
+    });
+    File parent = file.getParentFile();
+    if (parent != null) {
+      parent.mkdirs();
+    }
+    Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    try {
+      writer.write("[\n");
+      String sep = "";
+      for (Event event : timeline) {
+        writer.write(sep);
+        writer.write(String.format("  {\"category\": \"%s\", \"name\": \"%s\", \"thread\": \"%s\", "
+            + "\"start\": %d, \"time\": %d, \"self\": %d}", escape(event.category),
+            escape(event.name), escape(event.thread), event.getStart(), event.getTime(),
+            event.getSelfTime()));
+        sep = ",\n";
+      }
+      writer.write("\n]\n");
+    } finally {
+      writer.close();
+    }
+  }
+
+  /**
+   * Stop recording events. If {@link ApplicationConstants#APP_STARTUP_PROFILE} is true, log the
+   * report and save the timeline. The recorded events are discarded. Calls after the first one
+   * are ignored.
+   *
+   * @param env The application's environment. Required.
+   */
+  public void finish(final Environment env) {
+    notNull(env, "The environment is required.");
+    synchronized (events) {
+      if (!recording) {
+        return;
+      }
+      recording = false;
+    }
+    timers.remove();
+    try {
+      if (env.getProperty(ApplicationConstants.APP_STARTUP_PROFILE, Boolean.class, false)) {
+        report(env);
+      }
+    } finally {
+      synchronized (events) {
+        events.clear();
+      }
+    }
+  }
+
+  /**
+   * Log the report and save the timeline.
+   *
+   * @param env The application's environment.
+   */
+  private void report(final Environment env) {
+    logger.info("Startup profile:\n{}", report(env.getProperty(
+        ApplicationConstants.APP_STARTUP_PROFILE_TOP, Integer.class, DEFAULT_TOP)));
+    String defaultFile = new File(System.getProperty("java.io.tmpdir"),
+        env.getProperty(ApplicationConstants.APP_NAME, "application") + "-startup.json")
+        .getAbsolutePath();
+    File file = new File(env.getProperty(ApplicationConstants.APP_STARTUP_PROFILE_FILE,
+        defaultFile));
+    try {
+      write(file);
+      logger.info("Startup timeline saved at: {}", file);
+    } catch (IOException ex) {
+      logger.warn("Unable to save startup timeline: " + file, ex);
+    }
+  }
+
+  /**
+   * Record an event.
+   *
+   * @param event The event.
+   */
+  private void record(final Event event) {
+    synchronized (events) {
+      if (recording) {
+        events.add(event);
+      }
+    }
+  }
+
+  /**
+   * The timers of the current thread.
+   *
+   * @return The timers of the current thread.
+   */
+  private List<Timer> stack() {
+    return timers.get();
+  }
+
+  /**
+   * Escape a JSON string.
+   *
+   * @param value The value.
+   * @return The escaped value.
+   */
+  private static String escape(final String value) {
+    StringBuilder buffer = new StringBuilder(value.length());
+    for (char ch : value.toCharArray()) {
+      if (ch == '"' || ch == '\\') {
+        buffer.append('\\').append(ch);
+      } else if (ch < ' ') {
+        buffer.append(String.format("\\u%04x", (int) ch));
+      } else {
+        buffer.append(ch);
+      }
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * Find the {@link StartupProfiler} of the given bean factory. If there isn't one, a new profiler
+   * (never finished) is returned.
+   *
+   * @param beanFactory The bean factory. Required.
+   * @return The {@link StartupProfiler} of the given bean factory.
+   */
+  public static StartupProfiler get(final ListableBeanFactory beanFactory) {
+    notNull(beanFactory, "The bean factory is required.");
+    Map<String, StartupProfiler> beans = beanFactory.getBeansOfType(StartupProfiler.class);
+    if (beans.size() == 1) {
+      return beans.values().iterator().next();
+    }
+    return noop();
+  }
+
+  /**
+   * A profiler that doesn't record events.
+   *
+   * @return A profiler that doesn't record events.
+   */
+  static StartupProfiler noop() {
+    StartupProfiler profiler = new StartupProfiler();
+    profiler.recording = false;
+    return profiler;
+  }
+
+  @Override
+  public String toString() {
+    return StringUtils.join(events(), "\n");
+  }
+}
@@ -0,0 +1,261 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.EnumerablePropertySource;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.PropertySources;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ResourceUtils;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+
+/**
+ * Persist the components found by classpath scanning after a successful start, so later starts
+ * can register them without scanning the application's namespace. Only starts that scan the whole
+ * namespace write a snapshot: starts that use the {@link ComponentIndex} don't need one.
+ * <p>
+ * A snapshot is valid while its fingerprint matches. The fingerprint is computed from: the
+ * application's properties, the namespace, the jar files of the classpath (name, size and last
+ * modified date) and, for class directories, the files under the namespace's directories (name,
+ * size and last modified date). Jar files are never opened and class files are never parsed while
+ * computing the fingerprint. The classpath is read from the {@link URLClassLoader}s of the
+ * application or, if there isn't one (Java 9+ application class loader), from the
+ * <code>java.class.path</code> system property.
+ * </p>
+ * <p>
+ * Snapshots are off by default, see {@link ApplicationConstants#APP_STARTUP_SNAPSHOT}.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class StartupSnapshot {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(StartupSnapshot.class);
+
+  /**
+   * The snapshot file.
+   */
+  private final File file;
+
+  /**
+   * The fingerprint of the current classpath and properties.
+   */
+  private final String fingerprint;
+
+  /**
+   * Creates a new {@link StartupSnapshot}.
+   *
+   * @param file The snapshot file. Required.
+   * @param fingerprint The fingerprint of the current classpath and properties. Required.
+   */
+  StartupSnapshot(final File file, final String fingerprint) {
+    this.file = notNull(file, "The file is required.");
+    this.fingerprint = notNull(fingerprint, "The fingerprint is required.");
+  }
+
+  /**
+   * The fingerprint of the current classpath and properties.
+   *
+   * @return The fingerprint of the current classpath and properties.
+   */
+  public String fingerprint() {
+    return fingerprint;
+  }
+
+  /**
+   * Load the component's class names from the snapshot file.
+   *
+   * @return The component's class names or <code>null</code> if the snapshot doesn't exist or if
+   *         it doesn't match the current fingerprint.
+   */
+  public List<String> load() {
+    if (!file.exists()) {
+      logger.debug("Startup snapshot not found: {}", file);
+      return null;
+    }
+    try {
+      List<String> lines = Files.readLines(file, Charsets.UTF_8);
+      if (lines.isEmpty() || !fingerprint.equals(lines.get(0))) {
+        logger.info("Startup snapshot is out of date: {}", file);
+        return null;
+      }
+      List<String> classes = new ArrayList<String>(lines.subList(1, lines.size()));
+      logger.info("Startup snapshot loaded from: {}", file);
+      return classes;
+    } catch (IOException ex) {
+      logger.warn("Unable to read startup snapshot: " + file, ex);
+      return null;
+    }
+  }
+
+  /**
+   * Save the component's class names.
+   *
+   * @param classes The component's class names. Required.
+   */
+  public void save(final Collection<String> classes) {
+    notNull(classes, "The classes are required.");
+    try {
+      File parent = file.getParentFile();
+      if (parent != null) {
+        parent.mkdirs();
+      }
+      StringBuilder content = new StringBuilder(fingerprint).append('\n');
+      Joiner.on('\n').appendTo(content, classes);
+      Files.write(content, file, Charsets.UTF_8);
+      logger.info("Startup snapshot saved at: {}", file);
+    } catch (IOException ex) {
+      logger.warn("Unable to save startup snapshot: " + file, ex);
+    }
+  }
+
+  /**
+   * Get a {@link StartupSnapshot} for the given application.
+   *
+   * @param env The application's environment. Required.
+   * @param propertySources The application's property sources. Required.
+   * @param classLoader The application's class loader. Required.
+   * @param packages The application's namespace. Required.
+   * @return A {@link StartupSnapshot} or <code>null</code> if snapshots are disabled.
+   * @throws IOException If the fingerprint can't be computed.
+   */
+  public static StartupSnapshot get(final Environment env,
+      final PropertySources propertySources, final ClassLoader classLoader,
+      final String... packages) throws IOException {
+    notNull(env, "The environment is required.");
+    if (!env.getProperty(ApplicationConstants.APP_STARTUP_SNAPSHOT, boolean.class, false)) {
+      return null;
+    }
+    String defaultFile = new File(System.getProperty("java.io.tmpdir"),
+        env.getProperty(ApplicationConstants.APP_NAME, "application") + "-startup.snapshot")
+        .getAbsolutePath();
+    File file = new File(env.getProperty(ApplicationConstants.APP_STARTUP_SNAPSHOT_FILE,
+        defaultFile));
+    return new StartupSnapshot(file, fingerprint(propertySources, classLoader, packages));
+  }
+
+  /**
+   * Compute the fingerprint of the application's properties and classpath.
+   *
+   * @param propertySources The application's property sources. Required.
+   * @param classLoader The application's class loader. Required.
+   * @param packages The application's namespace. Required.
+   * @return A fingerprint.
+   * @throws IOException If the classpath can't be read.
+   */
+  @SuppressWarnings("rawtypes")
+  static String fingerprint(final PropertySources propertySources,
+      final ClassLoader classLoader, final String... packages) throws IOException {
+    notNull(propertySources, "The property sources are required.");
+    notNull(classLoader, "The class loader is required.");
+    notNull(packages, "The packages are required.");
+    Hasher hasher = Hashing.sha1().newHasher();
+    // properties
+    for (PropertySource<?> propertySource : propertySources) {
+      if (propertySource instanceof EnumerablePropertySource) {
+        Map<String, Object> properties = new TreeMap<String, Object>();
+        for (String name : ((EnumerablePropertySource) propertySource).getPropertyNames()) {
+          properties.put(name, propertySource.getProperty(name));
+        }
+        hasher.putString(propertySource.getName() + properties, Charsets.UTF_8);
+      }
+    }
+    // namespace
+    String[] namespace = packages.clone();
+    Arrays.sort(namespace);
+    hasher.putString(StringUtils.join(namespace, ','), Charsets.UTF_8);
+    // classpath: jar files by timestamp, class directories by the files of the namespace.
+    for (URL url : classpath(classLoader)) {
+      hasher.putString(url.toString(), Charsets.UTF_8);
+      if (ResourceUtils.isFileURL(url)) {
+        File file = ResourceUtils.getFile(url);
+        if (file.isFile()) {
+          hasher.putLong(file.length()).putLong(file.lastModified());
+        } else if (file.isDirectory()) {
+          for (String pkg : namespace) {
+            String path = ClassUtils.convertClassNameToResourcePath(pkg.trim());
+            fingerprint(hasher, new File(file, path), path);
+          }
+        }
+      }
+    }
+    return hasher.hash().toString();
+  }
+
+  /**
+   * The classpath entries of the {@link URLClassLoader}s of the given class loader (and its
+   * parents) or the entries of the <code>java.class.path</code> system property, if there isn't a
+   * {@link URLClassLoader}.
+   *
+   * @param classLoader The class loader.
+   * @return The classpath entries.
+   * @throws IOException If a classpath entry isn't a valid URL.
+   */
+  private static List<URL> classpath(final ClassLoader classLoader) throws IOException {
+    List<URL> classpath = new ArrayList<URL>();
+    ClassLoader loader = classLoader;
+    while (loader != null) {
+      if (loader instanceof URLClassLoader) {
+        classpath.addAll(Arrays.asList(((URLClassLoader) loader).getURLs()));
+      }
+      loader = loader.getParent();
+    }
+    if (classpath.isEmpty()) {
+      String javaClassPath = System.getProperty("java.class.path", "");
+      for (String entry : StringUtils.split(javaClassPath, File.pathSeparatorChar)) {
+        classpath.add(new File(entry).toURI().toURL());
+      }
+    }
+    return classpath;
+  }
+
+  /**
+   * Add the files of a directory (recursively) to the fingerprint: name, size and last modified
+   * date. Files aren't read.
+   *
+   * @param hasher The fingerprint.
+   * @param dir The directory.
+   * @param path The directory's path relative to the classpath entry.
+   */
+  private static void fingerprint(final Hasher hasher, final File dir, final String path) {
+    File[] files = dir.listFiles();
+    if (files == null) {
+      return;
+    }
+    Arrays.sort(files);
+    for (File file : files) {
+      String name = path + "/" + file.getName();
+      if (file.isDirectory()) {
+        fingerprint(hasher, file, name);
+      } else {
+        hasher.putString(name, Charsets.UTF_8)
+            .putLong(file.length())
+            .putLong(file.lastModified());
+      }
+    }
+  }
+}
@@ -0,0 +1,456 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanInitializationException;
+import org.springframework.beans.factory.ListableBeanFactory;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Run expensive initialization work (building an entity manager factory, starting routes, loading
+ * fixtures, etc.) of infrastructure modules. Tasks have a name and might depend on other tasks.
+ * A task starts once all its dependencies have completed. A task whose dependency failed is never
+ * executed and it is reported as failed too.
+ * <p>
+ * By default, tasks are executed in the caller thread (one after another) and failures are
+ * propagated immediately. If {@link ApplicationConstants#APP_STARTUP_PARALLEL} is true, tasks are
+ * executed concurrently on a bounded thread pool of
+ * {@link ApplicationConstants#APP_STARTUP_THREADS} threads. Failures are collected and reported
+ * all together by {@link #await()}, which is called once the application's context has been
+ * refreshed. Tasks submitted after {@link #await()} are executed in the caller thread.
+ * </p>
+ * <p>
+ * Module must NOT look up beans from a task, because the Spring bean factory might be busy creating
+ * beans in the startup thread. All the beans required by a task must be resolved before submitting
+ * the task.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class StartupTasks {
+
+  /**
+   * A startup task.
+   *
+   * @author edgar.espina
+   */
+  private final class Task implements Runnable {
+
+    /**
+     * The task's name.
+     */
+    private final String name;
+
+    /**
+     * The task's body.
+     */
+    private final Callable<?> body;
+
+    /**
+     * The task's dependencies.
+     */
+    private final List<String> dependsOn;
+
+    /**
+     * The task's result.
+     */
+    private Object result;
+
+    /**
+     * The task's failure.
+     */
+    private Throwable failure;
+
+    /**
+     * True, if the task has been executed or skipped.
+     */
+    private boolean done;
+
+    /**
+     * Creates a new {@link Task}.
+     *
+     * @param name The task's name.
+     * @param body The task's body.
+     * @param dependsOn The task's dependencies.
+     */
+    public Task(final String name, final Callable<?> body, final List<String> dependsOn) {
+      this.name = name;
+      this.body = body;
+      this.dependsOn = dependsOn;
+    }
+
+    @Override
+    public void run() {
+      long start = System.currentTimeMillis();
+      Object value = null;
+      Throwable cause = null;
+      StartupProfiler.Timer timer = profiler.start(StartupProfiler.TASK, name);
+      try {
+        logger.debug("Starting task: {}", name);
+        value = body.call();
+      } catch (Throwable ex) {
+        cause = ex;
+      } finally {
+        timer.stop();
+      }
+      logger.debug("Task {} completed in {}ms", name, System.currentTimeMillis() - start);
+      completed(this, value, cause);
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * The {@link Future} of a {@link Task}.
+   *
+   * @author edgar.espina
+   * @param <T> The result type.
+   */
+  private final class TaskFuture<T> implements Future<T> {
+
+    /**
+     * The task.
+     */
+    private final Task task;
+
+    /**
+     * Creates a new {@link TaskFuture}.
+     *
+     * @param task The task.
+     */
+    public TaskFuture(final Task task) {
+      this.task = task;
+    }
+
+    @Override
+    public boolean cancel(final boolean mayInterruptIfRunning) {
+      return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+      return false;
+    }
+
+    @Override
+    public boolean isDone() {
+      synchronized (StartupTasks.this) {
+        return task.done;
+      }
+    }
+
+    @Override
+    public T get() throws InterruptedException, ExecutionException {
+      synchronized (StartupTasks.this) {
+        while (!task.done) {
+          StartupTasks.this.wait();
+        }
+        return result();
+      }
+    }
+
+    @Override
+    public T get(final long timeout, final TimeUnit unit) throws InterruptedException,
+        ExecutionException, TimeoutException {
+      long deadline = System.nanoTime() + unit.toNanos(timeout);
+      synchronized (StartupTasks.this) {
+        while (!task.done) {
+          long left = deadline - System.nanoTime();
+          if (left <= 0) {
+            throw new TimeoutException("Task " + task.name + " didn't complete in: " + timeout
+                + " " + unit);
+          }
+          TimeUnit.NANOSECONDS.timedWait(StartupTasks.this, left);
+        }
+        return result();
+      }
+    }
+
+    /**
+     * The task's result.
+     *
+     * @return The task's result.
+     * @throws ExecutionException If the task failed.
+     */
+    @SuppressWarnings("unchecked")
+    private T result() throws ExecutionException {
+      if (task.failure != null) {
+        throw new ExecutionException("Task failed: " + task.name, task.failure);
+      }
+      return (T) task.result;
+    }
+  }
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(StartupTasks.class);
+
+  /**
+   * All the tasks by name.
+   */
+  private final Map<String, Task> tasks = new LinkedHashMap<String, Task>();
+
+  /**
+   * Tasks waiting for dependencies.
+   */
+  private final List<Task> waiting = new ArrayList<Task>();
+
+  /**
+   * The thread pool or <code>null</code> for running tasks in the caller thread.
+   */
+  private ExecutorService executor;
+
+  /**
+   * True once {@link #await()} has been called: the thread pool has been released.
+   */
+  private boolean closed;
+
+  /**
+   * The max number of threads.
+   */
+  private final int threads;
+
+  /**
+   * The startup profiler.
+   */
+  private final StartupProfiler profiler;
+
+  /**
+   * Creates a new {@link StartupTasks}.
+   *
+   * @param threads The max number of threads. Use 0 for executing tasks in the caller thread.
+   * @param profiler The startup profiler. Required.
+   */
+  public StartupTasks(final int threads, final StartupProfiler profiler) {
+    isTrue(threads >= 0, "Number of threads must be a positive number: %s", threads);
+    this.threads = threads;
+    this.profiler = notNull(profiler, "The profiler is required.");
+  }
+
+  /**
+   * Creates a new {@link StartupTasks}.
+   *
+   * @param threads The max number of threads. Use 0 for executing tasks in the caller thread.
+   */
+  public StartupTasks(final int threads) {
+    this(threads, StartupProfiler.noop());
+  }
+
+  /**
+   * True, if tasks are executed concurrently.
+   *
+   * @return True, if tasks are executed concurrently.
+   */
+  public boolean isParallel() {
+    return threads > 0;
+  }
+
+  /**
+   * Submit a task.
+   *
+   * @param name The task's name. Must be unique. Required.
+   * @param task The task. Required.
+   * @param dependsOn The name of tasks that must be completed before this task. Unknown tasks are
+   *        ignored.
+   * @param <T> The result type.
+   * @return A future for the task's result. Tasks submitted after {@link #await()} are executed
+   *         in the caller thread and their failures are propagated immediately.
+   */
+  public <T> Future<T> submit(final String name, final Callable<T> task,
+      final String... dependsOn) {
+    notEmpty(name, "The task's name is required.");
+    notNull(task, "The task is required.");
+    Task candidate;
+    boolean inline;
+    synchronized (this) {
+      inline = !isParallel() || closed;
+      isTrue(!tasks.containsKey(name), "Duplicated task: %s", name);
+      List<String> dependencies = new ArrayList<String>();
+      for (String dependency : dependsOn) {
+        if (tasks.containsKey(dependency)) {
+          dependencies.add(dependency);
+        } else {
+          logger.debug("Ignoring unknown dependency {} of: {}", dependency, name);
+        }
+      }
+      candidate = new Task(name, task, dependencies);
+      tasks.put(name, candidate);
+      waiting.add(candidate);
+    }
+    schedule();
+    if (inline) {
+      Throwable failure = candidate.failure;
+      if (failure instanceof RuntimeException) {
+        throw (RuntimeException) failure;
+      }
+      if (failure instanceof Error) {
+        throw (Error) failure;
+      }
+      if (failure != null) {
+        throw new BeanInitializationException("Task failed: " + name, failure);
+      }
+    }
+    return new TaskFuture<T>(candidate);
+  }
+
+  /**
+   * Wait for all the tasks to complete and release the thread pool.
+   *
+   * @throws BeanInitializationException If one or more task failed.
+   */
+  public void await() {
+    List<Task> failures = new ArrayList<Task>();
+    synchronized (this) {
+      try {
+        while (!allDone()) {
+          wait();
+        }
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new BeanInitializationException("Interrupted while waiting for: " + waiting, ex);
+      } finally {
+        closed = true;
+        if (executor != null) {
+          executor.shutdown();
+          executor = null;
+        }
+      }
+      for (Task task : tasks.values()) {
+        if (task.failure != null) {
+          failures.add(task);
+        }
+      }
+    }
+    if (failures.size() > 0) {
+      StringBuilder message = new StringBuilder("Startup failed, ")
+          .append(failures.size()).append(" task(s) failed:");
+      for (Task task : failures) {
+        logger.error("Task failed: " + task.name, task.failure);
+        message.append("\n  ").append(task.name).append(": ").append(task.failure);
+      }
+      throw new BeanInitializationException(message.toString(), failures.get(0).failure);
+    }
+  }
+
+  /**
+   * True if all the tasks are done.
+   *
+   * @return True if all the tasks are done.
+   */
+  private boolean allDone() {
+    for (Task task : tasks.values()) {
+      if (!task.done) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Record the result of a task and schedule the tasks waiting for it.
+   *
+   * @param task The task.
+   * @param result The task's result.
+   * @param failure The task's failure or <code>null</code>.
+   */
+  private void completed(final Task task, final Object result, final Throwable failure) {
+    synchronized (this) {
+      task.result = result;
+      task.failure = failure;
+      task.done = true;
+      notifyAll();
+    }
+    schedule();
+  }
+
+  /**
+   * Execute the tasks whose dependencies have completed.
+   */
+  private void schedule() {
+    List<Task> ready = new ArrayList<Task>();
+    ExecutorService pool;
+    synchronized (this) {
+      Iterator<Task> it = waiting.iterator();
+      while (it.hasNext()) {
+        Task task = it.next();
+        Task failed = null;
+        boolean runnable = true;
+        for (String dependency : task.dependsOn) {
+          Task required = tasks.get(dependency);
+          runnable &= required.done;
+          if (required.failure != null) {
+            failed = required;
+          }
+        }
+        if (failed != null) {
+          it.remove();
+          task.failure = new IllegalStateException("Dependency failed: " + failed.name,
+              failed.failure);
+          task.done = true;
+          notifyAll();
+        } else if (runnable) {
+          it.remove();
+          ready.add(task);
+        }
+      }
+      if (isParallel() && !closed && ready.size() > 0 && executor == null) {
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(),
+            new ThreadFactoryBuilder().setDaemon(true).setNameFormat("startup-%d").build());
+      }
+      pool = executor;
+    }
+    for (Task task : ready) {
+      if (pool != null) {
+        pool.execute(task);
+      } else {
+        task.run();
+      }
+    }
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "tasks: " + tasks.keySet() + ", waiting: " + waiting;
+  }
+
+  /**
+   * Find the {@link StartupTasks} of the given bean factory. If there isn't one, a new sequential
+   * {@link StartupTasks} is returned.
+   *
+   * @param beanFactory The bean factory. Required.
+   * @return The {@link StartupTasks} of the given bean factory or a sequential one.
+   */
+  public static StartupTasks get(final ListableBeanFactory beanFactory) {
+    notNull(beanFactory, "The bean factory is required.");
+    Map<String, StartupTasks> beans = beanFactory.getBeansOfType(StartupTasks.class);
+    if (beans.size() == 1) {
+      return beans.values().iterator().next();
+    }
+    return new StartupTasks(0);
+  }
+}
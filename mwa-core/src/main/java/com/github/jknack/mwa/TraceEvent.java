@@ -0,0 +1,261 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A timed event of an MWA hot path, like a filter invocation or a model contribution:
+ *
+ * <pre>
+ * TraceEvent event = TraceEvent.begin(TraceEvent.FILTER);
+ * try {
+ *   ...
+ * } finally {
+ *   event.set("uri", request.getRequestURI()).commit();
+ * }
+ * </pre>
+ * <p>
+ * If there isn't an {@link EventRecorder} for the event's type, {@link #begin(String)} returns a
+ * shared no-op event: nothing is allocated or timed. Fields that are expensive to compute should
+ * be guarded by {@link #isEnabled()}.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class TraceEvent {
+
+  /**
+   * Event type of a filter invocation. Fields: filter, uri.
+   */
+  public static final String FILTER = "mwa.Filter";
+
+  /**
+   * Event type of a model contribution. Fields: contribution, uri, view.
+   */
+  public static final String MODEL_CONTRIBUTION = "mwa.ModelContribution";
+
+  /**
+   * Event type of a wro4j processor execution. Fields: processor, resource.
+   */
+  public static final String WRO_PROCESSOR = "mwa.WroProcessor";
+
+  /**
+   * Event type of a JPA fixtures load. Fields: baseDir, entities, skipped.
+   */
+  public static final String JPA_FIXTURES = "mwa.JpaFixtures";
+
+  /**
+   * Event type of a Solr fixture post. Fields: core, file.
+   */
+  public static final String SOLR_FIXTURES = "mwa.SolrFixtures";
+
+  /**
+   * The no-op event.
+   */
+  private static final TraceEvent NOOP = new TraceEvent("noop") {
+    @Override
+    public TraceEvent set(final String name, final Object value) {
+      return this;
+    }
+
+    @Override
+    public void commit() {
+    }
+  };
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(TraceEvent.class);
+
+  /**
+   * The event recorders. Copy on write.
+   */
+  private static volatile EventRecorder[] recorders = discover();
+
+  /**
+   * The event's type.
+   */
+  private final String type;
+
+  /**
+   * The start time in nanos.
+   */
+  private final long start;
+
+  /**
+   * The duration in nanos. Set on commit.
+   */
+  private long duration;
+
+  /**
+   * The event's fields.
+   */
+  private final Map<String, Object> fields = new LinkedHashMap<String, Object>();
+
+  /**
+   * Creates a new {@link TraceEvent}.
+   *
+   * @param type The event's type.
+   */
+  private TraceEvent(final String type) {
+    this.type = type;
+    this.start = System.nanoTime();
+  }
+
+  /**
+   * The event's type.
+   *
+   * @return The event's type.
+   */
+  public String getType() {
+    return type;
+  }
+
+  /**
+   * True, if the event is going to be recorded. Hot paths check it before computing expensive
+   * fields.
+   *
+   * @return True, if the event is going to be recorded. False for the no-op event.
+   */
+  public boolean isEnabled() {
+    return this != NOOP;
+  }
+
+  /**
+   * The duration of the event.
+   *
+   * @param unit The time unit. Required.
+   * @return The duration of the event.
+   */
+  public long getDuration(final TimeUnit unit) {
+    return unit.convert(duration, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * The event's fields.
+   *
+   * @return The event's fields.
+   */
+  public Map<String, Object> getFields() {
+    return Collections.unmodifiableMap(fields);
+  }
+
+  /**
+   * Set a field.
+   *
+   * @param name The field's name. Required.
+   * @param value The field's value.
+   * @return This event.
+   */
+  public TraceEvent set(final String name, final Object value) {
+    fields.put(name, value);
+    return this;
+  }
+
+  /**
+   * Stop the clock and send the event to the recorders.
+   */
+  public void commit() {
+    duration = System.nanoTime() - start;
+    for (EventRecorder recorder : recorders) {
+      if (recorder.isEnabled(type)) {
+        try {
+          recorder.record(this);
+        } catch (RuntimeException ex) {
+          logger.warn("Recorder " + recorder + " failed on: " + type, ex);
+        }
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return type + fields + " " + TimeUnit.NANOSECONDS.toMicros(duration) + "us";
+  }
+
+  /**
+   * Start an event.
+   *
+   * @param type The event's type. Required.
+   * @return A new event or a no-op event if there isn't a recorder for the given type.
+   */
+  public static TraceEvent begin(final String type) {
+    return isRecorded(type) ? new TraceEvent(type) : NOOP;
+  }
+
+  /**
+   * True, if there is a recorder for the given type. Useful for instrumenting a component only
+   * when its events are going to be recorded.
+   *
+   * @param type The event's type. Required.
+   * @return True, if there is a recorder for the given type.
+   */
+  public static boolean isRecorded(final String type) {
+    for (EventRecorder recorder : recorders) {
+      if (recorder.isEnabled(type)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Add an event recorder.
+   *
+   * @param recorder The event recorder. Required.
+   */
+  public static synchronized void addRecorder(final EventRecorder recorder) {
+    notNull(recorder, "The recorder is required.");
+    List<EventRecorder> result = new ArrayList<EventRecorder>();
+    Collections.addAll(result, recorders);
+    result.add(recorder);
+    recorders = result.toArray(new EventRecorder[result.size()]);
+  }
+
+  /**
+   * Remove an event recorder.
+   *
+   * @param recorder The event recorder. Required.
+   */
+  public static synchronized void removeRecorder(final EventRecorder recorder) {
+    notNull(recorder, "The recorder is required.");
+    List<EventRecorder> result = new ArrayList<EventRecorder>();
+    Collections.addAll(result, recorders);
+    result.remove(recorder);
+    recorders = result.toArray(new EventRecorder[result.size()]);
+  }
+
+  /**
+   * Find event recorders with the {@link ServiceLoader}.
+   *
+   * @return The event recorders of the classpath.
+   */
+  private static EventRecorder[] discover() {
+    List<EventRecorder> result = new ArrayList<EventRecorder>();
+    try {
+      Iterator<EventRecorder> it = ServiceLoader.load(EventRecorder.class).iterator();
+      while (it.hasNext()) {
+        EventRecorder recorder = it.next();
+        logger.info("Event recorder found: {}", recorder);
+        result.add(recorder);
+      }
+    } catch (ServiceConfigurationError ex) {
+      logger.warn("Event recorders are disabled", ex);
+    }
+    return result.toArray(new EventRecorder[result.size()]);
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+public class ComponentConfigurersTest {
+
+  public static class Component {
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+  }
+
+  public static class Child extends Component {
+  }
+
+  public static class First implements ComponentConfigurer<Component>, Ordered {
+    @Override
+    public void configure(final Component component) {
+      component.log.add("first");
+    }
+
+    @Override
+    public int getOrder() {
+      return 0;
+    }
+  }
+
+  public static class Second implements ComponentConfigurer<Component>, Ordered {
+    @Override
+    public void configure(final Component component) {
+      component.log.add("second");
+    }
+
+    @Override
+    public int getOrder() {
+      return 1;
+    }
+  }
+
+  public static class ChildConfigurer implements ComponentConfigurer<Child> {
+    @Override
+    public void configure(final Child component) {
+      component.log.add("child");
+    }
+  }
+
+  @Configuration
+  public static class ConfigurerModule {
+    @Bean
+    public Second second() {
+      return new Second();
+    }
+
+    @Bean
+    public First first() {
+      return new First();
+    }
+
+    @Bean
+    public ChildConfigurer childConfigurer() {
+      return new ChildConfigurer();
+    }
+
+    @Bean
+    public Component component() {
+      return new Component();
+    }
+
+    @Bean
+    public Child child() {
+      return new Child();
+    }
+  }
+
+  @Test
+  public void configure() {
+    configure(false);
+  }
+
+  @Test
+  public void configureInParallel() {
+    configure(true);
+  }
+
+  private void configure(final boolean parallel) {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    properties.put(ApplicationConstants.APP_STARTUP_PARALLEL, String.valueOf(parallel));
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addFirst(new MapPropertySource("test", properties));
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    ApplicationContextConfigurer.configure(context, propertySources);
+    context.register(ConfigurerModule.class);
+    context.refresh();
+
+    assertEquals(Arrays.asList("first", "second"), context.getBean("component",
+        Component.class).log);
+    List<String> log = context.getBean("child", Component.class).log;
+    assertEquals(3, log.size());
+    assertTrue(log.contains("child"));
+    assertTrue(log.indexOf("first") < log.indexOf("second"));
+
+    // child contexts and repeated events are ignored
+    AnnotationConfigApplicationContext child = new AnnotationConfigApplicationContext();
+    child.setParent(context);
+    child.refresh();
+    context.publishEvent(new ContextRefreshedEvent(context));
+    assertEquals(2, context.getBean("component", Component.class).log.size());
+    child.close();
+    context.close();
+  }
+}
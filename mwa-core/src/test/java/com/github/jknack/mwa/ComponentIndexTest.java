@@ -0,0 +1,130 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaCompiler.CompilationTask;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+public class ComponentIndexTest {
+
+  @Test
+  public void candidates() {
+    Map<String, Set<String>> entries = new TreeMap<String, Set<String>>();
+    entries.put("app.Service", stereotypes(ComponentIndex.COMPONENT));
+    entries.put("app.domain.Person", stereotypes(ComponentIndex.JPA_ENTITY));
+    entries.put("app.domain.Address", stereotypes(ComponentIndex.JPA_EMBEDDABLE));
+    entries.put("application.Other", stereotypes(ComponentIndex.COMPONENT));
+    // stale entry of a package that isn't listed
+    entries.put("app.web.Controller", stereotypes(ComponentIndex.COMPONENT));
+    ComponentIndex index = new ComponentIndex(entries,
+        new TreeSet<String>(Arrays.asList("app", "app.domain", "application")));
+
+    assertEquals(stereotypes("app.Service"),
+        index.candidates(new String[]{"app" }, ComponentIndex.COMPONENT, ComponentIndex.NAMED));
+    assertEquals(stereotypes("app.domain.Address", "app.domain.Person"),
+        index.candidates(new String[]{"app" }, ComponentIndex.JPA_ENTITY,
+            ComponentIndex.JPA_EMBEDDABLE));
+    assertEquals(stereotypes("app.domain.Person"),
+        index.candidates(new String[]{"app.domain" }, ComponentIndex.JPA_ENTITY));
+    assertTrue(index.candidates(new String[]{"app.web" }, ComponentIndex.COMPONENT).isEmpty());
+  }
+
+  @Test
+  public void covers() {
+    ComponentIndex index = new ComponentIndex(new TreeMap<String, Set<String>>(),
+        new TreeSet<String>(Arrays.asList("app.domain", "app.web")));
+
+    // app or one of its other sub-packages might not be indexed: scan it
+    assertFalse(index.covers("app"));
+    assertTrue(index.covers("app.domain"));
+    assertTrue(index.covers("app.web"));
+    assertFalse(index.covers("app.domain.model"));
+    assertFalse(index.covers("lib"));
+    assertFalse(index.covers(""));
+    assertArrayEquals(new String[]{"app.domain" },
+        index.covered(new String[]{"app.domain", "app.batch", "lib" }));
+    assertArrayEquals(new String[]{"app.batch", "lib" },
+        index.uncovered(new String[]{"app.domain", "app.batch", "lib" }));
+    assertArrayEquals(new String[0], index.covered(new String[]{"app", "lib" }));
+    assertArrayEquals(new String[]{"app", "lib" }, index.uncovered(new String[]{"app", "lib" }));
+  }
+
+  @Test
+  public void processor() throws Exception {
+    JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    if (compiler == null) {
+      // running on a JRE
+      return;
+    }
+    File dir = new File(System.getProperty("java.io.tmpdir"), "mwa-index-" + System.nanoTime());
+    File src = new File(dir, "src/app");
+    File out = new File(dir, "classes");
+    assertTrue(src.mkdirs());
+    assertTrue(out.mkdirs());
+    File service = write(new File(src, "Service.java"), "package app;\n"
+        + "@org.springframework.stereotype.Service\n"
+        + "public class Service {\n"
+        + "  @javax.inject.Named public static class Nested {}\n"
+        + "  public class Inner {}\n"
+        + "}\n");
+    File base = write(new File(src, "Base.java"), "package app;\n"
+        + "@org.springframework.stereotype.Component\n"
+        + "public abstract class Base {}\n");
+    File pojo = write(new File(src, "Pojo.java"), "package app;\n"
+        + "public class Pojo {}\n");
+
+    StandardJavaFileManager fileManager = compiler.getStandardFileManager(null, null, null);
+    Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(service, base,
+        pojo);
+    CompilationTask task = compiler.getTask(null, fileManager, null,
+        Arrays.asList("-d", out.getAbsolutePath(), "-classpath",
+            System.getProperty("java.class.path")), null, units);
+    task.setProcessors(Arrays.asList(new ComponentIndexProcessor()));
+    assertTrue(task.call());
+    fileManager.close();
+
+    ComponentIndex index = ComponentIndex.get(new URLClassLoader(new URL[]{out.toURI().toURL() },
+        null));
+    assertEquals(2, index.size());
+    assertEquals(stereotypes(ComponentIndex.COMPONENT), index.stereotypes("app.Service"));
+    assertEquals(stereotypes(ComponentIndex.NAMED), index.stereotypes("app.Service$Nested"));
+    assertTrue(index.stereotypes("app.Base").isEmpty());
+    assertTrue(index.stereotypes("app.Pojo").isEmpty());
+    assertTrue(index.covers("app"));
+    assertFalse(index.covers("lib"));
+  }
+
+  private static Set<String> stereotypes(final String... values) {
+    return new LinkedHashSet<String>(Arrays.asList(values));
+  }
+
+  private static File write(final File file, final String content) throws IOException {
+    FileWriter writer = new FileWriter(file);
+    try {
+      writer.write(content);
+    } finally {
+      writer.close();
+    }
+    return file;
+  }
+}
@@ -0,0 +1,45 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void empty() {
+    Histogram histogram = new Histogram();
+    assertEquals(0, histogram.getCount());
+    assertEquals(0, histogram.getMean(TimeUnit.MILLISECONDS));
+    assertEquals(0, histogram.getMax(TimeUnit.MILLISECONDS));
+    assertEquals(0, histogram.getPercentile(99, TimeUnit.MILLISECONDS));
+  }
+
+  @Test
+  public void record() {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 99; i++) {
+      histogram.record(1, TimeUnit.MILLISECONDS);
+    }
+    histogram.record(1, TimeUnit.SECONDS);
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(1000, histogram.getMax(TimeUnit.MILLISECONDS));
+    assertEquals(1099, histogram.getSum(TimeUnit.MILLISECONDS));
+    assertEquals(10, histogram.getMean(TimeUnit.MILLISECONDS), 1);
+
+    long p50 = histogram.getPercentile(50, TimeUnit.MICROSECONDS);
+    assertTrue("p50: " + p50, p50 >= 1000 && p50 <= 2000);
+    long p99 = histogram.getPercentile(99, TimeUnit.MICROSECONDS);
+    assertTrue("p99: " + p99, p99 >= 1000 && p99 <= 2000);
+    assertEquals(1000, histogram.getPercentile(100, TimeUnit.MILLISECONDS));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void badPercentile() {
+    new Histogram().getPercentile(101, TimeUnit.MILLISECONDS);
+  }
+}
@@ -0,0 +1,126 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+public class LazyModulesTest {
+
+  public interface Mailer {
+    String send(String message);
+  }
+
+  public static class MailerImpl implements Mailer {
+    private String prefix = "";
+
+    @Override
+    public String send(final String message) {
+      return prefix + message;
+    }
+  }
+
+  public static class Index {
+    public String query() {
+      return "found";
+    }
+  }
+
+  public static class MailerConfigurer implements ComponentConfigurer<MailerImpl> {
+    @Override
+    public void configure(final MailerImpl component) {
+      component.prefix += "configured: ";
+    }
+  }
+
+  public static class Client {
+    private Mailer mailer;
+
+    @Inject
+    public Client(final Mailer mailer) {
+      this.mailer = mailer;
+    }
+  }
+
+  static final AtomicInteger created = new AtomicInteger();
+
+  @Configuration
+  public static class MailModule {
+    @Bean
+    public Mailer mailer() {
+      created.incrementAndGet();
+      return new MailerImpl();
+    }
+
+    @Bean
+    public MailerConfigurer mailerConfigurer() {
+      return new MailerConfigurer();
+    }
+  }
+
+  @Configuration
+  public static class IndexModule {
+    @Bean
+    public Index index() {
+      created.incrementAndGet();
+      return new Index();
+    }
+  }
+
+  @Test
+  public void lazy() {
+    created.set(0);
+    AnnotationConfigApplicationContext context = context();
+    context.register(Client.class);
+    context.refresh();
+
+    assertEquals(0, created.get());
+    Client client = context.getBean(Client.class);
+    assertTrue(LazyModules.isLazy(client.mailer));
+    assertEquals("configured: hello", client.mailer.send("hello"));
+    assertEquals("configured: again", context.getBean(Mailer.class).send("again"));
+    assertEquals(1, created.get());
+    assertEquals("found", context.getBean(Index.class).query());
+    assertEquals(2, created.get());
+    context.close();
+  }
+
+  @Test
+  public void excludeAndPrewarm() {
+    created.set(0);
+    AnnotationConfigApplicationContext context = context("IndexModule", "mailer");
+    context.refresh();
+
+    assertEquals(2, created.get());
+    assertTrue(!LazyModules.isLazy(context.getBean(Mailer.class)));
+    assertTrue(!LazyModules.isLazy(context.getBean(Index.class)));
+    assertEquals("configured: hello", context.getBean(Mailer.class).send("hello"));
+    context.close();
+  }
+
+  private static AnnotationConfigApplicationContext context(final String... properties) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    map.put(ApplicationConstants.APP_LAZY, "true");
+    if (properties.length > 0) {
+      map.put(ApplicationConstants.APP_LAZY_EXCLUDE, properties[0]);
+      map.put(ApplicationConstants.APP_LAZY_PREWARM, properties[1]);
+    }
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addFirst(new MapPropertySource("test", map));
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    ApplicationContextConfigurer.configure(context, propertySources);
+    context.register(MailModule.class, IndexModule.class);
+    return context;
+  }
+}
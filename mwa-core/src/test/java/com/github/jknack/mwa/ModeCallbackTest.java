@@ -59,4 +59,40 @@ public class ModeCallbackTest {
         }));
   }
 
+  public static class BaseCallback extends ModeCallback<String> {
+    @Override
+    public String on(final Mode mode) {
+      return null;
+    }
+
+    @Override
+    public String onDev() {
+      return null;
+    }
+
+    public String onProd() {
+      return "base";
+    }
+
+    public String onStage() {
+      return "stage";
+    }
+  }
+
+  public static class ProdCallback extends BaseCallback {
+    @Override
+    public String onProd() {
+      return "prod";
+    }
+  }
+
+  @Test
+  public void onInherited() {
+    Mode prod = Mode.valueOf("prod");
+    for (int i = 0; i < 3; i++) {
+      assertEquals("prod", prod.execute(new ProdCallback()));
+      assertEquals("base", prod.execute(new BaseCallback()));
+      assertEquals("stage", Mode.valueOf("stage").execute(new ProdCallback()));
+    }
+  }
 }
@@ -0,0 +1,82 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+public class PropertySnapshotTest {
+
+  @Test
+  public void precedence() {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addLast(source("high", "a", "high", "b", "${a}-b"));
+    propertySources.addLast(source("low", "a", "low", "c", "3"));
+    PropertySnapshot snapshot = new PropertySnapshot(propertySources);
+
+    assertEquals("high", snapshot.getProperty("a"));
+    assertEquals("high-b", snapshot.getProperty("b"));
+    assertEquals(Integer.valueOf(3), snapshot.getProperty("c", Integer.class));
+    assertEquals(3, snapshot.asMap().size());
+    assertNull(snapshot.getProperty("d"));
+    assertEquals("x-high", snapshot.resolvePlaceholders("x-${a}"));
+  }
+
+  @Test
+  public void nonEnumerableSources() {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addLast(source("map", "a", "map"));
+    propertySources.addLast(new PropertySource<Object>("dynamic") {
+      @Override
+      public Object getProperty(final String name) {
+        return "b".equals(name) ? "dynamic" : null;
+      }
+    });
+    PropertySnapshot snapshot = new PropertySnapshot(propertySources);
+
+    assertEquals("map", snapshot.getProperty("a"));
+    assertEquals("dynamic", snapshot.getProperty("b"));
+  }
+
+  @Test
+  public void invalidate() {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addLast(source("v1", "a", "1"));
+    PropertySnapshot snapshot = new PropertySnapshot(propertySources);
+    assertEquals("1", snapshot.getProperty("a"));
+    assertNull(snapshot.getProperty("b"));
+
+    propertySources.addFirst(source("v2", "a", "2", "b", "2"));
+    // not visible yet
+    assertEquals("1", snapshot.getProperty("a"));
+    assertNull(snapshot.getProperty("b"));
+
+    snapshot.invalidate();
+    assertEquals("2", snapshot.getProperty("a"));
+    assertEquals("2", snapshot.getProperty("b"));
+  }
+
+  @Test
+  public void environment() {
+    StandardEnvironment env = new StandardEnvironment();
+    assertSame(PropertySnapshot.get(env), PropertySnapshot.get(env));
+    assertEquals(System.getProperty("java.version"),
+        PropertySnapshot.get(env).getProperty("java.version"));
+  }
+
+  private static MapPropertySource source(final String name, final String... properties) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    return new MapPropertySource(name, map);
+  }
+}
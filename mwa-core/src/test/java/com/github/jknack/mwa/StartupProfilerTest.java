@@ -0,0 +1,88 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+
+import com.github.jknack.mwa.StartupProfiler.Event;
+
+public class StartupProfilerTest {
+
+  @Configuration
+  public static class ProfiledModule {
+    @Bean
+    public String slowBean() throws InterruptedException {
+      Thread.sleep(20);
+      return "slow";
+    }
+  }
+
+  @Test
+  public void nestedTimers() throws Exception {
+    StartupProfiler profiler = new StartupProfiler();
+    StartupProfiler.Timer outer = profiler.start(StartupProfiler.MODULE, "outer");
+    StartupProfiler.Timer inner = profiler.start(StartupProfiler.BEAN, "inner");
+    Thread.sleep(20);
+    inner.stop();
+    outer.stop();
+
+    List<Event> events = profiler.events();
+    assertEquals(2, events.size());
+    assertEquals("outer", events.get(0).getName());
+    assertTrue(events.get(0).getTime() >= events.get(1).getTime());
+    assertTrue(events.get(0).getSelfTime() < events.get(1).getTime());
+  }
+
+  @Test
+  public void profileContext() throws Exception {
+    File file = File.createTempFile("startup", ".json");
+    file.deleteOnExit();
+
+    Map<String, Object> properties = new HashMap<String, Object>();
+    properties.put(ApplicationConstants.APP_STARTUP_PROFILE, "true");
+    properties.put(ApplicationConstants.APP_STARTUP_PROFILE_FILE, file.getAbsolutePath());
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addFirst(new MapPropertySource("test", properties));
+
+    StartupProfiler profiler = new StartupProfiler();
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    ApplicationContextConfigurer.configure(context, propertySources, profiler);
+    context.register(ProfiledModule.class);
+    context.refresh();
+    context.close();
+
+    assertTrue(!profiler.isRecording());
+    assertTrue(profiler.events().isEmpty());
+    Scanner scanner = new Scanner(file, "UTF-8");
+    String json = scanner.useDelimiter("\\A").next();
+    scanner.close();
+    assertTrue(json.contains("\"category\": \"bean\", \"name\": \"slowBean\""));
+    assertTrue(json.contains("\"category\": \"module\""));
+  }
+
+  @Test
+  public void profileOff() throws Exception {
+    StartupProfiler profiler = new StartupProfiler();
+    profiler.start(StartupProfiler.PROPERTY_SOURCE, "application.properties").stop();
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+    ApplicationContextConfigurer.configure(context, new MutablePropertySources(), profiler);
+    assertTrue(!profiler.isRecording());
+    context.register(ProfiledModule.class);
+    context.refresh();
+    context.close();
+
+    assertTrue(profiler.events().isEmpty());
+  }
+}
@@ -0,0 +1,121 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class StartupSnapshotTest {
+
+  @Test
+  public void fingerprint() throws Exception {
+    ClassLoader loader = getClass().getClassLoader();
+    String fingerprint = StartupSnapshot.fingerprint(properties("v1"), loader,
+        "com.github.jknack.mwa");
+    assertEquals(fingerprint, StartupSnapshot.fingerprint(properties("v1"), loader,
+        "com.github.jknack.mwa"));
+    assertTrue(!fingerprint.equals(StartupSnapshot.fingerprint(properties("v2"), loader,
+        "com.github.jknack.mwa")));
+    assertTrue(!fingerprint.equals(StartupSnapshot.fingerprint(properties("v1"), loader,
+        "org.junit")));
+  }
+
+  @Test
+  public void classDirectory() throws Exception {
+    File dir = new File(System.getProperty("java.io.tmpdir"), "mwa-snapshot-" + System.nanoTime());
+    File pkg = new File(dir, "app/domain");
+    assertTrue(pkg.mkdirs());
+    File service = new File(dir, "app/Service.class");
+    Files.write("v1", service, Charsets.UTF_8);
+    File other = new File(dir, "lib/Other.class");
+    Files.createParentDirs(other);
+    Files.write("v1", other, Charsets.UTF_8);
+    ClassLoader loader = new URLClassLoader(new URL[]{dir.toURI().toURL() }, null);
+
+    String fingerprint = StartupSnapshot.fingerprint(properties("v1"), loader, "app");
+    // outside of the namespace
+    Files.write("v2", other, Charsets.UTF_8);
+    assertEquals(fingerprint, StartupSnapshot.fingerprint(properties("v1"), loader, "app"));
+    // new class
+    File person = new File(pkg, "Person.class");
+    Files.write("v1", person, Charsets.UTF_8);
+    String withPerson = StartupSnapshot.fingerprint(properties("v1"), loader, "app");
+    assertTrue(!fingerprint.equals(withPerson));
+    // changed class
+    assertTrue(service.setLastModified(service.lastModified() - 60000));
+    assertTrue(!withPerson.equals(StartupSnapshot.fingerprint(properties("v1"), loader, "app")));
+  }
+
+  @Test
+  public void javaClassPath() throws Exception {
+    File dir = new File(System.getProperty("java.io.tmpdir"), "mwa-snapshot-" + System.nanoTime());
+    File service = new File(dir, "app/Service.class");
+    Files.createParentDirs(service);
+    Files.write("v1", service, Charsets.UTF_8);
+    File file = new File(dir, "startup.snapshot");
+    // not a URLClassLoader, like the application class loader of Java 9+
+    ClassLoader loader = new ClassLoader(null) {
+    };
+    String classpath = System.getProperty("java.class.path");
+    System.setProperty("java.class.path", dir.getAbsolutePath());
+    try {
+      List<String> classes = Arrays.asList("app.Service");
+      new StartupSnapshot(file, StartupSnapshot.fingerprint(properties("v1"), loader, "app"))
+          .save(classes);
+      assertEquals(classes, new StartupSnapshot(file,
+          StartupSnapshot.fingerprint(properties("v1"), loader, "app")).load());
+
+      // changed class
+      Files.write("v2-changed", service, Charsets.UTF_8);
+      assertNull(new StartupSnapshot(file,
+          StartupSnapshot.fingerprint(properties("v1"), loader, "app")).load());
+    } finally {
+      System.setProperty("java.class.path", classpath);
+    }
+  }
+
+  @Test
+  public void saveAndLoad() throws Exception {
+    File file = File.createTempFile("startup", ".snapshot");
+    file.delete();
+    file.deleteOnExit();
+
+    StartupSnapshot snapshot = new StartupSnapshot(file, "f1");
+    assertNull(snapshot.load());
+    List<String> classes = Arrays.asList("app.Service", "app.Repository");
+    snapshot.save(classes);
+    assertEquals(classes, snapshot.load());
+
+    // out of date
+    assertNull(new StartupSnapshot(file, "f2").load());
+  }
+
+  @Test
+  public void disabled() throws Exception {
+    assertNull(StartupSnapshot.get(new StandardEnvironment(), properties("v1"),
+        getClass().getClassLoader(), "com.github.jknack.mwa"));
+  }
+
+  private static MutablePropertySources properties(final String value) {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    properties.put("property", value);
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addFirst(new MapPropertySource("application.properties", properties));
+    return propertySources;
+  }
+}
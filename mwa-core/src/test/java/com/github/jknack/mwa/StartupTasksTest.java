@@ -0,0 +1,137 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.beans.factory.BeanInitializationException;
+
+public class StartupTasksTest {
+
+  @Test
+  public void sequential() throws Exception {
+    final List<String> log = new ArrayList<String>();
+    StartupTasks tasks = new StartupTasks(0);
+    assertTrue(!tasks.isParallel());
+    Future<String> a = tasks.submit("a", record(log, "a"));
+    // executed in the caller thread
+    assertTrue(a.isDone());
+    assertEquals("a", a.get());
+    tasks.submit("b", record(log, "b"), "a");
+    tasks.await();
+    assertEquals(2, log.size());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void sequentialFailure() {
+    new StartupTasks(0).submit("a", new Callable<Object>() {
+      @Override
+      public Object call() {
+        throw new IllegalStateException("a");
+      }
+    });
+  }
+
+  @Test
+  public void parallel() throws Exception {
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    StartupTasks tasks = new StartupTasks(4);
+    tasks.submit("a", record(log, "a"));
+    tasks.submit("b", record(log, "b"));
+    tasks.submit("c", record(log, "c"), "a", "b");
+    tasks.submit("d", record(log, "d"), "c", "unknown");
+    tasks.await();
+    assertEquals(4, log.size());
+    assertTrue(log.indexOf("c") > log.indexOf("a"));
+    assertTrue(log.indexOf("c") > log.indexOf("b"));
+    assertTrue(log.indexOf("d") > log.indexOf("c"));
+  }
+
+  @Test
+  public void failures() throws Exception {
+    final AtomicInteger counter = new AtomicInteger();
+    StartupTasks tasks = new StartupTasks(2);
+    tasks.submit("a", new Callable<Object>() {
+      @Override
+      public Object call() {
+        throw new IllegalStateException("a");
+      }
+    });
+    Future<Object> b = tasks.submit("b", new Callable<Object>() {
+      @Override
+      public Object call() {
+        return counter.incrementAndGet();
+      }
+    }, "a");
+    tasks.submit("c", new Callable<Object>() {
+      @Override
+      public Object call() {
+        throw new IllegalArgumentException("c");
+      }
+    });
+    try {
+      tasks.await();
+      fail("Startup must fail");
+    } catch (BeanInitializationException ex) {
+      assertTrue(ex.getMessage().contains("3 task(s) failed"));
+    }
+    // b never run
+    assertEquals(0, counter.get());
+    try {
+      b.get();
+      fail("b must fail");
+    } catch (ExecutionException ex) {
+      assertTrue(ex.getCause().getMessage().contains("Dependency failed: a"));
+    }
+  }
+
+  @Test
+  public void submitAfterAwait() throws Exception {
+    final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+    StartupTasks tasks = new StartupTasks(2);
+    tasks.submit("a", record(log, "a"));
+    tasks.await();
+
+    final Thread caller = Thread.currentThread();
+    Future<Boolean> b = tasks.submit("b", new Callable<Boolean>() {
+      @Override
+      public Boolean call() {
+        return Thread.currentThread() == caller;
+      }
+    }, "a");
+    // the pool is gone: executed in the caller thread
+    assertTrue(b.isDone());
+    assertTrue(b.get());
+    try {
+      tasks.submit("c", new Callable<Object>() {
+        @Override
+        public Object call() {
+          throw new IllegalStateException("c");
+        }
+      });
+      fail("c must fail");
+    } catch (IllegalStateException ex) {
+      assertEquals("c", ex.getMessage());
+    }
+  }
+
+  private static Callable<String> record(final List<String> log, final String name) {
+    return new Callable<String>() {
+      @Override
+      public String call() throws Exception {
+        Thread.sleep(10);
+        log.add(name);
+        return name;
+      }
+    };
+  }
+}
@@ -0,0 +1,64 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TraceEventTest {
+
+  @Test
+  public void noopWithoutRecorders() {
+    TraceEvent event = TraceEvent.begin(TraceEvent.FILTER);
+    assertSame(event, TraceEvent.begin(TraceEvent.FILTER));
+    assertFalse(TraceEvent.isRecorded(TraceEvent.FILTER));
+    assertFalse(event.isEnabled());
+    assertSame(event, event.set("uri", "/"));
+    assertTrue(event.getFields().isEmpty());
+    event.commit();
+  }
+
+  @Test
+  public void record() throws Exception {
+    final List<TraceEvent> events = new ArrayList<TraceEvent>();
+    EventRecorder recorder = new EventRecorder() {
+      @Override
+      public boolean isEnabled(final String type) {
+        return TraceEvent.FILTER.equals(type);
+      }
+
+      @Override
+      public void record(final TraceEvent event) {
+        events.add(event);
+      }
+    };
+    TraceEvent.addRecorder(recorder);
+    try {
+      assertSame(TraceEvent.begin(TraceEvent.WRO_PROCESSOR),
+          TraceEvent.begin(TraceEvent.WRO_PROCESSOR));
+      assertFalse(TraceEvent.isRecorded(TraceEvent.WRO_PROCESSOR));
+      assertTrue(TraceEvent.isRecorded(TraceEvent.FILTER));
+
+      TraceEvent event = TraceEvent.begin(TraceEvent.FILTER);
+      assertNotSame(event, TraceEvent.begin(TraceEvent.FILTER));
+      assertTrue(event.isEnabled());
+      Thread.sleep(5);
+      event.set("uri", "/path").commit();
+
+      assertEquals(1, events.size());
+      assertSame(event, events.get(0));
+      assertEquals("/path", event.getFields().get("uri"));
+      assertTrue(event.getDuration(TimeUnit.MILLISECONDS) >= 4);
+    } finally {
+      TraceEvent.removeRecorder(recorder);
+    }
+    assertSame(TraceEvent.begin(TraceEvent.FILTER), TraceEvent.begin(TraceEvent.FILTER));
+  }
+}
@@ -0,0 +1,83 @@
+package com.github.jknack.mwa.jpa;
+
+import static com.github.jknack.mwa.jpa.DataSources.DB_ACQUIRE_INCREMENT;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_ACQUIRE_INCREMENT;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_DRIVER;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_IDDLE_CONNECTION_TEST_PERIOD;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_IDDLE_MAX_AGE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_MAX_CONNECTIONS_PER_PARTITION;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_MIN_CONNECTIONS_PER_PARTITION;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_PARTITION_COUNT;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_STATEMENTS_CACHE_SIZE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DRIVER;
+import static com.github.jknack.mwa.jpa.DataSources.DB_IDDLE_CONNECTION_TEST_PERIOD;
+import static com.github.jknack.mwa.jpa.DataSources.DB_IDDLE_MAX_AGE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_MAX_CONNECTIONS_PER_PARTITION;
+import static com.github.jknack.mwa.jpa.DataSources.DB_MIN_CONNECTIONS_PER_PARTITION;
+import static com.github.jknack.mwa.jpa.DataSources.DB_PARTITION_COUNT;
+import static com.github.jknack.mwa.jpa.DataSources.DB_PASSWORD;
+import static com.github.jknack.mwa.jpa.DataSources.DB_STATEMENTS_CACHE_SIZE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_USER;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import com.jolbox.bonecp.BoneCP;
+import com.jolbox.bonecp.BoneCPDataSource;
+
+/**
+ * A BoneCP connection pool: <code>db.pool=bonecp</code>. This is the default pool.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see <a href="http://www.http://jolbox.com/">BoneCP</a>
+ */
+public class BoneCPPoolProvider implements PoolProvider {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(BoneCPPoolProvider.class);
+
+  @Override
+  public DataSource newDataSource(final Environment env, final String database) {
+    BoneCPDataSource datasource = new BoneCPDataSource();
+    datasource.setJdbcUrl(database);
+    datasource.setDriverClass(env.getProperty(DB_DRIVER,
+        DB_DEFAULT_DRIVER));
+    datasource.setUsername(env.getRequiredProperty(DB_USER));
+    datasource.setPassword(env.getRequiredProperty(DB_PASSWORD));
+    datasource.setIdleConnectionTestPeriod(env.getProperty(
+        DB_IDDLE_CONNECTION_TEST_PERIOD, Integer.class,
+        DB_DEFAULT_IDDLE_CONNECTION_TEST_PERIOD), TimeUnit.SECONDS);
+    datasource.setIdleMaxAge(env.getProperty(DB_IDDLE_MAX_AGE,
+        Integer.class, DB_DEFAULT_IDDLE_MAX_AGE), TimeUnit.SECONDS);
+    datasource.setMaxConnectionsPerPartition(env.getProperty(
+        DB_MAX_CONNECTIONS_PER_PARTITION, Integer.class,
+        DB_DEFAULT_MAX_CONNECTIONS_PER_PARTITION));
+    datasource.setMinConnectionsPerPartition(env.getProperty(
+        DB_MIN_CONNECTIONS_PER_PARTITION, Integer.class,
+        DB_DEFAULT_MIN_CONNECTIONS_PER_PARTITION));
+    datasource.setPartitionCount(env.getProperty(DB_PARTITION_COUNT,
+        Integer.class, DB_DEFAULT_PARTITION_COUNT));
+    datasource.setAcquireIncrement(env.getProperty(DB_ACQUIRE_INCREMENT,
+        Integer.class, DB_DEFAULT_ACQUIRE_INCREMENT));
+    datasource.setStatementsCacheSize(env.getProperty(
+        DB_STATEMENTS_CACHE_SIZE, Integer.class,
+        DB_DEFAULT_STATEMENTS_CACHE_SIZE));
+    logger.info("Creating high performance connection pool: '{}'", database);
+    return datasource;
+  }
+
+  @Override
+  public int getIdle(final DataSource dataSource) {
+    // the pool is created on the first connection request
+    BoneCP pool = ((BoneCPDataSource) dataSource).getPool();
+    return pool == null ? 0 : pool.getTotalFree();
+  }
+}
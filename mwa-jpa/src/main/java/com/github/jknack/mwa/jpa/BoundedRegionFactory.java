@@ -0,0 +1,125 @@
+package com.github.jknack.mwa.jpa;
+
+import java.util.Properties;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import org.hibernate.cache.CacheException;
+import org.hibernate.cache.ehcache.EhCacheRegionFactory;
+import org.hibernate.cache.spi.CacheDataDescription;
+import org.hibernate.cache.spi.CollectionRegion;
+import org.hibernate.cache.spi.EntityRegion;
+import org.hibernate.cache.spi.NaturalIdRegion;
+import org.hibernate.cache.spi.QueryResultsRegion;
+import org.hibernate.cache.spi.TimestampsRegion;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A Hibernate's second-level and query cache backed by bounded in-process (heap only) caches.
+ * Regions are configured from the application's environment:
+ * <ul>
+ * <li>{@link JpaModule#DB_CACHE_MAX_SIZE db.cache.maxSize}: max number of entries per region.</li>
+ * <li>{@link JpaModule#DB_CACHE_TTL db.cache.ttl}: time to live in seconds of an entry. Zero or
+ * negative means no expiration.</li>
+ * <li><code>db.cache.[region].maxSize</code> and <code>db.cache.[region].ttl</code>: override the
+ * defaults for one region. A region is named after the entity's class (or collection's role) or
+ * the <code>region</code> attribute of the <code>@Cache</code> annotation.</li>
+ * </ul>
+ * The timestamps region never expires, otherwise cached queries might return stale results.
+ * Regions present in a <code>ehcache.xml</code> file keep their configuration.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class BoundedRegionFactory extends EhCacheRegionFactory {
+
+  /**
+   * Default serial UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(BoundedRegionFactory.class);
+
+  /**
+   * Creates a new {@link BoundedRegionFactory}.
+   */
+  public BoundedRegionFactory() {
+  }
+
+  /**
+   * Creates a new {@link BoundedRegionFactory}.
+   *
+   * @param properties The Hibernate's properties.
+   */
+  public BoundedRegionFactory(final Properties properties) {
+    super(properties);
+  }
+
+  @Override
+  public EntityRegion buildEntityRegion(final String regionName, final Properties properties,
+      final CacheDataDescription metadata) throws CacheException {
+    configure(regionName, properties, true);
+    return super.buildEntityRegion(regionName, properties, metadata);
+  }
+
+  @Override
+  public NaturalIdRegion buildNaturalIdRegion(final String regionName,
+      final Properties properties, final CacheDataDescription metadata) throws CacheException {
+    configure(regionName, properties, true);
+    return super.buildNaturalIdRegion(regionName, properties, metadata);
+  }
+
+  @Override
+  public CollectionRegion buildCollectionRegion(final String regionName,
+      final Properties properties, final CacheDataDescription metadata) throws CacheException {
+    configure(regionName, properties, true);
+    return super.buildCollectionRegion(regionName, properties, metadata);
+  }
+
+  @Override
+  public QueryResultsRegion buildQueryResultsRegion(final String regionName,
+      final Properties properties) throws CacheException {
+    configure(regionName, properties, true);
+    return super.buildQueryResultsRegion(regionName, properties);
+  }
+
+  @Override
+  public TimestampsRegion buildTimestampsRegion(final String regionName,
+      final Properties properties) throws CacheException {
+    configure(regionName, properties, false);
+    return super.buildTimestampsRegion(regionName, properties);
+  }
+
+  /**
+   * Add a bounded cache for the given region, unless the region was configured already.
+   *
+   * @param regionName The region's name.
+   * @param properties The Hibernate's properties.
+   * @param expires True, if entries expire.
+   */
+  private void configure(final String regionName, final Properties properties,
+      final boolean expires) {
+    if (manager.cacheExists(regionName)) {
+      return;
+    }
+    String prefix = JpaModule.DB_CACHE + "." + regionName;
+    int maxSize = ConfigurationHelper.getInt(prefix + ".maxSize", properties,
+        ConfigurationHelper.getInt(JpaModule.DB_CACHE_MAX_SIZE, properties,
+            JpaModule.DB_DEFAULT_CACHE_MAX_SIZE));
+    int ttl = expires ? ConfigurationHelper.getInt(prefix + ".ttl", properties,
+        ConfigurationHelper.getInt(JpaModule.DB_CACHE_TTL, properties,
+            JpaModule.DB_DEFAULT_CACHE_TTL)) : 0;
+    CacheConfiguration configuration = new CacheConfiguration(regionName, maxSize)
+        .eternal(ttl <= 0)
+        .timeToLiveSeconds(Math.max(0, ttl));
+    manager.addCache(new Cache(configuration));
+    logger.debug("  cache region: {} {maxSize: {}, ttl: {}s}",
+        new Object[]{regionName, maxSize, ttl });
+  }
+}
@@ -0,0 +1,172 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hit and miss statistics of a second-level or query cache region. Statistics are published over
+ * JMX as: <code>com.github.jknack.mwa:type=CacheRegion,application=...,name=...</code>. Hibernate's
+ * statistics must be on, see: {@link JpaModule#DB_STATISTICS}.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class CacheRegionStatistics implements CacheRegionStatisticsMBean {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(CacheRegionStatistics.class);
+
+  /**
+   * The Hibernate's statistics.
+   */
+  private final Statistics statistics;
+
+  /**
+   * The application's name.
+   */
+  private final String application;
+
+  /**
+   * The region's name.
+   */
+  private final String region;
+
+  /**
+   * The JMX name or <code>null</code>.
+   */
+  private ObjectName objectName;
+
+  /**
+   * Creates a new {@link CacheRegionStatistics}.
+   *
+   * @param statistics The Hibernate's statistics. Required.
+   * @param application The application's name. Required.
+   * @param region The region's name. Required.
+   */
+  public CacheRegionStatistics(final Statistics statistics, final String application,
+      final String region) {
+    this.statistics = notNull(statistics, "The statistics are required.");
+    this.application = notEmpty(application, "The application is required.");
+    this.region = notEmpty(region, "The region is required.");
+  }
+
+  /**
+   * Creates and publishes over JMX the statistics of all the cache regions.
+   *
+   * @param statistics The Hibernate's statistics. Required.
+   * @param application The application's name. Required.
+   * @return The statistics of all the cache regions.
+   */
+  public static List<CacheRegionStatistics> register(final Statistics statistics,
+      final String application) {
+    notNull(statistics, "The statistics are required.");
+    List<CacheRegionStatistics> regions = new ArrayList<CacheRegionStatistics>();
+    for (String region : statistics.getSecondLevelCacheRegionNames()) {
+      regions.add(new CacheRegionStatistics(statistics, application, region).register());
+    }
+    return regions;
+  }
+
+  /**
+   * Publish the statistics over JMX. Errors are logged.
+   *
+   * @return This statistics.
+   */
+  public CacheRegionStatistics register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName candidate = new ObjectName(InstrumentedDataSource.JMX_DOMAIN
+          + ":type=CacheRegion,application=" + ObjectName.quote(application) + ",name="
+          + ObjectName.quote(region));
+      server.registerMBean(this, candidate);
+      objectName = candidate;
+    } catch (JMException ex) {
+      logger.warn("Can't publish cache region '" + application + "/" + region + "' over JMX",
+          ex);
+    }
+    return this;
+  }
+
+  /**
+   * Unpublish the statistics.
+   */
+  public void close() {
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException ex) {
+        logger.debug("Can't unregister: " + objectName, ex);
+      }
+      objectName = null;
+    }
+  }
+
+  /**
+   * The region's statistics.
+   *
+   * @return The region's statistics or <code>null</code>.
+   */
+  private SecondLevelCacheStatistics stats() {
+    return statistics.getSecondLevelCacheStatistics(region);
+  }
+
+  @Override
+  public String getRegion() {
+    return region;
+  }
+
+  @Override
+  public long getHits() {
+    SecondLevelCacheStatistics stats = stats();
+    return stats == null ? 0 : stats.getHitCount();
+  }
+
+  @Override
+  public long getMisses() {
+    SecondLevelCacheStatistics stats = stats();
+    return stats == null ? 0 : stats.getMissCount();
+  }
+
+  @Override
+  public long getPuts() {
+    SecondLevelCacheStatistics stats = stats();
+    return stats == null ? 0 : stats.getPutCount();
+  }
+
+  @Override
+  public double getHitRatio() {
+    SecondLevelCacheStatistics stats = stats();
+    if (stats == null) {
+      return 0;
+    }
+    long lookups = stats.getHitCount() + stats.getMissCount();
+    return lookups == 0 ? 0 : (double) stats.getHitCount() / lookups;
+  }
+
+  @Override
+  public long getElements() {
+    SecondLevelCacheStatistics stats = stats();
+    return stats == null ? 0 : stats.getElementCountInMemory();
+  }
+
+  @Override
+  public String toString() {
+    return region + " {hits: " + getHits() + ", misses: " + getMisses() + ", puts: " + getPuts()
+        + ", elements: " + getElements() + "}";
+  }
+}
@@ -0,0 +1,52 @@
+package com.github.jknack.mwa.jpa;
+
+/**
+ * JMX view of a second-level or query cache region. See {@link CacheRegionStatistics}.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public interface CacheRegionStatisticsMBean {
+
+  /**
+   * The region's name.
+   *
+   * @return The region's name.
+   */
+  String getRegion();
+
+  /**
+   * Number of lookups that found an entry.
+   *
+   * @return Number of lookups that found an entry.
+   */
+  long getHits();
+
+  /**
+   * Number of lookups that didn't find an entry.
+   *
+   * @return Number of lookups that didn't find an entry.
+   */
+  long getMisses();
+
+  /**
+   * Number of entries put in the region.
+   *
+   * @return Number of entries put in the region.
+   */
+  long getPuts();
+
+  /**
+   * Hits over lookups, between 0 and 1.
+   *
+   * @return Hits over lookups, between 0 and 1.
+   */
+  double getHitRatio();
+
+  /**
+   * Number of entries in memory.
+   *
+   * @return Number of entries in memory.
+   */
+  long getElements();
+}
@@ -1,22 +1,34 @@
 package com.github.jknack.mwa.jpa;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.commons.lang3.Validate.isTrue;
 
 import java.io.File;
+import java.sql.Connection;
 import java.sql.Driver;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.sql.DataSource;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
 import org.springframework.core.env.Environment;
 import org.springframework.jdbc.datasource.SimpleDriverDataSource;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
 import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.jdbc.support.JdbcUtils;
 import org.springframework.util.ClassUtils;
 
-import com.jolbox.bonecp.BoneCPDataSource;
+import com.github.jknack.mwa.ApplicationConstants;
+import com.github.jknack.mwa.Mode;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 /**
  * <p>
@@ -30,6 +42,14 @@ import com.jolbox.bonecp.BoneCPDataSource;
  * <li>A high performance connection pool if the {@link #DATABASE db} property
  * isn't one of: mem or fs. See: BoneCP.
  * </ul>
+ * <p>
+ * The connection pool is selected with the {@link #DB_POOL db.pool} property: <code>bonecp</code>
+ * (default), <code>hikari</code> or the class's name of a {@link PoolProvider}. The
+ * <code>db.*</code> settings apply to all of them. Connection pools are instrumented, see
+ * {@link InstrumentedDataSource}. Read-only transactions can be routed to replicas with the
+ * {@link #DB_REPLICAS db.replicas} property. SQL statements can be profiled with the
+ * {@link #DB_PROFILER db.profiler} property.
+ * </p>
  *
  * @author edgar.espina
  * @since 0.1
@@ -164,11 +184,88 @@ public final class DataSources {
    */
   public static final int DB_DEFAULT_STATEMENTS_CACHE_SIZE = 20;
 
+  /**
+   * The connection pool: <code>bonecp</code>, <code>hikari</code> or the class's name of a
+   * {@link PoolProvider}. Default is: {@link #DB_DEFAULT_POOL}.
+   */
+  public static final String DB_POOL = "db.pool";
+
+  /**
+   * Default value for {@link #DB_POOL}.
+   */
+  public static final String DB_DEFAULT_POOL = "bonecp";
+
+  /**
+   * If true, the minimum number of connections of a {@link PoolProvider} pool are opened in
+   * parallel at startup time. Useful for pools that open connections on first use. BoneCP and
+   * HikariCP open their minimum number of connections themselves, so BoneCP is never prefilled.
+   * Default is: false.
+   */
+  public static final String DB_PREFILL = "db.prefill";
+
+  /**
+   * If true, the connection pool is wrapped with an {@link InstrumentedDataSource}. Default is:
+   * true.
+   */
+  public static final String DB_INSTRUMENT = "db.instrument";
+
+  /**
+   * Time in millis a connection can be borrowed before it is reported as a leak. Default is: 0
+   * (off). See {@link InstrumentedDataSource}.
+   */
+  public static final String DB_LEAK_THRESHOLD = "db.leakThreshold";
+
+  /**
+   * Comma separated list of read replica urls. Read-only transactions are routed to replicas, see
+   * {@link ReadWriteDataSource}. Replicas share the <code>db.*</code> settings of the primary
+   * database. Optional.
+   */
+  public static final String DB_REPLICAS = "db.replicas";
+
+  /**
+   * Time in millis a failing replica is ejected. Default is:
+   * {@link #DB_DEFAULT_REPLICAS_EJECT_TIME}.
+   */
+  public static final String DB_REPLICAS_EJECT_TIME = "db.replicas.ejectTime";
+
+  /**
+   * Default value for {@link #DB_REPLICAS_EJECT_TIME}.
+   */
+  public static final long DB_DEFAULT_REPLICAS_EJECT_TIME = 30000;
+
+  /**
+   * If true, the data source is wrapped with a {@link ProfilingDataSource}. Default is: false.
+   */
+  public static final String DB_PROFILER = "db.profiler";
+
+  /**
+   * Statements slower than this (in millis) are logged by the {@link #DB_PROFILER profiler}.
+   * Bind values are logged in dev mode. Default is: {@link #DB_DEFAULT_PROFILER_SLOW_THRESHOLD}.
+   */
+  public static final String DB_PROFILER_SLOW_THRESHOLD = "db.profiler.slowThreshold";
+
+  /**
+   * Default value for {@link #DB_PROFILER_SLOW_THRESHOLD}.
+   */
+  public static final long DB_DEFAULT_PROFILER_SLOW_THRESHOLD = 500;
+
   /**
    * Default value for {@link #DB_RELEASE_THREADS}.
    */
   public static final int DB_DEFAULT_RELEASE_THREADS = 3;
 
+  /**
+   * The built-in pool providers.
+   */
+  private static final Map<String, String> POOLS = ImmutableMap.of(
+      "bonecp", "com.github.jknack.mwa.jpa.BoneCPPoolProvider",
+      "hikari", "com.github.jknack.mwa.jpa.HikariPoolProvider");
+
+  /**
+   * Max time in seconds to wait for the pool to be filled.
+   */
+  private static final int PREFILL_TIMEOUT = 30;
+
   /**
    * The logging system.
    */
@@ -199,46 +296,168 @@ public final class DataSources {
     String database = environment.getRequiredProperty(DATABASE);
     DataSource dataSource = createEmbeddedDatabase(environment, database);
     if (dataSource == null) {
-      dataSource = newPooledDataSource(environment, database);
+      String name = environment.getProperty("application.name", DATABASE);
+      dataSource = newConnectionPool(environment, database, name);
+      String[] replicas = environment.getProperty(DB_REPLICAS, String[].class);
+      if (replicas != null && replicas.length > 0) {
+        DataSource[] readOnly = new DataSource[replicas.length];
+        for (int i = 0; i < replicas.length; i++) {
+          readOnly[i] = newConnectionPool(environment, replicas[i].trim(),
+              name + "-replica-" + i);
+        }
+        long ejectTime = environment.getProperty(DB_REPLICAS_EJECT_TIME, Long.class,
+            DB_DEFAULT_REPLICAS_EJECT_TIME);
+        dataSource = new ReadWriteDataSource(dataSource, readOnly, ejectTime);
+        logger.info("Read-only transactions are routed to: {} replica(s)", replicas.length);
+      }
+    }
+    if (environment.getProperty(DB_PROFILER, Boolean.class, false)) {
+      String name = environment.getProperty("application.name", DATABASE);
+      long slowThreshold = environment.getProperty(DB_PROFILER_SLOW_THRESHOLD, Long.class,
+          DB_DEFAULT_PROFILER_SLOW_THRESHOLD);
+      Mode mode = Mode.valueOf(environment.getProperty(ApplicationConstants.APP_MODE,
+          Mode.DEV.name()));
+      logger.info("Profiling SQL statements of: '{}'", name);
+      dataSource = new ProfilingDataSource(dataSource, name, slowThreshold, mode.isDev())
+          .register();
     }
     return dataSource;
   }
 
   /**
-   * Build a high performance connection pool datasource.
+   * Create, prefill and instrument a connection pool.
    *
-   * @param env The environment.
-   * @param database The database type.
-   * @return A high performance connection pool datasource.
-   */
-  private static DataSource newPooledDataSource(final Environment env,
-      final String database) {
-    BoneCPDataSource datasource = new BoneCPDataSource();
-    datasource.setJdbcUrl(database);
-    datasource.setDriverClass(env.getProperty(DB_DRIVER,
-        DB_DEFAULT_DRIVER));
-    datasource.setUsername(env.getRequiredProperty(DB_USER));
-    datasource.setPassword(env.getRequiredProperty(DB_PASSWORD));
-    datasource.setIdleConnectionTestPeriod(env.getProperty(
-        DB_IDDLE_CONNECTION_TEST_PERIOD, Integer.class,
-        DB_DEFAULT_IDDLE_CONNECTION_TEST_PERIOD), TimeUnit.SECONDS);
-    datasource.setIdleMaxAge(env.getProperty(DB_IDDLE_MAX_AGE,
-        Integer.class, DB_DEFAULT_IDDLE_MAX_AGE), TimeUnit.SECONDS);
-    datasource.setMaxConnectionsPerPartition(env.getProperty(
-        DB_MAX_CONNECTIONS_PER_PARTITION, Integer.class,
-        DB_DEFAULT_MAX_CONNECTIONS_PER_PARTITION));
-    datasource.setMinConnectionsPerPartition(env.getProperty(
-        DB_MIN_CONNECTIONS_PER_PARTITION, Integer.class,
-        DB_DEFAULT_MIN_CONNECTIONS_PER_PARTITION));
-    datasource.setPartitionCount(env.getProperty(DB_PARTITION_COUNT,
-        Integer.class, DB_DEFAULT_PARTITION_COUNT));
-    datasource.setAcquireIncrement(env.getProperty(DB_ACQUIRE_INCREMENT,
-        Integer.class, DB_DEFAULT_ACQUIRE_INCREMENT));
-    datasource.setStatementsCacheSize(env.getProperty(
-        DB_STATEMENTS_CACHE_SIZE, Integer.class,
-        DB_DEFAULT_STATEMENTS_CACHE_SIZE));
-    logger.info("Creating high performance connection pool: '{}'", database);
-    return datasource;
+   * @param environment The application's environment.
+   * @param database The database's url.
+   * @param name The pool's name.
+   * @return A new connection pool.
+   */
+  private static DataSource newConnectionPool(final Environment environment,
+      final String database, final String name) {
+    String pool = environment.getProperty(DB_POOL, DB_DEFAULT_POOL);
+    PoolProvider provider = poolProvider(pool);
+    DataSource dataSource = provider.newDataSource(environment, database);
+    // BoneCP opens the minimum number of connections itself
+    if (!DB_DEFAULT_POOL.equalsIgnoreCase(pool)
+        && environment.getProperty(DB_PREFILL, Boolean.class, false)) {
+      prefill(dataSource, minConnections(environment));
+    }
+    if (environment.getProperty(DB_INSTRUMENT, Boolean.class, true)) {
+      long leakThreshold = environment.getProperty(DB_LEAK_THRESHOLD, Long.class, 0L);
+      dataSource = new InstrumentedDataSource(dataSource, name, leakThreshold, provider)
+          .register();
+    }
+    return dataSource;
+  }
+
+  /**
+   * The max number of connections of a pool: {@link #DB_MAX_CONNECTIONS_PER_PARTITION} *
+   * {@link #DB_PARTITION_COUNT}.
+   *
+   * @param env The application's environment.
+   * @return The max number of connections of a pool.
+   */
+  static int maxConnections(final Environment env) {
+    return env.getProperty(DB_MAX_CONNECTIONS_PER_PARTITION, Integer.class,
+        DB_DEFAULT_MAX_CONNECTIONS_PER_PARTITION) * partitionCount(env);
+  }
+
+  /**
+   * The min number of connections of a pool: {@link #DB_MIN_CONNECTIONS_PER_PARTITION} *
+   * {@link #DB_PARTITION_COUNT}.
+   *
+   * @param env The application's environment.
+   * @return The min number of connections of a pool.
+   */
+  static int minConnections(final Environment env) {
+    return env.getProperty(DB_MIN_CONNECTIONS_PER_PARTITION, Integer.class,
+        DB_DEFAULT_MIN_CONNECTIONS_PER_PARTITION) * partitionCount(env);
+  }
+
+  /**
+   * The number of partitions.
+   *
+   * @param env The application's environment.
+   * @return The number of partitions.
+   */
+  private static int partitionCount(final Environment env) {
+    return env.getProperty(DB_PARTITION_COUNT, Integer.class, DB_DEFAULT_PARTITION_COUNT);
+  }
+
+  /**
+   * Creates a pool provider.
+   *
+   * @param pool The pool's name or the class's name of a {@link PoolProvider}.
+   * @return A new pool provider.
+   */
+  private static PoolProvider poolProvider(final String pool) {
+    String className = POOLS.get(pool.toLowerCase());
+    if (className == null) {
+      className = pool;
+    }
+    try {
+      Class<?> providerClass = ClassUtils.forName(className, DataSources.class.getClassLoader());
+      isTrue(PoolProvider.class.isAssignableFrom(providerClass), "Not a %s: %s",
+          PoolProvider.class.getName(), className);
+      return (PoolProvider) BeanUtils.instantiate(providerClass);
+    } catch (ClassNotFoundException ex) {
+      throw new IllegalArgumentException("Pool provider not found: " + pool
+          + ", is the pool in the classpath?", ex);
+    }
+  }
+
+  /**
+   * Open connections in parallel and return them to the pool, so the pool doesn't have to create
+   * them one by one on first use. Failures are logged and the pool creates connections on demand.
+   *
+   * @param dataSource The connection pool.
+   * @param connections The number of connections to open.
+   */
+  private static void prefill(final DataSource dataSource, final int connections) {
+    if (connections <= 0) {
+      return;
+    }
+    logger.info("  opening {} connections", connections);
+    // Connections are kept until all of them have been opened, otherwise the same connection
+    // will be reused.
+    final CountDownLatch opened = new CountDownLatch(connections);
+    ExecutorService executor = Executors.newFixedThreadPool(connections,
+        new ThreadFactoryBuilder()
+            .setDaemon(true)
+            .setNameFormat("db-prefill-%d")
+            .build());
+    try {
+      for (int i = 0; i < connections; i++) {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            Connection connection = null;
+            try {
+              connection = dataSource.getConnection();
+            } catch (SQLException ex) {
+              logger.warn("Can't open connection", ex);
+            } finally {
+              opened.countDown();
+            }
+            try {
+              opened.await(PREFILL_TIMEOUT, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+            } finally {
+              JdbcUtils.closeConnection(connection);
+            }
+          }
+        });
+      }
+      executor.shutdown();
+      if (!executor.awaitTermination(PREFILL_TIMEOUT, TimeUnit.SECONDS)) {
+        logger.warn("Connection pool wasn't filled in {}s", PREFILL_TIMEOUT);
+      }
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    } finally {
+      executor.shutdownNow();
+    }
   }
 
   /**
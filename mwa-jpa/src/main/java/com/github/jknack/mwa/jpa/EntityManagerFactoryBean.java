@@ -3,37 +3,101 @@ package com.github.jknack.mwa.jpa;
 import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.spi.PersistenceUnitInfo;
 
 import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.cfg.Settings;
 import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.event.service.spi.EventListenerGroup;
 import org.hibernate.event.service.spi.EventListenerRegistry;
 import org.hibernate.event.spi.EventType;
 import org.hibernate.metadata.ClassMetadata;
 import org.hibernate.service.spi.ServiceRegistryImplementor;
+import org.hibernate.stat.Statistics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.core.env.Environment;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 
+import com.github.jknack.mwa.ApplicationConstants;
+import com.github.jknack.mwa.Mode;
+import com.github.jknack.mwa.StartupProfiler;
+import com.github.jknack.mwa.StartupTasks;
+
 /**
  * Extends {@link LocalContainerEntityManagerFactoryBean} by registering Hibernate event listeners.
  * Event listeners must be registered in the Spring Application Context.
+ * <p>
+ * If {@link StartupTasks} are executed in parallel, the Hibernate's entity manager factory is built
+ * (and fixtures are loaded) in background, as the {@link #STARTUP_TASK} task. Meanwhile, a proxy
+ * is published and calls to the proxy block until the entity manager factory is ready.
+ * </p>
+ * <p>
+ * If the second-level cache and Hibernate's statistics are on, the statistics of the cache regions
+ * are published over JMX. See {@link CacheRegionStatistics}. In dev mode, N+1 selects are
+ * detected, see {@link NPlusOneDetector}.
+ * </p>
  *
  * @author edgar.espina
  * @since 0.3.6
  */
 public class EntityManagerFactoryBean extends LocalContainerEntityManagerFactoryBean {
 
+  /**
+   * The name of the startup task that builds the entity manager factory.
+   */
+  public static final String STARTUP_TASK = "jpa";
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(EntityManagerFactoryBean.class);
+
   /**
    * The application's context. Required.
    */
   private ApplicationContext applicationContext;
 
+  /**
+   * Hibernate's event listeners, resolved before building the entity manager factory in
+   * background.
+   */
+  @SuppressWarnings("rawtypes")
+  private Map<EventType, Collection> listeners;
+
+  /**
+   * The conversion service used by fixtures.
+   */
+  private ObjectFactory<ConversionService> conversionService;
+
+  /**
+   * The startup profiler.
+   */
+  private StartupProfiler profiler;
+
+  /**
+   * The statistics of the cache regions.
+   */
+  private List<CacheRegionStatistics> cacheRegions = Collections.emptyList();
+
   /**
    * Creates a new {@link EntityManagerFactoryBean}.
    *
@@ -43,6 +107,62 @@ public class EntityManagerFactoryBean extends LocalContainerEntityManagerFactory
     this.applicationContext = notNull(applicationContext, "The application's context is required.");
   }
 
+  @Override
+  protected EntityManagerFactory createNativeEntityManagerFactory() {
+    profiler = StartupProfiler.get(applicationContext);
+    StartupTasks tasks = StartupTasks.get(applicationContext);
+    if (!tasks.isParallel()) {
+      return super.createNativeEntityManagerFactory();
+    }
+    // Beans must be resolved from the startup thread.
+    listeners = listeners();
+    final Map<String, ConversionService> converters =
+        applicationContext.getBeansOfType(ConversionService.class);
+    final ConversionService converter = converters.size() == 1
+        ? converters.values().iterator().next() : null;
+    conversionService = new ObjectFactory<ConversionService>() {
+      @Override
+      public ConversionService getObject() {
+        if (converter == null) {
+          throw new IllegalStateException("A single ConversionService is required, found: "
+              + converters.keySet());
+        }
+        return converter;
+      }
+    };
+    final Future<EntityManagerFactory> emf = tasks.submit(STARTUP_TASK,
+        new Callable<EntityManagerFactory>() {
+          @Override
+          public EntityManagerFactory call() {
+            return EntityManagerFactoryBean.super.createNativeEntityManagerFactory();
+          }
+        });
+    return (EntityManagerFactory) Proxy.newProxyInstance(getBeanClassLoader(),
+        new Class<?>[]{HibernateEntityManagerFactory.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args)
+              throws Throwable {
+            String name = method.getName();
+            if ("equals".equals(name)) {
+              return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+              return System.identityHashCode(proxy);
+            }
+            try {
+              return method.invoke(emf.get(), args);
+            } catch (InvocationTargetException ex) {
+              throw ex.getTargetException();
+            } catch (ExecutionException ex) {
+              throw ex.getCause();
+            } catch (InterruptedException ex) {
+              Thread.currentThread().interrupt();
+              throw new IllegalStateException("Interrupted while waiting for: " + STARTUP_TASK, ex);
+            }
+          }
+        });
+  }
+
   @Override
   protected void postProcessEntityManagerFactory(final EntityManagerFactory emf,
       final PersistenceUnitInfo pui) {
@@ -71,12 +191,41 @@ public class EntityManagerFactoryBean extends LocalContainerEntityManagerFactory
     Environment env = applicationContext.getEnvironment();
     String baseDir = env.getProperty(JpaModule.DB_FIXTURES, JpaModule.DB_DEFAULT_FIXTURES);
     notEmpty(baseDir, "{} isn't set", JpaModule.DB_FIXTURES);
-    JpaFixtures.load(applicationContext, emf, baseDir, metadata);
+    StartupProfiler.Timer timer = profiler == null ? null
+        : profiler.start(StartupProfiler.FIXTURE, "jpa: " + baseDir);
+    try {
+      if (conversionService == null) {
+        JpaFixtures.load(applicationContext, emf, baseDir, metadata);
+      } else {
+        JpaFixtures.load(applicationContext, conversionService, emf, baseDir, metadata, env);
+      }
+    } finally {
+      if (timer != null) {
+        timer.stop();
+      }
+    }
+
+    // cache statistics
+    Settings settings = sessionFactory.getSettings();
+    Statistics statistics = sessionFactory.getStatistics();
+    if ((settings.isSecondLevelCacheEnabled() || settings.isQueryCacheEnabled())
+        && statistics.isStatisticsEnabled()) {
+      cacheRegions = CacheRegionStatistics.register(statistics,
+          env.getProperty("application.name", "mwa"));
+    }
 
     // configure
     configure(sessionFactory.getServiceRegistry());
   }
 
+  @Override
+  public void destroy() {
+    for (CacheRegionStatistics cacheRegion : cacheRegions) {
+      cacheRegion.close();
+    }
+    super.destroy();
+  }
+
   /**
    * Configure the {@link ServiceRegistryImplementor}.
    *
@@ -93,14 +242,39 @@ public class EntityManagerFactoryBean extends LocalContainerEntityManagerFactory
    */
   @SuppressWarnings({"unchecked", "rawtypes" })
   private void configure(final EventListenerRegistry registry) {
-    Collection<EventType> values = EventType.values();
-    for (EventType eventType : values) {
-      EventListenerGroup group = registry.getEventListenerGroup(eventType);
-      Collection listeners = applicationContext.getBeansOfType(eventType.baseListenerInterface())
-          .values();
-      for (Object listener : listeners) {
+    Map<EventType, Collection> eventListeners = listeners == null ? listeners() : listeners;
+    for (Entry<EventType, Collection> entry : eventListeners.entrySet()) {
+      EventListenerGroup group = registry.getEventListenerGroup(entry.getKey());
+      for (Object listener : entry.getValue()) {
         group.appendListener(listener);
       }
     }
+
+    // N+1 detection, must run before the default listeners
+    Environment env = applicationContext.getEnvironment();
+    Mode mode = Mode.valueOf(env.getProperty(ApplicationConstants.APP_MODE, Mode.DEV.name()));
+    if (env.getProperty(JpaModule.DB_N_PLUS_ONE, Boolean.class, mode.isDev())) {
+      int threshold = env.getProperty(JpaModule.DB_N_PLUS_ONE_THRESHOLD, Integer.class,
+          JpaModule.DB_DEFAULT_N_PLUS_ONE_THRESHOLD);
+      logger.info("N+1 selects detection is on, threshold: {}", threshold);
+      NPlusOneDetector detector = new NPlusOneDetector(threshold);
+      registry.prependListeners(EventType.LOAD, detector);
+      registry.prependListeners(EventType.INIT_COLLECTION, detector);
+    }
+  }
+
+  /**
+   * Looks for hibernate event listeners in the application's context.
+   *
+   * @return Hibernate event listeners by event type.
+   */
+  @SuppressWarnings("rawtypes")
+  private Map<EventType, Collection> listeners() {
+    Map<EventType, Collection> eventListeners = new LinkedHashMap<EventType, Collection>();
+    for (EventType eventType : EventType.values()) {
+      eventListeners.put(eventType,
+          applicationContext.getBeansOfType(eventType.baseListenerInterface()).values());
+    }
+    return eventListeners;
   }
 }
@@ -0,0 +1,226 @@
+package com.github.jknack.mwa.jpa;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.io.IOUtils;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.type.CollectionType;
+import org.hibernate.type.CompositeType;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.core.io.Resource;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.ScalarEvent;
+
+/**
+ * Split fixture files in groups that can be loaded concurrently. Two entity types are related if
+ * there is an association between them (in any direction) or if one extends the other. Two files
+ * are related if they have related entity types. Related files end up in the same group, in the
+ * original order.
+ * <p>
+ * Entity types of a file are found by scanning YAML events (no objects are created): tags like
+ * <code>!!Sprint</code> and compact notation like <code>Todo(1)</code>.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+final class FixtureDependencies {
+
+  /**
+   * Compact object notation: <code>ClassName(args)</code>.
+   */
+  private static final Pattern COMPACT = Pattern.compile("^([\\w.$]+)\\(");
+
+  /**
+   * The session factory.
+   */
+  private final SessionFactoryImplementor sessionFactory;
+
+  /**
+   * Entity names by simple and full class name.
+   */
+  private final Map<String, String> entityNames = new HashMap<String, String>();
+
+  /**
+   * Union-find of entity names and resources.
+   */
+  private final Map<Object, Object> parents = new HashMap<Object, Object>();
+
+  /**
+   * Creates a new {@link FixtureDependencies}.
+   *
+   * @param sessionFactory The session factory.
+   * @param metadata The class metadata by entity name.
+   */
+  public FixtureDependencies(final SessionFactoryImplementor sessionFactory,
+      final Map<String, ClassMetadata> metadata) {
+    this.sessionFactory = sessionFactory;
+    for (Entry<String, ClassMetadata> entry : metadata.entrySet()) {
+      Class<?> mappedClass = entry.getValue().getMappedClass();
+      entityNames.put(mappedClass.getSimpleName(), entry.getKey());
+      entityNames.put(mappedClass.getName(), entry.getKey());
+    }
+    for (Entry<String, ClassMetadata> entry : metadata.entrySet()) {
+      String entityName = entry.getKey();
+      ClassMetadata cmetadata = entry.getValue();
+      Set<String> associations = new LinkedHashSet<String>();
+      associations(cmetadata.getIdentifierType(), associations);
+      for (Type type : cmetadata.getPropertyTypes()) {
+        associations(type, associations);
+      }
+      for (String association : associations) {
+        union(entityName, association);
+      }
+      for (Entry<String, ClassMetadata> other : metadata.entrySet()) {
+        if (cmetadata.getMappedClass().isAssignableFrom(other.getValue().getMappedClass())) {
+          union(entityName, other.getKey());
+        }
+      }
+    }
+  }
+
+  /**
+   * Split fixture files in groups of related files.
+   *
+   * @param resources The fixture files.
+   * @return Groups of related files, in the original order.
+   * @throws IOException If a file cannot be read.
+   */
+  public List<List<Resource>> groups(final List<Resource> resources) throws IOException {
+    for (Resource resource : resources) {
+      // Make sure a file without entities is a group by itself.
+      union(resource, resource);
+      for (String entityName : entityNames(resource)) {
+        union(resource, entityName);
+      }
+    }
+    Map<Object, List<Resource>> groups = new LinkedHashMap<Object, List<Resource>>();
+    for (Resource resource : resources) {
+      Object root = find(resource);
+      List<Resource> group = groups.get(root);
+      if (group == null) {
+        group = new ArrayList<Resource>();
+        groups.put(root, group);
+      }
+      group.add(resource);
+    }
+    return new ArrayList<List<Resource>>(groups.values());
+  }
+
+  /**
+   * Find the entity types of a fixture file.
+   *
+   * @param resource The fixture file.
+   * @return The entity names.
+   * @throws IOException If the file cannot be read.
+   */
+  private Set<String> entityNames(final Resource resource) throws IOException {
+    Set<String> result = new LinkedHashSet<String>();
+    Reader reader = new BufferedReader(new InputStreamReader(resource.getInputStream(), "UTF-8"));
+    try {
+      for (Event event : new Yaml().parse(reader)) {
+        String tag = null;
+        if (event instanceof CollectionStartEvent) {
+          tag = ((CollectionStartEvent) event).getTag();
+        } else if (event instanceof ScalarEvent) {
+          ScalarEvent scalar = (ScalarEvent) event;
+          tag = scalar.getTag();
+          Matcher matcher = COMPACT.matcher(scalar.getValue());
+          if (matcher.find()) {
+            addEntityName(matcher.group(1), result);
+          }
+        }
+        if (tag != null) {
+          // !!Name is resolved as: tag:yaml.org,2002:Name
+          addEntityName(tag.substring(Math.max(tag.lastIndexOf(':'), tag.lastIndexOf('!')) + 1),
+              result);
+        }
+      }
+      return result;
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Add the entity name of the given class name, if any.
+   *
+   * @param className A simple or full class name.
+   * @param result The entity names.
+   */
+  private void addEntityName(final String className, final Set<String> result) {
+    String entityName = entityNames.get(className);
+    if (entityName != null) {
+      result.add(entityName);
+    }
+  }
+
+  /**
+   * Collect the entity names associated by the given type.
+   *
+   * @param type A Hibernate type.
+   * @param result The entity names.
+   */
+  private void associations(final Type type, final Set<String> result) {
+    if (type.isEntityType()) {
+      result.add(((EntityType) type).getAssociatedEntityName());
+    } else if (type.isCollectionType()) {
+      associations(((CollectionType) type).getElementType(sessionFactory), result);
+    } else if (type.isComponentType()) {
+      for (Type subtype : ((CompositeType) type).getSubtypes()) {
+        associations(subtype, result);
+      }
+    }
+  }
+
+  /**
+   * Find the root of the given node.
+   *
+   * @param node An entity name or a resource.
+   * @return The root of the node.
+   */
+  private Object find(final Object node) {
+    Object parent = parents.get(node);
+    if (parent == null) {
+      parents.put(node, node);
+      return node;
+    }
+    if (parent.equals(node)) {
+      return node;
+    }
+    Object root = find(parent);
+    parents.put(node, root);
+    return root;
+  }
+
+  /**
+   * Join two nodes.
+   *
+   * @param node1 An entity name or a resource.
+   * @param node2 An entity name or a resource.
+   */
+  private void union(final Object node1, final Object node2) {
+    Object root1 = find(node1);
+    Object root2 = find(node2);
+    if (!root1.equals(root2)) {
+      parents.put(root2, root1);
+    }
+  }
+}
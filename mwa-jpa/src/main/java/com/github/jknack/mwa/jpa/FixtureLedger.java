@@ -0,0 +1,208 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.Resource;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+/**
+ * Keep track of the loaded fixture files in the {@link #TABLE} table: one row per file with the
+ * SHA-1 of its content. Files with the same content are skipped on restart.
+ * <p>
+ * The ledger lives in the same database as the fixtures: if the database is dropped, so is the
+ * ledger. Because Hibernate only drops mapped tables, the ledger must be reset when the schema is
+ * created from scratch.
+ * </p>
+ * <p>
+ * It is off by default, see {@link JpaModule#DB_FIXTURES_LEDGER}. Nodes starting at the same time
+ * might race to create the table or to record the same file: both cases are tolerated.
+ * </p>
+ * <p>
+ * This class is thread-safe.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+final class FixtureLedger {
+
+  /**
+   * The ledger's table.
+   */
+  public static final String TABLE = "mwa_fixtures";
+
+  /**
+   * The buffer size for computing checksums.
+   */
+  private static final int BUFFER_SIZE = 8192;
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(FixtureLedger.class);
+
+  /**
+   * The entity manager factory.
+   */
+  private final EntityManagerFactory emf;
+
+  /**
+   * The checksums by fixture's name.
+   */
+  private final Map<String, String> checksums = new HashMap<String, String>();
+
+  /**
+   * Creates a new {@link FixtureLedger}. The ledger's table is created if it doesn't exist.
+   *
+   * @param emf The entity manager factory. Required.
+   * @param reset True, if existing entries should be discarded.
+   */
+  public FixtureLedger(final EntityManagerFactory emf, final boolean reset) {
+    this.emf = notNull(emf, "The entity manager factory is required.");
+    if (!read()) {
+      logger.debug("Creating fixture's ledger: {}", TABLE);
+      try {
+        execute("create table " + TABLE
+            + " (name varchar(255) not null primary key, checksum varchar(40) not null)");
+      } catch (PersistenceException ex) {
+        // Created by another node in the meantime?
+        if (!read()) {
+          throw ex;
+        }
+        logger.debug("Fixture's ledger created by another node: {}", TABLE);
+      }
+    } else if (reset) {
+      logger.debug("Discarding fixture's ledger: {}", TABLE);
+      execute("delete from " + TABLE);
+      checksums.clear();
+    }
+  }
+
+  /**
+   * Compute the checksum of a fixture file. The file is read in chunks.
+   *
+   * @param resource The fixture file.
+   * @return The checksum of a fixture file.
+   * @throws IOException If the file cannot be read.
+   */
+  public static String checksum(final Resource resource) throws IOException {
+    Hasher hasher = Hashing.sha1().newHasher();
+    InputStream in = resource.getInputStream();
+    try {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int len = in.read(buffer);
+      while (len != -1) {
+        hasher.putBytes(buffer, 0, len);
+        len = in.read(buffer);
+      }
+      return hasher.hash().toString();
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+  }
+
+  /**
+   * True, if the fixture file is new or its content changed since it was recorded.
+   *
+   * @param name The fixture's name.
+   * @param checksum The fixture's checksum.
+   * @return True, if the fixture file is new or its content changed since it was recorded.
+   */
+  public synchronized boolean changed(final String name, final String checksum) {
+    return !checksum.equals(checksums.get(name));
+  }
+
+  /**
+   * Record a loaded fixture file.
+   *
+   * @param name The fixture's name.
+   * @param checksum The fixture's checksum.
+   */
+  public synchronized void record(final String name, final String checksum) {
+    String update = "update " + TABLE + " set checksum = ?1 where name = ?2";
+    if (checksums.containsKey(name)) {
+      execute(update, checksum, name);
+    } else {
+      try {
+        execute("insert into " + TABLE + " (checksum, name) values (?1, ?2)", checksum, name);
+      } catch (PersistenceException ex) {
+        // Recorded by another node in the meantime.
+        logger.debug("Fixture recorded by another node: " + name, ex);
+        execute(update, checksum, name);
+      }
+    }
+    checksums.put(name, checksum);
+  }
+
+  /**
+   * Read the ledger's entries.
+   *
+   * @return False, if the ledger's table doesn't exist.
+   */
+  @SuppressWarnings("unchecked")
+  private boolean read() {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction trx = em.getTransaction();
+    try {
+      trx.begin();
+      List<Object[]> rows = em.createNativeQuery("select name, checksum from " + TABLE)
+          .getResultList();
+      for (Object[] row : rows) {
+        checksums.put((String) row[0], (String) row[1]);
+      }
+      return true;
+    } catch (PersistenceException ex) {
+      logger.trace("Fixture's ledger not found: " + TABLE, ex);
+      return false;
+    } finally {
+      if (trx.isActive()) {
+        trx.rollback();
+      }
+      em.close();
+    }
+  }
+
+  /**
+   * Execute a SQL statement in its own transaction.
+   *
+   * @param sql The SQL statement.
+   * @param args The statement's arguments.
+   */
+  private void execute(final String sql, final Object... args) {
+    EntityManager em = emf.createEntityManager();
+    EntityTransaction trx = em.getTransaction();
+    boolean rollback = true;
+    try {
+      trx.begin();
+      Query query = em.createNativeQuery(sql);
+      for (int i = 0; i < args.length; i++) {
+        query.setParameter(i + 1, args[i]);
+      }
+      query.executeUpdate();
+      trx.commit();
+      rollback = false;
+    } finally {
+      if (rollback && trx.isActive()) {
+        trx.rollback();
+      }
+      em.close();
+    }
+  }
+}
@@ -0,0 +1,82 @@
+package com.github.jknack.mwa.jpa;
+
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_DRIVER;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DEFAULT_IDDLE_MAX_AGE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_DRIVER;
+import static com.github.jknack.mwa.jpa.DataSources.DB_IDDLE_MAX_AGE;
+import static com.github.jknack.mwa.jpa.DataSources.DB_PASSWORD;
+import static com.github.jknack.mwa.jpa.DataSources.DB_USER;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * A HikariCP connection pool: <code>db.pool=hikari</code>. HikariCP doesn't partition the pool,
+ * so the <code>*PerPartition</code> settings are multiplied by
+ * {@link DataSources#DB_PARTITION_COUNT}. Statement caching is left to the JDBC driver and the
+ * idle test period doesn't apply: connections are validated on borrow.
+ * <p>
+ * HikariCP isn't a required dependency of <code>mwa-jpa</code>, it must be added to the
+ * application's classpath.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see <a href="https://github.com/brettwooldridge/HikariCP">HikariCP</a>
+ */
+public class HikariPoolProvider implements PoolProvider {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(HikariPoolProvider.class);
+
+  /**
+   * Pool sequence: replicas share the application's name, but pool names must be unique.
+   */
+  private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+  @Override
+  public DataSource newDataSource(final Environment env, final String database) {
+    HikariConfig config = new HikariConfig();
+    config.setPoolName(env.getProperty("application.name", "mwa") + "-"
+        + SEQUENCE.incrementAndGet());
+    config.setJdbcUrl(database);
+    config.setDriverClassName(env.getProperty(DB_DRIVER, DB_DEFAULT_DRIVER));
+    config.setUsername(env.getRequiredProperty(DB_USER));
+    config.setPassword(env.getRequiredProperty(DB_PASSWORD));
+    config.setMaximumPoolSize(DataSources.maxConnections(env));
+    config.setMinimumIdle(DataSources.minConnections(env));
+    config.setIdleTimeout(TimeUnit.SECONDS.toMillis(env.getProperty(DB_IDDLE_MAX_AGE,
+        Integer.class, DB_DEFAULT_IDDLE_MAX_AGE)));
+    // publish the pool's MXBean, see getIdle
+    config.setRegisterMbeans(true);
+    logger.info("Creating HikariCP connection pool: '{}'", database);
+    return new HikariDataSource(config);
+  }
+
+  @Override
+  public int getIdle(final DataSource dataSource) {
+    String poolName = ((HikariDataSource) dataSource).getPoolName();
+    try {
+      ObjectName pool = new ObjectName("com.zaxxer.hikari:type=Pool (" + poolName + ")");
+      return (Integer) ManagementFactory.getPlatformMBeanServer()
+          .getAttribute(pool, "IdleConnections");
+    } catch (JMException ex) {
+      logger.debug("Pool's MXBean not found: " + poolName, ex);
+      return -1;
+    }
+  }
+}
@@ -0,0 +1,496 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.ReflectionUtils;
+
+import com.github.jknack.mwa.Histogram;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * A {@link DataSource} that measures the use of a connection pool:
+ * <ul>
+ * <li>Time waiting for a connection and time a connection is borrowed. See {@link Histogram}.</li>
+ * <li>Active, idle and pending connections. Idle connections are reported by the
+ * {@link PoolProvider}.</li>
+ * <li>Leak detection: if a connection is borrowed for longer than the leak threshold, a warning is
+ * logged with the stack trace of the borrower.</li>
+ * </ul>
+ * Metrics are published over JMX as: <code>com.github.jknack.mwa:type=DataSource,name=...</code>.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class InstrumentedDataSource extends DelegatingDataSource
+    implements InstrumentedDataSourceMBean {
+
+  /**
+   * A borrowed connection.
+   *
+   * @author edgar.espina
+   */
+  private static final class Lease {
+
+    /**
+     * The borrow time in nanos.
+     */
+    private final long start;
+
+    /**
+     * The borrower's stack trace.
+     */
+    private final Throwable stack;
+
+    /**
+     * True, if the lease was reported as a leak.
+     */
+    private volatile boolean reported;
+
+    /**
+     * Creates a new {@link Lease}.
+     *
+     * @param start The borrow time in nanos.
+     * @param stack The borrower's stack trace or <code>null</code>.
+     */
+    public Lease(final long start, final Throwable stack) {
+      this.start = start;
+      this.stack = stack;
+    }
+
+    /**
+     * The lease's age.
+     *
+     * @param now The current time in nanos.
+     * @return The lease's age in millis.
+     */
+    public long age(final long now) {
+      return TimeUnit.NANOSECONDS.toMillis(now - start);
+    }
+  }
+
+  /**
+   * The JMX domain.
+   */
+  public static final String JMX_DOMAIN = "com.github.jknack.mwa";
+
+  /**
+   * Min interval in millis between leak checks.
+   */
+  private static final long MIN_LEAK_CHECK_INTERVAL = 1000;
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+  /**
+   * The data source's name.
+   */
+  private final String name;
+
+  /**
+   * The leak threshold in millis. Zero or negative means no leak detection.
+   */
+  private final long leakThreshold;
+
+  /**
+   * The pool provider or <code>null</code>.
+   */
+  private final PoolProvider provider;
+
+  /**
+   * The time source.
+   */
+  private final Ticker ticker;
+
+  /**
+   * Time waiting for a connection.
+   */
+  private final Histogram waitTime = new Histogram();
+
+  /**
+   * Time a connection is borrowed.
+   */
+  private final Histogram usageTime = new Histogram();
+
+  /**
+   * Borrowed connections.
+   */
+  private final AtomicInteger active = new AtomicInteger();
+
+  /**
+   * Peak of borrowed connections.
+   */
+  private final AtomicInteger peakActive = new AtomicInteger();
+
+  /**
+   * Threads waiting for a connection.
+   */
+  private final AtomicInteger pending = new AtomicInteger();
+
+  /**
+   * Number of borrowed connections since startup.
+   */
+  private final AtomicLong borrowed = new AtomicLong();
+
+  /**
+   * Number of failures while borrowing a connection.
+   */
+  private final AtomicLong failures = new AtomicLong();
+
+  /**
+   * Number of leaked connections.
+   */
+  private final AtomicLong leaks = new AtomicLong();
+
+  /**
+   * Leases under leak detection.
+   */
+  private final Set<Lease> leases =
+      Collections.newSetFromMap(new ConcurrentHashMap<Lease, Boolean>());
+
+  /**
+   * The leak detector or <code>null</code>.
+   */
+  private ScheduledExecutorService leakDetector;
+
+  /**
+   * The JMX name or <code>null</code>.
+   */
+  private ObjectName objectName;
+
+  /**
+   * Creates a new {@link InstrumentedDataSource}.
+   *
+   * @param dataSource The connection pool. Required.
+   * @param name The data source's name. Required.
+   * @param leakThreshold Time in millis a connection can be borrowed before it is reported as a
+   *        leak. Zero or negative turns off leak detection.
+   * @param provider The provider of the connection pool or <code>null</code>. Required for
+   *        reporting idle connections.
+   */
+  public InstrumentedDataSource(final DataSource dataSource, final String name,
+      final long leakThreshold, final PoolProvider provider) {
+    this(dataSource, name, leakThreshold, provider, Ticker.systemTicker());
+  }
+
+  /**
+   * Creates a new {@link InstrumentedDataSource}.
+   *
+   * @param dataSource The connection pool. Required.
+   * @param name The data source's name. Required.
+   * @param leakThreshold Time in millis a connection can be borrowed before it is reported as a
+   *        leak. Zero or negative turns off leak detection.
+   * @param provider The provider of the connection pool or <code>null</code>.
+   * @param ticker The time source. Required.
+   */
+  InstrumentedDataSource(final DataSource dataSource, final String name,
+      final long leakThreshold, final PoolProvider provider, final Ticker ticker) {
+    super(dataSource);
+    this.name = notEmpty(name, "The name is required.");
+    this.leakThreshold = leakThreshold;
+    this.provider = provider;
+    this.ticker = notNull(ticker, "The ticker is required.");
+    if (leakThreshold > 0) {
+      long interval = Math.max(MIN_LEAK_CHECK_INTERVAL, leakThreshold / 2);
+      leakDetector = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("db-leak-detector-%d")
+          .build());
+      leakDetector.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          detectLeaks();
+        }
+      }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return borrow(null, null);
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    return borrow(username, password);
+  }
+
+  /**
+   * Borrow a connection from the pool.
+   *
+   * @param username The user's name or <code>null</code>.
+   * @param password The user's password or <code>null</code>.
+   * @return An instrumented connection.
+   * @throws SQLException If a connection can't be borrowed.
+   */
+  private Connection borrow(final String username, final String password) throws SQLException {
+    pending.incrementAndGet();
+    long start = ticker.read();
+    Connection connection;
+    try {
+      connection = username == null ? getTargetDataSource().getConnection()
+          : getTargetDataSource().getConnection(username, password);
+    } catch (SQLException ex) {
+      failures.incrementAndGet();
+      throw ex;
+    } catch (RuntimeException ex) {
+      failures.incrementAndGet();
+      throw ex;
+    } finally {
+      pending.decrementAndGet();
+      waitTime.record(ticker.read() - start, TimeUnit.NANOSECONDS);
+    }
+    borrowed.incrementAndGet();
+    int current = active.incrementAndGet();
+    int peak = peakActive.get();
+    while (current > peak && !peakActive.compareAndSet(peak, current)) {
+      peak = peakActive.get();
+    }
+    Lease lease = new Lease(ticker.read(), leakThreshold > 0
+        ? new Throwable("Connection borrowed by: " + Thread.currentThread().getName()) : null);
+    if (lease.stack != null) {
+      leases.add(lease);
+    }
+    return proxy(connection, lease);
+  }
+
+  /**
+   * Return a connection to the pool.
+   *
+   * @param lease The connection's lease.
+   */
+  private void release(final Lease lease) {
+    active.decrementAndGet();
+    long now = ticker.read();
+    usageTime.record(now - lease.start, TimeUnit.NANOSECONDS);
+    if (lease.stack != null) {
+      leases.remove(lease);
+      if (lease.reported) {
+        logger.info("Leak candidate of '{}' was returned after: {}ms", name, lease.age(now));
+      }
+    }
+  }
+
+  /**
+   * Report connections that have been borrowed for longer than the leak threshold.
+   */
+  void detectLeaks() {
+    long now = ticker.read();
+    for (Lease lease : leases) {
+      long age = lease.age(now);
+      if (!lease.reported && age > leakThreshold) {
+        lease.reported = true;
+        leaks.incrementAndGet();
+        logger.warn("Connection leak candidate of '" + name + "', borrowed " + age + "ms ago",
+            lease.stack);
+      }
+    }
+  }
+
+  /**
+   * Wrap a connection and track its release.
+   *
+   * @param connection The target connection.
+   * @param lease The connection's lease.
+   * @return A connection proxy.
+   */
+  private Connection proxy(final Connection connection, final Lease lease) {
+    final AtomicBoolean closed = new AtomicBoolean();
+    return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+        new Class<?>[]{ConnectionProxy.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args)
+              throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName)) {
+              return proxy == args[0];
+            }
+            if ("hashCode".equals(methodName)) {
+              return System.identityHashCode(proxy);
+            }
+            if ("getTargetConnection".equals(methodName)) {
+              return connection;
+            }
+            try {
+              return method.invoke(connection, args);
+            } catch (InvocationTargetException ex) {
+              throw ex.getTargetException();
+            } finally {
+              if ("close".equals(methodName) && closed.compareAndSet(false, true)) {
+                release(lease);
+              }
+            }
+          }
+        });
+  }
+
+  /**
+   * Publish the metrics over JMX. Errors are logged.
+   *
+   * @return This data source.
+   */
+  public InstrumentedDataSource register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName candidate = new ObjectName(JMX_DOMAIN + ":type=DataSource,name="
+          + ObjectName.quote(name));
+      server.registerMBean(this, candidate);
+      objectName = candidate;
+    } catch (JMException ex) {
+      logger.warn("Can't publish '" + name + "' over JMX", ex);
+    }
+    return this;
+  }
+
+  /**
+   * Unpublish the metrics, stop the leak detector and close the connection pool (if it has a
+   * <code>close</code> method).
+   */
+  public void close() {
+    if (leakDetector != null) {
+      leakDetector.shutdownNow();
+    }
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException ex) {
+        logger.debug("Can't unregister: " + objectName, ex);
+      }
+      objectName = null;
+    }
+    DataSource dataSource = getTargetDataSource();
+    Method close = ReflectionUtils.findMethod(dataSource.getClass(), "close");
+    if (close != null) {
+      ReflectionUtils.invokeMethod(close, dataSource);
+    }
+  }
+
+  /**
+   * The data source's name.
+   *
+   * @return The data source's name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Time waiting for a connection.
+   *
+   * @return Time waiting for a connection.
+   */
+  public Histogram getWaitTime() {
+    return waitTime;
+  }
+
+  /**
+   * Time a connection is borrowed.
+   *
+   * @return Time a connection is borrowed.
+   */
+  public Histogram getUsageTime() {
+    return usageTime;
+  }
+
+  @Override
+  public int getActive() {
+    return active.get();
+  }
+
+  @Override
+  public int getIdle() {
+    return provider == null ? -1 : provider.getIdle(getTargetDataSource());
+  }
+
+  @Override
+  public int getPending() {
+    return pending.get();
+  }
+
+  @Override
+  public int getPeakActive() {
+    return peakActive.get();
+  }
+
+  @Override
+  public long getBorrowed() {
+    return borrowed.get();
+  }
+
+  @Override
+  public long getFailures() {
+    return failures.get();
+  }
+
+  @Override
+  public long getLeaks() {
+    return leaks.get();
+  }
+
+  @Override
+  public long getWaitMean() {
+    return waitTime.getMean(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getWait99thPercentile() {
+    return waitTime.getPercentile(99, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getWaitMax() {
+    return waitTime.getMax(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getUsageMean() {
+    return usageTime.getMean(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getUsage99thPercentile() {
+    return usageTime.getPercentile(99, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public long getUsageMax() {
+    return usageTime.getMax(TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public String toString() {
+    return name + " {active: " + getActive() + ", idle: " + getIdle() + ", pending: "
+        + getPending() + ", wait: {" + waitTime + "}, usage: {" + usageTime + "}, leaks: "
+        + getLeaks() + "}";
+  }
+}
@@ -0,0 +1,101 @@
+package com.github.jknack.mwa.jpa;
+
+/**
+ * JMX view of an {@link InstrumentedDataSource}. Times are in milliseconds.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public interface InstrumentedDataSourceMBean {
+
+  /**
+   * Number of borrowed connections.
+   *
+   * @return Number of borrowed connections.
+   */
+  int getActive();
+
+  /**
+   * Number of idle connections in the pool, as reported by the pool.
+   *
+   * @return Number of idle connections or <code>-1</code> if the pool doesn't tell.
+   */
+  int getIdle();
+
+  /**
+   * Number of threads waiting for a connection.
+   *
+   * @return Number of threads waiting for a connection.
+   */
+  int getPending();
+
+  /**
+   * The peak of borrowed connections.
+   *
+   * @return The peak of borrowed connections.
+   */
+  int getPeakActive();
+
+  /**
+   * Number of connections borrowed since startup.
+   *
+   * @return Number of connections borrowed since startup.
+   */
+  long getBorrowed();
+
+  /**
+   * Number of failures while borrowing a connection (timeouts included).
+   *
+   * @return Number of failures while borrowing a connection.
+   */
+  long getFailures();
+
+  /**
+   * Number of connections kept for longer than the leak threshold.
+   *
+   * @return Number of connections kept for longer than the leak threshold.
+   */
+  long getLeaks();
+
+  /**
+   * Mean time waiting for a connection.
+   *
+   * @return Mean time waiting for a connection.
+   */
+  long getWaitMean();
+
+  /**
+   * 99th percentile of the time waiting for a connection.
+   *
+   * @return 99th percentile of the time waiting for a connection.
+   */
+  long getWait99thPercentile();
+
+  /**
+   * Max time waiting for a connection.
+   *
+   * @return Max time waiting for a connection.
+   */
+  long getWaitMax();
+
+  /**
+   * Mean time a connection was borrowed.
+   *
+   * @return Mean time a connection was borrowed.
+   */
+  long getUsageMean();
+
+  /**
+   * 99th percentile of the time a connection was borrowed.
+   *
+   * @return 99th percentile of the time a connection was borrowed.
+   */
+  long getUsage99thPercentile();
+
+  /**
+   * Max time a connection was borrowed.
+   *
+   * @return Max time a connection was borrowed.
+   */
+  long getUsageMax();
+}
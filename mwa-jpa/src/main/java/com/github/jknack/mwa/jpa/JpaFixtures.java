@@ -1,41 +1,61 @@
 package com.github.jknack.mwa.jpa;
 
 import static org.apache.commons.lang3.StringUtils.join;
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.io.Serializable;
 import java.lang.reflect.Constructor;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.persistence.EntityExistsException;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.EntityTransaction;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceException;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.apache.commons.lang3.builder.ToStringStyle;
 import org.hibernate.ejb.HibernateEntityManager;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
 import org.hibernate.engine.spi.SessionImplementor;
 import org.hibernate.metadata.ClassMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.ObjectFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.core.convert.ConversionService;
+import org.springframework.core.env.Environment;
 import org.springframework.core.io.Resource;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.util.ResourceUtils;
@@ -45,6 +65,10 @@ import org.yaml.snakeyaml.extensions.compactnotation.CompactConstructor;
 import org.yaml.snakeyaml.extensions.compactnotation.CompactData;
 import org.yaml.snakeyaml.nodes.ScalarNode;
 
+import com.github.jknack.mwa.TraceEvent;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Load a set of test files in JSON format.
  *
@@ -58,6 +82,11 @@ public final class JpaFixtures {
    */
   private static final Logger logger = LoggerFactory.getLogger(JpaFixtures.class);
 
+  /**
+   * Max number of identifiers of an <code>IN</code> query.
+   */
+  private static final int MAX_IN_SIZE = 1000;
+
   /**
    * Not allowed.
    */
@@ -76,63 +105,404 @@ public final class JpaFixtures {
       final EntityManagerFactory emf, final String baseDir,
       final Map<String, ClassMetadata> metadata) {
     notNull(applicationContext, "The application's context is required.");
+    load(applicationContext, conversionService(applicationContext), emf, baseDir, metadata,
+        applicationContext.getEnvironment());
+  }
+
+  /**
+   * Persist any entity found under the base directory. Entities of a file are persisted in
+   * batches of {@link JpaModule#DB_FIXTURES_BATCH_SIZE}: one transaction per batch and one
+   * <code>IN</code> query per entity type for finding existing entities. If a batch fails,
+   * entities of the batch are persisted one by one, so the failing ones can be reported.
+   * <p>
+   * If {@link JpaModule#DB_FIXTURES_LEDGER} is on, files already loaded with the same content are
+   * skipped. See {@link FixtureLedger}.
+   * </p>
+   * <p>
+   * Files without related entity types are loaded concurrently, on up to
+   * {@link JpaModule#DB_FIXTURES_THREADS} threads. See {@link FixtureDependencies}.
+   * </p>
+   *
+   * @param resolver The resource resolver. Required.
+   * @param conversionService The conversion service factory. Required.
+   * @param emf The entity manager factory. Required.
+   * @param baseDir The base directory. Required.
+   * @param metadata The map with entities names and classes.
+   * @param env The application's environment. Required.
+   */
+  static void load(final ResourcePatternResolver resolver,
+      final ObjectFactory<ConversionService> conversionService, final EntityManagerFactory emf,
+      final String baseDir, final Map<String, ClassMetadata> metadata, final Environment env) {
+    notNull(resolver, "The resource resolver is required.");
+    notNull(conversionService, "The conversion service is required.");
     notNull(emf, "The entity manager factory is required.");
     notEmpty(baseDir, "The baseDir is required.");
     notNull(metadata, "The classes are required.");
+    notNull(env, "The environment is required.");
+    final int batchSize = env.getProperty(JpaModule.DB_FIXTURES_BATCH_SIZE, Integer.class,
+        JpaModule.DB_DEFAULT_FIXTURES_BATCH_SIZE);
+    isTrue(batchSize > 0, "The batch size must be greater than zero.");
+    int threads = env.getProperty(JpaModule.DB_FIXTURES_THREADS, Integer.class, 1);
 
+    TraceEvent event = TraceEvent.begin(TraceEvent.JPA_FIXTURES);
+    final AtomicInteger count = new AtomicInteger();
+    int skipped = 0;
     try {
-      // load models...
-      Iterable<Object> entities = load(applicationContext, metadata, baseDir);
-      for (Object entity : entities) {
-        EntityManager em = emf.createEntityManager();
-        SessionImplementor session = (SessionImplementor) ((HibernateEntityManager) em)
-            .getSession();
-
-        EntityTransaction trx = em.getTransaction();
-        boolean rollback = true;
-        try {
-          ClassMetadata cmetadata = metadata.get(entity.getClass().getName());
-          trx.begin();
-          Serializable id = cmetadata.getIdentifier(entity, session);
-          if (id == null) {
-            // Persist works if id generation is generated by database.
-            em.persist(entity);
+      final FixtureLedger ledger;
+      if (env.getProperty(JpaModule.DB_FIXTURES_LEDGER, Boolean.class, false)) {
+        // A new schema has no fixtures, but the ledger's table is never dropped by Hibernate.
+        boolean reset = env.getProperty(JpaModule.DB_SCHEMA, "update").startsWith("create");
+        ledger = new FixtureLedger(emf, reset);
+      } else {
+        ledger = null;
+      }
+      final Map<Resource, String> checksums = new HashMap<Resource, String>();
+      List<Resource> resources = new ArrayList<Resource>();
+      for (Resource resource : getResources(resolver, baseDir)) {
+        if (ledger == null) {
+          resources.add(resource);
+        } else {
+          String name = name(resource, baseDir);
+          String checksum = FixtureLedger.checksum(resource);
+          if (ledger.changed(name, checksum)) {
+            checksums.put(resource, checksum);
+            resources.add(resource);
           } else {
-            // Find the entity under the given id.
-            Object existing = em.find(entity.getClass(), id);
-            if (existing == null) {
-              // doesn't exist, use merge and avoid detached instances error generated by persist.
-              em.merge(entity);
-            } else {
-              // It exists! force a failure and report the problem in the next catch statement.
-              em.persist(entity);
+            logger.info("  fixture unchanged, skipping: {}", name);
+            skipped++;
+          }
+        }
+      }
+      // Related files are loaded in order, unrelated files are loaded concurrently.
+      SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor)
+          ((HibernateEntityManagerFactory) emf).getSessionFactory();
+      List<List<Resource>> groups = new FixtureDependencies(sessionFactory, metadata)
+          .groups(resources);
+      threads = Math.min(threads, groups.size());
+      // Beans must be resolved from the caller thread.
+      final ObjectFactory<ConversionService> converter = threads > 1
+          ? resolve(conversionService) : conversionService;
+      List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+      for (final List<Resource> group : groups) {
+        tasks.add(new Callable<Void>() {
+          @Override
+          public Void call() throws IOException {
+            // Yaml isn't thread-safe.
+            Yaml yaml = newYaml(converter, metadata);
+            for (Resource resource : group) {
+              String name = name(resource, baseDir);
+              logger.debug("  persisting: {}", name);
+              count.addAndGet(persist(emf, metadata, yaml, resource, batchSize));
+              if (ledger != null) {
+                ledger.record(name, checksums.get(resource));
+              }
             }
+            return null;
           }
-          trx.commit();
-          rollback = false;
-        } catch (EntityExistsException ex) {
-          logger.warn("Entity exists: "
-              + ToStringBuilder.reflectionToString(entity, ToStringStyle.MULTI_LINE_STYLE));
-          logger.debug("Entity exists: ", ex);
-        } catch (PersistenceException ex) {
-          // See https://hibernate.onjira.com/browse/HHH-4131
-          Throwable cause = ex.getCause();
-          if (cause != null && cause.getMessage().startsWith("detached")) {
-            logger.warn("Entity exists: "
-                + ToStringBuilder.reflectionToString(entity, ToStringStyle.MULTI_LINE_STYLE));
-            logger.debug("Entity exists: ", ex);
-          } else {
-            throw ex;
+        });
+      }
+      if (threads <= 1) {
+        for (Callable<Void> task : tasks) {
+          task.call();
+        }
+      } else {
+        logger.debug("  loading {} groups of fixtures with {} threads", tasks.size(), threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+            new ThreadFactoryBuilder()
+                .setDaemon(true)
+                .setNameFormat("fixtures-%d")
+                .build());
+        try {
+          for (Future<Void> future : executor.invokeAll(tasks)) {
+            future.get();
           }
         } finally {
-          if (rollback && trx.isActive()) {
-            trx.rollback();
-          }
-          em.close();
+          executor.shutdownNow();
         }
       }
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException("Unable to load fixtures", ex.getCause());
     } catch (Exception ex) {
       throw new IllegalStateException("Unable to load fixtures", ex);
+    } finally {
+      event.set("baseDir", baseDir)
+          .set("entities", count.get())
+          .set("skipped", skipped)
+          .commit();
+    }
+  }
+
+  /**
+   * Parse a YAML file document by document (<code>---</code>) and persist entities in batches, as
+   * they are parsed. Only a document and a batch are kept in memory. Empty documents are skipped.
+   * <p>
+   * A document is always built in full, a top-level sequence included: an alias (like
+   * <code>*T1</code>) might refer to any previous item of the document. Large files should be
+   * split in several documents.
+   * </p>
+   *
+   * @param emf The entity manager factory.
+   * @param metadata The map with entities names and classes.
+   * @param yaml The YAML parser.
+   * @param resource The YAML file.
+   * @param batchSize The number of entities per transaction.
+   * @return The number of entities found.
+   * @throws IOException If the file cannot be read.
+   */
+  private static int persist(final EntityManagerFactory emf,
+      final Map<String, ClassMetadata> metadata, final Yaml yaml, final Resource resource,
+      final int batchSize) throws IOException {
+    int count = 0;
+    List<Object> batch = new ArrayList<Object>(batchSize);
+    Reader reader = reader(resource);
+    try {
+      for (Object document : yaml.loadAll(reader)) {
+        for (Object entity : entities(document)) {
+          count++;
+          batch.add(entity);
+          if (batch.size() == batchSize) {
+            persistBatch(emf, metadata, batch);
+            batch.clear();
+          }
+        }
+      }
+      if (batch.size() > 0) {
+        persistBatch(emf, metadata, batch);
+      }
+      return count;
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+  }
+
+  /**
+   * Persist a batch of entities in a single transaction. If the batch fails, entities are
+   * persisted one by one, so the failing ones can be reported. The failed batch might have set
+   * identifiers and versions of the entities, so they are restored before trying again.
+   *
+   * @param emf The entity manager factory.
+   * @param metadata The map with entities names and classes.
+   * @param batch The entities to persist.
+   */
+  static void persistBatch(final EntityManagerFactory emf,
+      final Map<String, ClassMetadata> metadata, final List<Object> batch) {
+    List<Object[]> states = new ArrayList<Object[]>(batch.size());
+    if (!persist(emf, metadata, batch, states)) {
+      for (int i = 0; i < batch.size(); i++) {
+        persist(emf, metadata, batch.get(i), i < states.size() ? states.get(i) : null);
+      }
+    }
+  }
+
+  /**
+   * Persist a batch of entities in a single transaction. Existing entities are reported and
+   * skipped.
+   *
+   * @param emf The entity manager factory.
+   * @param metadata The map with entities names and classes.
+   * @param batch The entities to persist.
+   * @param states Output: the identifier and version of each entity, before it's persisted.
+   * @return True, if the batch was committed. False, if the batch was rolled back.
+   */
+  private static boolean persist(final EntityManagerFactory emf,
+      final Map<String, ClassMetadata> metadata, final List<Object> batch,
+      final List<Object[]> states) {
+    EntityManager em = emf.createEntityManager();
+    em.setFlushMode(FlushModeType.COMMIT);
+    SessionImplementor session = (SessionImplementor) ((HibernateEntityManager) em).getSession();
+
+    EntityTransaction trx = em.getTransaction();
+    boolean rollback = true;
+    try {
+      for (Object entity : batch) {
+        states.add(state(metadata.get(entity.getClass().getName()), entity, session));
+      }
+      trx.begin();
+      Map<String, Set<Serializable>> ids = identifiers(em, session, metadata, batch);
+      List<Object> existing = new ArrayList<Object>();
+      for (Object entity : batch) {
+        String entityName = entity.getClass().getName();
+        Serializable id = metadata.get(entityName).getIdentifier(entity, session);
+        if (id == null) {
+          // Persist works if id generation is generated by database.
+          em.persist(entity);
+        } else if (ids.get(entityName).add(id)) {
+          // doesn't exist, use merge and avoid detached instances error generated by persist.
+          em.merge(entity);
+        } else {
+          existing.add(entity);
+        }
+      }
+      trx.commit();
+      rollback = false;
+      for (Object entity : existing) {
+        exists(entity, null);
+      }
+      return true;
+    } catch (PersistenceException ex) {
+      logger.debug("Batch of " + batch.size() + " entities failed, persisting one by one", ex);
+      return false;
+    } finally {
+      if (rollback && trx.isActive()) {
+        trx.rollback();
+      }
+      em.close();
+    }
+  }
+
+  /**
+   * Find the identifiers of the entities that already exist in the database. There is one
+   * <code>IN</code> query per entity type.
+   *
+   * @param em The entity manager.
+   * @param session The Hibernate session.
+   * @param metadata The map with entities names and classes.
+   * @param batch The entities to persist.
+   * @return The identifiers of existing entities by entity name. Entity types without assigned
+   *         identifiers are missing.
+   */
+  @SuppressWarnings("unchecked")
+  private static Map<String, Set<Serializable>> identifiers(final EntityManager em,
+      final SessionImplementor session, final Map<String, ClassMetadata> metadata,
+      final List<Object> batch) {
+    Map<String, List<Serializable>> candidates = new LinkedHashMap<String, List<Serializable>>();
+    for (Object entity : batch) {
+      String entityName = entity.getClass().getName();
+      Serializable id = metadata.get(entityName).getIdentifier(entity, session);
+      if (id != null) {
+        List<Serializable> ids = candidates.get(entityName);
+        if (ids == null) {
+          ids = new ArrayList<Serializable>();
+          candidates.put(entityName, ids);
+        }
+        ids.add(id);
+      }
+    }
+    Map<String, Set<Serializable>> result = new HashMap<String, Set<Serializable>>();
+    for (Entry<String, List<Serializable>> entry : candidates.entrySet()) {
+      ClassMetadata cmetadata = metadata.get(entry.getKey());
+      String idName = cmetadata.getIdentifierPropertyName();
+      Set<Serializable> existing = new HashSet<Serializable>();
+      if (idName == null) {
+        // Embedded composite identifier: not possible to query it with IN.
+        for (Serializable id : entry.getValue()) {
+          if (em.find(cmetadata.getMappedClass(), id) != null) {
+            existing.add(id);
+          }
+        }
+      } else {
+        String query = "select e." + idName + " from " + cmetadata.getEntityName() + " e where e."
+            + idName + " in (:ids)";
+        for (List<Serializable> ids : Lists.partition(entry.getValue(), MAX_IN_SIZE)) {
+          existing.addAll(em.createQuery(query).setParameter("ids", ids).getResultList());
+        }
+      }
+      result.put(entry.getKey(), existing);
+    }
+    return result;
+  }
+
+  /**
+   * Persist a single entity in its own transaction. An existing entity is reported and skipped.
+   *
+   * @param emf The entity manager factory.
+   * @param metadata The map with entities names and classes.
+   * @param entity The entity to persist.
+   * @param state The identifier and version of the entity before a failed batch or
+   *        <code>null</code>.
+   */
+  private static void persist(final EntityManagerFactory emf,
+      final Map<String, ClassMetadata> metadata, final Object entity, final Object[] state) {
+    EntityManager em = emf.createEntityManager();
+    SessionImplementor session = (SessionImplementor) ((HibernateEntityManager) em)
+        .getSession();
+
+    EntityTransaction trx = em.getTransaction();
+    boolean rollback = true;
+    try {
+      ClassMetadata cmetadata = metadata.get(entity.getClass().getName());
+      if (state != null) {
+        restore(cmetadata, entity, state, session);
+      }
+      trx.begin();
+      Serializable id = cmetadata.getIdentifier(entity, session);
+      if (id == null) {
+        // Persist works if id generation is generated by database.
+        em.persist(entity);
+      } else {
+        // Find the entity under the given id.
+        Object existing = em.find(entity.getClass(), id);
+        if (existing == null) {
+          // doesn't exist, use merge and avoid detached instances error generated by persist.
+          em.merge(entity);
+        } else {
+          // It exists! force a failure and report the problem in the next catch statement.
+          em.persist(entity);
+        }
+      }
+      trx.commit();
+      rollback = false;
+    } catch (EntityExistsException ex) {
+      exists(entity, ex);
+    } catch (PersistenceException ex) {
+      // See https://hibernate.onjira.com/browse/HHH-4131
+      Throwable cause = ex.getCause();
+      if (cause != null && cause.getMessage().startsWith("detached")) {
+        exists(entity, ex);
+      } else {
+        throw ex;
+      }
+    } finally {
+      if (rollback && trx.isActive()) {
+        trx.rollback();
+      }
+      em.close();
+    }
+  }
+
+  /**
+   * Capture the identifier and version of an entity.
+   *
+   * @param cmetadata The entity's metadata.
+   * @param entity The entity.
+   * @param session The Hibernate session.
+   * @return The identifier and version of the entity.
+   */
+  private static Object[] state(final ClassMetadata cmetadata, final Object entity,
+      final SessionImplementor session) {
+    return new Object[]{cmetadata.getIdentifier(entity, session),
+        cmetadata.isVersioned() ? cmetadata.getVersion(entity) : null };
+  }
+
+  /**
+   * Restore the identifier and version of an entity.
+   *
+   * @param cmetadata The entity's metadata.
+   * @param entity The entity.
+   * @param state The identifier and version of the entity. See
+   *        {@link #state(ClassMetadata, Object, SessionImplementor)}.
+   * @param session The Hibernate session.
+   */
+  private static void restore(final ClassMetadata cmetadata, final Object entity,
+      final Object[] state, final SessionImplementor session) {
+    cmetadata.setIdentifier(entity, (Serializable) state[0], session);
+    if (cmetadata.isVersioned()) {
+      cmetadata.setPropertyValue(entity,
+          cmetadata.getPropertyNames()[cmetadata.getVersionProperty()], state[1]);
+    }
+  }
+
+  /**
+   * Report an existing entity.
+   *
+   * @param entity The entity.
+   * @param cause The persistence error or <code>null</code>.
+   */
+  private static void exists(final Object entity, final Exception cause) {
+    logger.warn("Entity exists: "
+        + ToStringBuilder.reflectionToString(entity, ToStringStyle.MULTI_LINE_STYLE));
+    if (cause != null) {
+      logger.debug("Entity exists: ", cause);
     }
   }
 
@@ -146,42 +516,70 @@ public final class JpaFixtures {
    * @return A set of objects
    * @throws IOException If resources fail to read.
    */
-  @SuppressWarnings({"unchecked", "rawtypes" })
+  @SuppressWarnings("unchecked")
   public static <T> Iterable<T> load(final ApplicationContext applicationContext,
       final Map<String, ClassMetadata> metadata, final String baseDir) throws IOException {
-    String pattern = new File(baseDir, "**/*.yml").toString().replace('\\', '/');
-
-    logger.debug("Searching for: {}", pattern);
-
-    Resource[] resources = getResources(applicationContext, pattern);
-    Yaml yaml = newYaml(applicationContext, metadata);
+    Yaml yaml = newYaml(conversionService(applicationContext), metadata);
     Set<T> result = new LinkedHashSet<T>();
-    for (Resource resource : resources) {
-      logger.debug("  yaml file found: {}", resource);
-      String yml = toString(resource);
-      Object root = yaml.load(yml);
-      if (root instanceof List) {
-        List objects = (List) root;
-        for (Object object : objects) {
-          result.add((T) object);
+    for (Resource resource : getResources(applicationContext, baseDir)) {
+      Reader reader = reader(resource);
+      try {
+        for (Object document : yaml.loadAll(reader)) {
+          result.addAll((Collection<T>) entities(document));
         }
-      } else {
-        result.add((T) root);
+      } finally {
+        IOUtils.closeQuietly(reader);
       }
     }
     return result;
   }
 
   /**
-   * Read resources list and fallback to classpath search if resources are not found.
+   * The entities of a YAML document: a list of entities or a single entity.
+   *
+   * @param document The YAML document.
+   * @return The document's entities.
+   */
+  @SuppressWarnings("rawtypes")
+  private static Collection<Object> entities(final Object document) {
+    if (document instanceof List) {
+      return new LinkedHashSet<Object>((List) document);
+    }
+    if (document == null) {
+      return Collections.emptySet();
+    }
+    return Collections.singleton(document);
+  }
+
+  /**
+   * The name of a fixture file, relative to the base directory if possible.
+   *
+   * @param resource The fixture file.
+   * @param baseDir The base directory.
+   * @return The name of the fixture file.
+   * @throws IOException If the resource's URL cannot be resolved.
+   */
+  private static String name(final Resource resource, final String baseDir) throws IOException {
+    String path = resource.getURL().toExternalForm();
+    String dir = StringUtils.strip(baseDir.replace('\\', '/'), "/") + "/";
+    int idx = path.lastIndexOf(dir);
+    return idx < 0 ? path : path.substring(idx);
+  }
+
+  /**
+   * Read <code>.yml</code> resources and fallback to classpath search if resources are not found.
    *
    * @param resolver A resource resolver.
-   * @param pattern The pattern to look for.
+   * @param baseDir It will be recursively scanned for <code>.yml</code> files.
    * @return A list of resources.
    * @throws IOException If file location doesn't exist.
    */
   private static Resource[] getResources(final ResourcePatternResolver resolver,
-      final String pattern) throws IOException {
+      final String baseDir) throws IOException {
+    String pattern = new File(baseDir, "**/*.yml").toString().replace('\\', '/');
+
+    logger.debug("Searching for: {}", pattern);
+
     Resource[] resources;
     try {
       resources = resolver.getResources(pattern);
@@ -207,41 +605,90 @@ public final class JpaFixtures {
   }
 
   /**
-   * Read the given resource as String.
+   * Open a UTF-8 reader over the given resource.
    *
    * @param resource The resource.
-   * @return The resource content.
-   * @throws IOException If the resource content cannot be read it.
+   * @return A new reader.
+   * @throws IOException If the resource cannot be opened.
+   */
+  private static Reader reader(final Resource resource) throws IOException {
+    return new BufferedReader(new InputStreamReader(resource.getInputStream(), "UTF-8"));
+  }
+
+  /**
+   * Lazily resolve the {@link ConversionService} from the application's context.
+   *
+   * @param applicationContext The application's context.
+   * @return A {@link ConversionService} factory.
    */
-  private static String toString(final Resource resource) throws IOException {
-    InputStream in = null;
+  private static ObjectFactory<ConversionService> conversionService(
+      final ApplicationContext applicationContext) {
+    return new ObjectFactory<ConversionService>() {
+      @Override
+      public ConversionService getObject() {
+        return applicationContext.getBean(ConversionService.class);
+      }
+    };
+  }
+
+  /**
+   * Resolve the {@link ConversionService} now, any error is reported when the service is required.
+   *
+   * @param conversionService The conversion service factory.
+   * @return A {@link ConversionService} factory.
+   */
+  private static ObjectFactory<ConversionService> resolve(
+      final ObjectFactory<ConversionService> conversionService) {
+    ConversionService converter = null;
+    RuntimeException failure = null;
     try {
-      in = resource.getInputStream();
-      return IOUtils.toString(in, "UTF-8");
-    } finally {
-      IOUtils.closeQuietly(in);
+      converter = conversionService.getObject();
+    } catch (RuntimeException ex) {
+      failure = ex;
     }
+    final ConversionService result = converter;
+    final RuntimeException error = failure;
+    return new ObjectFactory<ConversionService>() {
+      @Override
+      public ConversionService getObject() {
+        if (error != null) {
+          throw error;
+        }
+        return result;
+      }
+    };
   }
 
   /**
    * Creates a Yaml instance and register all the given class's name for using
    * CompactObjectNotation.
    *
-   * @param applicationContext The application's context.
+   * @param conversionService The conversion service factory.
    * @param metadata Keys are entity's name, values are Java classes.
    * @return A new Yaml instance.
    */
-  private static Yaml newYaml(final ApplicationContext applicationContext,
+  private static Yaml newYaml(final ObjectFactory<ConversionService> conversionService,
       final Map<String, ClassMetadata> metadata) {
+    // Index entities by simple name: the first one wins.
+    final Map<String, Class<?>> classes = new LinkedHashMap<String, Class<?>>();
+    for (ClassMetadata cmetadata : metadata.values()) {
+      Class<?> mappedClass = cmetadata.getMappedClass();
+      Class<?> existing = classes.get(mappedClass.getSimpleName());
+      if (existing == null) {
+        classes.put(mappedClass.getSimpleName(), mappedClass);
+      } else if (existing != mappedClass) {
+        logger.warn("  {} is ignored by fixtures, {} has the same simple name",
+            mappedClass.getName(), existing.getName());
+      }
+    }
+    // Matching constructors by class and number of arguments.
+    final Map<String, Constructor<?>> constructors = new HashMap<String, Constructor<?>>();
     CompactConstructor constructor = new CompactConstructor() {
       @Override
       protected Class<?> getClassForName(final String name) throws ClassNotFoundException {
-        Collection<ClassMetadata> classes = metadata.values();
-        for (ClassMetadata classMetadata : classes) {
-          Class<?> mappedClass = classMetadata.getMappedClass();
-          if (name.equals(mappedClass.getSimpleName())) {
-            return mappedClass;
-          }
+        Class<?> mappedClass = classes.get(name);
+        if (mappedClass != null) {
+          return mappedClass;
         }
         return super.getClassForName(name);
       }
@@ -250,42 +697,58 @@ public final class JpaFixtures {
       protected Object createInstance(final ScalarNode node, final CompactData data)
           throws Exception {
         Class<?> clazz = getClassForName(data.getPrefix());
-        Constructor<?>[] constructors = clazz.getDeclaredConstructors();
-        ConversionService conversionService = applicationContext.getBean(ConversionService.class);
-
-        // find best matching constructor
-        for (Constructor<?> constructor : constructors) {
-          Class<?>[] parameterTypes = constructor.getParameterTypes();
-          if (parameterTypes.length == data.getArguments().size()) {
-            boolean found = true;
-            int p = 0;
-            Object[] args = new Object[parameterTypes.length];
-            while (found && p < parameterTypes.length) {
-              Class<?> parameterType = parameterTypes[p];
-              boolean canConvert = conversionService.canConvert(String.class, parameterType);
-              if (canConvert) {
-                args[p] = conversionService.convert(data.getArguments().get(p), parameterType);
-              }
-              found &= canConvert;
-              p++;
-            }
-            if (found) {
-              constructor.setAccessible(true);
-              return BeanUtils.instantiateClass(constructor, args);
-            }
+        List<String> arguments = data.getArguments();
+        ConversionService converter = conversionService.getObject();
+        String key = clazz.getName() + "/" + arguments.size();
+        Constructor<?> constructor = constructors.get(key);
+        if (constructor == null) {
+          constructor = findConstructor(converter, clazz, arguments.size());
+          if (constructor == null) {
+            throw new IllegalArgumentException("Constructor not found: " + clazz.getName()
+                + "(" + join(arguments, ",") + ")");
           }
+          constructors.put(key, constructor);
+        }
+        Class<?>[] parameterTypes = constructor.getParameterTypes();
+        Object[] args = new Object[parameterTypes.length];
+        for (int p = 0; p < parameterTypes.length; p++) {
+          args[p] = converter.convert(arguments.get(p), parameterTypes[p]);
         }
-        throw new IllegalArgumentException("Constructor not found: " + clazz.getName()
-            + "(" + join(data.getArguments(), ",") + ")");
+        return BeanUtils.instantiateClass(constructor, args);
       }
     };
     // Add !tag
-    for (Entry<String, ClassMetadata> entry : metadata.entrySet()) {
-      ClassMetadata cmetadata = entry.getValue();
-      Class<?> mappedClass = cmetadata.getMappedClass();
-      String tag = "!!" + mappedClass.getSimpleName();
-      constructor.addTypeDescription(new TypeDescription(mappedClass, tag));
+    for (Entry<String, Class<?>> entry : classes.entrySet()) {
+      String tag = "!!" + entry.getKey();
+      constructor.addTypeDescription(new TypeDescription(entry.getValue(), tag));
     }
     return new Yaml(constructor);
   }
+
+  /**
+   * Find the first constructor with the given number of arguments, where all the arguments can be
+   * converted from {@link String}.
+   *
+   * @param converter The conversion service.
+   * @param clazz The class.
+   * @param size The number of arguments.
+   * @return The matching constructor or <code>null</code>.
+   */
+  private static Constructor<?> findConstructor(final ConversionService converter,
+      final Class<?> clazz, final int size) {
+    for (Constructor<?> constructor : clazz.getDeclaredConstructors()) {
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      if (parameterTypes.length == size) {
+        boolean found = true;
+        for (int p = 0; found && p < parameterTypes.length; p++) {
+          found = converter.canConvert(String.class, parameterTypes[p]);
+        }
+        if (found) {
+          constructor.setAccessible(true);
+          return constructor;
+        }
+      }
+    }
+    return null;
+  }
 }
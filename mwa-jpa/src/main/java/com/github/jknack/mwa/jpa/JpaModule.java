@@ -8,12 +8,14 @@ import java.sql.SQLException;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 
 import javax.annotation.PreDestroy;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
 import javax.persistence.PersistenceContext;
+import javax.persistence.SharedCacheMode;
 import javax.sql.DataSource;
 
 import org.apache.commons.lang3.StringUtils;
@@ -33,8 +35,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.EnumerablePropertySource;
 import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertySource;
 import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.persistenceunit.MutablePersistenceUnitInfo;
+import org.springframework.orm.jpa.persistenceunit.PersistenceUnitPostProcessor;
 import org.springframework.orm.jpa.support.SharedEntityManagerBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
@@ -44,6 +51,7 @@ import org.springframework.util.ReflectionUtils.FieldCallback;
 import org.springframework.util.ReflectionUtils.FieldFilter;
 
 import com.github.jknack.mwa.ApplicationConstants;
+import com.github.jknack.mwa.ComponentIndex;
 
 /**
  * <p>
@@ -225,6 +233,105 @@ public class JpaModule {
    */
   public static final String DB_DEFAULT_FIXTURES = "/fixtures";
 
+  /**
+   * Max number of statements of a JDBC batch. Default is: Hibernate's default (no batching).
+   */
+  public static final String DB_BATCH_SIZE = "db.batchSize";
+
+  /**
+   * If true, inserts are ordered by entity type, so they can be batched. Default is: Hibernate's
+   * default (false).
+   */
+  public static final String DB_ORDER_INSERTS = "db.orderInserts";
+
+  /**
+   * The number of fixtures persisted per transaction. Default is:
+   * {@link #DB_DEFAULT_FIXTURES_BATCH_SIZE}. Inserts of a transaction are sent in JDBC batches if
+   * {@link #DB_BATCH_SIZE} is set.
+   */
+  public static final String DB_FIXTURES_BATCH_SIZE = "db.fixtures.batchSize";
+
+  /**
+   * The default number of fixtures persisted per transaction.
+   */
+  public static final int DB_DEFAULT_FIXTURES_BATCH_SIZE = 500;
+
+  /**
+   * If true, fixture files already loaded with the same content are skipped. Default is: false.
+   * The ledger is a table of the application's database, see {@link FixtureLedger}.
+   */
+  public static final String DB_FIXTURES_LEDGER = "db.fixtures.ledger";
+
+  /**
+   * Max number of threads for loading unrelated fixture files. Default is: 1 (files are loaded one
+   * after another).
+   */
+  public static final String DB_FIXTURES_THREADS = "db.fixtures.threads";
+
+  /**
+   * If true, the second-level cache is on. Entities annotated with
+   * {@link javax.persistence.Cacheable} or <code>org.hibernate.annotations.Cache</code> are cached.
+   * Default is: false. See {@link BoundedRegionFactory}.
+   */
+  public static final String DB_CACHE = "db.cache";
+
+  /**
+   * If true and the {@link #DB_CACHE second-level cache} is on, the query cache is on too. Queries
+   * must be marked as cacheable. Default is: false.
+   */
+  public static final String DB_CACHE_QUERIES = "db.cache.queries";
+
+  /**
+   * If true, Hibernate's statistics are collected and the statistics of the cache regions are
+   * published over JMX. See {@link CacheRegionStatistics}. Default is: false.
+   */
+  public static final String DB_STATISTICS = "db.statistics";
+
+  /**
+   * Max number of entries per cache region. Default is: {@link #DB_DEFAULT_CACHE_MAX_SIZE}.
+   */
+  public static final String DB_CACHE_MAX_SIZE = "db.cache.maxSize";
+
+  /**
+   * The default max number of entries per cache region.
+   */
+  public static final int DB_DEFAULT_CACHE_MAX_SIZE = 10000;
+
+  /**
+   * Time to live in seconds of a cache entry. Default is: {@link #DB_DEFAULT_CACHE_TTL}.
+   */
+  public static final String DB_CACHE_TTL = "db.cache.ttl";
+
+  /**
+   * The default time to live in seconds of a cache entry.
+   */
+  public static final int DB_DEFAULT_CACHE_TTL = 3600;
+
+  /**
+   * If true, the Hibernate's session of a read-only transaction loads entities as read-only (no
+   * snapshots). Entities loaded in a read-only transaction stay read-only in the session: with an
+   * open entity manager in view, changes made to them by a later read-write transaction of the same
+   * request are ignored. Default is: false. See {@link ReadOnlyJpaDialect}.
+   */
+  public static final String DB_READ_ONLY_SESSION = "db.readOnlySession";
+
+  /**
+   * If true, N+1 selects are detected and logged. Default is: true in dev mode. See
+   * {@link NPlusOneDetector}.
+   */
+  public static final String DB_N_PLUS_ONE = "db.nPlusOne";
+
+  /**
+   * Number of loads of the same association (in the same session) that are reported as N+1.
+   * Default is: {@link #DB_DEFAULT_N_PLUS_ONE_THRESHOLD}.
+   */
+  public static final String DB_N_PLUS_ONE_THRESHOLD = "db.nPlusOne.threshold";
+
+  /**
+   * The default value of {@link #DB_N_PLUS_ONE_THRESHOLD}.
+   */
+  public static final int DB_DEFAULT_N_PLUS_ONE_THRESHOLD = 10;
+
   /**
    * The logging system.
    */
@@ -292,6 +399,33 @@ public class JpaModule {
       properties.put(AvailableSettings.DIALECT, dialect.getName());
     }
 
+    // JDBC batching: Hibernate's defaults, unless it's set.
+    String batchSize = env.getProperty(DB_BATCH_SIZE);
+    if (!StringUtils.isEmpty(batchSize)) {
+      properties.put(AvailableSettings.STATEMENT_BATCH_SIZE, batchSize);
+    }
+    String orderInserts = env.getProperty(DB_ORDER_INSERTS);
+    if (!StringUtils.isEmpty(orderInserts)) {
+      properties.put(AvailableSettings.ORDER_INSERTS, orderInserts);
+    }
+
+    // second-level and query cache
+    if (env.getProperty(DB_CACHE, Boolean.class, false)) {
+      logger.info("  second-level cache: {}", BoundedRegionFactory.class.getSimpleName());
+      properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, "true");
+      properties.put(AvailableSettings.CACHE_REGION_FACTORY, BoundedRegionFactory.class.getName());
+      properties.put(org.hibernate.ejb.AvailableSettings.SHARED_CACHE_MODE,
+          SharedCacheMode.ENABLE_SELECTIVE.name());
+      properties.putAll(cacheSettings(env));
+      if (env.getProperty(DB_CACHE_QUERIES, Boolean.class, false)) {
+        logger.info("  query cache: on");
+        properties.put(AvailableSettings.USE_QUERY_CACHE, "true");
+      }
+    }
+    if (env.getProperty(DB_STATISTICS, Boolean.class, false)) {
+      properties.put(AvailableSettings.GENERATE_STATISTICS, "true");
+    }
+
     /**
      * Looks for Hibernate properties and set them all.
      */
@@ -313,12 +447,62 @@ public class JpaModule {
     });
 
     emf.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    // replica routing and read-only sessions for @Transactional(readOnly = true)
+    String[] replicas = env.getProperty(DataSources.DB_REPLICAS, String[].class);
+    boolean readOnlySession = env.getProperty(DB_READ_ONLY_SESSION, Boolean.class, false);
+    if (replicas != null && replicas.length > 0 || readOnlySession) {
+      emf.setJpaDialect(new ReadOnlyJpaDialect(readOnlySession));
+    }
     emf.setJpaPropertyMap(properties);
     emf.setDataSource(jpaDataSource(env));
-    emf.setPackagesToScan(namespace);
+    final ComponentIndex index = ComponentIndex.get(env, applicationContext.getClassLoader());
+    if (index == null) {
+      emf.setPackagesToScan(namespace);
+    } else {
+      // Use the compile-time index for the packages it covers and scan the others.
+      final Set<String> entities = index.candidates(index.covered(namespace),
+          ComponentIndex.JPA_ENTITY, ComponentIndex.JPA_EMBEDDABLE,
+          ComponentIndex.JPA_MAPPED_SUPERCLASS);
+      logger.info("  persistent classes found in index: {}", entities.size());
+      emf.setPackagesToScan(index.uncovered(namespace));
+      emf.setPersistenceUnitPostProcessors(new PersistenceUnitPostProcessor() {
+        @Override
+        public void postProcessPersistenceUnitInfo(final MutablePersistenceUnitInfo pui) {
+          for (String entity : entities) {
+            pui.addManagedClassName(entity);
+          }
+        }
+      });
+    }
     return emf;
   }
 
+  /**
+   * Collect the cache region's settings: <code>db.cache.*</code>. Region's settings are looked up
+   * by {@link BoundedRegionFactory}, so they must be enumerated here.
+   *
+   * @param env The application's environment.
+   * @return The cache region's settings.
+   */
+  @SuppressWarnings("rawtypes")
+  private static Map<String, String> cacheSettings(final Environment env) {
+    Map<String, String> settings = new HashMap<String, String>();
+    if (env instanceof ConfigurableEnvironment) {
+      String prefix = DB_CACHE + ".";
+      for (PropertySource<?> propertySource : ((ConfigurableEnvironment) env)
+          .getPropertySources()) {
+        if (propertySource instanceof EnumerablePropertySource) {
+          for (String name : ((EnumerablePropertySource) propertySource).getPropertyNames()) {
+            if (name.startsWith(prefix) && !settings.containsKey(name)) {
+              settings.put(name, env.getProperty(name));
+            }
+          }
+        }
+      }
+    }
+    return settings;
+  }
+
   /**
    * Enable injection of {@link EntityManager} using {@link Inject}. Useful for constructor
    * injection.
@@ -0,0 +1,228 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import org.hibernate.HibernateException;
+import org.hibernate.cache.spi.CacheKey;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.EntityKey;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.InitializeCollectionEvent;
+import org.hibernate.event.spi.InitializeCollectionEventListener;
+import org.hibernate.event.spi.LoadEvent;
+import org.hibernate.event.spi.LoadEventListener;
+import org.hibernate.persister.collection.CollectionPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.MapMaker;
+
+/**
+ * Detect N+1 selects: an association loaded one by one, over and over, in the same Hibernate's
+ * session. A session lives for a transaction or for a request (open entity manager in view), so
+ * loads are counted per transaction or request.
+ * <p>
+ * It counts lazy collections initialized by role and entities loaded by a proxy or by an eager
+ * association. Entities and collections found in the session or in the second-level cache are
+ * loaded without a select, so they aren't counted. Once an association reaches the
+ * threshold, a warning is logged with the association and the call site: the first stack frame
+ * outside of Java, Spring, Hibernate and MWA.
+ * </p>
+ * It must run before the default listeners. See {@link JpaModule#DB_N_PLUS_ONE}.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class NPlusOneDetector implements LoadEventListener, InitializeCollectionEventListener {
+
+  /**
+   * Loads of a session.
+   *
+   * @author edgar.espina
+   */
+  private static final class Loads {
+
+    /**
+     * Loads by association.
+     */
+    private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+    /**
+     * The associations reported already.
+     */
+    private final Set<String> reported = new HashSet<String>();
+  }
+
+  /**
+   * Default serial UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * Packages that aren't call sites.
+   */
+  private static final String[] FRAMEWORK = {"java.", "javax.", "sun.", "com.sun.",
+      "org.hibernate.", "org.springframework.", "javassist.", "net.sf.cglib.",
+      NPlusOneDetector.class.getPackage().getName() + "." };
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(NPlusOneDetector.class);
+
+  /**
+   * Loads by session. Sessions are weak keys, so closed sessions are discarded.
+   */
+  private final ConcurrentMap<Object, Loads> sessions = new MapMaker()
+      .weakKeys()
+      .makeMap();
+
+  /**
+   * Number of loads of the same association that are reported as N+1.
+   */
+  private final int threshold;
+
+  /**
+   * Creates a new {@link NPlusOneDetector}.
+   *
+   * @param threshold Number of loads of the same association that are reported as N+1. Must be
+   *        greater than 1.
+   */
+  public NPlusOneDetector(final int threshold) {
+    isTrue(threshold > 1, "The threshold must be greater than 1.");
+    this.threshold = threshold;
+  }
+
+  @Override
+  public void onLoad(final LoadEvent event, final LoadType loadType) throws HibernateException {
+    if (loadType != IMMEDIATE_LOAD && loadType != INTERNAL_LOAD_EAGER
+        && loadType != INTERNAL_LOAD_NULLABLE) {
+      return;
+    }
+    EventSource session = event.getSession();
+    String entityName = event.getEntityClassName();
+    EntityPersister persister = session.getFactory().getEntityPersister(entityName);
+    Serializable id = event.getEntityId();
+    EntityKey key = session.generateEntityKey(id, persister);
+    if (session.getPersistenceContext().getEntity(key) == null && !cached(session, persister, id)) {
+      String kind = loadType == IMMEDIATE_LOAD ? "lazy" : "eager";
+      loaded(session, entityName + " (" + kind + ")");
+    }
+  }
+
+  @Override
+  public void onInitializeCollection(final InitializeCollectionEvent event)
+      throws HibernateException {
+    PersistentCollection collection = event.getCollection();
+    if (!collection.wasInitialized() && !cached(event.getSession(), collection)) {
+      loaded(event.getSession(), collection.getRole());
+    }
+  }
+
+  /**
+   * True, if the entity is in the second-level cache.
+   *
+   * @param session The Hibernate's session.
+   * @param persister The entity's persister.
+   * @param id The entity's id.
+   * @return True, if the entity is in the second-level cache.
+   */
+  private static boolean cached(final EventSource session, final EntityPersister persister,
+      final Serializable id) {
+    if (!persister.hasCache() || !session.getCacheMode().isGetEnabled()) {
+      return false;
+    }
+    CacheKey key = session.generateCacheKey(id, persister.getIdentifierType(),
+        persister.getRootEntityName());
+    return persister.getCacheAccessStrategy().getRegion().contains(key);
+  }
+
+  /**
+   * True, if the collection is in the second-level cache.
+   *
+   * @param session The Hibernate's session.
+   * @param collection The collection.
+   * @return True, if the collection is in the second-level cache.
+   */
+  private static boolean cached(final EventSource session,
+      final PersistentCollection collection) {
+    CollectionPersister persister = session.getFactory()
+        .getCollectionPersister(collection.getRole());
+    if (!persister.hasCache() || !session.getCacheMode().isGetEnabled()) {
+      return false;
+    }
+    CacheKey key = session.generateCacheKey(collection.getKey(), persister.getKeyType(),
+        persister.getRole());
+    return persister.getCacheAccessStrategy().getRegion().contains(key);
+  }
+
+  /**
+   * Count a load and report the association once it reaches the threshold.
+   *
+   * @param session The Hibernate's session.
+   * @param association The loaded association.
+   * @return True, if the association was reported.
+   */
+  boolean loaded(final Object session, final String association) {
+    Loads loads = sessions.get(session);
+    if (loads == null) {
+      Loads candidate = new Loads();
+      loads = sessions.putIfAbsent(session, candidate);
+      if (loads == null) {
+        loads = candidate;
+      }
+    }
+    int count;
+    synchronized (loads) {
+      Integer previous = loads.counts.get(association);
+      count = previous == null ? 1 : previous + 1;
+      loads.counts.put(association, count);
+      if (count < threshold || !loads.reported.add(association)) {
+        return false;
+      }
+    }
+    logger.warn("N+1 selects of: {}, loaded {} times in the same session at: {}",
+        new Object[]{association, count, callSite() });
+    return true;
+  }
+
+  /**
+   * The first stack frame outside of Java, Spring, Hibernate, MWA and generated proxies.
+   *
+   * @return The call site.
+   */
+  static String callSite() {
+    for (StackTraceElement element : new Throwable().getStackTrace()) {
+      if (!framework(element.getClassName())) {
+        return element.toString();
+      }
+    }
+    return "unknown";
+  }
+
+  /**
+   * True, if the class belongs to a framework or is a generated proxy.
+   *
+   * @param className The class's name.
+   * @return True, if the class belongs to a framework or is a generated proxy.
+   */
+  private static boolean framework(final String className) {
+    if (className.contains("$$") || className.startsWith("$Proxy")) {
+      return true;
+    }
+    for (String prefix : FRAMEWORK) {
+      if (className.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,36 @@
+package com.github.jknack.mwa.jpa;
+
+import javax.sql.DataSource;
+
+import org.springframework.core.env.Environment;
+
+/**
+ * Creates a connection pool. A provider is selected with the {@link DataSources#DB_POOL} property
+ * and must map the common <code>db.*</code> settings (see {@link DataSources}) to the pool's
+ * settings.
+ * <p>
+ * Implementations must have a public no-args constructor.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public interface PoolProvider {
+
+  /**
+   * Creates a connection pool.
+   *
+   * @param env The application's environment.
+   * @param database The database's url.
+   * @return A new connection pool.
+   */
+  DataSource newDataSource(Environment env, String database);
+
+  /**
+   * Number of idle connections of a pool. See {@link InstrumentedDataSource}.
+   *
+   * @param dataSource A connection pool created by this provider.
+   * @return Number of idle connections or <code>-1</code> if the pool doesn't tell.
+   */
+  int getIdle(DataSource dataSource);
+}
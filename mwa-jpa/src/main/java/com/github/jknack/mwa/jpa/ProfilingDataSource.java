@@ -0,0 +1,643 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.ReflectionUtils;
+
+import com.github.jknack.mwa.Histogram;
+
+/**
+ * A {@link DataSource} that profiles SQL statements. Statements are normalized (literals and
+ * parameters are replaced by <code>?</code>) and for each of them it keeps:
+ * <ul>
+ * <li>A latency {@link Histogram} (calls included).</li>
+ * <li>The number of rows read or updated.</li>
+ * </ul>
+ * Statements slower than the slow threshold are logged. If bind values are on (dev mode), the
+ * statement is logged as executed with the bind values, otherwise the normalized statement is
+ * logged.
+ * <p>
+ * The top statements by total time are published over JMX as:
+ * <code>com.github.jknack.mwa:type=SqlProfiler,name=...</code>.
+ * </p>
+ * JDBC calls go through dynamic proxies, so profiling has a cost. See
+ * {@link DataSources#DB_PROFILER}.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class ProfilingDataSource extends DelegatingDataSource implements ProfilingDataSourceMBean {
+
+  /**
+   * The profile of a normalized statement.
+   *
+   * @author edgar.espina
+   */
+  public static final class StatementProfile {
+
+    /**
+     * The normalized statement.
+     */
+    private final String sql;
+
+    /**
+     * The statement's latency.
+     */
+    private final Histogram latency = new Histogram();
+
+    /**
+     * Rows read or updated.
+     */
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * Creates a new {@link StatementProfile}.
+     *
+     * @param sql The normalized statement.
+     */
+    private StatementProfile(final String sql) {
+      this.sql = sql;
+    }
+
+    /**
+     * The normalized statement.
+     *
+     * @return The normalized statement.
+     */
+    public String getSql() {
+      return sql;
+    }
+
+    /**
+     * The statement's latency.
+     *
+     * @return The statement's latency.
+     */
+    public Histogram getLatency() {
+      return latency;
+    }
+
+    /**
+     * Number of executions.
+     *
+     * @return Number of executions.
+     */
+    public long getCalls() {
+      return latency.getCount();
+    }
+
+    /**
+     * Rows read or updated.
+     *
+     * @return Rows read or updated.
+     */
+    public long getRows() {
+      return rows.get();
+    }
+
+    @Override
+    public String toString() {
+      return sql + " {" + latency + ", rows: " + getRows() + "}";
+    }
+  }
+
+  /**
+   * Track the executions of a statement.
+   *
+   * @author edgar.espina
+   */
+  private final class StatementHandler implements InvocationHandler {
+
+    /**
+     * The target statement.
+     */
+    private final Statement statement;
+
+    /**
+     * The connection's proxy.
+     */
+    private final Connection connection;
+
+    /**
+     * The SQL of a prepared statement or <code>null</code>.
+     */
+    private final String sql;
+
+    /**
+     * The bind values or <code>null</code>.
+     */
+    private final Map<Integer, Object> binds;
+
+    /**
+     * The last SQL added to a batch of a plain statement.
+     */
+    private String batchSql;
+
+    /**
+     * The profile of the last execution.
+     */
+    private StatementProfile current;
+
+    /**
+     * Creates a new {@link StatementHandler}.
+     *
+     * @param statement The target statement.
+     * @param connection The connection's proxy.
+     * @param sql The SQL of a prepared statement or <code>null</code>.
+     */
+    public StatementHandler(final Statement statement, final Connection connection,
+        final String sql) {
+      this.statement = statement;
+      this.connection = connection;
+      this.sql = sql;
+      this.binds = logBindValues && sql != null ? new TreeMap<Integer, Object>() : null;
+    }
+
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+      String methodName = method.getName();
+      if ("equals".equals(methodName)) {
+        return proxy == args[0];
+      }
+      if ("hashCode".equals(methodName)) {
+        return System.identityHashCode(proxy);
+      }
+      if ("getConnection".equals(methodName)) {
+        return connection;
+      }
+      if (methodName.startsWith("execute")) {
+        return execute(proxy, method, args);
+      }
+      if ("addBatch".equals(methodName) && args != null && args.length == 1) {
+        batchSql = (String) args[0];
+      } else if (binds != null) {
+        if (methodName.startsWith("set") && args != null && args.length >= 2
+            && args[0] instanceof Integer) {
+          binds.put((Integer) args[0], "setNull".equals(methodName) ? null : args[1]);
+        } else if ("clearParameters".equals(methodName)) {
+          binds.clear();
+        }
+      }
+      Object result = ProfilingDataSource.invoke(statement, method, args);
+      if ("getResultSet".equals(methodName) && result != null && current != null) {
+        return resultSet((ResultSet) result, (Statement) proxy, current);
+      }
+      return result;
+    }
+
+    /**
+     * Execute and profile a statement.
+     *
+     * @param proxy The statement's proxy.
+     * @param method The execute method.
+     * @param args The method's arguments.
+     * @return The execution's result.
+     * @throws Throwable If the execution fails.
+     */
+    private Object execute(final Object proxy, final Method method, final Object[] args)
+        throws Throwable {
+      String executed = sql;
+      if (args != null && args.length > 0 && args[0] instanceof String) {
+        executed = (String) args[0];
+      } else if (executed == null) {
+        executed = batchSql;
+      }
+      StatementProfile profile = profile(executed);
+      current = profile;
+      long start = System.nanoTime();
+      Object result;
+      try {
+        result = ProfilingDataSource.invoke(statement, method, args);
+      } finally {
+        long elapsed = System.nanoTime() - start;
+        profile.latency.record(elapsed, TimeUnit.NANOSECONDS);
+        slow(executed, elapsed, binds);
+      }
+      if (result instanceof ResultSet) {
+        return resultSet((ResultSet) result, (Statement) proxy, profile);
+      }
+      if (result instanceof Integer) {
+        profile.rows.addAndGet(Math.max(0, (Integer) result));
+      } else if (result instanceof int[]) {
+        for (int count : (int[]) result) {
+          profile.rows.addAndGet(Math.max(0, count));
+        }
+      }
+      return result;
+    }
+  }
+
+  /**
+   * Number of top statements of {@link #getReport()}.
+   */
+  public static final int TOP = 20;
+
+  /**
+   * Max number of distinct statements. Once reached, new statements are profiled as
+   * {@link #OTHER}.
+   */
+  private static final int MAX_STATEMENTS = 1000;
+
+  /**
+   * Max number of executed SQL strings mapped to a normalized statement.
+   */
+  private static final int MAX_SQL = MAX_STATEMENTS * 10;
+
+  /**
+   * The statement's name once {@link #MAX_STATEMENTS} is reached.
+   */
+  private static final String OTHER = "(other)";
+
+  /**
+   * The statement's name if the SQL is unknown.
+   */
+  private static final String UNKNOWN = "(unknown)";
+
+  /**
+   * String literals.
+   */
+  private static final Pattern STRING = Pattern.compile("'(?:[^']|'')*'");
+
+  /**
+   * Number literals.
+   */
+  private static final Pattern NUMBER = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+
+  /**
+   * Lists of parameters: <code>in (?, ?, ?)</code>.
+   */
+  private static final Pattern IN_LIST =
+      Pattern.compile("(?i)\\bin\\s*\\(\\s*\\?(?:\\s*,\\s*\\?)*\\s*\\)");
+
+  /**
+   * White spaces.
+   */
+  private static final Pattern SPACES = Pattern.compile("\\s+");
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ProfilingDataSource.class);
+
+  /**
+   * The data source's name.
+   */
+  private final String name;
+
+  /**
+   * The slow threshold in millis. Zero or negative means no slow statement logging.
+   */
+  private final long slowThreshold;
+
+  /**
+   * True, if bind values are logged.
+   */
+  private final boolean logBindValues;
+
+  /**
+   * Profiles by normalized statement.
+   */
+  private final ConcurrentMap<String, StatementProfile> statements =
+      new ConcurrentHashMap<String, StatementProfile>();
+
+  /**
+   * Profiles by executed SQL. Saves the normalization of statements executed already.
+   */
+  private final ConcurrentMap<String, StatementProfile> sqlStatements =
+      new ConcurrentHashMap<String, StatementProfile>();
+
+  /**
+   * Number of executions slower than the slow threshold.
+   */
+  private final AtomicLong slowExecutions = new AtomicLong();
+
+  /**
+   * The JMX name or <code>null</code>.
+   */
+  private ObjectName objectName;
+
+  /**
+   * Creates a new {@link ProfilingDataSource}.
+   *
+   * @param dataSource The target data source. Required.
+   * @param name The data source's name. Required.
+   * @param slowThreshold Statements slower than this (in millis) are logged. Zero or negative
+   *        turns off slow statement logging.
+   * @param logBindValues True, if bind values are logged. Bind values might have sensitive data,
+   *        so they should be logged in dev mode only.
+   */
+  public ProfilingDataSource(final DataSource dataSource, final String name,
+      final long slowThreshold, final boolean logBindValues) {
+    super(dataSource);
+    this.name = notEmpty(name, "The name is required.");
+    this.slowThreshold = slowThreshold;
+    this.logBindValues = logBindValues;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return proxy(getTargetDataSource().getConnection());
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    return proxy(getTargetDataSource().getConnection(username, password));
+  }
+
+  /**
+   * Normalize a SQL statement: literals are replaced by <code>?</code>, lists of parameters are
+   * collapsed to <code>in (?)</code> and white spaces are collapsed to a single space.
+   *
+   * @param sql The SQL statement.
+   * @return The normalized statement.
+   */
+  static String normalize(final String sql) {
+    String result = STRING.matcher(sql).replaceAll("?");
+    result = NUMBER.matcher(result).replaceAll("?");
+    result = SPACES.matcher(result).replaceAll(" ").trim();
+    return IN_LIST.matcher(result).replaceAll("in (?)");
+  }
+
+  /**
+   * Find or create the profile of a SQL statement.
+   *
+   * @param sql The SQL statement or <code>null</code>.
+   * @return The statement's profile.
+   */
+  StatementProfile profile(final String sql) {
+    String key = sql == null ? UNKNOWN : sql;
+    StatementProfile profile = sqlStatements.get(key);
+    if (profile == null) {
+      String normalized = normalize(key);
+      if (!statements.containsKey(normalized) && statements.size() >= MAX_STATEMENTS) {
+        normalized = OTHER;
+      }
+      profile = statements.get(normalized);
+      if (profile == null) {
+        StatementProfile candidate = new StatementProfile(normalized);
+        profile = statements.putIfAbsent(normalized, candidate);
+        if (profile == null) {
+          profile = candidate;
+        }
+      }
+      if (sqlStatements.size() < MAX_SQL) {
+        sqlStatements.put(key, profile);
+      }
+    }
+    return profile;
+  }
+
+  /**
+   * Log a statement if it was slower than the slow threshold.
+   *
+   * @param sql The executed statement.
+   * @param elapsed The execution's time in nanos.
+   * @param binds The bind values or <code>null</code>.
+   */
+  private void slow(final String sql, final long elapsed, final Map<Integer, Object> binds) {
+    long millis = TimeUnit.NANOSECONDS.toMillis(elapsed);
+    if (slowThreshold <= 0 || millis < slowThreshold) {
+      return;
+    }
+    slowExecutions.incrementAndGet();
+    String statement = sql == null ? UNKNOWN : sql;
+    if (logBindValues) {
+      logger.warn("Slow statement of '{}' ({}ms): {} {}",
+          new Object[]{name, millis, statement, binds == null ? "" : binds });
+    } else {
+      logger.warn("Slow statement of '{}' ({}ms): {}",
+          new Object[]{name, millis, normalize(statement) });
+    }
+  }
+
+  /**
+   * Wrap a connection and profile its statements.
+   *
+   * @param connection The target connection.
+   * @return A connection proxy.
+   */
+  private Connection proxy(final Connection connection) {
+    return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+        new Class<?>[]{ConnectionProxy.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args)
+              throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName)) {
+              return proxy == args[0];
+            }
+            if ("hashCode".equals(methodName)) {
+              return System.identityHashCode(proxy);
+            }
+            if ("getTargetConnection".equals(methodName)) {
+              return connection;
+            }
+            Object result = ProfilingDataSource.invoke(connection, method, args);
+            if (result instanceof Statement) {
+              String sql = args != null && args.length > 0 && args[0] instanceof String
+                  ? (String) args[0] : null;
+              return Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+                  new Class<?>[]{method.getReturnType() },
+                  new StatementHandler((Statement) result, (Connection) proxy, sql));
+            }
+            return result;
+          }
+        });
+  }
+
+  /**
+   * Wrap a result set and count its rows.
+   *
+   * @param resultSet The target result set.
+   * @param statement The statement's proxy.
+   * @param profile The statement's profile.
+   * @return A result set proxy.
+   */
+  private static ResultSet resultSet(final ResultSet resultSet, final Statement statement,
+      final StatementProfile profile) {
+    return (ResultSet) Proxy.newProxyInstance(ProfilingDataSource.class.getClassLoader(),
+        new Class<?>[]{ResultSet.class }, new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args)
+              throws Throwable {
+            String methodName = method.getName();
+            if ("equals".equals(methodName)) {
+              return proxy == args[0];
+            }
+            if ("hashCode".equals(methodName)) {
+              return System.identityHashCode(proxy);
+            }
+            if ("getStatement".equals(methodName)) {
+              return statement;
+            }
+            Object result = ProfilingDataSource.invoke(resultSet, method, args);
+            if ("next".equals(methodName) && Boolean.TRUE.equals(result)) {
+              profile.rows.incrementAndGet();
+            }
+            return result;
+          }
+        });
+  }
+
+  /**
+   * Invoke a method and unwrap invocation errors.
+   *
+   * @param target The target object.
+   * @param method The method.
+   * @param args The method's arguments.
+   * @return The method's result.
+   * @throws Throwable If the method fails.
+   */
+  private static Object invoke(final Object target, final Method method, final Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ex) {
+      throw ex.getTargetException();
+    }
+  }
+
+  /**
+   * The top N statements by total time.
+   *
+   * @param top The number of statements.
+   * @return The top N statements by total time.
+   */
+  public List<StatementProfile> top(final int top) {
+    List<StatementProfile> profiles = new ArrayList<StatementProfile>(statements.values());
+    // Profiles change while sorting, so sort a snapshot of the total times.
+    final Map<StatementProfile, Long> totals = new IdentityHashMap<StatementProfile, Long>();
+    for (StatementProfile profile : profiles) {
+      totals.put(profile, profile.latency.getSum(TimeUnit.NANOSECONDS));
+    }
+    Collections.sort(profiles, new Comparator<StatementProfile>() {
+      @Override
+      public int compare(final StatementProfile p1, final StatementProfile p2) {
+        return totals.get(p2).compareTo(totals.get(p1));
+      }
+    });
+    return profiles.subList(0, Math.max(0, Math.min(top, profiles.size())));
+  }
+
+  @Override
+  public String report(final int top) {
+    TimeUnit unit = TimeUnit.MILLISECONDS;
+    String format = "%10s %8s %8s %8s %10s  %s%n";
+    StringBuilder report = new StringBuilder(
+        String.format(format, "total(ms)", "calls", "mean(ms)", "p99(ms)", "rows", "sql"));
+    for (StatementProfile profile : top(top)) {
+      Histogram latency = profile.latency;
+      report.append(String.format(format, latency.getSum(unit), latency.getCount(),
+          latency.getMean(unit), latency.getPercentile(99, unit), profile.getRows(),
+          profile.sql));
+    }
+    return report.toString();
+  }
+
+  @Override
+  public String getReport() {
+    return report(TOP);
+  }
+
+  @Override
+  public int getStatements() {
+    return statements.size();
+  }
+
+  @Override
+  public long getSlowExecutions() {
+    return slowExecutions.get();
+  }
+
+  @Override
+  public void reset() {
+    sqlStatements.clear();
+    statements.clear();
+    slowExecutions.set(0);
+  }
+
+  /**
+   * The data source's name.
+   *
+   * @return The data source's name.
+   */
+  public String getName() {
+    return name;
+  }
+
+  /**
+   * Publish the profiler over JMX. Errors are logged.
+   *
+   * @return This data source.
+   */
+  public ProfilingDataSource register() {
+    try {
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+      ObjectName candidate = new ObjectName(InstrumentedDataSource.JMX_DOMAIN
+          + ":type=SqlProfiler,name=" + ObjectName.quote(name));
+      server.registerMBean(this, candidate);
+      objectName = candidate;
+    } catch (JMException ex) {
+      logger.warn("Can't publish SQL profiler of '" + name + "' over JMX", ex);
+    }
+    return this;
+  }
+
+  /**
+   * Unpublish the profiler and close the target data source (if it has a <code>close</code>
+   * method).
+   */
+  public void close() {
+    if (objectName != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+      } catch (JMException ex) {
+        logger.debug("Can't unregister: " + objectName, ex);
+      }
+      objectName = null;
+    }
+    DataSource dataSource = getTargetDataSource();
+    Method close = ReflectionUtils.findMethod(dataSource.getClass(), "close");
+    if (close != null) {
+      ReflectionUtils.invokeMethod(close, dataSource);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return name + " {statements: " + getStatements() + ", slow: " + getSlowExecutions() + "}";
+  }
+}
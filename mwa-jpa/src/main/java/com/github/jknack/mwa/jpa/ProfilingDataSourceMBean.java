@@ -0,0 +1,44 @@
+package com.github.jknack.mwa.jpa;
+
+/**
+ * JMX view of a {@link ProfilingDataSource}. Times are in milliseconds.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public interface ProfilingDataSourceMBean {
+
+  /**
+   * Number of distinct (normalized) statements.
+   *
+   * @return Number of distinct statements.
+   */
+  int getStatements();
+
+  /**
+   * Number of executions slower than the slow threshold.
+   *
+   * @return Number of executions slower than the slow threshold.
+   */
+  long getSlowExecutions();
+
+  /**
+   * The top statements by total time.
+   *
+   * @return The top statements by total time.
+   */
+  String getReport();
+
+  /**
+   * The top N statements by total time.
+   *
+   * @param top The number of statements.
+   * @return The top N statements by total time.
+   */
+  String report(int top);
+
+  /**
+   * Discard the collected statistics.
+   */
+  void reset();
+}
@@ -0,0 +1,147 @@
+package com.github.jknack.mwa.jpa;
+
+import java.sql.SQLException;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.FlushMode;
+import org.hibernate.Session;
+import org.hibernate.ejb.HibernateEntityManager;
+import org.springframework.orm.jpa.vendor.HibernateJpaDialect;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+
+/**
+ * A {@link HibernateJpaDialect} for read-only transactions:
+ * <ul>
+ * <li>The connection is taken from a replica, if the data source is a
+ * {@link ReadWriteDataSource}.</li>
+ * <li>The Hibernate's session is never flushed.</li>
+ * <li>Optionally, the Hibernate's session loads entities as read-only (no snapshots). Entities
+ * loaded in a read-only transaction stay read-only in the session, see
+ * {@link JpaModule#DB_READ_ONLY_SESSION}.</li>
+ * </ul>
+ * The session is restored when the transaction finishes.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class ReadOnlyJpaDialect extends HibernateJpaDialect {
+
+  /**
+   * The state of a read-only transaction.
+   *
+   * @author edgar.espina
+   */
+  private static final class ReadOnlyTransactionData {
+
+    /**
+     * The transaction's data of {@link HibernateJpaDialect}.
+     */
+    private final Object transactionData;
+
+    /**
+     * The read-only flag of the calling thread.
+     */
+    private final boolean previousReadOnly;
+
+    /**
+     * The Hibernate's session or <code>null</code> for read-write transactions.
+     */
+    private final Session session;
+
+    /**
+     * The previous flush mode.
+     */
+    private final FlushMode previousFlushMode;
+
+    /**
+     * The previous default read-only setting.
+     */
+    private final boolean previousDefaultReadOnly;
+
+    /**
+     * Creates a new {@link ReadOnlyTransactionData}.
+     *
+     * @param transactionData The transaction's data of {@link HibernateJpaDialect}.
+     * @param previousReadOnly The read-only flag of the calling thread.
+     * @param session The Hibernate's session or <code>null</code> for read-write transactions.
+     * @param previousFlushMode The previous flush mode.
+     * @param previousDefaultReadOnly The previous default read-only setting.
+     */
+    public ReadOnlyTransactionData(final Object transactionData,
+        final boolean previousReadOnly, final Session session,
+        final FlushMode previousFlushMode, final boolean previousDefaultReadOnly) {
+      this.transactionData = transactionData;
+      this.previousReadOnly = previousReadOnly;
+      this.session = session;
+      this.previousFlushMode = previousFlushMode;
+      this.previousDefaultReadOnly = previousDefaultReadOnly;
+    }
+  }
+
+  /**
+   * Default serial UID.
+   */
+  private static final long serialVersionUID = 1L;
+
+  /**
+   * If true, the session of a read-only transaction loads entities as read-only.
+   */
+  private final boolean defaultReadOnly;
+
+  /**
+   * Creates a new {@link ReadOnlyJpaDialect}.
+   *
+   * @param defaultReadOnly If true, the session of a read-only transaction loads entities as
+   *        read-only.
+   */
+  public ReadOnlyJpaDialect(final boolean defaultReadOnly) {
+    this.defaultReadOnly = defaultReadOnly;
+  }
+
+  @Override
+  public Object beginTransaction(final EntityManager entityManager,
+      final TransactionDefinition definition) throws PersistenceException, SQLException,
+      TransactionException {
+    boolean readOnly = definition.isReadOnly();
+    // The connection is acquired on begin: flag the thread before.
+    boolean previousReadOnly = ReadWriteDataSource.setReadOnly(readOnly);
+    Object transactionData;
+    try {
+      transactionData = super.beginTransaction(entityManager, definition);
+    } catch (RuntimeException ex) {
+      ReadWriteDataSource.setReadOnly(previousReadOnly);
+      throw ex;
+    } catch (SQLException ex) {
+      ReadWriteDataSource.setReadOnly(previousReadOnly);
+      throw ex;
+    }
+    if (!readOnly) {
+      return new ReadOnlyTransactionData(transactionData, previousReadOnly, null, null, false);
+    }
+    Session session = ((HibernateEntityManager) entityManager).getSession();
+    ReadOnlyTransactionData data = new ReadOnlyTransactionData(transactionData,
+        previousReadOnly, session, session.getFlushMode(), session.isDefaultReadOnly());
+    session.setFlushMode(FlushMode.MANUAL);
+    if (defaultReadOnly) {
+      session.setDefaultReadOnly(true);
+    }
+    return data;
+  }
+
+  @Override
+  public void cleanupTransaction(final Object transactionData) {
+    ReadOnlyTransactionData data = (ReadOnlyTransactionData) transactionData;
+    try {
+      if (data.session != null && data.session.isOpen()) {
+        data.session.setFlushMode(data.previousFlushMode);
+        data.session.setDefaultReadOnly(data.previousDefaultReadOnly);
+      }
+      super.cleanupTransaction(data.transactionData);
+    } finally {
+      ReadWriteDataSource.setReadOnly(data.previousReadOnly);
+    }
+  }
+}
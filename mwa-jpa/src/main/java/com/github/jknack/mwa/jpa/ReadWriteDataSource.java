@@ -0,0 +1,227 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.apache.commons.lang3.Validate.notEmpty;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.sql.DataSource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.util.ReflectionUtils;
+
+/**
+ * Route read-only transactions to replicas and everything else to the primary database. Replicas
+ * are picked in round-robin. A replica that fails to give a connection is ejected for a while;
+ * if there isn't a healthy replica, the primary database is used.
+ * <p>
+ * Read-only transactions are flagged by {@link ReadOnlyJpaDialect}, so
+ * <code>@Transactional(readOnly = true)</code> methods go to replicas without further changes.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class ReadWriteDataSource extends AbstractDataSource {
+
+  /**
+   * True, if the current thread runs a read-only transaction.
+   */
+  private static final ThreadLocal<Boolean> READ_ONLY = new ThreadLocal<Boolean>();
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(ReadWriteDataSource.class);
+
+  /**
+   * The primary database.
+   */
+  private final DataSource primary;
+
+  /**
+   * The replicas.
+   */
+  private final DataSource[] replicas;
+
+  /**
+   * Time in millis until a replica is ejected, by replica.
+   */
+  private final AtomicLongArray ejectedUntil;
+
+  /**
+   * Next replica.
+   */
+  private final AtomicInteger next = new AtomicInteger();
+
+  /**
+   * Time in millis a failing replica is ejected.
+   */
+  private final long ejectTime;
+
+  /**
+   * Creates a new {@link ReadWriteDataSource}.
+   *
+   * @param primary The primary database. Required.
+   * @param replicas The replicas. Required.
+   * @param ejectTime Time in millis a failing replica is ejected.
+   */
+  public ReadWriteDataSource(final DataSource primary, final DataSource[] replicas,
+      final long ejectTime) {
+    this.primary = notNull(primary, "The primary database is required.");
+    this.replicas = notEmpty(replicas, "The replicas are required.");
+    this.ejectedUntil = new AtomicLongArray(replicas.length);
+    this.ejectTime = ejectTime;
+  }
+
+  /**
+   * Flag the current thread as read-only (or not).
+   *
+   * @param readOnly True for read-only transactions.
+   * @return The previous value.
+   */
+  static boolean setReadOnly(final boolean readOnly) {
+    boolean previous = isReadOnly();
+    if (readOnly) {
+      READ_ONLY.set(Boolean.TRUE);
+    } else {
+      READ_ONLY.remove();
+    }
+    return previous;
+  }
+
+  /**
+   * True, if the current thread runs a read-only transaction.
+   *
+   * @return True, if the current thread runs a read-only transaction.
+   */
+  static boolean isReadOnly() {
+    return READ_ONLY.get() != null;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    return getConnection(null, null);
+  }
+
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    if (isReadOnly()) {
+      Connection connection = replicaConnection(username, password);
+      if (connection != null) {
+        return connection;
+      }
+    }
+    return connection(primary, username, password);
+  }
+
+  /**
+   * Get a connection from the next healthy replica.
+   *
+   * @param username The user's name or <code>null</code>.
+   * @param password The user's password or <code>null</code>.
+   * @return A connection or <code>null</code> if there isn't a healthy replica.
+   */
+  private Connection replicaConnection(final String username, final String password) {
+    for (int i = 0; i < replicas.length; i++) {
+      int replica = (next.getAndIncrement() & Integer.MAX_VALUE) % replicas.length;
+      long now = System.currentTimeMillis();
+      if (ejectedUntil.get(replica) <= now) {
+        try {
+          return connection(replicas[replica], username, password);
+        } catch (SQLException ex) {
+          ejectedUntil.set(replica, now + ejectTime);
+          logger.warn("Replica " + replica + " ejected for: " + ejectTime + "ms", ex);
+        }
+      }
+    }
+    logger.debug("No healthy replica, using the primary database");
+    return null;
+  }
+
+  /**
+   * Get a connection from a data source.
+   *
+   * @param dataSource The data source.
+   * @param username The user's name or <code>null</code>.
+   * @param password The user's password or <code>null</code>.
+   * @return A connection.
+   * @throws SQLException If the connection can't be acquired.
+   */
+  private static Connection connection(final DataSource dataSource, final String username,
+      final String password) throws SQLException {
+    return username == null ? dataSource.getConnection()
+        : dataSource.getConnection(username, password);
+  }
+
+  /**
+   * The primary database.
+   *
+   * @return The primary database.
+   */
+  public DataSource getPrimary() {
+    return primary;
+  }
+
+  /**
+   * The replicas.
+   *
+   * @return The replicas.
+   */
+  public DataSource[] getReplicas() {
+    return replicas.clone();
+  }
+
+  /**
+   * Number of replicas that aren't ejected.
+   *
+   * @return Number of replicas that aren't ejected.
+   */
+  public int getHealthyReplicas() {
+    long now = System.currentTimeMillis();
+    int healthy = 0;
+    for (int i = 0; i < replicas.length; i++) {
+      if (ejectedUntil.get(i) <= now) {
+        healthy++;
+      }
+    }
+    return healthy;
+  }
+
+  /**
+   * Close the primary database and replicas (if they have a <code>close</code> method).
+   */
+  public void close() {
+    close(primary);
+    for (DataSource replica : replicas) {
+      close(replica);
+    }
+  }
+
+  /**
+   * Close a data source, if it has a <code>close</code> method.
+   *
+   * @param dataSource The data source.
+   */
+  private static void close(final DataSource dataSource) {
+    Method close = ReflectionUtils.findMethod(dataSource.getClass(), "close");
+    if (close != null) {
+      ReflectionUtils.invokeMethod(close, dataSource);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "ReadWriteDataSource {replicas: " + replicas.length + ", healthy: "
+        + getHealthyReplicas() + ", ejectTime: " + TimeUnit.MILLISECONDS.toSeconds(ejectTime)
+        + "s}";
+  }
+}
@@ -0,0 +1,71 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.Test;
+
+public class CacheRegionStatisticsTest {
+
+  @Test
+  public void hitRatio() throws Exception {
+    SecondLevelCacheStatistics region = createMock(SecondLevelCacheStatistics.class);
+    expect(region.getHitCount()).andReturn(3L).times(2);
+    expect(region.getMissCount()).andReturn(1L);
+
+    Statistics statistics = createMock(Statistics.class);
+    expect(statistics.getSecondLevelCacheStatistics("Country")).andReturn(region);
+
+    replay(statistics, region);
+
+    assertEquals(0.75, new CacheRegionStatistics(statistics, "app", "Country").getHitRatio(), 0);
+
+    verify(statistics, region);
+  }
+
+  @Test
+  public void missingRegion() throws Exception {
+    Statistics statistics = createMock(Statistics.class);
+    expect(statistics.getSecondLevelCacheStatistics("Missing")).andReturn(null).times(2);
+
+    replay(statistics);
+
+    CacheRegionStatistics stats = new CacheRegionStatistics(statistics, "app", "Missing");
+    assertEquals(0, stats.getHits());
+    assertEquals(0, stats.getHitRatio(), 0);
+
+    verify(statistics);
+  }
+
+  @Test
+  public void jmx() throws Exception {
+    SecondLevelCacheStatistics region = createMock(SecondLevelCacheStatistics.class);
+    expect(region.getMissCount()).andReturn(7L);
+
+    Statistics statistics = createMock(Statistics.class);
+    expect(statistics.getSecondLevelCacheRegionNames()).andReturn(new String[]{"Todo" });
+    expect(statistics.getSecondLevelCacheStatistics("Todo")).andReturn(region);
+
+    replay(statistics, region);
+
+    List<CacheRegionStatistics> regions = CacheRegionStatistics.register(statistics, "app");
+    ObjectName name = new ObjectName(
+        "com.github.jknack.mwa:type=CacheRegion,application=\"app\",name=\"Todo\"");
+    assertEquals(7L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Misses"));
+
+    regions.get(0).close();
+    assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+    verify(statistics, region);
+  }
+}
@@ -33,13 +33,14 @@ import com.jolbox.bonecp.BoneCPDataSource;
  * @since 0.1
  */
 @RunWith(PowerMockRunner.class)
-@PrepareForTest({DataSources.class, EmbeddedDatabaseBuilder.class })
+@PrepareForTest({DataSources.class, BoneCPPoolProvider.class, EmbeddedDatabaseBuilder.class })
 public class DataSourcesTest {
 
   @Test
   public void mem() throws Exception {
     Environment env = createMock(Environment.class);
     expect(env.getRequiredProperty("db")).andReturn("mem");
+    expect(env.getProperty(DataSources.DB_PROFILER, Boolean.class, false)).andReturn(false);
 
     EmbeddedDatabase datasource = createMock(EmbeddedDatabase.class);
 
@@ -65,6 +66,7 @@ public class DataSourcesTest {
     Environment env = createMock(Environment.class);
     expect(env.getRequiredProperty("db")).andReturn("fs");
     expect(env.getProperty("application.name", "testdb")).andReturn("fsdb");
+    expect(env.getProperty(DataSources.DB_PROFILER, Boolean.class, false)).andReturn(false);
 
     SimpleDriverDataSource dataSource =
         PowerMock.createMockAndExpectNew(SimpleDriverDataSource.class);
@@ -100,6 +102,9 @@ public class DataSourcesTest {
 
     Environment env = createMock(Environment.class);
     expect(env.getRequiredProperty("db")).andReturn(database);
+    expect(env.getProperty("application.name", "db")).andReturn("db");
+    expect(env.getProperty(DataSources.DB_POOL, "bonecp")).andReturn("bonecp");
+    expect(env.getProperty(DataSources.DB_INSTRUMENT, Boolean.class, true)).andReturn(false);
     expect(env.getProperty(DataSources.DB_DRIVER, "com.mysql.jdbc.Driver"))
         .andReturn(dbDriver);
     expect(env.getRequiredProperty(DataSources.DB_USER))
@@ -132,6 +137,8 @@ public class DataSourcesTest {
         env.getProperty(DataSources.DB_STATEMENTS_CACHE_SIZE,
             Integer.class, 20))
         .andReturn(20);
+    expect(env.getProperty(DataSources.DB_REPLICAS, String[].class)).andReturn(null);
+    expect(env.getProperty(DataSources.DB_PROFILER, Boolean.class, false)).andReturn(false);
 
     BoneCPDataSource dataSource =
         PowerMock.createMockAndExpectNew(BoneCPDataSource.class);
@@ -167,4 +174,86 @@ public class DataSourcesTest {
     verify(env, dataSource);
     PowerMock.verify(BoneCPDataSource.class);
   }
+
+  public static class TestPoolProvider implements PoolProvider {
+    static DataSource dataSource;
+
+    @Override
+    public DataSource newDataSource(final Environment env, final String database) {
+      return dataSource;
+    }
+
+    @Override
+    public int getIdle(final DataSource dataSource) {
+      return -1;
+    }
+  }
+
+  @Test
+  public void poolProvider() throws Exception {
+    DataSource dataSource = createMock(DataSource.class);
+    TestPoolProvider.dataSource = dataSource;
+
+    Environment env = createMock(Environment.class);
+    expect(env.getRequiredProperty("db")).andReturn("jdbc:real:db");
+    expect(env.getProperty("application.name", "db")).andReturn("poolProvider");
+    expect(env.getProperty(DataSources.DB_POOL, "bonecp")).andReturn(
+        TestPoolProvider.class.getName());
+    expect(env.getProperty(DataSources.DB_PREFILL, Boolean.class, false)).andReturn(false);
+    expect(env.getProperty(DataSources.DB_INSTRUMENT, Boolean.class, true)).andReturn(true);
+    expect(env.getProperty(DataSources.DB_LEAK_THRESHOLD, Long.class, 0L)).andReturn(0L);
+    expect(env.getProperty(DataSources.DB_REPLICAS, String[].class)).andReturn(null);
+    expect(env.getProperty(DataSources.DB_PROFILER, Boolean.class, false)).andReturn(false);
+
+    replay(env, dataSource);
+
+    InstrumentedDataSource result = (InstrumentedDataSource) DataSources.build(env);
+    assertEquals(dataSource, result.getTargetDataSource());
+    assertEquals("poolProvider", result.getName());
+    result.close();
+
+    verify(env, dataSource);
+  }
+
+  @Test
+  public void replicas() throws Exception {
+    DataSource dataSource = createMock(DataSource.class);
+    TestPoolProvider.dataSource = dataSource;
+
+    Environment env = createMock(Environment.class);
+    expect(env.getRequiredProperty("db")).andReturn("jdbc:real:db");
+    expect(env.getProperty("application.name", "db")).andReturn("replicas");
+    expect(env.getProperty(DataSources.DB_POOL, "bonecp")).andReturn(
+        TestPoolProvider.class.getName()).times(3);
+    expect(env.getProperty(DataSources.DB_PREFILL, Boolean.class, false)).andReturn(false)
+        .times(3);
+    expect(env.getProperty(DataSources.DB_INSTRUMENT, Boolean.class, true)).andReturn(false)
+        .times(3);
+    expect(env.getProperty(DataSources.DB_REPLICAS, String[].class)).andReturn(
+        new String[]{"jdbc:replica:1", "jdbc:replica:2" });
+    expect(env.getProperty(DataSources.DB_REPLICAS_EJECT_TIME, Long.class, 30000L))
+        .andReturn(1000L);
+    expect(env.getProperty(DataSources.DB_PROFILER, Boolean.class, false)).andReturn(false);
+
+    replay(env, dataSource);
+
+    ReadWriteDataSource result = (ReadWriteDataSource) DataSources.build(env);
+    assertEquals(dataSource, result.getPrimary());
+    assertEquals(2, result.getReplicas().length);
+    assertEquals(2, result.getHealthyReplicas());
+
+    verify(env, dataSource);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void poolProviderNotFound() throws Exception {
+    Environment env = createMock(Environment.class);
+    expect(env.getRequiredProperty("db")).andReturn("jdbc:real:db");
+    expect(env.getProperty("application.name", "db")).andReturn("db");
+    expect(env.getProperty(DataSources.DB_POOL, "bonecp")).andReturn("com.missing.Pool");
+
+    replay(env);
+
+    DataSources.build(env);
+  }
 }
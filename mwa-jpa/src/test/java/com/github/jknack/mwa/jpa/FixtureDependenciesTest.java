@@ -0,0 +1,111 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import com.github.jknack.mwa.ApplicationContextConfigurer;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = FixtureDependenciesTest.class, classes = JpaModule.class)
+public class FixtureDependenciesTest extends AnnotationConfigContextLoader {
+
+  @Override
+  protected void customizeContext(final GenericApplicationContext context) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    // use mem db and publish a namespace
+    Map<String, Object> testProperties = new HashMap<String, Object>();
+    testProperties.put("db", "mem");
+    testProperties.put("application.ns", getClass().getPackage().getName());
+
+    context.registerBeanDefinition("conversionService", new RootBeanDefinition(
+        DefaultConversionService.class));
+
+    propertySources.addFirst(new MapPropertySource("fixtureDependenciesTest", testProperties));
+
+    ApplicationContextConfigurer.configure(context, propertySources);
+  }
+
+  @Inject
+  private EntityManagerFactory emf;
+
+  private FixtureDependencies dependencies;
+
+  @Before
+  public void dependencies() {
+    SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor)
+        ((HibernateEntityManagerFactory) emf).getSessionFactory();
+    dependencies = new FixtureDependencies(sessionFactory, sessionFactory.getAllClassMetadata());
+  }
+
+  @Test
+  public void relatedFilesKeepTheirOrder() throws IOException {
+    Resource sprints = yml("sprints.yml", "- !!Sprint\n  name: a\n");
+    Resource notes = yml("notes.yml", "- Note(hello)\n");
+    // Todo has a many-to-one with Sprint
+    Resource todos = yml("todos.yml", "- Todo(1):\n    title: x\n");
+    Resource empty = yml("empty.yml", "# nothing here\n");
+
+    List<List<Resource>> groups =
+        dependencies.groups(Arrays.asList(sprints, notes, todos, empty));
+
+    assertEquals(3, groups.size());
+    assertEquals(Arrays.asList(sprints, todos), groups.get(0));
+    assertEquals(Arrays.asList(notes), groups.get(1));
+    assertEquals(Arrays.asList(empty), groups.get(2));
+  }
+
+  @Test
+  public void transitive() throws IOException {
+    Resource sprints = yml("sprints.yml", "- !!Sprint\n  name: a\n");
+    Resource notes = yml("notes.yml", "- Note(hello)\n");
+    // joins the two groups above
+    Resource mixed = yml("mixed.yml", "- Todo(1):\n    title: x\n- Note(bye)\n");
+
+    List<List<Resource>> groups = dependencies.groups(Arrays.asList(sprints, notes, mixed));
+
+    assertEquals(1, groups.size());
+    assertEquals(Arrays.asList(sprints, notes, mixed), groups.get(0));
+  }
+
+  @Test
+  public void unrelated() throws IOException {
+    Resource sprints = yml("sprints.yml", "- !!Sprint\n  name: a\n");
+    Resource notes = yml("notes.yml", "- Note(hello)\n");
+
+    List<List<Resource>> groups = dependencies.groups(Arrays.asList(notes, sprints));
+
+    assertEquals(2, groups.size());
+    assertEquals(Arrays.asList(notes), groups.get(0));
+    assertEquals(Arrays.asList(sprints), groups.get(1));
+  }
+
+  private static Resource yml(final String name, final String content)
+      throws UnsupportedEncodingException {
+    return new ByteArrayResource(content.getBytes("UTF-8"), name);
+  }
+}
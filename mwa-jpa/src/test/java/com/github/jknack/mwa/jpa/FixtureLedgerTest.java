@@ -0,0 +1,137 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import com.github.jknack.mwa.ApplicationContextConfigurer;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = FixtureLedgerTest.class, classes = JpaModule.class)
+public class FixtureLedgerTest extends AnnotationConfigContextLoader {
+
+  @Override
+  protected void customizeContext(final GenericApplicationContext context) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    // use mem db and publish a namespace
+    Map<String, Object> testProperties = new HashMap<String, Object>();
+    testProperties.put("db", "mem");
+    testProperties.put("application.ns", getClass().getPackage().getName());
+
+    context.registerBeanDefinition("conversionService", new RootBeanDefinition(
+        DefaultConversionService.class));
+
+    propertySources.addFirst(new MapPropertySource("fixtureLedgerTest", testProperties));
+
+    ApplicationContextConfigurer.configure(context, propertySources);
+  }
+
+  @Inject
+  private EntityManagerFactory emf;
+
+  @Before
+  public void reset() {
+    new FixtureLedger(emf, true);
+  }
+
+  @Test
+  public void record() {
+    FixtureLedger ledger = new FixtureLedger(emf, false);
+    assertTrue(ledger.changed("todos.yml", "1"));
+    ledger.record("todos.yml", "1");
+    assertFalse(ledger.changed("todos.yml", "1"));
+
+    // survives a restart
+    ledger = new FixtureLedger(emf, false);
+    assertFalse(ledger.changed("todos.yml", "1"));
+    assertTrue(ledger.changed("todos.yml", "2"));
+    ledger.record("todos.yml", "2");
+    assertFalse(new FixtureLedger(emf, false).changed("todos.yml", "2"));
+
+    // discarded
+    assertTrue(new FixtureLedger(emf, true).changed("todos.yml", "2"));
+  }
+
+  @Test
+  public void tableCreatedByAnotherNode() {
+    new FixtureLedger(emf, false).record("todos.yml", "1");
+
+    // The table isn't there on the first read, but it is when we try to create it.
+    FixtureLedger ledger = new FixtureLedger(missingTableOnce(emf), false);
+    assertFalse(ledger.changed("todos.yml", "1"));
+  }
+
+  @Test
+  public void recordedByAnotherNode() {
+    FixtureLedger node1 = new FixtureLedger(emf, false);
+    FixtureLedger node2 = new FixtureLedger(emf, false);
+
+    node1.record("todos.yml", "1");
+    // duplicated key: falls back to an update
+    node2.record("todos.yml", "2");
+
+    assertFalse(new FixtureLedger(emf, false).changed("todos.yml", "2"));
+  }
+
+  private static EntityManagerFactory missingTableOnce(final EntityManagerFactory emf) {
+    final AtomicBoolean missing = new AtomicBoolean(true);
+    return proxy(EntityManagerFactory.class, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args)
+          throws Throwable {
+        final Object result = FixtureLedgerTest.invoke(emf, method, args);
+        if (method.getName().equals("createEntityManager") && missing.getAndSet(false)) {
+          return proxy(EntityManager.class, new InvocationHandler() {
+            @Override
+            public Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+              if (method.getName().equals("createNativeQuery")) {
+                throw new PersistenceException("Table not found: " + FixtureLedger.TABLE);
+              }
+              return FixtureLedgerTest.invoke(result, method, args);
+            }
+          });
+        }
+        return result;
+      }
+    });
+  }
+
+  private static Object invoke(final Object target, final Method method, final Object[] args)
+      throws Throwable {
+    try {
+      return method.invoke(target, args);
+    } catch (InvocationTargetException ex) {
+      throw ex.getCause();
+    }
+  }
+
+  private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(FixtureLedgerTest.class.getClassLoader(),
+        new Class<?>[]{type }, handler));
+  }
+}
@@ -0,0 +1,131 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.junit.Test;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+
+import com.google.common.base.Ticker;
+
+public class InstrumentedDataSourceTest {
+
+  @Test
+  public void borrowAndRelease() throws Exception {
+    Connection connection = createMock(Connection.class);
+    connection.close();
+    expectLastCall().times(2);
+
+    DataSource target = createMock(DataSource.class);
+    expect(target.getConnection()).andReturn(connection).times(2);
+
+    PoolProvider provider = createMock(PoolProvider.class);
+    expect(provider.getIdle(target)).andReturn(8);
+
+    replay(target, connection, provider);
+
+    InstrumentedDataSource dataSource =
+        new InstrumentedDataSource(target, "borrow", 0, provider);
+    Connection c1 = dataSource.getConnection();
+    dataSource.getConnection();
+    assertSame(connection, ((ConnectionProxy) c1).getTargetConnection());
+    assertEquals(2, dataSource.getActive());
+    assertEquals(2, dataSource.getPeakActive());
+
+    c1.close();
+    // released once
+    c1.close();
+    assertEquals(1, dataSource.getActive());
+    assertEquals(8, dataSource.getIdle());
+    assertEquals(2, dataSource.getBorrowed());
+    assertEquals(2, dataSource.getWaitTime().getCount());
+    assertEquals(1, dataSource.getUsageTime().getCount());
+    assertEquals(0, dataSource.getPending());
+    assertEquals(0, dataSource.getFailures());
+
+    dataSource.close();
+
+    verify(target, connection, provider);
+  }
+
+  @Test
+  public void idleIsUnknownWithoutProvider() throws Exception {
+    DataSource target = createMock(DataSource.class);
+
+    replay(target);
+
+    InstrumentedDataSource dataSource = new InstrumentedDataSource(target, "unknown", 0, null);
+    assertEquals(-1, dataSource.getIdle());
+    dataSource.close();
+
+    verify(target);
+  }
+
+  @Test
+  public void leak() throws Exception {
+    Connection connection = createMock(Connection.class);
+    DataSource target = createMock(DataSource.class);
+    expect(target.getConnection()).andReturn(connection);
+
+    replay(target, connection);
+
+    final AtomicLong now = new AtomicLong();
+    Ticker ticker = new Ticker() {
+      @Override
+      public long read() {
+        return now.get();
+      }
+    };
+    // the leak detector doesn't run during the test
+    InstrumentedDataSource dataSource =
+        new InstrumentedDataSource(target, "leak", 60000, null, ticker);
+    dataSource.getConnection();
+
+    now.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    dataSource.detectLeaks();
+    assertEquals(0, dataSource.getLeaks());
+
+    now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+    dataSource.detectLeaks();
+    assertEquals(1, dataSource.getLeaks());
+
+    // reported once
+    dataSource.detectLeaks();
+    assertEquals(1, dataSource.getLeaks());
+
+    dataSource.close();
+
+    verify(target, connection);
+  }
+
+  @Test
+  public void jmx() throws Exception {
+    DataSource target = createMock(DataSource.class);
+
+    replay(target);
+
+    InstrumentedDataSource dataSource =
+        new InstrumentedDataSource(target, "jmx", 0, null).register();
+    ObjectName name = new ObjectName("com.github.jknack.mwa:type=DataSource,name=\"jmx\"");
+    assertEquals(0L,
+        ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Borrowed"));
+
+    dataSource.close();
+    assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+    verify(target);
+  }
+}
@@ -0,0 +1,269 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.SessionFactory;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.metadata.ClassMetadata;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.convert.ConversionService;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import com.github.jknack.mwa.ApplicationContextConfigurer;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = JpaFixturesTest.class, classes = JpaModule.class)
+public class JpaFixturesTest extends AnnotationConfigContextLoader {
+
+  // The first conversion of each thread waits for the other thread.
+  static class ConcurrentConversionService extends DefaultConversionService {
+    final Set<String> threads = Collections.synchronizedSet(new HashSet<String>());
+
+    final CountDownLatch latch = new CountDownLatch(2);
+
+    volatile boolean concurrent = true;
+
+    @Override
+    public <T> T convert(final Object source, final Class<T> targetType) {
+      if (threads.add(Thread.currentThread().getName())) {
+        latch.countDown();
+        try {
+          concurrent &= latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+      return super.convert(source, targetType);
+    }
+  }
+
+  // Count the constructor lookups.
+  static class CountingConversionService extends DefaultConversionService {
+    int lookups;
+
+    @Override
+    public boolean canConvert(final Class<?> sourceType, final Class<?> targetType) {
+      lookups++;
+      return super.canConvert(sourceType, targetType);
+    }
+  }
+
+  static class Clash {
+    // Same simple name as the Note entity.
+    static class Note {
+      public Note(final String text) {
+      }
+    }
+  }
+
+  @Override
+  protected void customizeContext(final GenericApplicationContext context) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    // use mem db and publish a namespace
+    Map<String, Object> testProperties = new HashMap<String, Object>();
+    testProperties.put("db", "mem");
+    testProperties.put("application.ns", getClass().getPackage().getName());
+
+    context.registerBeanDefinition("conversionService", new RootBeanDefinition(
+        DefaultConversionService.class));
+
+    propertySources.addFirst(new MapPropertySource("jpaFixturesTest", testProperties));
+
+    ApplicationContextConfigurer.configure(context, propertySources);
+  }
+
+  @Inject
+  private ApplicationContext context;
+
+  @Inject
+  private EntityManagerFactory emf;
+
+  private Map<String, ClassMetadata> metadata;
+
+  private Statistics statistics;
+
+  @Before
+  public void statistics() {
+    SessionFactory sessionFactory = ((HibernateEntityManagerFactory) emf).getSessionFactory();
+    metadata = sessionFactory.getAllClassMetadata();
+    statistics = sessionFactory.getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+  }
+
+  @After
+  public void cleanup() {
+    EntityManager em = emf.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.createQuery("delete from Note").executeUpdate();
+      em.createQuery("delete from Sprint where name like 'batch-%'").executeUpdate();
+      em.createQuery("delete from Todo where title = 'concurrent'").executeUpdate();
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+  }
+
+  @Test
+  public void batches() {
+    JpaFixtures.load(context, conversionService(), emf, "batch", metadata, env());
+
+    assertEquals(5, statistics.getEntityInsertCount());
+    // 3 batches: 2 + 2 + 1
+    assertEquals(3, statistics.getSuccessfulTransactionCount());
+    // one IN query per batch
+    assertEquals(3, statistics.getQueryExecutionCount());
+  }
+
+  @Test
+  public void existing() {
+    JpaFixtures.load(context, conversionService(), emf, "batch", metadata, env());
+    statistics.clear();
+
+    JpaFixtures.load(context, conversionService(), emf, "batch", metadata, env());
+
+    assertEquals(0, statistics.getEntityInsertCount());
+    assertEquals(3, statistics.getQueryExecutionCount());
+    assertEquals(5L, count("select count(*) from Sprint where name like 'batch-%'"));
+  }
+
+  @Test
+  public void fallback() {
+    Note first = new Note("first");
+    Note second = new Note("second");
+    // too long for the column: the batch and then the single insert fail
+    Sprint broken = new Sprint();
+    broken.setName(StringUtils.repeat("x", 300));
+    try {
+      JpaFixtures.persistBatch(emf, metadata, Arrays.<Object> asList(first, second, broken));
+      fail("The sprint is broken");
+    } catch (PersistenceException ex) {
+      // expected
+    }
+
+    // entities of the failed batch are persisted again from their original state
+    assertEquals(2L, count("select count(*) from Note"));
+    EntityManager em = emf.createEntityManager();
+    try {
+      assertEquals("first", em.find(Note.class, first.getId()).getText());
+      assertEquals("second", em.find(Note.class, second.getId()).getText());
+      assertEquals(Integer.valueOf(0), first.getVersion());
+    } finally {
+      em.close();
+    }
+  }
+
+  @Test
+  public void concurrentGroups() {
+    ConcurrentConversionService converter = new ConcurrentConversionService();
+    StandardEnvironment env = env();
+    env.getPropertySources().addFirst(new MapPropertySource("threads",
+        Collections.<String, Object> singletonMap(JpaModule.DB_FIXTURES_THREADS, "2")));
+
+    JpaFixtures.load(context, conversionService(converter), emf, "concurrent", metadata, env);
+
+    // notes.yml and todos.yml are unrelated, each of them is loaded by its own thread
+    assertEquals(2, converter.threads.size());
+    assertTrue(converter.concurrent);
+    assertEquals(1L, count("select count(*) from Note where text = 'concurrent'"));
+    assertEquals(1L, count("select count(*) from Todo where title = 'concurrent'"));
+  }
+
+  @Test
+  public void documents() {
+    CountingConversionService converter = new CountingConversionService();
+
+    JpaFixtures.load(context, conversionService(converter), emf, "documents", metadata, env());
+
+    // two documents, the empty one is skipped
+    assertEquals(3L, count("select count(*) from Note where text like 'document-%'"));
+    // Note(String) is looked up once
+    assertEquals(1, converter.lookups);
+  }
+
+  @Test
+  public void simpleNameClash() throws Exception {
+    ClassMetadata clash = createMock(ClassMetadata.class);
+    expect(clash.getMappedClass()).andReturn(Clash.Note.class).anyTimes();
+    replay(clash);
+    Map<String, ClassMetadata> classes = new LinkedHashMap<String, ClassMetadata>(metadata);
+    classes.put(Clash.Note.class.getName(), clash);
+
+    int count = 0;
+    for (Object entity : JpaFixtures.load(context, classes, "documents")) {
+      // the first class wins, for compact notation and tags
+      assertEquals(Note.class, entity.getClass());
+      count++;
+    }
+    assertEquals(3, count);
+  }
+
+  private long count(final String query) {
+    EntityManager em = emf.createEntityManager();
+    try {
+      return (Long) em.createQuery(query).getSingleResult();
+    } finally {
+      em.close();
+    }
+  }
+
+  private static StandardEnvironment env() {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    properties.put(JpaModule.DB_FIXTURES_BATCH_SIZE, "2");
+    properties.put(JpaModule.DB_FIXTURES_LEDGER, "false");
+    properties.put(JpaModule.DB_FIXTURES_THREADS, "1");
+    StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("fixtures", properties));
+    return env;
+  }
+
+  private static ObjectFactory<ConversionService> conversionService() {
+    return conversionService(new DefaultConversionService());
+  }
+
+  private static ObjectFactory<ConversionService> conversionService(
+      final ConversionService conversionService) {
+    return new ObjectFactory<ConversionService>() {
+      @Override
+      public ConversionService getObject() {
+        return conversionService;
+      }
+    };
+  }
+}
@@ -27,6 +27,8 @@ import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.util.ReflectionUtils;
 import org.springframework.util.ReflectionUtils.FieldCallback;
 
+import com.github.jknack.mwa.ApplicationConstants;
+
 /**
  * Unit test for {@link JpaModule}.
  *
@@ -71,6 +73,11 @@ public class JpaModuleTest {
     expect(env.getRequiredProperty("application.ns", String[].class)).andReturn(
         new String[]{JpaModuleTest.class.getPackage().getName() });
     expect(env.getProperty(JpaModule.DB_SCHEMA, "update")).andReturn(mode);
+    expect(env.getProperty(JpaModule.DB_BATCH_SIZE)).andReturn(null);
+    expect(env.getProperty(JpaModule.DB_ORDER_INSERTS)).andReturn(null);
+    expect(env.getProperty(JpaModule.DB_CACHE, Boolean.class, false)).andReturn(true);
+    expect(env.getProperty(JpaModule.DB_CACHE_QUERIES, Boolean.class, false)).andReturn(true);
+    expect(env.getProperty(JpaModule.DB_STATISTICS, Boolean.class, false)).andReturn(true);
 
     ReflectionUtils.doWithFields(AvailableSettings.class, new FieldCallback() {
       @Override
@@ -81,8 +88,14 @@ public class JpaModuleTest {
       }
     });
 
+    expect(env.getProperty(DataSources.DB_REPLICAS, String[].class)).andReturn(null);
+    expect(env.getProperty(JpaModule.DB_READ_ONLY_SESSION, Boolean.class, false))
+        .andReturn(false);
+    expect(env.getProperty(ApplicationConstants.APP_INDEX, Boolean.class, true)).andReturn(false);
+
     ApplicationContext context = createMock(ApplicationContext.class);
     expect(context.getEnvironment()).andReturn(env);
+    expect(context.getClassLoader()).andReturn(getClass().getClassLoader());
 
     PowerMock.mockStatic(DataSources.class);
     expect(DataSources.build(env)).andReturn(dataSource);
@@ -95,6 +108,12 @@ public class JpaModuleTest {
 
     assertEquals(H2Dialect.class.getName(),
         factory.getJpaPropertyMap().get("hibernate.dialect"));
+    assertEquals(null, factory.getJpaPropertyMap().get(AvailableSettings.STATEMENT_BATCH_SIZE));
+    assertEquals(null, factory.getJpaPropertyMap().get(AvailableSettings.ORDER_INSERTS));
+    assertEquals(BoundedRegionFactory.class.getName(),
+        factory.getJpaPropertyMap().get(AvailableSettings.CACHE_REGION_FACTORY));
+    assertEquals("true", factory.getJpaPropertyMap().get(AvailableSettings.USE_QUERY_CACHE));
+    assertEquals("true", factory.getJpaPropertyMap().get(AvailableSettings.GENERATE_STATISTICS));
 
     verify(context, env);
     PowerMock.verify(DataSources.class);
@@ -111,6 +130,10 @@ public class JpaModuleTest {
     expect(env.getRequiredProperty("application.ns", String[].class)).andReturn(
         new String[]{JpaModuleTest.class.getPackage().getName() });
     expect(env.getProperty(JpaModule.DB_SCHEMA, "update")).andReturn(mode);
+    expect(env.getProperty(JpaModule.DB_BATCH_SIZE)).andReturn("50");
+    expect(env.getProperty(JpaModule.DB_ORDER_INSERTS)).andReturn("true");
+    expect(env.getProperty(JpaModule.DB_CACHE, Boolean.class, false)).andReturn(false);
+    expect(env.getProperty(JpaModule.DB_STATISTICS, Boolean.class, false)).andReturn(false);
 
     ReflectionUtils.doWithFields(AvailableSettings.class, new FieldCallback() {
       @Override
@@ -121,8 +144,14 @@ public class JpaModuleTest {
       }
     });
 
+    expect(env.getProperty(DataSources.DB_REPLICAS, String[].class)).andReturn(null);
+    expect(env.getProperty(JpaModule.DB_READ_ONLY_SESSION, Boolean.class, false))
+        .andReturn(false);
+    expect(env.getProperty(ApplicationConstants.APP_INDEX, Boolean.class, true)).andReturn(false);
+
     ApplicationContext context = createMock(ApplicationContext.class);
     expect(context.getEnvironment()).andReturn(env);
+    expect(context.getClassLoader()).andReturn(getClass().getClassLoader());
 
     PowerMock.mockStatic(DataSources.class);
     expect(DataSources.build(env)).andReturn(dataSource);
@@ -135,6 +164,11 @@ public class JpaModuleTest {
 
     assertEquals(MySQL5InnoDBDialect.class.getName(),
         factory.getJpaPropertyMap().get("hibernate.dialect"));
+    assertEquals(null, factory.getJpaPropertyMap().get(AvailableSettings.CACHE_REGION_FACTORY));
+    assertEquals(null, factory.getJpaPropertyMap().get(AvailableSettings.USE_QUERY_CACHE));
+    assertEquals(null, factory.getJpaPropertyMap().get(AvailableSettings.GENERATE_STATISTICS));
+    assertEquals("50", factory.getJpaPropertyMap().get(AvailableSettings.STATEMENT_BATCH_SIZE));
+    assertEquals("true", factory.getJpaPropertyMap().get(AvailableSettings.ORDER_INSERTS));
 
     verify(context, env);
     PowerMock.verify(DataSources.class);
@@ -0,0 +1,138 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+
+import com.github.jknack.mwa.ApplicationContextConfigurer;
+import com.google.common.collect.Iterables;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = NPlusOneDetectorIntegrationTest.class, classes = JpaModule.class)
+public class NPlusOneDetectorIntegrationTest extends AnnotationConfigContextLoader {
+
+  // Record loads and reports.
+  static class RecordingDetector extends NPlusOneDetector {
+    final List<String> loads = Collections.synchronizedList(new ArrayList<String>());
+
+    final List<String> reported = Collections.synchronizedList(new ArrayList<String>());
+
+    public RecordingDetector() {
+      super(2);
+    }
+
+    @Override
+    boolean loaded(final Object session, final String association) {
+      loads.add(association);
+      boolean report = super.loaded(session, association);
+      if (report) {
+        reported.add(association);
+      }
+      return report;
+    }
+  }
+
+  private static final String TODOS = Sprint.class.getName() + ".todos";
+
+  private static final RecordingDetector DETECTOR = new RecordingDetector();
+
+  @Override
+  protected void customizeContext(final GenericApplicationContext context) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    // use mem db, publish a namespace and turn on the second-level cache
+    Map<String, Object> testProperties = new HashMap<String, Object>();
+    testProperties.put("db", "mem");
+    testProperties.put("application.ns", getClass().getPackage().getName());
+    testProperties.put(JpaModule.DB_CACHE, "true");
+    testProperties.put(JpaModule.DB_N_PLUS_ONE, "false");
+
+    context.registerBeanDefinition("conversionService", new RootBeanDefinition(
+        DefaultConversionService.class));
+
+    propertySources.addFirst(new MapPropertySource("nPlusOneDetectorIntegrationTest",
+        testProperties));
+
+    ApplicationContextConfigurer.configure(context, propertySources);
+  }
+
+  @Inject
+  private EntityManagerFactory emf;
+
+  @Before
+  public void register() {
+    SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor)
+        ((HibernateEntityManagerFactory) emf).getSessionFactory();
+    EventListenerRegistry registry = sessionFactory.getServiceRegistry()
+        .getService(EventListenerRegistry.class);
+    // once per context
+    if (!Iterables.contains(registry.getEventListenerGroup(EventType.LOAD).listeners(),
+        DETECTOR)) {
+      registry.prependListeners(EventType.LOAD, DETECTOR);
+      registry.prependListeners(EventType.INIT_COLLECTION, DETECTOR);
+    }
+    emf.getCache().evictAll();
+    DETECTOR.loads.clear();
+    DETECTOR.reported.clear();
+  }
+
+  @Test
+  public void lazyCollection() {
+    initializeTodos();
+
+    assertEquals(2, Collections.frequency(DETECTOR.loads, TODOS));
+    assertEquals(Collections.singletonList(TODOS), DETECTOR.reported);
+  }
+
+  @Test
+  public void cachedCollection() {
+    // fill the second-level cache
+    initializeTodos();
+    DETECTOR.loads.clear();
+    DETECTOR.reported.clear();
+
+    initializeTodos();
+
+    // collections and todos come from the second-level cache
+    assertEquals(Collections.emptyList(), DETECTOR.loads);
+    assertEquals(Collections.emptyList(), DETECTOR.reported);
+  }
+
+  private void initializeTodos() {
+    EntityManager em = emf.createEntityManager();
+    try {
+      List<Sprint> sprints = em.createQuery(
+          "from Sprint where name in ('Nov 2012', 'Dec 2012') order by name", Sprint.class)
+          .getResultList();
+      assertEquals(2, sprints.size());
+      for (Sprint sprint : sprints) {
+        assertEquals(1, sprint.getTodos().size());
+      }
+    } finally {
+      em.close();
+    }
+  }
+}
@@ -0,0 +1,40 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class NPlusOneDetectorTest {
+
+  @Test
+  public void threshold() {
+    NPlusOneDetector detector = new NPlusOneDetector(3);
+    Object session = new Object();
+    String association = "com.github.jknack.mwa.jpa.Sprint.todos";
+    assertFalse(detector.loaded(session, association));
+    assertFalse(detector.loaded(session, association));
+    assertTrue(detector.loaded(session, association));
+    // reported once
+    assertFalse(detector.loaded(session, association));
+  }
+
+  @Test
+  public void perSession() {
+    NPlusOneDetector detector = new NPlusOneDetector(2);
+    String association = "com.github.jknack.mwa.jpa.Todo (lazy)";
+    assertFalse(detector.loaded(new Object(), association));
+    assertFalse(detector.loaded(new Object(), association));
+  }
+
+  @Test
+  public void callSite() {
+    // frames of this package are skipped, the call site is the test runner
+    assertTrue(NPlusOneDetector.callSite().startsWith("org.junit."));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void badThreshold() {
+    new NPlusOneDetector(1);
+  }
+}
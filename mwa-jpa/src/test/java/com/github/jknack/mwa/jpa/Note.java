@@ -0,0 +1,39 @@
+package com.github.jknack.mwa.jpa;
+
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+@Entity
+public class Note {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  @Version
+  private Integer version;
+
+  private String text;
+
+  public Note(final String text) {
+    this.text = text;
+  }
+
+  public Note() {
+  }
+
+  public Long getId() {
+    return id;
+  }
+
+  public Integer getVersion() {
+    return version;
+  }
+
+  public String getText() {
+    return text;
+  }
+}
@@ -0,0 +1,125 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import javax.management.ObjectName;
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+import com.github.jknack.mwa.jpa.ProfilingDataSource.StatementProfile;
+
+public class ProfilingDataSourceTest {
+
+  @Test
+  public void normalize() {
+    assertEquals("select * from t where name = ? and id in (?) and x = ?",
+        ProfilingDataSource.normalize(
+            "select * from t\n where name = 'it''s' and id in (1, 2,3) and  x = 1.5"));
+    assertEquals("select t0_.id from todo t0_ where t0_.id in (?)",
+        ProfilingDataSource.normalize("select t0_.id from todo t0_ where t0_.id in (?, ?)"));
+  }
+
+  @Test
+  public void preparedStatement() throws Exception {
+    String sql = "update todo set done = ? where id = ?";
+    PreparedStatement statement = createMock(PreparedStatement.class);
+    statement.setBoolean(1, true);
+    statement.setLong(2, 7L);
+    expect(statement.executeUpdate()).andReturn(2);
+    statement.close();
+
+    Connection connection = createMock(Connection.class);
+    expect(connection.prepareStatement(sql)).andReturn(statement);
+    connection.close();
+
+    DataSource target = createMock(DataSource.class);
+    expect(target.getConnection()).andReturn(connection);
+
+    replay(target, connection, statement);
+
+    ProfilingDataSource dataSource = new ProfilingDataSource(target, "prepared", 0, true);
+    Connection c = dataSource.getConnection();
+    PreparedStatement ps = c.prepareStatement(sql);
+    ps.setBoolean(1, true);
+    ps.setLong(2, 7L);
+    assertEquals(2, ps.executeUpdate());
+    ps.close();
+    c.close();
+
+    List<StatementProfile> top = dataSource.top(10);
+    assertEquals(1, top.size());
+    assertEquals(sql, top.get(0).getSql());
+    assertEquals(1, top.get(0).getCalls());
+    assertEquals(2, top.get(0).getRows());
+    assertTrue(dataSource.getReport().contains(sql));
+
+    verify(target, connection, statement);
+  }
+
+  @Test
+  public void query() throws Exception {
+    ResultSet resultSet = createMock(ResultSet.class);
+    expect(resultSet.next()).andReturn(true).times(2);
+    expect(resultSet.next()).andReturn(false);
+
+    Statement statement = createMock(Statement.class);
+    expect(statement.executeQuery("select * from todo where id > 10")).andReturn(resultSet);
+    expect(statement.executeQuery("select * from todo where id > 20")).andReturn(resultSet);
+
+    Connection connection = createMock(Connection.class);
+    expect(connection.createStatement()).andReturn(statement);
+
+    DataSource target = createMock(DataSource.class);
+    expect(target.getConnection()).andReturn(connection);
+
+    replay(target, connection, statement, resultSet);
+
+    ProfilingDataSource dataSource = new ProfilingDataSource(target, "query", 0, false);
+    Statement s = dataSource.getConnection().createStatement();
+    ResultSet rs = s.executeQuery("select * from todo where id > 10");
+    while (rs.next()) {
+      assertEquals(s, rs.getStatement());
+    }
+    s.executeQuery("select * from todo where id > 20");
+
+    assertEquals(1, dataSource.getStatements());
+    StatementProfile profile = dataSource.top(1).get(0);
+    assertEquals("select * from todo where id > ?", profile.getSql());
+    assertEquals(2, profile.getCalls());
+    assertEquals(2, profile.getRows());
+
+    dataSource.reset();
+    assertEquals(0, dataSource.getStatements());
+
+    verify(target, connection, statement, resultSet);
+  }
+
+  @Test
+  public void jmx() throws Exception {
+    DataSource target = createMock(DataSource.class);
+
+    replay(target);
+
+    ProfilingDataSource dataSource = new ProfilingDataSource(target, "jmx", 0, false).register();
+    ObjectName name = new ObjectName("com.github.jknack.mwa:type=SqlProfiler,name=\"jmx\"");
+    assertEquals(0, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "Statements"));
+
+    dataSource.close();
+    assertEquals(false, ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+
+    verify(target);
+  }
+}
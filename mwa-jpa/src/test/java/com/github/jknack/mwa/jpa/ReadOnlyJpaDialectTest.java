@@ -0,0 +1,122 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.convert.support.DefaultConversionService;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.support.AnnotationConfigContextLoader;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.github.jknack.mwa.ApplicationContextConfigurer;
+
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(loader = ReadOnlyJpaDialectTest.class, classes = JpaModule.class)
+public class ReadOnlyJpaDialectTest extends AnnotationConfigContextLoader {
+
+  private static final int TODO = 3;
+
+  private static final String TITLE = "Spring / Spring MVC 3.1";
+
+  @Override
+  protected void customizeContext(final GenericApplicationContext context) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    // use mem db and publish a namespace
+    Map<String, Object> testProperties = new HashMap<String, Object>();
+    testProperties.put("db", "mem");
+    testProperties.put("application.ns", getClass().getPackage().getName());
+
+    context.registerBeanDefinition("conversionService", new RootBeanDefinition(
+        DefaultConversionService.class));
+
+    propertySources.addFirst(new MapPropertySource("readOnlyJpaDialectTest", testProperties));
+
+    ApplicationContextConfigurer.configure(context, propertySources);
+  }
+
+  @Inject
+  private EntityManagerFactory emf;
+
+  @After
+  public void restore() {
+    EntityManager em = emf.createEntityManager();
+    try {
+      em.getTransaction().begin();
+      em.find(Todo.class, TODO).setTitle(TITLE);
+      em.getTransaction().commit();
+    } finally {
+      em.close();
+    }
+  }
+
+  @Test
+  public void openEntityManagerInView() {
+    String title = readOnlyThenWrite(new ReadOnlyJpaDialect(false));
+
+    assertEquals("Read only then write", title);
+  }
+
+  @Test
+  public void openEntityManagerInViewWithReadOnlySession() {
+    String title = readOnlyThenWrite(new ReadOnlyJpaDialect(true));
+
+    // entities loaded by a read-only session stay read-only
+    assertEquals(TITLE, title);
+  }
+
+  private String readOnlyThenWrite(final ReadOnlyJpaDialect dialect) {
+    JpaTransactionManager transactionManager = new JpaTransactionManager(emf);
+    transactionManager.setJpaDialect(dialect);
+
+    // one entity manager for the whole request, like OpenEntityManagerInViewFilter does
+    final EntityManager em = emf.createEntityManager();
+    TransactionSynchronizationManager.bindResource(emf, new EntityManagerHolder(em));
+    try {
+      TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+      readOnly.setReadOnly(true);
+      final Todo todo = readOnly.execute(new TransactionCallback<Todo>() {
+        @Override
+        public Todo doInTransaction(final TransactionStatus status) {
+          return em.find(Todo.class, TODO);
+        }
+      });
+
+      new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+        @Override
+        protected void doInTransactionWithoutResult(final TransactionStatus status) {
+          todo.setTitle("Read only then write");
+        }
+      });
+    } finally {
+      TransactionSynchronizationManager.unbindResource(emf);
+      em.close();
+    }
+
+    EntityManager fresh = emf.createEntityManager();
+    try {
+      return fresh.find(Todo.class, TODO).getTitle();
+    } finally {
+      fresh.close();
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.github.jknack.mwa.jpa;
+
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import javax.sql.DataSource;
+
+import org.junit.Test;
+
+public class ReadWriteDataSourceTest {
+
+  @Test
+  public void readWrite() throws Exception {
+    Connection connection = createMock(Connection.class);
+    DataSource primary = createMock(DataSource.class);
+    expect(primary.getConnection()).andReturn(connection);
+    DataSource replica = createMock(DataSource.class);
+
+    replay(primary, replica, connection);
+
+    ReadWriteDataSource dataSource =
+        new ReadWriteDataSource(primary, new DataSource[]{replica }, 1000);
+    assertSame(connection, dataSource.getConnection());
+
+    verify(primary, replica, connection);
+  }
+
+  @Test
+  public void readOnly() throws Exception {
+    Connection c1 = createMock(Connection.class);
+    Connection c2 = createMock(Connection.class);
+    DataSource primary = createMock(DataSource.class);
+    DataSource r1 = createMock(DataSource.class);
+    expect(r1.getConnection()).andReturn(c1).times(2);
+    DataSource r2 = createMock(DataSource.class);
+    expect(r2.getConnection()).andReturn(c2);
+
+    replay(primary, r1, r2, c1, c2);
+
+    ReadWriteDataSource dataSource =
+        new ReadWriteDataSource(primary, new DataSource[]{r1, r2 }, 1000);
+    boolean previous = ReadWriteDataSource.setReadOnly(true);
+    try {
+      assertSame(c1, dataSource.getConnection());
+      assertSame(c2, dataSource.getConnection());
+      assertSame(c1, dataSource.getConnection());
+    } finally {
+      ReadWriteDataSource.setReadOnly(previous);
+    }
+
+    verify(primary, r1, r2, c1, c2);
+  }
+
+  @Test
+  public void ejectReplica() throws Exception {
+    Connection connection = createMock(Connection.class);
+    Connection fallback = createMock(Connection.class);
+    DataSource primary = createMock(DataSource.class);
+    expect(primary.getConnection()).andReturn(fallback);
+    DataSource r1 = createMock(DataSource.class);
+    expect(r1.getConnection()).andThrow(new SQLException("down"));
+    DataSource r2 = createMock(DataSource.class);
+    expect(r2.getConnection()).andReturn(connection);
+    expect(r2.getConnection()).andThrow(new SQLException("down"));
+
+    replay(primary, r1, r2, connection, fallback);
+
+    ReadWriteDataSource dataSource =
+        new ReadWriteDataSource(primary, new DataSource[]{r1, r2 }, 60000);
+    boolean previous = ReadWriteDataSource.setReadOnly(true);
+    try {
+      assertSame(connection, dataSource.getConnection());
+      assertEquals(1, dataSource.getHealthyReplicas());
+      assertSame(fallback, dataSource.getConnection());
+      assertEquals(0, dataSource.getHealthyReplicas());
+    } finally {
+      ReadWriteDataSource.setReadOnly(previous);
+    }
+
+    verify(primary, r1, r2, connection, fallback);
+  }
+}
@@ -1,7 +1,13 @@
 package com.github.jknack.mwa.jpa;
 
+import java.util.List;
+
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.OneToMany;
+
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
 public class Sprint {
@@ -9,6 +15,10 @@ public class Sprint {
   @Id
   private String name;
 
+  @OneToMany(mappedBy = "sprint")
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+  private List<Todo> todos;
+
   public String getName() {
     return name;
   }
@@ -16,4 +26,8 @@ public class Sprint {
   public void setName(final String name) {
     this.name = name;
   }
+
+  public List<Todo> getTodos() {
+    return todos;
+  }
 }
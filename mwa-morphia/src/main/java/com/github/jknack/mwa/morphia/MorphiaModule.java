@@ -8,6 +8,7 @@ import java.util.Set;
 
 import javax.validation.ValidatorFactory;
 
+import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,7 +17,9 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
 import org.springframework.core.env.Environment;
+import org.springframework.util.ClassUtils;
 
+import com.github.jknack.mwa.ComponentIndex;
 import com.github.jknack.mwa.mongo.MongoModule;
 import com.github.jmkgreen.morphia.AbstractEntityInterceptor;
 import com.github.jmkgreen.morphia.Datastore;
@@ -102,10 +105,23 @@ public class MorphiaModule {
     notNull(env, "The env is required.");
     String[] namespace = env.getProperty(APP_NAMESPACE, String[].class);
     Morphia morphia = new Morphia();
-    for (String ns : namespace) {
+    ComponentIndex index = ComponentIndex.get(env, getClass().getClassLoader());
+    String[] packages = index == null ? namespace : index.uncovered(namespace);
+    for (String ns : packages) {
       logger.debug("Adding pacakge: {}", ns);
       morphia.mapPackage(ns);
     }
+    if (index != null) {
+      // Use the compile-time index for the packages it covers.
+      for (String className : index.candidates(index.covered(namespace),
+          ComponentIndex.MORPHIA_ENTITY, ComponentIndex.MORPHIA_EMBEDDED)) {
+        // mapPackage doesn't map sub-packages
+        if (ArrayUtils.contains(namespace, ClassUtils.getPackageName(className))) {
+          logger.debug("Adding class: {}", className);
+          morphia.map(ClassUtils.resolveClassName(className, getClass().getClassLoader()));
+        }
+      }
+    }
 
     if (validationFactory != null) {
       morphia.getMapper().addInterceptor(
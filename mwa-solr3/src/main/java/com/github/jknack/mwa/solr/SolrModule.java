@@ -16,6 +16,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Executors;
 
 import javax.annotation.PostConstruct;
 import javax.inject.Inject;
@@ -45,6 +46,9 @@ import org.springframework.util.ResourceUtils;
 import org.xml.sax.SAXException;
 
 import com.github.jknack.mwa.FilterMapping;
+import com.github.jknack.mwa.StartupProfiler;
+import com.github.jknack.mwa.StartupTasks;
+import com.github.jknack.mwa.TraceEvent;
 
 /**
  * <h3>Configure the Solr home:</h3> The following property need to be present in the environment:
@@ -256,7 +260,7 @@ public class SolrModule {
    * <ul>
    * solr.fixtures: enabled or disabled the loading of test files. Default is: true.
    * solr.fixtures.async: if true, a new thread will be created for loading the fixtures. Default
-   * is: true.
+   * is: true. If {@link StartupTasks} run in parallel, fixtures are loaded by a startup task.
    * </ul>
    */
   @PostConstruct
@@ -269,13 +273,15 @@ public class SolrModule {
       String solrHome = cores.getSolrHome();
 
       boolean async = env.getProperty(SOLR_FIXTURES_ASYNC, boolean.class, true);
+      StartupTasks tasks = StartupTasks.get(applicationContext);
+      StartupProfiler profiler = StartupProfiler.get(applicationContext);
 
       for (Entry<String, SolrServer> server : servers.entrySet()) {
         String coreName = server.getKey();
         File coreHome = new File(solrHome, coreName);
         File fixtures = new File(coreHome, "fixtures");
         if (fixtures.exists()) {
-          populate(server.getValue(), coreName, fixtures, async);
+          populate(server.getValue(), coreName, fixtures, async, tasks, profiler);
         }
       }
     }
@@ -288,17 +294,21 @@ public class SolrModule {
    * @param core The core's name.
    * @param fixturesDir The fixtures directory.
    * @param async True for using a thread.
+   * @param tasks The startup tasks.
+   * @param profiler The startup profiler.
    */
   private static void populate(final SolrServer server, final String core, final File fixturesDir,
-      final boolean async) {
+      final boolean async, final StartupTasks tasks, final StartupProfiler profiler) {
     final Collection<File> xmlFiles = FileUtils.listFiles(fixturesDir, new String[]{"xml" }, true);
     if (xmlFiles.size() > 0) {
       Runnable post = new Runnable() {
         @Override
         public void run() {
+          StartupProfiler.Timer timer = profiler.start(StartupProfiler.FIXTURE, "solr: " + core);
           try {
             for (File xmlFile : xmlFiles) {
               logger.info("[{}]: sending: {}...", core, xmlFile);
+              TraceEvent event = TraceEvent.begin(TraceEvent.SOLR_FIXTURES);
               // Ensure it's in UTF-8 encoding
               Reader reader = new InputStreamReader(
                   new FileInputStream(xmlFile), "UTF-8");
@@ -307,15 +317,22 @@ public class SolrModule {
               /** Post the document to the Index */
               request.process(server);
               IOUtils.closeQuietly(reader);
+              event.set("core", core)
+                  .set("file", xmlFile.getName())
+                  .commit();
             }
             // Commit the changes
             server.commit();
           } catch (Exception ex) {
             logger.error("Unable to initialize data", ex);
+          } finally {
+            timer.stop();
           }
         }
       };
-      if (async) {
+      if (async && tasks.isParallel()) {
+        tasks.submit("solr:" + core, Executors.callable(post));
+      } else if (async) {
         Thread thread = new Thread(post, core + "-postData");
         thread.setDaemon(true);
         thread.start();
@@ -0,0 +1,347 @@
+package com.github.jknack.mwa.tomcat;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import javax.servlet.ServletContainerInitializer;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletException;
+
+import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.startup.Tomcat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertyResolver;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import com.github.jknack.mwa.Startup;
+import com.google.common.io.Files;
+
+/**
+ * <p>
+ * Run a {@link Startup} application in an embedded Tomcat using the NIO connector:
+ * </p>
+ *
+ * <pre>
+ * public class Main extends Startup {
+ *   ...
+ *   public static void main(String[] args) throws Exception {
+ *     TomcatServer.run(Main.class);
+ *   }
+ * }
+ * </pre>
+ * <p>
+ * Or: <code>java com.github.jknack.mwa.tomcat.TomcatServer my.app.Main</code>.
+ * </p>
+ * <h3>Configuration</h3>
+ * <p>
+ * The server is configured from the application's property files (see
+ * {@link Startup#propertySources()}) and system properties:
+ * </p>
+ * <ul>
+ * <li>server.port: The HTTP port. Default is: 8080.</li>
+ * <li>server.address: The address to bind. Default is: all the addresses.</li>
+ * <li>server.contextPath: The application's context path. Default is: "".</li>
+ * <li>server.docBase: The document base. Default is: src/main/webapp (if present).</li>
+ * <li>server.acceptors: Number of acceptor threads. Default is: 1.</li>
+ * <li>server.selectors: Number of selector (poller) threads. Default is: number of processors,
+ * at most 2.</li>
+ * <li>server.threads.min: Min number of worker threads. Default is: 10.</li>
+ * <li>server.threads.max: Max number of worker threads. Default is: 200.</li>
+ * <li>server.backlog: Max length of the accept queue. Default is: 100.</li>
+ * <li>server.keepAlive.timeout: Millis to wait for the next request on a keep-alive connection.
+ * Default is: 20000.</li>
+ * <li>server.keepAlive.maxRequests: Max requests per keep-alive connection. Default is: 100.</li>
+ * <li>server.connectionTimeout: Millis to wait for the request line. Default is: 20000.</li>
+ * </ul>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class TomcatServer {
+
+  /**
+   * The HTTP port.
+   */
+  public static final String SERVER_PORT = "server.port";
+
+  /**
+   * The address to bind.
+   */
+  public static final String SERVER_ADDRESS = "server.address";
+
+  /**
+   * The application's context path.
+   */
+  public static final String SERVER_CONTEXT_PATH = "server.contextPath";
+
+  /**
+   * The document base.
+   */
+  public static final String SERVER_DOC_BASE = "server.docBase";
+
+  /**
+   * Number of acceptor threads.
+   */
+  public static final String SERVER_ACCEPTORS = "server.acceptors";
+
+  /**
+   * Number of selector threads.
+   */
+  public static final String SERVER_SELECTORS = "server.selectors";
+
+  /**
+   * Min number of worker threads.
+   */
+  public static final String SERVER_THREADS_MIN = "server.threads.min";
+
+  /**
+   * Max number of worker threads.
+   */
+  public static final String SERVER_THREADS_MAX = "server.threads.max";
+
+  /**
+   * Max length of the accept queue.
+   */
+  public static final String SERVER_BACKLOG = "server.backlog";
+
+  /**
+   * Keep-alive timeout in millis.
+   */
+  public static final String SERVER_KEEP_ALIVE_TIMEOUT = "server.keepAlive.timeout";
+
+  /**
+   * Max requests per keep-alive connection.
+   */
+  public static final String SERVER_KEEP_ALIVE_MAX_REQUESTS = "server.keepAlive.maxRequests";
+
+  /**
+   * Connection timeout in millis.
+   */
+  public static final String SERVER_CONNECTION_TIMEOUT = "server.connectionTimeout";
+
+  /**
+   * The default HTTP port.
+   */
+  private static final int DEFAULT_PORT = 8080;
+
+  /**
+   * The default max number of selector threads.
+   */
+  private static final int MAX_SELECTORS = 2;
+
+  /**
+   * The NIO protocol.
+   */
+  private static final String PROTOCOL = "org.apache.coyote.http11.Http11NioProtocol";
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(TomcatServer.class);
+
+  /**
+   * The startup class.
+   */
+  private final Class<? extends Startup> startupClass;
+
+  /**
+   * The server's configuration.
+   */
+  private final PropertyResolver env;
+
+  /**
+   * The Tomcat server.
+   */
+  private Tomcat tomcat;
+
+  /**
+   * Creates a new {@link TomcatServer}.
+   *
+   * @param startupClass The startup class. Required.
+   * @throws IOException If the application's properties can't be read.
+   */
+  public TomcatServer(final Class<? extends Startup> startupClass) throws IOException {
+    this.startupClass = notNull(startupClass, "The startup class is required.");
+    this.env = configuration(startupClass);
+  }
+
+  /**
+   * Start the server.
+   *
+   * @return This server.
+   * @throws LifecycleException If the server can't be started.
+   */
+  public TomcatServer start() throws LifecycleException {
+    long start = System.currentTimeMillis();
+    tomcat = new Tomcat();
+    tomcat.setBaseDir(Files.createTempDir().getAbsolutePath());
+
+    Connector connector = new Connector(PROTOCOL);
+    connector.setPort(env.getProperty(SERVER_PORT, Integer.class, DEFAULT_PORT));
+    for (Entry<String, String> property : protocolProperties(env).entrySet()) {
+      if (!connector.setProperty(property.getKey(), property.getValue())) {
+        logger.warn("Unknown connector property: {}", property.getKey());
+      }
+    }
+    tomcat.getService().addConnector(connector);
+    tomcat.setConnector(connector);
+
+    File docBase = new File(env.getProperty(SERVER_DOC_BASE, "src/main/webapp"));
+    if (!docBase.exists()) {
+      docBase = new File(tomcat.getServer().getCatalinaBase(), "webapp");
+      docBase.mkdirs();
+    }
+    Context context = tomcat.addContext(env.getProperty(SERVER_CONTEXT_PATH, ""),
+        docBase.getAbsolutePath());
+    context.addServletContainerInitializer(new ServletContainerInitializer() {
+      @Override
+      public void onStartup(final Set<Class<?>> classes, final ServletContext servletContext)
+          throws ServletException {
+        BeanUtils.instantiateClass(startupClass).onStartup(servletContext);
+      }
+    }, null);
+
+    tomcat.start();
+    logger.info("{} started in {}ms on port {} with: {}", new Object[]{
+        startupClass.getSimpleName(), System.currentTimeMillis() - start,
+        connector.getLocalPort(), protocolProperties(env) });
+    return this;
+  }
+
+  /**
+   * The local port of the server. Useful if server.port was set to 0.
+   *
+   * @return The local port of the server.
+   */
+  public int getPort() {
+    isTrue(tomcat != null, "Server isn't running.");
+    return tomcat.getConnector().getLocalPort();
+  }
+
+  /**
+   * Stop the server.
+   *
+   * @throws LifecycleException If the server can't be stopped.
+   */
+  public void stop() throws LifecycleException {
+    if (tomcat != null) {
+      tomcat.stop();
+      tomcat.destroy();
+      tomcat = null;
+    }
+  }
+
+  /**
+   * Wait until the server has been shutdown.
+   */
+  public void await() {
+    isTrue(tomcat != null, "Server isn't running.");
+    tomcat.getServer().await();
+  }
+
+  /**
+   * The NIO connector properties.
+   *
+   * @param env The server's configuration.
+   * @return The NIO connector properties.
+   */
+  static Map<String, String> protocolProperties(final PropertyResolver env) {
+    int processors = Runtime.getRuntime().availableProcessors();
+    Map<String, String> properties = new LinkedHashMap<String, String>();
+    String address = env.getProperty(SERVER_ADDRESS);
+    if (address != null) {
+      properties.put("address", address);
+    }
+    properties.put("acceptorThreadCount", env.getProperty(SERVER_ACCEPTORS, "1"));
+    properties.put("pollerThreadCount", env.getProperty(SERVER_SELECTORS,
+        String.valueOf(Math.min(processors, MAX_SELECTORS))));
+    properties.put("minSpareThreads", env.getProperty(SERVER_THREADS_MIN, "10"));
+    properties.put("maxThreads", env.getProperty(SERVER_THREADS_MAX, "200"));
+    properties.put("acceptCount", env.getProperty(SERVER_BACKLOG, "100"));
+    properties.put("keepAliveTimeout", env.getProperty(SERVER_KEEP_ALIVE_TIMEOUT, "20000"));
+    properties.put("maxKeepAliveRequests", env.getProperty(SERVER_KEEP_ALIVE_MAX_REQUESTS,
+        "100"));
+    properties.put("connectionTimeout", env.getProperty(SERVER_CONNECTION_TIMEOUT, "20000"));
+    return properties;
+  }
+
+  /**
+   * Read the server's configuration from the application's property files and system
+   * properties. System properties have precedence.
+   *
+   * @param startupClass The startup class.
+   * @return The server's configuration.
+   * @throws IOException If the property files can't be read.
+   */
+  private static PropertyResolver configuration(final Class<? extends Startup> startupClass)
+      throws IOException {
+    Method method = ReflectionUtils.findMethod(startupClass, "propertySources");
+    ReflectionUtils.makeAccessible(method);
+    String[] locations = (String[]) ReflectionUtils.invokeMethod(method,
+        BeanUtils.instantiateClass(startupClass));
+    MutablePropertySources propertySources = new StandardEnvironment().getPropertySources();
+    PathMatchingResourcePatternResolver resolver =
+        new PathMatchingResourcePatternResolver(startupClass.getClassLoader());
+    for (String location : locations) {
+      for (Resource resource : resolver.getResources(location)) {
+        if (resource.exists()) {
+          propertySources.addLast(new ResourcePropertySource(resource));
+        }
+      }
+    }
+    return new PropertySourcesPropertyResolver(propertySources);
+  }
+
+  /**
+   * Start a {@link Startup} application and wait for it.
+   *
+   * @param startupClass The startup class. Required.
+   * @throws Exception If the server can't be started.
+   */
+  public static void run(final Class<? extends Startup> startupClass) throws Exception {
+    final TomcatServer server = new TomcatServer(startupClass).start();
+    Runtime.getRuntime().addShutdownHook(new Thread("tomcat-shutdown") {
+      @Override
+      public void run() {
+        try {
+          server.stop();
+        } catch (LifecycleException ex) {
+          logger.error("Unable to stop server", ex);
+        }
+      }
+    });
+    server.await();
+  }
+
+  /**
+   * Start a {@link Startup} application.
+   *
+   * @param args The startup class name.
+   * @throws Exception If the server can't be started.
+   */
+  @SuppressWarnings("unchecked")
+  public static void main(final String[] args) throws Exception {
+    isTrue(args.length == 1, "Usage: TomcatServer <startup-class>");
+    run((Class<? extends Startup>) ClassUtils.forName(args[0],
+        TomcatServer.class.getClassLoader()));
+  }
+}
@@ -0,0 +1,57 @@
+package com.github.jknack.mwa.tomcat;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.MutablePropertySources;
+import org.springframework.core.env.PropertySourcesPropertyResolver;
+
+public class TomcatServerTest {
+
+  @Test
+  public void defaults() {
+    Map<String, String> properties =
+        TomcatServer.protocolProperties(resolver(new HashMap<String, Object>()));
+    assertFalse(properties.containsKey("address"));
+    assertEquals("1", properties.get("acceptorThreadCount"));
+    assertEquals("10", properties.get("minSpareThreads"));
+    assertEquals("200", properties.get("maxThreads"));
+    assertEquals("100", properties.get("acceptCount"));
+    assertEquals("20000", properties.get("keepAliveTimeout"));
+    assertEquals("100", properties.get("maxKeepAliveRequests"));
+  }
+
+  @Test
+  public void tuning() {
+    Map<String, Object> source = new HashMap<String, Object>();
+    source.put(TomcatServer.SERVER_ADDRESS, "127.0.0.1");
+    source.put(TomcatServer.SERVER_ACCEPTORS, "2");
+    source.put(TomcatServer.SERVER_SELECTORS, "4");
+    source.put(TomcatServer.SERVER_THREADS_MIN, "25");
+    source.put(TomcatServer.SERVER_THREADS_MAX, "400");
+    source.put(TomcatServer.SERVER_BACKLOG, "1024");
+    source.put(TomcatServer.SERVER_KEEP_ALIVE_TIMEOUT, "5000");
+    source.put(TomcatServer.SERVER_KEEP_ALIVE_MAX_REQUESTS, "-1");
+
+    Map<String, String> properties = TomcatServer.protocolProperties(resolver(source));
+    assertEquals("127.0.0.1", properties.get("address"));
+    assertEquals("2", properties.get("acceptorThreadCount"));
+    assertEquals("4", properties.get("pollerThreadCount"));
+    assertEquals("25", properties.get("minSpareThreads"));
+    assertEquals("400", properties.get("maxThreads"));
+    assertEquals("1024", properties.get("acceptCount"));
+    assertEquals("5000", properties.get("keepAliveTimeout"));
+    assertEquals("-1", properties.get("maxKeepAliveRequests"));
+  }
+
+  private static PropertySourcesPropertyResolver resolver(final Map<String, Object> source) {
+    MutablePropertySources propertySources = new MutablePropertySources();
+    propertySources.addFirst(new MapPropertySource("test", source));
+    return new PropertySourcesPropertyResolver(propertySources);
+  }
+}
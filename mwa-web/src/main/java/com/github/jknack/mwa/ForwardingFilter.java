@@ -50,6 +50,11 @@ class ForwardingFilter extends GenericFilterBean {
    */
   private List<FilterMapping> mappings;
 
+  /**
+   * The slow request watchdog. Optional.
+   */
+  private RequestWatchdog watchdog;
+
   /**
    * A forwarding filter.
    *
@@ -68,8 +73,20 @@ class ForwardingFilter extends GenericFilterBean {
   public void doFilter(final ServletRequest request,
       final ServletResponse response, final FilterChain chain)
       throws IOException, ServletException {
-    wrapChain(mappings, chain)
-        .doFilter(request, response);
+    if (watchdog == null) {
+      wrapChain(mappings, chain)
+          .doFilter(request, response);
+      return;
+    }
+    HttpServletRequest httpRequest = (HttpServletRequest) request;
+    RequestWatchdog.Ticket ticket =
+        watchdog.enter(httpRequest.getMethod() + " " + httpRequest.getRequestURI());
+    try {
+      wrapChain(mappings, chain)
+          .doFilter(request, response);
+    } finally {
+      watchdog.exit(ticket);
+    }
   }
 
   /**
@@ -89,6 +106,7 @@ class ForwardingFilter extends GenericFilterBean {
         filter.init(config);
       }
     }
+    watchdog = RequestWatchdog.get(webApplicationContext.getEnvironment());
   }
 
   /**
@@ -96,6 +114,10 @@ class ForwardingFilter extends GenericFilterBean {
    */
   @Override
   public void destroy() {
+    if (watchdog != null) {
+      watchdog.destroy();
+      watchdog = null;
+    }
     if (mappings != null) {
       Set<Filter> destroyed = new HashSet<Filter>();
       for (FilterMapping mapping : mappings) {
@@ -158,7 +180,16 @@ class ForwardingFilter extends GenericFilterBean {
           if (current.matches(request)) {
             logger.trace("Calling filter: {} for {}", current,
                 request.getRequestURI());
-            current.getFilter().doFilter(request, response, this);
+            TraceEvent event = TraceEvent.begin(TraceEvent.FILTER);
+            try {
+              current.getFilter().doFilter(request, response, this);
+            } finally {
+              if (event.isEnabled()) {
+                event.set("filter", current.getFilter().getClass().getName())
+                    .set("uri", request.getRequestURI())
+                    .commit();
+              }
+            }
           } else {
             logger.trace("Ignoring filter: {} for {}", current,
                 request.getRequestURI());
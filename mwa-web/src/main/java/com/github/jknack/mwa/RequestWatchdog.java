@@ -0,0 +1,403 @@
+package com.github.jknack.mwa;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.env.Environment;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Sample the stack of slow requests. Requests are registered by the {@link ForwardingFilter}. A
+ * single scheduler thread looks at the in-flight requests and takes a stack sample of the ones
+ * that are running for longer than the threshold. Fast requests cost one map insert and one map
+ * removal.
+ * <p>
+ * Samples are aggregated in the collapsed-stack format (one <code>frame;frame;frame count</code>
+ * line per distinct stack), which is the input of flame graph tools. The file is rewritten
+ * periodically, but only if a file has been set. A summary with the hottest stack of a slow
+ * request is logged when the request completes.
+ * </p>
+ * Configuration:
+ * <ul>
+ * <li>watchdog.enabled: turn on/off the watchdog. Default is: false.</li>
+ * <li>watchdog.threshold: requests slower than this value in millis are sampled. Default is:
+ * 1000.</li>
+ * <li>watchdog.interval: sampling interval in millis. Default is: 100.</li>
+ * <li>watchdog.file: the collapsed-stack file. Optional, no file is written if it isn't set.
+ * </li>
+ * <li>watchdog.flushInterval: interval in millis between file updates. Default is: 60000.</li>
+ * <li>watchdog.maxStacks: max number of distinct stacks. Default is: 10000.</li>
+ * </ul>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class RequestWatchdog {
+
+  /**
+   * An in-flight request.
+   *
+   * @author edgar.espina
+   */
+  public static final class Ticket {
+
+    /**
+     * The request's name.
+     */
+    private final String name;
+
+    /**
+     * The request's thread.
+     */
+    private final Thread thread;
+
+    /**
+     * The start time in millis.
+     */
+    private final long start;
+
+    /**
+     * The stack samples of this request. Only accessed by the sampler thread until the request
+     * completes.
+     */
+    private final Map<String, Integer> samples = new ConcurrentHashMap<String, Integer>();
+
+    /**
+     * Creates a new {@link Ticket}.
+     *
+     * @param name The request's name.
+     * @param thread The request's thread.
+     */
+    private Ticket(final String name, final Thread thread) {
+      this.name = name;
+      this.thread = thread;
+      this.start = System.currentTimeMillis();
+    }
+  }
+
+  /**
+   * Turn on/off the watchdog.
+   */
+  public static final String WATCHDOG_ENABLED = "watchdog.enabled";
+
+  /**
+   * Requests slower than this value in millis are sampled.
+   */
+  public static final String WATCHDOG_THRESHOLD = "watchdog.threshold";
+
+  /**
+   * Sampling interval in millis.
+   */
+  public static final String WATCHDOG_INTERVAL = "watchdog.interval";
+
+  /**
+   * The collapsed-stack file.
+   */
+  public static final String WATCHDOG_FILE = "watchdog.file";
+
+  /**
+   * Interval in millis between file updates.
+   */
+  public static final String WATCHDOG_FLUSH_INTERVAL = "watchdog.flushInterval";
+
+  /**
+   * Max number of distinct stacks.
+   */
+  public static final String WATCHDOG_MAX_STACKS = "watchdog.maxStacks";
+
+  /**
+   * Default value for {@link #WATCHDOG_THRESHOLD}.
+   */
+  private static final long DEFAULT_THRESHOLD = 1000L;
+
+  /**
+   * Default value for {@link #WATCHDOG_INTERVAL}.
+   */
+  private static final long DEFAULT_INTERVAL = 100L;
+
+  /**
+   * Default value for {@link #WATCHDOG_FLUSH_INTERVAL}.
+   */
+  private static final long DEFAULT_FLUSH_INTERVAL = 60000L;
+
+  /**
+   * Default value for {@link #WATCHDOG_MAX_STACKS}.
+   */
+  private static final int DEFAULT_MAX_STACKS = 10000;
+
+  /**
+   * Number of frames of the hottest stack to log.
+   */
+  private static final int SUMMARY_FRAMES = 10;
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(RequestWatchdog.class);
+
+  /**
+   * The in-flight requests.
+   */
+  private final ConcurrentMap<Thread, Ticket> requests = new ConcurrentHashMap<Thread, Ticket>();
+
+  /**
+   * Sample count per collapsed stack.
+   */
+  private final ConcurrentMap<String, AtomicLong> stacks =
+      new ConcurrentHashMap<String, AtomicLong>();
+
+  /**
+   * Requests slower than this value in millis are sampled.
+   */
+  private final long threshold;
+
+  /**
+   * Max number of distinct stacks.
+   */
+  private final int maxStacks;
+
+  /**
+   * The collapsed-stack file. Optional.
+   */
+  private final File file;
+
+  /**
+   * True, if there are new samples since the last flush.
+   */
+  private volatile boolean dirty;
+
+  /**
+   * The sampler thread.
+   */
+  private final ScheduledExecutorService sampler;
+
+  /**
+   * Creates a new {@link RequestWatchdog}.
+   *
+   * @param threshold Requests slower than this value in millis are sampled.
+   * @param interval Sampling interval in millis.
+   * @param file The collapsed-stack file. Optional.
+   * @param flushInterval Interval in millis between file updates.
+   * @param maxStacks Max number of distinct stacks.
+   */
+  public RequestWatchdog(final long threshold, final long interval, final File file,
+      final long flushInterval, final int maxStacks) {
+    isTrue(interval > 0, "The interval must be positive.");
+    isTrue(flushInterval > 0, "The flush interval must be positive.");
+    this.threshold = threshold;
+    this.file = file;
+    this.maxStacks = maxStacks;
+    sampler = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+        .setNameFormat("request-watchdog")
+        .setDaemon(true)
+        .build());
+    sampler.scheduleWithFixedDelay(new Runnable() {
+      @Override
+      public void run() {
+        sample();
+      }
+    }, interval, interval, TimeUnit.MILLISECONDS);
+    if (file != null) {
+      sampler.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          flush();
+        }
+      }, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Register the current thread's request.
+   *
+   * @param name The request's name, like: <code>GET /path</code>.
+   * @return A ticket for {@link #exit(Ticket)}.
+   */
+  public Ticket enter(final String name) {
+    Thread thread = Thread.currentThread();
+    Ticket ticket = new Ticket(name, thread);
+    Ticket outer = requests.putIfAbsent(thread, ticket);
+    // forwards and includes run on the same thread, keep the outer ticket
+    return outer == null ? ticket : null;
+  }
+
+  /**
+   * Unregister a request and log a summary if the request was sampled.
+   *
+   * @param ticket The ticket returned by {@link #enter(String)}. Might be null.
+   */
+  public void exit(final Ticket ticket) {
+    if (ticket == null) {
+      return;
+    }
+    requests.remove(ticket.thread);
+    if (ticket.samples.size() > 0) {
+      String hottest = null;
+      int count = 0;
+      int total = 0;
+      for (Entry<String, Integer> sample : ticket.samples.entrySet()) {
+        total += sample.getValue();
+        if (sample.getValue() > count) {
+          hottest = sample.getKey();
+          count = sample.getValue();
+        }
+      }
+      logger.warn("Slow request: {} took {}ms, {} samples, hottest stack ({}/{}):\n  {}",
+          new Object[]{ticket.name, System.currentTimeMillis() - ticket.start, total, count,
+              total, summary(hottest) });
+    }
+  }
+
+  /**
+   * The collapsed stacks collected so far.
+   *
+   * @return The collapsed stacks collected so far.
+   */
+  public Map<String, Long> getStacks() {
+    Map<String, Long> result = new TreeMap<String, Long>();
+    for (Entry<String, AtomicLong> stack : stacks.entrySet()) {
+      result.put(stack.getKey(), stack.getValue().get());
+    }
+    return result;
+  }
+
+  /**
+   * Sample the stack of slow requests.
+   */
+  private void sample() {
+    try {
+      long now = System.currentTimeMillis();
+      for (Ticket ticket : requests.values()) {
+        if (now - ticket.start >= threshold) {
+          StackTraceElement[] stackTrace = ticket.thread.getStackTrace();
+          if (requests.get(ticket.thread) != ticket || stackTrace.length == 0) {
+            // completed while sampling
+            continue;
+          }
+          String stack = collapse(stackTrace);
+          Integer count = ticket.samples.get(stack);
+          ticket.samples.put(stack, count == null ? 1 : count + 1);
+          AtomicLong total = stacks.get(stack);
+          if (total == null && stacks.size() < maxStacks) {
+            total = new AtomicLong();
+            AtomicLong existing = stacks.putIfAbsent(stack, total);
+            if (existing != null) {
+              total = existing;
+            }
+          }
+          if (total != null) {
+            total.incrementAndGet();
+            dirty = true;
+          }
+        }
+      }
+    } catch (RuntimeException ex) {
+      logger.error("Sampling failed", ex);
+    }
+  }
+
+  /**
+   * Write the collapsed stacks file.
+   */
+  private void flush() {
+    if (file == null || !dirty) {
+      return;
+    }
+    dirty = false;
+    try {
+      StringBuilder buffer = new StringBuilder();
+      for (Entry<String, Long> stack : getStacks().entrySet()) {
+        buffer.append(stack.getKey()).append(' ').append(stack.getValue()).append('\n');
+      }
+      File parent = file.getAbsoluteFile().getParentFile();
+      parent.mkdirs();
+      File tmp = new File(parent, file.getName() + ".tmp");
+      Files.write(buffer, tmp, Charsets.UTF_8);
+      if (!tmp.renameTo(file)) {
+        Files.move(tmp, file);
+      }
+    } catch (IOException ex) {
+      logger.error("Unable to write: " + file, ex);
+    } catch (RuntimeException ex) {
+      logger.error("Unable to write: " + file, ex);
+    }
+  }
+
+  /**
+   * Stop the sampler and write the collapsed stacks file (if any).
+   */
+  public void destroy() {
+    sampler.shutdownNow();
+    flush();
+  }
+
+  /**
+   * Collapse a stack trace: root frame first, separated by ';'.
+   *
+   * @param stackTrace The stack trace.
+   * @return A collapsed stack.
+   */
+  static String collapse(final StackTraceElement[] stackTrace) {
+    StringBuilder buffer = new StringBuilder();
+    for (int i = stackTrace.length - 1; i >= 0; i--) {
+      StackTraceElement frame = stackTrace[i];
+      buffer.append(frame.getClassName()).append('.').append(frame.getMethodName());
+      if (i > 0) {
+        buffer.append(';');
+      }
+    }
+    return buffer.toString();
+  }
+
+  /**
+   * The top frames of a collapsed stack, leaf first.
+   *
+   * @param stack The collapsed stack.
+   * @return The top frames of a collapsed stack.
+   */
+  private static String summary(final String stack) {
+    String[] frames = stack.split(";");
+    StringBuilder buffer = new StringBuilder();
+    for (int i = frames.length - 1; i >= Math.max(0, frames.length - SUMMARY_FRAMES); i--) {
+      buffer.append(frames[i]).append("\n  ");
+    }
+    return buffer.append("...").toString();
+  }
+
+  /**
+   * Creates a {@link RequestWatchdog} from the application's environment.
+   *
+   * @param env The application's environment. Required.
+   * @return A new {@link RequestWatchdog} or <code>null</code> if it has been disabled.
+   */
+  public static RequestWatchdog get(final Environment env) {
+    notNull(env, "The environment is required.");
+    if (!env.getProperty(WATCHDOG_ENABLED, boolean.class, false)) {
+      return null;
+    }
+    String file = env.getProperty(WATCHDOG_FILE);
+    return new RequestWatchdog(
+        env.getProperty(WATCHDOG_THRESHOLD, Long.class, DEFAULT_THRESHOLD),
+        env.getProperty(WATCHDOG_INTERVAL, Long.class, DEFAULT_INTERVAL),
+        file == null ? null : new File(file),
+        env.getProperty(WATCHDOG_FLUSH_INTERVAL, Long.class, DEFAULT_FLUSH_INTERVAL),
+        env.getProperty(WATCHDOG_MAX_STACKS, Integer.class, DEFAULT_MAX_STACKS));
+  }
+}
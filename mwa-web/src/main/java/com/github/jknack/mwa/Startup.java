@@ -10,6 +10,7 @@ import static org.springframework.core.annotation.AnnotationUtils.findAnnotation
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
@@ -19,6 +20,7 @@ import java.util.Set;
 
 import javax.inject.Named;
 import javax.servlet.DispatcherType;
+import javax.servlet.FilterRegistration;
 import javax.servlet.ServletContext;
 import javax.servlet.ServletException;
 import javax.servlet.ServletRegistration;
@@ -27,9 +29,14 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
+import org.springframework.context.annotation.ScannedGenericBeanDefinition;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.support.PropertySourcesPlaceholderConfigurer;
 import org.springframework.core.env.Environment;
 import org.springframework.core.env.MapPropertySource;
@@ -42,6 +49,7 @@ import org.springframework.core.io.UrlResource;
 import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePatternResolver;
 import org.springframework.core.io.support.ResourcePropertySource;
+import org.springframework.util.ClassUtils;
 import org.springframework.web.WebApplicationInitializer;
 import org.springframework.web.context.ConfigurableWebApplicationContext;
 import org.springframework.web.context.ContextLoaderListener;
@@ -63,6 +71,8 @@ import com.google.common.collect.Sets;
  * {@link Named} usage.
  * <li>Organize your application in modules: (a.k.a Spring Configuration).
  * <li>Application's namespace is scanned for detecting Spring beans (a.k.a component scanning).
+ * Scanning is skipped if a valid {@link StartupSnapshot} is present, or for the packages covered
+ * by a compile-time {@link ComponentIndex}.
  * <li>Add {@link Mode} and {@link ModeAware} support.
  * </ul>
  *
@@ -103,13 +113,15 @@ public abstract class Startup implements WebApplicationInitializer {
 
     servletContext.addListener(new ContextLoaderListener(context));
 
+    StartupProfiler profiler = new StartupProfiler();
+
     Pair<MutablePropertySources, Map<String, Object>> propertyConfig =
-        propertySources(servletContext.getContextPath(), context);
+        propertySources(servletContext.getContextPath(), context, profiler);
     MutablePropertySources propertySources = propertyConfig.getLeft();
 
     configure(propertySources);
 
-    ApplicationContextConfigurer.configure(context, propertySources);
+    ApplicationContextConfigurer.configure(context, propertySources, profiler);
 
     Set<String> namespace = Sets.newHashSet(namespace(context.getEnvironment()));
 
@@ -119,7 +131,9 @@ public abstract class Startup implements WebApplicationInitializer {
     /**
      * Configure modules.
      */
-    registerModules(context, namespace);
+    StartupProfiler.Timer timer = profiler.start(StartupProfiler.MODULE, "registerModules");
+    registerModules(context, namespace, propertySources);
+    timer.stop();
 
     /**
      * Creates the Spring MVC dispatcher servlet.
@@ -127,6 +141,7 @@ public abstract class Startup implements WebApplicationInitializer {
     ServletRegistration.Dynamic dispatcher = servletContext.addServlet(
         "spring-dispatcher", new DispatcherServlet(context));
     dispatcher.setLoadOnStartup(1);
+    dispatcher.setAsyncSupported(true);
     dispatcher.addMapping(dispatcherMapping());
 
     onStartup(servletContext, context);
@@ -145,11 +160,13 @@ public abstract class Startup implements WebApplicationInitializer {
    *
    * @param contextPath The application's context path.
    * @param context The application's context.
+   * @param profiler The startup profiler.
    * @return A property sources array.
    * @throws ServletException If the environment cannot be configured.
    */
   private Pair<MutablePropertySources, Map<String, Object>> propertySources(
-      final String contextPath, final ApplicationContext context) throws ServletException {
+      final String contextPath, final ApplicationContext context, final StartupProfiler profiler)
+      throws ServletException {
     try {
       List<Resource> properties = findResources(propertySources());
       if (properties.size() == 0) {
@@ -177,7 +194,11 @@ public abstract class Startup implements WebApplicationInitializer {
       MutablePropertySources propertySources = new MutablePropertySources();
       propertySources.addFirst(new MapPropertySource(appName, specialProps));
       for (int i = properties.size() - 1; i >= 0; i--) {
-        propertySources.addFirst(asPropertySource(properties.get(i)));
+        Resource resource = properties.get(i);
+        StartupProfiler.Timer timer = profiler.start(StartupProfiler.PROPERTY_SOURCE,
+            resource.getDescription());
+        propertySources.addFirst(asPropertySource(resource));
+        timer.stop();
       }
 
       return Pair.of(propertySources, specialProps);
@@ -196,8 +217,12 @@ public abstract class Startup implements WebApplicationInitializer {
   protected void onStartup(final ServletContext servletContext,
       final ConfigurableWebApplicationContext applicationContext) {
     // Add the forwarding filter
-    servletContext.addFilter("forwardingFilter", new ForwardingFilter(applicationContext))
-        .addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false, dispatcherMapping());
+    FilterRegistration.Dynamic forwardingFilter =
+        servletContext.addFilter("forwardingFilter", new ForwardingFilter(applicationContext));
+    forwardingFilter.addMappingForUrlPatterns(EnumSet.allOf(DispatcherType.class), false,
+        dispatcherMapping());
+    // Required by long-lived responses, like Server-Sent Events.
+    forwardingFilter.setAsyncSupported(true);
   }
 
   /**
@@ -216,10 +241,12 @@ public abstract class Startup implements WebApplicationInitializer {
    *
    * @param context The Spring application context.
    * @param namespace The application namespace.
+   * @param propertySources The application's property sources.
    * @throws ServletException If something goes wrong.
    */
   private void registerModules(final AnnotationConfigWebApplicationContext context,
-      final Set<String> namespace) throws ServletException {
+      final Set<String> namespace, final MutablePropertySources propertySources)
+      throws ServletException {
     try {
       Set<Class<?>> classes = new LinkedHashSet<Class<?>>();
       Class<?>[] modules = imports();
@@ -236,13 +263,70 @@ public abstract class Startup implements WebApplicationInitializer {
       }
       classes.add(WebDefaults.class);
       context.register(classes.toArray(new Class[classes.size()]));
-      // Scan all the packages of the main class recursively.
-      context.scan(namespace.toArray(new String[namespace.size()]));
+      String[] packages = namespace.toArray(new String[namespace.size()]);
+      ClassLoader classLoader = getClass().getClassLoader();
+      StartupSnapshot snapshot = StartupSnapshot.get(context.getEnvironment(), propertySources,
+          classLoader, packages);
+      List<String> candidates = snapshot == null ? null : snapshot.load();
+      ComponentIndex index = ComponentIndex.get(context.getEnvironment(), classLoader);
+      if (candidates == null && index != null) {
+        // Use the compile-time index for the packages it covers and scan the others.
+        candidates = new ArrayList<String>(index.candidates(index.covered(packages),
+            ComponentIndex.COMPONENT, ComponentIndex.NAMED));
+        logger.debug("Components found in index: {}", candidates.size());
+        String[] uncovered = index.uncovered(packages);
+        if (uncovered.length > 0) {
+          logger.debug("Not in index, scanning: {}", Arrays.toString(uncovered));
+          context.scan(uncovered);
+        }
+      }
+      if (candidates == null) {
+        // Scan all the packages of the main class recursively.
+        context.scan(packages);
+        if (snapshot != null) {
+          context.addApplicationListener(saveSnapshot(context, snapshot));
+        }
+      } else {
+        Set<Class<?>> components = new LinkedHashSet<Class<?>>();
+        for (String className : candidates) {
+          components.add(ClassUtils.forName(className, classLoader));
+        }
+        components.removeAll(classes);
+        context.register(components.toArray(new Class[components.size()]));
+      }
     } catch (Exception ex) {
       throw new ServletException("Cannot register modules.", ex);
     }
   }
 
+  /**
+   * Save the components found by classpath scanning once the application has started.
+   *
+   * @param context The Spring application context.
+   * @param snapshot The startup snapshot.
+   * @return An application listener.
+   */
+  private static ApplicationListener<ContextRefreshedEvent> saveSnapshot(
+      final AnnotationConfigWebApplicationContext context, final StartupSnapshot snapshot) {
+    return new ApplicationListener<ContextRefreshedEvent>() {
+      @Override
+      public void onApplicationEvent(final ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != context) {
+          return;
+        }
+        ConfigurableListableBeanFactory beanFactory = context.getBeanFactory();
+        List<String> components = new ArrayList<String>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+          BeanDefinition beanDefinition = beanFactory.getBeanDefinition(beanName);
+          if (beanDefinition instanceof ScannedGenericBeanDefinition) {
+            components.add(beanDefinition.getBeanClassName());
+          }
+        }
+        snapshot.save(components);
+      }
+    };
+  }
+
   /**
    * Return true if the candidate class is marked as {@link Configuration}.
    *
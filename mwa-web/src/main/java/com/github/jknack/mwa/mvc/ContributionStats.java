@@ -0,0 +1,140 @@
+package com.github.jknack.mwa.mvc;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Execution metrics of a {@link ModelContribution}: calls, failures, timeouts, slow calls,
+ * fallbacks and accumulated time.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class ContributionStats {
+
+  /**
+   * Number of executions.
+   */
+  private final AtomicLong calls = new AtomicLong();
+
+  /**
+   * Number of executions that resulted in exception.
+   */
+  private final AtomicLong failures = new AtomicLong();
+
+  /**
+   * Number of executions that didn't finish on time.
+   */
+  private final AtomicLong timeouts = new AtomicLong();
+
+  /**
+   * Number of executions that were slower than the slow threshold.
+   */
+  private final AtomicLong slowCalls = new AtomicLong();
+
+  /**
+   * Number of times the last good value was used.
+   */
+  private final AtomicLong fallbacks = new AtomicLong();
+
+  /**
+   * Accumulated execution time in nanoseconds.
+   */
+  private final AtomicLong time = new AtomicLong();
+
+  /**
+   * Record a finished execution.
+   *
+   * @param nanos The execution time in nanoseconds.
+   * @param slow True, if the execution was slower than the slow threshold.
+   */
+  void executed(final long nanos, final boolean slow) {
+    calls.incrementAndGet();
+    time.addAndGet(nanos);
+    if (slow) {
+      slowCalls.incrementAndGet();
+    }
+  }
+
+  /**
+   * Record a failure.
+   */
+  void failed() {
+    failures.incrementAndGet();
+  }
+
+  /**
+   * Record a timeout.
+   */
+  void timedOut() {
+    timeouts.incrementAndGet();
+  }
+
+  /**
+   * Record the use of the last good value.
+   */
+  void fallback() {
+    fallbacks.incrementAndGet();
+  }
+
+  /**
+   * Number of executions.
+   *
+   * @return Number of executions.
+   */
+  public long getCalls() {
+    return calls.get();
+  }
+
+  /**
+   * Number of executions that resulted in exception.
+   *
+   * @return Number of executions that resulted in exception.
+   */
+  public long getFailures() {
+    return failures.get();
+  }
+
+  /**
+   * Number of executions that didn't finish on time.
+   *
+   * @return Number of executions that didn't finish on time.
+   */
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /**
+   * Number of executions that were slower than the slow threshold.
+   *
+   * @return Number of executions that were slower than the slow threshold.
+   */
+  public long getSlowCalls() {
+    return slowCalls.get();
+  }
+
+  /**
+   * Number of times the last good value was used.
+   *
+   * @return Number of times the last good value was used.
+   */
+  public long getFallbacks() {
+    return fallbacks.get();
+  }
+
+  /**
+   * Accumulated execution time in millis.
+   *
+   * @return Accumulated execution time in millis.
+   */
+  public long getTime() {
+    return TimeUnit.NANOSECONDS.toMillis(time.get());
+  }
+
+  @Override
+  public String toString() {
+    return "calls: " + getCalls() + ", failures: " + getFailures() + ", timeouts: "
+        + getTimeouts() + ", slowCalls: " + getSlowCalls() + ", fallbacks: " + getFallbacks()
+        + ", time: " + getTime() + "ms";
+  }
+}
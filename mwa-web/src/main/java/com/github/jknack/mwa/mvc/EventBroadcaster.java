@@ -0,0 +1,447 @@
+package com.github.jknack.mwa.mvc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Fan-out Server-Sent Events to {@link EventStream}s by topic.
+ * <ul>
+ * <li>The number of open streams is bounded. A new stream is rejected (503) when the limit has
+ * been reached.</li>
+ * <li>Each stream has a bounded queue of pending events. A stream with a full queue is a slow
+ * consumer and it is closed, so a slow client never slows down the publishers.</li>
+ * <li>Events are written by a small pool of writer threads, never by the container threads. The
+ * writer's queue is bounded: a stream whose writer can't be queued is closed.</li>
+ * <li>A single timer thread sends heartbeats (an SSE comment) to every stream and closes streams
+ * that have been blocked in a write for too long.</li>
+ * <li>A stream is always completed by its own writer, never while a frame is being written.</li>
+ * </ul>
+ * Event's data is written as is for {@link CharSequence}, and as JSON for anything else.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see EventStream
+ */
+public class EventBroadcaster implements DisposableBean {
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(EventBroadcaster.class);
+
+  /**
+   * The heartbeat frame.
+   */
+  private static final String HEARTBEAT = ":\n\n";
+
+  /**
+   * The JSON mapper.
+   */
+  private final ObjectMapper mapper;
+
+  /**
+   * The open streams by topic. A topic without streams is removed. Updates are guarded by the
+   * map's lock, reads aren't.
+   */
+  private final ConcurrentMap<String, Set<EventStream>> topics =
+      new ConcurrentHashMap<String, Set<EventStream>>();
+
+  /**
+   * All the open streams.
+   */
+  private final Set<EventStream> streams =
+      Collections.newSetFromMap(new ConcurrentHashMap<EventStream, Boolean>());
+
+  /**
+   * The event's id generator.
+   */
+  private final AtomicLong ids = new AtomicLong();
+
+  /**
+   * Max number of open streams.
+   */
+  private int maxStreams = 10000;
+
+  /**
+   * Max number of pending events per stream.
+   */
+  private int queueSize = 100;
+
+  /**
+   * Heartbeat interval in millis.
+   */
+  private long heartbeat = TimeUnit.SECONDS.toMillis(15);
+
+  /**
+   * Max time in millis a writer can be blocked on a stream.
+   */
+  private long writeTimeout = TimeUnit.SECONDS.toMillis(30);
+
+  /**
+   * Number of writer threads.
+   */
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Max number of writers waiting for a thread.
+   */
+  private int writerQueueSize = 1000;
+
+  /**
+   * The writer threads. Created on demand.
+   */
+  private ExecutorService executor;
+
+  /**
+   * The heartbeat thread. Created on demand.
+   */
+  private ScheduledExecutorService timer;
+
+  /**
+   * Creates a new {@link EventBroadcaster}.
+   *
+   * @param mapper The JSON mapper. Required.
+   */
+  public EventBroadcaster(final ObjectMapper mapper) {
+    this.mapper = checkNotNull(mapper, "The JSON mapper is required.");
+  }
+
+  /**
+   * Set the max number of open streams.
+   *
+   * @param maxStreams The max number of open streams.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setMaxStreams(final int maxStreams) {
+    checkArgument(maxStreams > 0, "The max number of streams must be positive.");
+    this.maxStreams = maxStreams;
+    return this;
+  }
+
+  /**
+   * Set the max number of pending events per stream.
+   *
+   * @param queueSize The max number of pending events per stream.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setQueueSize(final int queueSize) {
+    checkArgument(queueSize > 0, "The queue size must be positive.");
+    this.queueSize = queueSize;
+    return this;
+  }
+
+  /**
+   * Set the heartbeat interval.
+   *
+   * @param heartbeat The heartbeat interval in millis. Zero or negative means: no heartbeat.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setHeartbeat(final long heartbeat) {
+    this.heartbeat = heartbeat;
+    return this;
+  }
+
+  /**
+   * Set the max time a writer can be blocked on a stream. Checked on every heartbeat.
+   *
+   * @param writeTimeout The max time in millis. Zero or negative means: no timeout.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setWriteTimeout(final long writeTimeout) {
+    this.writeTimeout = writeTimeout;
+    return this;
+  }
+
+  /**
+   * Set the number of writer threads.
+   *
+   * @param threads The number of writer threads.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setThreads(final int threads) {
+    checkArgument(threads > 0, "The number of threads must be positive.");
+    this.threads = threads;
+    return this;
+  }
+
+  /**
+   * Set the max number of writers waiting for a thread. A stream whose writer can't be queued is
+   * closed.
+   *
+   * @param writerQueueSize The max number of writers waiting for a thread.
+   * @return This broadcaster.
+   */
+  public EventBroadcaster setWriterQueueSize(final int writerQueueSize) {
+    checkArgument(writerQueueSize > 0, "The writer queue size must be positive.");
+    this.writerQueueSize = writerQueueSize;
+    return this;
+  }
+
+  /**
+   * Creates a new stream for the given topics. The stream is opened once the handler returns it.
+   *
+   * @param topics The topics. Required.
+   * @return A new stream.
+   */
+  public EventStream subscribe(final String... topics) {
+    return new EventStream(this, topics, queueSize);
+  }
+
+  /**
+   * Send an event to all the streams of a topic.
+   *
+   * @param topic The topic. Required.
+   * @param event The event's name. Optional.
+   * @param data The event's data. Required.
+   * @return Number of streams that got the event.
+   */
+  public int publish(final String topic, final String event, final Object data) {
+    checkNotNull(topic, "The topic is required.");
+    Set<EventStream> subscribers = topics.get(topic);
+    if (subscribers == null || subscribers.isEmpty()) {
+      return 0;
+    }
+    String frame = frame(event, data);
+    int count = 0;
+    for (EventStream stream : subscribers) {
+      if (stream.offer(frame)) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  /**
+   * Number of open streams.
+   *
+   * @return Number of open streams.
+   */
+  public int size() {
+    return streams.size();
+  }
+
+  /**
+   * Number of open streams of a topic.
+   *
+   * @param topic The topic. Required.
+   * @return Number of open streams of a topic.
+   */
+  public int size(final String topic) {
+    Set<EventStream> subscribers = topics.get(checkNotNull(topic, "The topic is required."));
+    return subscribers == null ? 0 : subscribers.size();
+  }
+
+  /**
+   * Number of topics with open streams.
+   *
+   * @return Number of topics with open streams.
+   */
+  int topicCount() {
+    return topics.size();
+  }
+
+  /**
+   * Register a stream.
+   *
+   * @param stream The stream.
+   * @param asyncContext The async context.
+   * @return False, if the max number of streams has been reached.
+   */
+  boolean open(final EventStream stream, final AsyncContext asyncContext) {
+    synchronized (streams) {
+      if (streams.size() >= maxStreams) {
+        logger.warn("Too many event streams: {}", streams.size());
+        return false;
+      }
+      streams.add(stream);
+    }
+    synchronized (topics) {
+      for (String topic : stream.getTopics()) {
+        Set<EventStream> subscribers = topics.get(topic);
+        if (subscribers == null) {
+          subscribers = Collections.newSetFromMap(new ConcurrentHashMap<EventStream, Boolean>());
+          topics.put(topic, subscribers);
+        }
+        subscribers.add(stream);
+      }
+    }
+    timer();
+    stream.attach(asyncContext);
+    // commit the response
+    stream.offer(HEARTBEAT);
+    logger.debug("Opening: {}", stream);
+    return true;
+  }
+
+  /**
+   * Unregister a stream.
+   *
+   * @param stream The stream.
+   */
+  void remove(final EventStream stream) {
+    if (streams.remove(stream)) {
+      synchronized (topics) {
+        for (String topic : stream.getTopics()) {
+          Set<EventStream> subscribers = topics.get(topic);
+          if (subscribers != null && subscribers.remove(stream) && subscribers.isEmpty()) {
+            topics.remove(topic);
+          }
+        }
+      }
+      logger.debug("Closing: {}", stream);
+    }
+  }
+
+  /**
+   * Close a stream. The response is completed by the stream's writer.
+   *
+   * @param stream The stream.
+   * @param reason The reason.
+   */
+  void evict(final EventStream stream, final String reason) {
+    if (!stream.isClosed()) {
+      logger.debug("Evicting {}: {}", stream, reason);
+      stream.close();
+    }
+  }
+
+  /**
+   * Creates an event frame.
+   *
+   * @param event The event's name. Optional. It can't have line breaks.
+   * @param data The event's data. Required.
+   * @return An event frame.
+   */
+  String frame(final String event, final Object data) {
+    checkArgument(!StringUtils.containsAny(event, '\r', '\n'), "Invalid event name: %s", event);
+    checkNotNull(data, "The data is required.");
+    StringBuilder frame = new StringBuilder();
+    frame.append("id: ").append(ids.incrementAndGet()).append('\n');
+    if (!StringUtils.isBlank(event)) {
+      frame.append("event: ").append(event).append('\n');
+    }
+    String text;
+    if (data instanceof CharSequence) {
+      text = data.toString();
+    } else {
+      try {
+        text = mapper.writeValueAsString(data);
+      } catch (JsonProcessingException ex) {
+        throw new IllegalArgumentException("Cannot write event: " + event, ex);
+      }
+    }
+    for (String line : StringUtils.splitPreserveAllTokens(text, '\n')) {
+      frame.append("data: ").append(StringUtils.removeEnd(line, "\r")).append('\n');
+    }
+    return frame.append('\n').toString();
+  }
+
+  /**
+   * Run a writer.
+   *
+   * @param writer The writer.
+   * @throws RejectedExecutionException If the writer's queue is full.
+   */
+  void execute(final Runnable writer) {
+    executor().execute(writer);
+  }
+
+  /**
+   * Get or creates the writer threads.
+   *
+   * @return The writer threads.
+   */
+  private synchronized ExecutorService executor() {
+    if (executor == null) {
+      // Rejected writers close their stream: see EventStream#schedule
+      executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(writerQueueSize),
+          new ThreadFactoryBuilder()
+              .setNameFormat("event-writer-%d")
+              .setDaemon(true)
+              .build());
+    }
+    return executor;
+  }
+
+  /**
+   * Starts the heartbeat thread.
+   */
+  private synchronized void timer() {
+    if (timer == null && heartbeat > 0) {
+      timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+          .setNameFormat("event-heartbeat")
+          .setDaemon(true)
+          .build());
+      timer.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          heartbeat();
+        }
+      }, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Send a heartbeat to every stream and evict blocked streams.
+   */
+  private void heartbeat() {
+    long now = System.currentTimeMillis();
+    for (EventStream stream : streams) {
+      long writing = stream.writing();
+      if (writeTimeout > 0 && writing > 0 && now - writing > writeTimeout) {
+        evict(stream, "write timeout");
+      } else {
+        stream.offer(HEARTBEAT);
+      }
+    }
+  }
+
+  @Override
+  public synchronized void destroy() {
+    for (EventStream stream : streams) {
+      stream.close();
+    }
+    if (timer != null) {
+      timer.shutdownNow();
+      timer = null;
+    }
+    if (executor != null) {
+      // let the writers complete the closed streams
+      executor.shutdown();
+      try {
+        if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          executor.shutdownNow();
+        }
+      } catch (InterruptedException ex) {
+        executor.shutdownNow();
+        Thread.currentThread().interrupt();
+      }
+      executor = null;
+    }
+  }
+}
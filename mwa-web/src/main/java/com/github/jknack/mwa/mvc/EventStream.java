@@ -0,0 +1,259 @@
+package com.github.jknack.mwa.mvc;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.servlet.AsyncContext;
+
+/**
+ * A Server-Sent Events connection. Handlers create a stream with
+ * {@link EventBroadcaster#subscribe(String...)} and return it:
+ *
+ * <pre>
+ * &#64;RequestMapping("/prices")
+ * public EventStream prices() {
+ *   return broadcaster.subscribe("prices");
+ * }
+ * </pre>
+ * <p>
+ * The request is switched to async mode, so no container thread is held while the stream is
+ * open. Events are queued per stream and written by the broadcaster's writer threads. A stream
+ * whose queue is full is a slow consumer and it is closed.
+ * </p>
+ * <p>
+ * At most one writer runs per stream. Closing a stream stops new frames right away, but the
+ * response is completed by the stream's writer, so it never happens in the middle of a write.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see EventBroadcaster
+ */
+public final class EventStream {
+
+  /**
+   * The broadcaster.
+   */
+  private final EventBroadcaster broadcaster;
+
+  /**
+   * The topics of this stream.
+   */
+  private final Set<String> topics;
+
+  /**
+   * The pending frames.
+   */
+  private final BlockingQueue<String> queue;
+
+  /**
+   * True, if a writer has been scheduled.
+   */
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  /**
+   * True, if the stream has been closed.
+   */
+  private final AtomicBoolean closed = new AtomicBoolean();
+
+  /**
+   * True, if the response has been completed.
+   */
+  private final AtomicBoolean completed = new AtomicBoolean();
+
+  /**
+   * The async context. Set once the response has been committed.
+   */
+  private volatile AsyncContext asyncContext;
+
+  /**
+   * Time in millis of the current write or zero.
+   */
+  private volatile long writing;
+
+  /**
+   * Creates a new {@link EventStream}.
+   *
+   * @param broadcaster The broadcaster. Required.
+   * @param topics The topics of this stream. Required.
+   * @param queueSize Max number of pending frames.
+   */
+  EventStream(final EventBroadcaster broadcaster, final String[] topics, final int queueSize) {
+    this.broadcaster = checkNotNull(broadcaster, "The broadcaster is required.");
+    checkArgument(queueSize > 0, "The queue size must be positive.");
+    this.topics = Collections.unmodifiableSet(new LinkedHashSet<String>(
+        Arrays.asList(checkNotNull(topics, "The topics are required."))));
+    this.queue = new ArrayBlockingQueue<String>(queueSize);
+  }
+
+  /**
+   * The topics of this stream.
+   *
+   * @return The topics of this stream.
+   */
+  public Set<String> getTopics() {
+    return topics;
+  }
+
+  /**
+   * Send an event to this stream only.
+   *
+   * @param event The event's name. Optional.
+   * @param data The event's data. Required.
+   * @return True, if the event has been queued. False, if the stream has been closed.
+   */
+  public boolean send(final String event, final Object data) {
+    return offer(broadcaster.frame(event, data));
+  }
+
+  /**
+   * True, if the stream has been closed.
+   *
+   * @return True, if the stream has been closed.
+   */
+  public boolean isClosed() {
+    return closed.get();
+  }
+
+  /**
+   * Close the stream. The HTTP response is completed by the stream's writer, once the current
+   * write (if any) finishes.
+   */
+  public void close() {
+    if (closed.compareAndSet(false, true)) {
+      queue.clear();
+      broadcaster.remove(this);
+      schedule();
+    }
+  }
+
+  /**
+   * Queue a frame. A full queue closes the stream.
+   *
+   * @param frame The frame.
+   * @return True, if the frame has been queued.
+   */
+  boolean offer(final String frame) {
+    if (closed.get()) {
+      return false;
+    }
+    if (!queue.offer(frame)) {
+      broadcaster.evict(this, "slow consumer");
+      return false;
+    }
+    schedule();
+    return true;
+  }
+
+  /**
+   * Register this stream in the broadcaster.
+   *
+   * @param asyncContext The async context.
+   * @return False, if the max number of streams has been reached.
+   */
+  boolean open(final AsyncContext asyncContext) {
+    return broadcaster.open(this, asyncContext);
+  }
+
+  /**
+   * Attach the async context and flush any pending frame.
+   *
+   * @param asyncContext The async context.
+   */
+  void attach(final AsyncContext asyncContext) {
+    this.asyncContext = asyncContext;
+    schedule();
+  }
+
+  /**
+   * Time in millis of the current write or zero.
+   *
+   * @return Time in millis of the current write or zero.
+   */
+  long writing() {
+    return writing;
+  }
+
+  /**
+   * Schedule a writer if there are pending frames or if the response must be completed.
+   */
+  private void schedule() {
+    boolean pending = closed.get() ? !completed.get() : !queue.isEmpty();
+    if (asyncContext != null && pending && scheduled.compareAndSet(false, true)) {
+      try {
+        broadcaster.execute(new Runnable() {
+          @Override
+          public void run() {
+            drain();
+          }
+        });
+      } catch (RejectedExecutionException ex) {
+        // Too many pending writers: drop this stream. No writer is running, so complete here.
+        broadcaster.evict(this, "too many pending writers");
+        complete();
+        scheduled.set(false);
+      }
+    }
+  }
+
+  /**
+   * Write all the pending frames, or complete the response if the stream was closed.
+   */
+  private void drain() {
+    try {
+      if (!closed.get()) {
+        PrintWriter writer = asyncContext.getResponse().getWriter();
+        String frame = queue.poll();
+        while (frame != null && !closed.get()) {
+          writing = System.currentTimeMillis();
+          writer.write(frame);
+          frame = queue.poll();
+        }
+        writer.flush();
+        if (writer.checkError()) {
+          throw new IOException("Connection closed by peer");
+        }
+      }
+    } catch (Exception ex) {
+      broadcaster.evict(this, ex.getMessage());
+    } finally {
+      writing = 0;
+      if (closed.get()) {
+        complete();
+      }
+      scheduled.set(false);
+    }
+    // frames queued (or a close) after the last check
+    schedule();
+  }
+
+  /**
+   * Complete the HTTP response. Only the writer (or whoever holds the writer's slot) calls it.
+   */
+  private void complete() {
+    AsyncContext context = asyncContext;
+    if (context != null && completed.compareAndSet(false, true)) {
+      try {
+        context.complete();
+      } catch (IllegalStateException ex) {
+        // the request was already completed by the container
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "EventStream" + topics;
+  }
+}
@@ -0,0 +1,87 @@
+package com.github.jknack.mwa.mvc;
+
+import java.io.IOException;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.core.Ordered;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodReturnValueHandler;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Process {@link EventStream} return values: commit a <code>text/event-stream</code> response,
+ * switch the request to async mode and open the stream. The container thread is released as soon
+ * as the handler returns.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class EventStreamReturnValueHandler implements HandlerMethodReturnValueHandler, Ordered {
+
+  @Override
+  public int getOrder() {
+    return Ordered.HIGHEST_PRECEDENCE;
+  }
+
+  @Override
+  public boolean supportsReturnType(final MethodParameter returnType) {
+    return EventStream.class.isAssignableFrom(returnType.getParameterType());
+  }
+
+  @Override
+  public void handleReturnValue(final Object returnValue, final MethodParameter returnType,
+      final ModelAndViewContainer mavContainer, final NativeWebRequest webRequest)
+      throws IOException {
+    // Stop Spring MVC.
+    mavContainer.setRequestHandled(true);
+    HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+    if (returnValue == null) {
+      response.sendError(HttpServletResponse.SC_NO_CONTENT);
+      return;
+    }
+    final EventStream stream = (EventStream) returnValue;
+    HttpServletRequest request = webRequest.getNativeRequest(HttpServletRequest.class);
+    if (!request.isAsyncSupported()) {
+      throw new IllegalStateException("Async support must be enabled on the servlet and all the "
+          + "filters of: " + request.getRequestURI());
+    }
+    response.setContentType("text/event-stream");
+    response.setCharacterEncoding("UTF-8");
+    response.setHeader("Cache-Control", "no-cache");
+    response.setHeader("Connection", "keep-alive");
+
+    AsyncContext asyncContext = request.startAsync(request, response);
+    // No timeout: streams are closed by the client, the application or the broadcaster.
+    asyncContext.setTimeout(0);
+    asyncContext.addListener(new AsyncListener() {
+      @Override
+      public void onStartAsync(final AsyncEvent event) {
+      }
+
+      @Override
+      public void onTimeout(final AsyncEvent event) {
+        stream.close();
+      }
+
+      @Override
+      public void onError(final AsyncEvent event) {
+        stream.close();
+      }
+
+      @Override
+      public void onComplete(final AsyncEvent event) {
+        stream.close();
+      }
+    });
+    if (!stream.open(asyncContext)) {
+      response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+      asyncContext.complete();
+    }
+  }
+}
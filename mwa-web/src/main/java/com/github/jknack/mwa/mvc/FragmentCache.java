@@ -0,0 +1,366 @@
+package com.github.jknack.mwa.mvc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.Weigher;
+
+/**
+ * A bounded, in-process cache for rendered fragments (partial-page output). A fragment is
+ * identified by a key and lives until its TTL expires, until it get evicted (the cache is bounded
+ * by the number of characters) or until it is invalidated.
+ * <p>
+ * Views use the cache through the {@link FragmentCacheContribution} which publish it as the
+ * <code>fragments</code> model attribute, only if the cache is enabled: views must render without
+ * the cache if the attribute is missing. A view helper can mark a region with a key and a TTL
+ * by doing:
+ * </p>
+ *
+ * <pre>
+ *   String html = fragments.get("sidebar", 600, new Callable&lt;String&gt;() {
+ *     public String call() throws Exception {
+ *       // render the region
+ *     }
+ *   });
+ * </pre>
+ *
+ * Templates without closure support can use: {@link #get(String)} and
+ * {@link #put(String, String, long)}.
+ * <p>
+ * Services can invalidate fragments by injecting the {@link FragmentCache} and calling:
+ * {@link #invalidate(String)}, {@link #invalidatePrefix(String)} or {@link #invalidateAll()}.
+ * A fragment invalidated while it was rendering by
+ * {@link #get(String, long, Callable)} isn't kept: the render might have seen stale data.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class FragmentCache {
+
+  /**
+   * A rendered fragment and its expiration time.
+   *
+   * @author edgar.espina
+   */
+  private static final class Fragment {
+
+    /**
+     * The rendered output.
+     */
+    private final String content;
+
+    /**
+     * Expiration time in nanos (as in {@link System#nanoTime()}).
+     */
+    private final long expiresAt;
+
+    /**
+     * Creates a new {@link Fragment}.
+     *
+     * @param content The rendered output.
+     * @param now The current time in nanos.
+     * @param ttl The time to live in seconds.
+     */
+    public Fragment(final String content, final long now, final long ttl) {
+      this.content = content;
+      this.expiresAt = now + TimeUnit.SECONDS.toNanos(ttl);
+    }
+
+    /**
+     * True if the fragment has expired.
+     *
+     * @param now The current time in nanos.
+     * @return True if the fragment has expired.
+     */
+    public boolean expired(final long now) {
+      return now - expiresAt >= 0;
+    }
+  }
+
+  /**
+   * The generation of a key with renders in flight. Invalidating the key moves it to the next
+   * generation, so the renders that started before don't keep their (maybe stale) output.
+   *
+   * @author edgar.espina
+   */
+  private static final class Generation {
+
+    /**
+     * The current generation.
+     */
+    private long version;
+
+    /**
+     * Number of renders in flight.
+     */
+    private int renders;
+  }
+
+  /**
+   * The logging system.
+   */
+  private static final Logger logger = LoggerFactory.getLogger(FragmentCache.class);
+
+  /**
+   * The fragment cache.
+   */
+  private final Cache<String, Fragment> cache;
+
+  /**
+   * The default time to live in seconds.
+   */
+  private final long defaultTtl;
+
+  /**
+   * True if the cache is enabled.
+   */
+  private final boolean enabled;
+
+  /**
+   * Number of expired fragments found on lookups.
+   */
+  private final AtomicLong expirations = new AtomicLong();
+
+  /**
+   * The source of time.
+   */
+  private final Ticker ticker;
+
+  /**
+   * Generations of the keys with renders in flight. Guarded by itself.
+   */
+  private final Map<String, Generation> generations = new HashMap<String, Generation>();
+
+  /**
+   * Creates a new {@link FragmentCache}.
+   *
+   * @param maxSize The max number of characters to keep in the cache.
+   * @param defaultTtl The default time to live in seconds.
+   * @param enabled True, for enabling the cache. A disabled cache never hit.
+   */
+  public FragmentCache(final long maxSize, final long defaultTtl, final boolean enabled) {
+    this(maxSize, defaultTtl, enabled, Ticker.systemTicker());
+  }
+
+  /**
+   * Creates a new {@link FragmentCache}.
+   *
+   * @param maxSize The max number of characters to keep in the cache.
+   * @param defaultTtl The default time to live in seconds.
+   * @param enabled True, for enabling the cache. A disabled cache never hit.
+   * @param ticker The source of time. Required.
+   */
+  FragmentCache(final long maxSize, final long defaultTtl, final boolean enabled,
+      final Ticker ticker) {
+    this.defaultTtl = defaultTtl;
+    this.enabled = enabled;
+    this.ticker = checkNotNull(ticker, "The ticker is required.");
+    this.cache = CacheBuilder.newBuilder()
+        .maximumWeight(maxSize)
+        .weigher(new Weigher<String, Fragment>() {
+          @Override
+          public int weigh(final String key, final Fragment fragment) {
+            return key.length() + fragment.content.length();
+          }
+        })
+        .recordStats()
+        .build();
+  }
+
+  /**
+   * Get a fragment from the cache.
+   *
+   * @param key The fragment's key. Required.
+   * @return The rendered fragment or <code>null</code>.
+   */
+  public String get(final String key) {
+    checkNotNull(key, "The fragment's key is required.");
+    if (!enabled) {
+      return null;
+    }
+    Fragment fragment = cache.getIfPresent(key);
+    if (fragment == null) {
+      return null;
+    }
+    if (fragment.expired(ticker.read())) {
+      expirations.incrementAndGet();
+      cache.asMap().remove(key, fragment);
+      return null;
+    }
+    return fragment.content;
+  }
+
+  /**
+   * Get a fragment from the cache or render it and keep it in the cache.
+   *
+   * @param key The fragment's key. Required.
+   * @param ttl The time to live in seconds.
+   * @param renderer The fragment renderer. Required.
+   * @return The rendered fragment.
+   * @throws Exception If the fragment cannot be rendered.
+   */
+  public String get(final String key, final long ttl, final Callable<String> renderer)
+      throws Exception {
+    checkNotNull(renderer, "The renderer is required.");
+    String content = get(key);
+    if (content == null) {
+      Generation generation;
+      long version;
+      synchronized (generations) {
+        generation = generations.get(key);
+        if (generation == null) {
+          generation = new Generation();
+          generations.put(key, generation);
+        }
+        generation.renders++;
+        version = generation.version;
+      }
+      try {
+        content = renderer.call();
+      } finally {
+        synchronized (generations) {
+          if (generation.version == version) {
+            put(key, content, ttl);
+          } else {
+            logger.debug("Fragment invalidated while rendering: {}", key);
+          }
+          if (--generation.renders == 0) {
+            generations.remove(key);
+          }
+        }
+      }
+    }
+    return content;
+  }
+
+  /**
+   * Keep a fragment in the cache for the default TTL.
+   *
+   * @param key The fragment's key. Required.
+   * @param content The rendered fragment.
+   * @return The rendered fragment.
+   */
+  public String put(final String key, final String content) {
+    return put(key, content, defaultTtl);
+  }
+
+  /**
+   * Keep a fragment in the cache.
+   *
+   * @param key The fragment's key. Required.
+   * @param content The rendered fragment.
+   * @param ttl The time to live in seconds. Zero or negative means: don't cache.
+   * @return The rendered fragment.
+   */
+  public String put(final String key, final String content, final long ttl) {
+    checkNotNull(key, "The fragment's key is required.");
+    if (enabled && content != null && ttl > 0) {
+      cache.put(key, new Fragment(content, ticker.read(), ttl));
+    }
+    return content;
+  }
+
+  /**
+   * Remove a fragment from the cache.
+   *
+   * @param key The fragment's key. Required.
+   */
+  public void invalidate(final String key) {
+    checkNotNull(key, "The fragment's key is required.");
+    synchronized (generations) {
+      Generation generation = generations.get(key);
+      if (generation != null) {
+        generation.version++;
+      }
+      cache.invalidate(key);
+    }
+  }
+
+  /**
+   * Remove all the fragments whose key starts with the given prefix.
+   *
+   * @param prefix The key's prefix. Required.
+   */
+  public void invalidatePrefix(final String prefix) {
+    checkNotNull(prefix, "The key's prefix is required.");
+    synchronized (generations) {
+      for (Map.Entry<String, Generation> generation : generations.entrySet()) {
+        if (generation.getKey().startsWith(prefix)) {
+          generation.getValue().version++;
+        }
+      }
+      for (String key : cache.asMap().keySet()) {
+        if (key.startsWith(prefix)) {
+          cache.invalidate(key);
+        }
+      }
+    }
+    logger.debug("Fragments invalidated: {}*", prefix);
+  }
+
+  /**
+   * Remove all the fragments.
+   */
+  public void invalidateAll() {
+    synchronized (generations) {
+      for (Generation generation : generations.values()) {
+        generation.version++;
+      }
+      cache.invalidateAll();
+    }
+  }
+
+  /**
+   * Number of fragments in the cache.
+   *
+   * @return Number of fragments in the cache.
+   */
+  public long size() {
+    return cache.size();
+  }
+
+  /**
+   * Hit, miss and eviction counts of the cache.
+   *
+   * @return Hit, miss and eviction counts of the cache.
+   */
+  public CacheStats stats() {
+    return cache.stats();
+  }
+
+  /**
+   * Number of expired fragments found on lookups.
+   *
+   * @return Number of expired fragments found on lookups.
+   */
+  public long expirations() {
+    return expirations.get();
+  }
+
+  /**
+   * True if the cache is enabled.
+   *
+   * @return True if the cache is enabled.
+   */
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  @Override
+  public String toString() {
+    return "fragments: " + size() + ", " + stats() + ", expirations: " + expirations();
+  }
+}
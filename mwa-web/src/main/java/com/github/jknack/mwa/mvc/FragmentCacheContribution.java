@@ -0,0 +1,47 @@
+package com.github.jknack.mwa.mvc;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.servlet.ModelAndView;
+
+/**
+ * Publish the {@link FragmentCache} as the {@link #VAR_NAME} model attribute, so views can cache
+ * expensive regions.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ * @see FragmentCache
+ */
+public class FragmentCacheContribution extends AbstractModelContribution {
+
+  /**
+   * The model attribute's name.
+   */
+  public static final String VAR_NAME = "fragments";
+
+  /**
+   * The fragment cache.
+   */
+  private final FragmentCache fragmentCache;
+
+  /**
+   * Creates a new {@link FragmentCacheContribution}.
+   *
+   * @param fragmentCache The fragment cache. Required.
+   */
+  public FragmentCacheContribution(final FragmentCache fragmentCache) {
+    this.fragmentCache = checkNotNull(fragmentCache, "The fragment cache is required.");
+  }
+
+  @Override
+  public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+      final ModelAndView modelAndView) throws IOException {
+    modelAndView.addObject(VAR_NAME, fragmentCache);
+  }
+
+}
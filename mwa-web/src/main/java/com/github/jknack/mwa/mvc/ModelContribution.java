@@ -26,7 +26,8 @@ public interface ModelContribution {
   String CONTEXT_PATH = "contextPath";
 
   /**
-   * Add new model attributes to the view.
+   * Add new model attributes to the view. A contribution bounded by a timeout runs in a thread
+   * pool: it gets a read-only snapshot of the request and response and a copy of the model.
    *
    * @param request The HTTP request.
    * @param response The HTTP response.
@@ -2,8 +2,26 @@ package com.github.jknack.mwa.mvc;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
@@ -11,19 +29,296 @@ import javax.servlet.http.HttpServletResponse;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.i18n.LocaleContext;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.context.i18n.SimpleLocaleContext;
 import org.springframework.core.PriorityOrdered;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
 import org.springframework.web.method.HandlerMethod;
 import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.servlet.View;
 import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
 
+import com.github.jknack.mwa.TraceEvent;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * A {@link HandlerInterceptorAdapter} that enable model contributions.
+ * <p>
+ * Optionally, a contribution can be bounded by a timeout. Bounded contributions start together in
+ * a small thread pool, while the other contributions run on the request thread. All the timeouts
+ * are measured from the same instant, so the request waits no longer than the largest timeout.
+ * Bounded contributions:
+ * </p>
+ * <ul>
+ * <li>see a read-only snapshot of the request (see {@link RequestSnapshot}) and a copy of the
+ * model as it was before any contribution ran.</li>
+ * <li>see the request attributes, locale and security context of the request.</li>
+ * <li>changes (added, changed or removed attributes and the view) are merged into the model on
+ * the request thread, after the other contributions and in declaration order. Late changes are
+ * discarded.</li>
+ * </ul>
+ * <p>
+ * If a contribution fails or times out, the last good changes of the contribution (if enabled)
+ * are applied to the model.
+ * </p>
  *
  * @author edgar.espina
  * @since 0.1.2
+ * @see ContributionStats
  */
 public class ModelContributionInterceptor extends HandlerInterceptorAdapter
-    implements PriorityOrdered {
+    implements PriorityOrdered, DisposableBean {
+
+  /**
+   * The changes a contribution made to the model and view.
+   *
+   * @author edgar.espina
+   */
+  private static final class ContributionResult {
+
+    /**
+     * The model attributes added or changed.
+     */
+    private final Map<String, Object> values = new HashMap<String, Object>();
+
+    /**
+     * The model attributes removed.
+     */
+    private final Set<String> removed = new HashSet<String>();
+
+    /**
+     * True, if the view was changed.
+     */
+    private final boolean viewChanged;
+
+    /**
+     * The new view's name.
+     */
+    private final String viewName;
+
+    /**
+     * The new view.
+     */
+    private final View view;
+
+    /**
+     * Creates a new {@link ContributionResult}.
+     *
+     * @param model The model before the contribution.
+     * @param viewName The view's name before the contribution.
+     * @param view The view before the contribution.
+     * @param modelAndView The model and view after the contribution.
+     */
+    public ContributionResult(final Map<String, Object> model, final String viewName,
+        final View view, final ModelAndView modelAndView) {
+      Map<String, Object> contributed = modelAndView.getModel();
+      for (Entry<String, Object> attribute : contributed.entrySet()) {
+        String name = attribute.getKey();
+        Object value = attribute.getValue();
+        if (!model.containsKey(name) || model.get(name) != value) {
+          values.put(name, value);
+        }
+      }
+      for (String name : model.keySet()) {
+        if (!contributed.containsKey(name)) {
+          removed.add(name);
+        }
+      }
+      this.viewName = modelAndView.isReference() ? modelAndView.getViewName() : null;
+      this.view = modelAndView.isReference() ? null : modelAndView.getView();
+      this.viewChanged = !ObjectUtils.nullSafeEquals(viewName, this.viewName)
+          || view != this.view;
+    }
+
+    /**
+     * Apply the changes to the given model and view.
+     *
+     * @param modelAndView The model and view.
+     */
+    public void apply(final ModelAndView modelAndView) {
+      Map<String, Object> model = modelAndView.getModel();
+      model.keySet().removeAll(removed);
+      model.putAll(values);
+      if (viewChanged) {
+        if (view == null) {
+          modelAndView.setViewName(viewName);
+        } else {
+          modelAndView.setView(view);
+        }
+      }
+    }
+  }
+
+  /**
+   * The execution of a contribution in a request.
+   *
+   * @author edgar.espina
+   */
+  private static final class Execution {
+
+    /**
+     * The contribution.
+     */
+    private final ModelContribution contribution;
+
+    /**
+     * The view's name.
+     */
+    private final String viewName;
+
+    /**
+     * The start time in nanos.
+     */
+    private final long start;
+
+    /**
+     * The deadline in nanos. Only for bounded contributions.
+     */
+    private final long deadline;
+
+    /**
+     * The trace event.
+     */
+    private final TraceEvent event = TraceEvent.begin(TraceEvent.MODEL_CONTRIBUTION);
+
+    /**
+     * The pending result of a bounded contribution.
+     */
+    private Future<ContributionResult> future;
+
+    /**
+     * The result or <code>null</code> if the contribution changed the model directly.
+     */
+    private ContributionResult result;
+
+    /**
+     * The failure or <code>null</code>.
+     */
+    private Throwable failure;
+
+    /**
+     * Creates a new {@link Execution}.
+     *
+     * @param contribution The contribution.
+     * @param viewName The view's name.
+     * @param start The start time in nanos.
+     * @param deadline The deadline in nanos. Only for bounded contributions.
+     */
+    public Execution(final ModelContribution contribution, final String viewName,
+        final long start, final long deadline) {
+      this.contribution = contribution;
+      this.viewName = viewName;
+      this.start = start;
+      this.deadline = deadline;
+    }
+  }
+
+  /**
+   * The thread-bound state of a request (request attributes, locale and Spring Security's
+   * context if present) copied to the thread pool. The request attributes are backed by a
+   * {@link RequestSnapshot}, so request and session scoped writes aren't available.
+   *
+   * @author edgar.espina
+   */
+  private static final class ContextSnapshot {
+
+    /**
+     * The Spring Security's context holder or <code>null</code>.
+     */
+    private static final Class<?> SECURITY_CONTEXT_HOLDER = securityContextHolder();
+
+    /**
+     * The request attributes.
+     */
+    private final RequestAttributes attributes;
+
+    /**
+     * The locale context.
+     */
+    private final LocaleContext localeContext;
+
+    /**
+     * The security context or <code>null</code>.
+     */
+    private final Object securityContext;
+
+    /**
+     * Creates a new {@link ContextSnapshot}.
+     *
+     * @param attributes The request attributes.
+     * @param localeContext The locale context.
+     * @param securityContext The security context or <code>null</code>.
+     */
+    private ContextSnapshot(final RequestAttributes attributes,
+        final LocaleContext localeContext, final Object securityContext) {
+      this.attributes = attributes;
+      this.localeContext = localeContext;
+      this.securityContext = securityContext;
+    }
+
+    /**
+     * Copy the state of the calling thread. It must be called from the request thread.
+     *
+     * @param request The request snapshot.
+     * @return The state of the calling thread.
+     */
+    public static ContextSnapshot capture(final HttpServletRequest request) {
+      Object securityContext = null;
+      if (SECURITY_CONTEXT_HOLDER != null) {
+        securityContext = ReflectionUtils.invokeMethod(
+            ReflectionUtils.findMethod(SECURITY_CONTEXT_HOLDER, "getContext"), null);
+      }
+      // The default locale context resolves the locale from the live request: resolve it now.
+      return new ContextSnapshot(new ServletRequestAttributes(request),
+          new SimpleLocaleContext(LocaleContextHolder.getLocale()), securityContext);
+    }
+
+    /**
+     * Bind the state to the calling thread.
+     */
+    public void set() {
+      RequestContextHolder.setRequestAttributes(attributes);
+      LocaleContextHolder.setLocaleContext(localeContext);
+      if (securityContext != null) {
+        Method setContext = ReflectionUtils.findMethod(SECURITY_CONTEXT_HOLDER, "setContext",
+            (Class<?>[]) null);
+        ReflectionUtils.invokeMethod(setContext, null, securityContext);
+      }
+    }
+
+    /**
+     * Unbind the state from the calling thread.
+     */
+    public void reset() {
+      RequestContextHolder.resetRequestAttributes();
+      LocaleContextHolder.resetLocaleContext();
+      if (securityContext != null) {
+        ReflectionUtils.invokeMethod(
+            ReflectionUtils.findMethod(SECURITY_CONTEXT_HOLDER, "clearContext"), null);
+      }
+    }
+
+    /**
+     * The Spring Security's context holder or <code>null</code> if it isn't present.
+     *
+     * @return The Spring Security's context holder or <code>null</code>.
+     */
+    private static Class<?> securityContextHolder() {
+      String name = "org.springframework.security.core.context.SecurityContextHolder";
+      ClassLoader loader = ModelContributionInterceptor.class.getClassLoader();
+      return ClassUtils.isPresent(name, loader) ? ClassUtils.resolveClassName(name, loader)
+          : null;
+    }
+  }
 
   /**
    * The logging system.
@@ -35,6 +330,47 @@ public class ModelContributionInterceptor extends HandlerInterceptorAdapter
    */
   private List<ModelContribution> contributions;
 
+  /**
+   * Default timeout in millis. Zero or negative means: no timeout.
+   */
+  private long timeout;
+
+  /**
+   * Timeout in millis per contribution's name.
+   */
+  private final Map<String, Long> timeouts = new HashMap<String, Long>();
+
+  /**
+   * Slow execution threshold in millis. Zero or negative means: disabled.
+   */
+  private long slowThreshold;
+
+  /**
+   * The last good values per contribution and view. Optional.
+   */
+  private Cache<String, ContributionResult> fallbackCache;
+
+  /**
+   * The thread pool for bounded contributions. Created on demand.
+   */
+  private ExecutorService executor;
+
+  /**
+   * Max number of threads for bounded contributions.
+   */
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  /**
+   * Max number of pending contributions.
+   */
+  private int queueSize = MvcModule.DEFAULT_QUEUE_SIZE;
+
+  /**
+   * The metrics per contribution's name.
+   */
+  private final ConcurrentMap<String, ContributionStats> stats =
+      new ConcurrentHashMap<String, ContributionStats>();
+
   /**
    * Creates a new {@link ModelContributionInterceptor}.
    *
@@ -46,6 +382,81 @@ public class ModelContributionInterceptor extends HandlerInterceptorAdapter
         checkNotNull(contributions, "The contribution list is required.");
   }
 
+  /**
+   * Set the default timeout for all the contributions.
+   *
+   * @param timeout The timeout in millis. Zero or negative means: no timeout.
+   * @return This interceptor.
+   */
+  public ModelContributionInterceptor setTimeout(final long timeout) {
+    this.timeout = timeout;
+    return this;
+  }
+
+  /**
+   * Set the timeout for the given contribution. It overrides the default timeout.
+   *
+   * @param contributionName The contribution's name: the simple class name. Required.
+   * @param timeout The timeout in millis. Zero or negative means: no timeout.
+   * @return This interceptor.
+   */
+  public ModelContributionInterceptor setTimeout(final String contributionName,
+      final long timeout) {
+    timeouts.put(checkNotNull(contributionName, "The contribution's name is required."),
+        timeout);
+    return this;
+  }
+
+  /**
+   * Set the slow execution threshold. Executions slower than this value are counted as slow
+   * calls.
+   *
+   * @param slowThreshold The threshold in millis. Zero or negative means: disabled.
+   * @return This interceptor.
+   */
+  public ModelContributionInterceptor setSlowThreshold(final long slowThreshold) {
+    this.slowThreshold = slowThreshold;
+    return this;
+  }
+
+  /**
+   * Keep the last good value of each contribution and use it when a contribution fails or times
+   * out.
+   *
+   * @param maxSize Max number of values to keep. Zero or negative turn off the fallback cache.
+   * @return This interceptor.
+   */
+  public ModelContributionInterceptor setFallbackCacheSize(final long maxSize) {
+    if (maxSize > 0) {
+      fallbackCache = CacheBuilder.newBuilder().maximumSize(maxSize).build();
+    } else {
+      fallbackCache = null;
+    }
+    return this;
+  }
+
+  /**
+   * Set the size of the thread pool used by bounded contributions.
+   *
+   * @param threads The max number of threads.
+   * @param queueSize The max number of pending contributions.
+   * @return This interceptor.
+   */
+  public ModelContributionInterceptor setThreadPool(final int threads, final int queueSize) {
+    this.threads = threads;
+    this.queueSize = queueSize;
+    return this;
+  }
+
+  /**
+   * The metrics per contribution's name.
+   *
+   * @return The metrics per contribution's name.
+   */
+  public Map<String, ContributionStats> getStats() {
+    return Collections.unmodifiableMap(stats);
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -71,19 +482,223 @@ public class ModelContributionInterceptor extends HandlerInterceptorAdapter
       Map<String, Object> model = modelAndView.getModel();
       model.put(ModelContribution.CONTEXT_PATH, request.getContextPath());
       model.put(ModelContribution.VIEW, viewName);
+      // Bounded contributions start together and run while the others run here.
+      List<Execution> bounded = new ArrayList<Execution>();
+      HttpServletRequest requestSnapshot = null;
+      HttpServletResponse responseSnapshot = null;
+      ContextSnapshot context = null;
+      long start = System.nanoTime();
       for (ModelContribution contribution : contributions) {
         String contributionName = contribution.getClass().getSimpleName();
+        long contributionTimeout = timeout(contributionName);
+        if (contributionTimeout > 0) {
+          if (requestSnapshot == null) {
+            requestSnapshot = RequestSnapshot.request(request);
+            responseSnapshot = RequestSnapshot.response(response);
+            context = ContextSnapshot.capture(requestSnapshot);
+          }
+          Execution execution = new Execution(contribution, viewName, start,
+              start + TimeUnit.MILLISECONDS.toNanos(contributionTimeout));
+          try {
+            execution.future = executor().submit(
+                task(contribution, context, requestSnapshot, responseSnapshot, modelAndView));
+          } catch (RejectedExecutionException ex) {
+            execution.failure = ex;
+          }
+          bounded.add(execution);
+        }
+      }
+      for (ModelContribution contribution : contributions) {
+        String contributionName = contribution.getClass().getSimpleName();
+        if (timeout(contributionName) <= 0) {
+          Execution execution = new Execution(contribution, viewName, System.nanoTime(), 0);
+          try {
+            if (fallbackCache == null) {
+              contribution.contribute(request, response, modelAndView);
+            } else {
+              execution.result = task(contribution, null, request, response, modelAndView)
+                  .call();
+            }
+          } catch (Exception ex) {
+            execution.failure = ex;
+          }
+          done(execution, request, modelAndView);
+        }
+      }
+      for (Execution execution : bounded) {
+        if (execution.future != null) {
+          long remaining = execution.deadline - System.nanoTime();
+          try {
+            execution.result = execution.future.get(Math.max(0, remaining),
+                TimeUnit.NANOSECONDS);
+          } catch (TimeoutException ex) {
+            // The task works on copies: it can't touch the request once we leave.
+            execution.future.cancel(true);
+            execution.failure = ex;
+          } catch (ExecutionException ex) {
+            execution.failure = ex.getCause();
+          }
+        }
+        done(execution, request, modelAndView);
+      }
+    }
+  }
+
+  /**
+   * Merge the result of a contribution into the model (or the last good value if the
+   * contribution failed) and record its metrics. It runs on the request thread.
+   *
+   * @param execution The contribution's execution.
+   * @param request The HTTP request.
+   * @param modelAndView The model and view.
+   */
+  private void done(final Execution execution, final HttpServletRequest request,
+      final ModelAndView modelAndView) {
+    String contributionName = execution.contribution.getClass().getSimpleName();
+    ContributionStats contributionStats = stats(contributionName);
+    String fallbackKey = contributionName + ":" + execution.viewName;
+    if (execution.failure instanceof TimeoutException) {
+      contributionStats.timedOut();
+      logger.warn("Contribution: {} timed out on: {}", contributionName,
+          request.getRequestURI());
+      fallback(contributionStats, fallbackKey, modelAndView);
+    } else if (execution.failure != null) {
+      contributionStats.failed();
+      logger.warn("Contribution execution resulted in exception: " + contributionName,
+          execution.failure);
+      fallback(contributionStats, fallbackKey, modelAndView);
+    } else if (execution.result != null) {
+      execution.result.apply(modelAndView);
+      if (fallbackCache != null) {
+        fallbackCache.put(fallbackKey, execution.result);
+      }
+    }
+    long elapsed = System.nanoTime() - execution.start;
+    boolean slow = slowThreshold > 0
+        && TimeUnit.NANOSECONDS.toMillis(elapsed) > slowThreshold;
+    if (slow) {
+      logger.debug("Slow contribution: {}, took: {}ms", contributionName,
+          TimeUnit.NANOSECONDS.toMillis(elapsed));
+    }
+    contributionStats.executed(elapsed, slow);
+    execution.event.set("contribution", contributionName)
+        .set("uri", request.getRequestURI())
+        .set("view", execution.viewName)
+        .commit();
+  }
+
+  /**
+   * Creates a task that executes a contribution over a copy of the model and collects the
+   * changes made by the contribution.
+   *
+   * @param contribution The contribution.
+   * @param context The request context to set while the task runs or <code>null</code> if the
+   *        task runs on the request thread.
+   * @param request The HTTP request.
+   * @param response The HTTP response.
+   * @param modelAndView The model and view.
+   * @return A new task.
+   */
+  private static Callable<ContributionResult> task(final ModelContribution contribution,
+      final ContextSnapshot context, final HttpServletRequest request,
+      final HttpServletResponse response, final ModelAndView modelAndView) {
+    final Map<String, Object> model = new HashMap<String, Object>(modelAndView.getModel());
+    final String viewName = modelAndView.isReference() ? modelAndView.getViewName() : null;
+    final View view = modelAndView.isReference() ? null : modelAndView.getView();
+    return new Callable<ContributionResult>() {
+      @Override
+      public ContributionResult call() throws Exception {
+        ModelAndView copy = view == null ? new ModelAndView(viewName,
+            new HashMap<String, Object>(model)) : new ModelAndView(view,
+            new HashMap<String, Object>(model));
+        if (context != null) {
+          context.set();
+        }
         try {
-          logger.debug("Adding contribution: {} to: {}, view: {}",
-              new Object[]{contributionName, request.getRequestURI(), viewName });
-          contribution.contribute(request, response, modelAndView);
-        } catch (Exception ex) {
-          logger.warn("Contribution execution resulted in exception: " + contributionName, ex);
+          contribution.contribute(request, response, copy);
+        } finally {
+          if (context != null) {
+            context.reset();
+          }
         }
+        return new ContributionResult(model, viewName, view, copy);
+      }
+    };
+  }
+
+  /**
+   * Apply the last good value (if any) of a contribution.
+   *
+   * @param contributionStats The contribution's metrics.
+   * @param fallbackKey The fallback key.
+   * @param modelAndView The model and view.
+   */
+  private void fallback(final ContributionStats contributionStats, final String fallbackKey,
+      final ModelAndView modelAndView) {
+    if (fallbackCache != null) {
+      ContributionResult result = fallbackCache.getIfPresent(fallbackKey);
+      if (result != null) {
+        logger.debug("Using last good value of: {}", fallbackKey);
+        contributionStats.fallback();
+        result.apply(modelAndView);
       }
     }
   }
 
+  /**
+   * The timeout of the given contribution.
+   *
+   * @param contributionName The contribution's name.
+   * @return The timeout in millis.
+   */
+  private long timeout(final String contributionName) {
+    Long contributionTimeout = timeouts.get(contributionName);
+    return contributionTimeout == null ? timeout : contributionTimeout;
+  }
+
+  /**
+   * Get or creates the metrics of a contribution.
+   *
+   * @param contributionName The contribution's name.
+   * @return The contribution's metrics.
+   */
+  private ContributionStats stats(final String contributionName) {
+    ContributionStats contributionStats = stats.get(contributionName);
+    if (contributionStats == null) {
+      contributionStats = new ContributionStats();
+      ContributionStats existing = stats.putIfAbsent(contributionName, contributionStats);
+      if (existing != null) {
+        contributionStats = existing;
+      }
+    }
+    return contributionStats;
+  }
+
+  /**
+   * Get or creates the thread pool for bounded contributions.
+   *
+   * @return The thread pool for bounded contributions.
+   */
+  private synchronized ExecutorService executor() {
+    if (executor == null) {
+      executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+          new LinkedBlockingQueue<Runnable>(queueSize),
+          new ThreadFactoryBuilder()
+              .setNameFormat("contribution-%d")
+              .setDaemon(true)
+              .build());
+    }
+    return executor;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
   @Override
   public int getOrder() {
     return HIGHEST_PRECEDENCE;
@@ -1,12 +1,54 @@
 package com.github.jknack.mwa.mvc;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.jknack.mwa.Mode;
 
 /**
  * Configure {@link ModelContribution} extension point.
+ * <h3>Contribution deadlines</h3>
+ * <ul>
+ * <li>mvc.contribution.timeout: max time in millis that a contribution can take. Default is: 0
+ * (no timeout).</li>
+ * <li>mvc.contribution.[SimpleClassName].timeout: max time in millis for one contribution. It
+ * overrides the default timeout.</li>
+ * <li>mvc.contribution.slowThreshold: executions slower than this value in millis are counted as
+ * slow calls. Default is: 250.</li>
+ * <li>mvc.contribution.fallback: keep the last good value of a contribution and use it if the
+ * contribution fails or times out. Default is: 0 (no fallback). A positive number set the max
+ * number of last good values.</li>
+ * <li>mvc.contribution.threads: number of threads for contributions with a timeout. Default is:
+ * number of processors.</li>
+ * <li>mvc.contribution.queueSize: max number of pending contributions. Default is: 1000.</li>
+ * </ul>
+ * <h3>Fragment cache</h3>
+ * <ul>
+ * <li>mvc.fragmentCache.enabled: turn on/off the {@link FragmentCache}. Default is: true, except
+ * in 'dev'. If enabled, the cache is published to views as the
+ * {@link FragmentCacheContribution#VAR_NAME} model attribute.</li>
+ * <li>mvc.fragmentCache.maxSize: max number of characters to keep in the cache. Default is:
+ * 10000000.</li>
+ * <li>mvc.fragmentCache.ttl: default time to live in seconds. Default is: 300.</li>
+ * </ul>
+ * <h3>Server-Sent Events</h3>
+ * <ul>
+ * <li>mvc.events.maxStreams: max number of open {@link EventStream}s. Default is: 10000.</li>
+ * <li>mvc.events.queueSize: max number of pending events per stream. Slow consumers are closed.
+ * Default is: 100.</li>
+ * <li>mvc.events.heartbeat: heartbeat interval in millis. Default is: 15000.</li>
+ * <li>mvc.events.writeTimeout: max time in millis a write can be blocked. Default is: 30000.
+ * </li>
+ * <li>mvc.events.threads: number of writer threads. Default is: number of processors.</li>
+ * <li>mvc.events.writerQueueSize: max number of writers waiting for a thread. A stream whose
+ * writer can't be queued is closed. Default is: 1000.</li>
+ * </ul>
  *
  * @author edgar.espina
  * @since 0.1.8
@@ -14,15 +56,200 @@ import org.springframework.context.annotation.Configuration;
 @Configuration
 public class MvcModule {
 
+  /**
+   * Max time in millis that a contribution can take. Default is: 0 (no timeout).
+   */
+  public static final String CONTRIBUTION_TIMEOUT = "mvc.contribution.timeout";
+
+  /**
+   * Executions slower than this value in millis are counted as slow calls.
+   */
+  public static final String CONTRIBUTION_SLOW_THRESHOLD = "mvc.contribution.slowThreshold";
+
+  /**
+   * Max number of last good values to keep. Default is: 0 (no fallback).
+   */
+  public static final String CONTRIBUTION_FALLBACK = "mvc.contribution.fallback";
+
+  /**
+   * Number of threads for contributions with a timeout.
+   */
+  public static final String CONTRIBUTION_THREADS = "mvc.contribution.threads";
+
+  /**
+   * Max number of pending contributions.
+   */
+  public static final String CONTRIBUTION_QUEUE_SIZE = "mvc.contribution.queueSize";
+
+  /**
+   * Turn on/off the fragment cache. Default is: true, except in 'dev'.
+   */
+  public static final String FRAGMENT_CACHE_ENABLED = "mvc.fragmentCache.enabled";
+
+  /**
+   * Max number of characters to keep in the fragment cache.
+   */
+  public static final String FRAGMENT_CACHE_MAX_SIZE = "mvc.fragmentCache.maxSize";
+
+  /**
+   * Default time to live in seconds of a fragment.
+   */
+  public static final String FRAGMENT_CACHE_TTL = "mvc.fragmentCache.ttl";
+
+  /**
+   * Default value for {@link #FRAGMENT_CACHE_MAX_SIZE}.
+   */
+  private static final long DEFAULT_FRAGMENT_CACHE_MAX_SIZE = 10000000L;
+
+  /**
+   * Default value for {@link #FRAGMENT_CACHE_TTL}.
+   */
+  private static final long DEFAULT_FRAGMENT_CACHE_TTL = 300L;
+
+  /**
+   * Max number of open event streams.
+   */
+  public static final String EVENTS_MAX_STREAMS = "mvc.events.maxStreams";
+
+  /**
+   * Max number of pending events per stream.
+   */
+  public static final String EVENTS_QUEUE_SIZE = "mvc.events.queueSize";
+
+  /**
+   * Heartbeat interval in millis.
+   */
+  public static final String EVENTS_HEARTBEAT = "mvc.events.heartbeat";
+
+  /**
+   * Max time in millis a write can be blocked.
+   */
+  public static final String EVENTS_WRITE_TIMEOUT = "mvc.events.writeTimeout";
+
+  /**
+   * Number of event writer threads.
+   */
+  public static final String EVENTS_THREADS = "mvc.events.threads";
+
+  /**
+   * Max number of event writers waiting for a thread.
+   */
+  public static final String EVENTS_WRITER_QUEUE_SIZE = "mvc.events.writerQueueSize";
+
+  /**
+   * Default value for {@link #EVENTS_MAX_STREAMS}.
+   */
+  private static final int DEFAULT_MAX_STREAMS = 10000;
+
+  /**
+   * Default value for {@link #EVENTS_QUEUE_SIZE}.
+   */
+  private static final int DEFAULT_EVENTS_QUEUE_SIZE = 100;
+
+  /**
+   * Default value for {@link #EVENTS_HEARTBEAT}.
+   */
+  private static final long DEFAULT_HEARTBEAT = 15000L;
+
+  /**
+   * Default value for {@link #EVENTS_WRITE_TIMEOUT}.
+   */
+  private static final long DEFAULT_WRITE_TIMEOUT = 30000L;
+
+  /**
+   * Default value for {@link #EVENTS_WRITER_QUEUE_SIZE}.
+   */
+  private static final int DEFAULT_WRITER_QUEUE_SIZE = 1000;
+
+  /**
+   * Default value for {@link #CONTRIBUTION_SLOW_THRESHOLD}.
+   */
+  private static final long DEFAULT_SLOW_THRESHOLD = 250;
+
+  /**
+   * Default value for {@link #CONTRIBUTION_QUEUE_SIZE}.
+   */
+  static final int DEFAULT_QUEUE_SIZE = 1000;
+
   /**
    * Publish the {@link ModelContributionInterceptor} hook.
    *
+   * @param env The application's environment.
    * @param contributions The list of model contributions.
+   * @param fragmentCache The fragment cache. Published to views only if enabled.
    * @return A new {@link ModelContributionInterceptor} hook.
    */
   @Bean
-  public ModelContributionInterceptor modelContributionInterceptor(
-      final ModelContribution[] contributions) {
-    return new ModelContributionInterceptor(Arrays.asList(contributions));
+  public ModelContributionInterceptor modelContributionInterceptor(final Environment env,
+      final ModelContribution[] contributions, final FragmentCache fragmentCache) {
+    List<ModelContribution> all = new ArrayList<ModelContribution>(Arrays.asList(contributions));
+    if (fragmentCache.isEnabled()) {
+      all.add(new FragmentCacheContribution(fragmentCache));
+    }
+    ModelContributionInterceptor interceptor =
+        new ModelContributionInterceptor(all)
+            .setTimeout(env.getProperty(CONTRIBUTION_TIMEOUT, Long.class, 0L))
+            .setSlowThreshold(env.getProperty(CONTRIBUTION_SLOW_THRESHOLD, Long.class,
+                DEFAULT_SLOW_THRESHOLD))
+            .setFallbackCacheSize(env.getProperty(CONTRIBUTION_FALLBACK, Long.class, 0L))
+            .setThreadPool(
+                env.getProperty(CONTRIBUTION_THREADS, Integer.class,
+                    Runtime.getRuntime().availableProcessors()),
+                env.getProperty(CONTRIBUTION_QUEUE_SIZE, Integer.class, DEFAULT_QUEUE_SIZE));
+    for (ModelContribution contribution : all) {
+      String name = contribution.getClass().getSimpleName();
+      Long timeout = env.getProperty("mvc.contribution." + name + ".timeout", Long.class);
+      if (timeout != null) {
+        interceptor.setTimeout(name, timeout);
+      }
+    }
+    return interceptor;
+  }
+
+  /**
+   * Publish a {@link FragmentCache} for rendered fragments.
+   *
+   * @param env The application's environment.
+   * @param mode The application's mode.
+   * @return A new {@link FragmentCache}.
+   */
+  @Bean
+  public FragmentCache fragmentCache(final Environment env, final Mode mode) {
+    return new FragmentCache(
+        env.getProperty(FRAGMENT_CACHE_MAX_SIZE, Long.class, DEFAULT_FRAGMENT_CACHE_MAX_SIZE),
+        env.getProperty(FRAGMENT_CACHE_TTL, Long.class, DEFAULT_FRAGMENT_CACHE_TTL),
+        env.getProperty(FRAGMENT_CACHE_ENABLED, Boolean.class, !mode.isDev()));
+  }
+
+  /**
+   * Publish the {@link EventBroadcaster} for Server-Sent Events.
+   *
+   * @param env The application's environment.
+   * @param mapper The JSON mapper.
+   * @return A new {@link EventBroadcaster}.
+   */
+  @Bean
+  public EventBroadcaster eventBroadcaster(final Environment env, final ObjectMapper mapper) {
+    return new EventBroadcaster(mapper)
+        .setMaxStreams(env.getProperty(EVENTS_MAX_STREAMS, Integer.class, DEFAULT_MAX_STREAMS))
+        .setQueueSize(env.getProperty(EVENTS_QUEUE_SIZE, Integer.class,
+            DEFAULT_EVENTS_QUEUE_SIZE))
+        .setHeartbeat(env.getProperty(EVENTS_HEARTBEAT, Long.class, DEFAULT_HEARTBEAT))
+        .setWriteTimeout(env.getProperty(EVENTS_WRITE_TIMEOUT, Long.class,
+            DEFAULT_WRITE_TIMEOUT))
+        .setThreads(env.getProperty(EVENTS_THREADS, Integer.class,
+            Runtime.getRuntime().availableProcessors()))
+        .setWriterQueueSize(env.getProperty(EVENTS_WRITER_QUEUE_SIZE, Integer.class,
+            DEFAULT_WRITER_QUEUE_SIZE));
+  }
+
+  /**
+   * Publish the {@link EventStream} return value handler.
+   *
+   * @return A new {@link EventStreamReturnValueHandler}.
+   */
+  @Bean
+  public EventStreamReturnValueHandler eventStreamReturnValueHandler() {
+    return new EventStreamReturnValueHandler();
   }
 }
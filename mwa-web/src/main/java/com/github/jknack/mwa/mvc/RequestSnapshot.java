@@ -0,0 +1,282 @@
+package com.github.jknack.mwa.mvc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.TreeMap;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * A read-only copy of a HTTP request (and response) for bounded {@link ModelContribution}s.
+ * Bounded contributions run in a thread pool and might outlive the request, so they never see
+ * the live servlet objects: the container recycles them once the request is done.
+ * <p>
+ * The request snapshot exposes the request line, parameters, headers, cookies, attributes,
+ * locales and principal as they were when the snapshot was taken. The response snapshot exposes
+ * the content type, character encoding, locale and committed flag. Any other method throws an
+ * {@link UnsupportedOperationException}.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+final class RequestSnapshot {
+
+  /**
+   * Request's methods without arguments that are copied as they are.
+   */
+  private static final String[] REQUEST_PROPERTIES = {"getMethod", "getRequestURI",
+      "getContextPath", "getServletPath", "getPathInfo", "getPathTranslated", "getQueryString",
+      "getScheme", "getServerName", "getServerPort", "getProtocol", "getRemoteAddr",
+      "getRemoteHost", "getRemotePort", "getLocalName", "getLocalAddr", "getLocalPort",
+      "getRemoteUser", "getUserPrincipal", "getAuthType", "getRequestedSessionId", "getLocale",
+      "getCharacterEncoding", "getContentType", "getContentLength", "isSecure" };
+
+  /**
+   * Response's methods without arguments that are copied as they are.
+   */
+  private static final String[] RESPONSE_PROPERTIES = {"getContentType",
+      "getCharacterEncoding", "getLocale", "isCommitted" };
+
+  /**
+   * The HTTP date format.
+   */
+  private static final String HTTP_DATE = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+  /**
+   * Not allowed.
+   */
+  private RequestSnapshot() {
+  }
+
+  /**
+   * Creates a read-only copy of the given request. It must be called from the request's thread.
+   *
+   * @param request The HTTP request.
+   * @return A read-only copy of the given request.
+   */
+  @SuppressWarnings("unchecked")
+  public static HttpServletRequest request(final HttpServletRequest request) {
+    final Map<String, Object> properties =
+        properties(HttpServletRequest.class, request, REQUEST_PROPERTIES);
+    StringBuffer requestURL = request.getRequestURL();
+    properties.put("getRequestURL", requestURL == null ? null : requestURL.toString());
+    Cookie[] cookies = request.getCookies();
+    properties.put("getCookies", cookies == null ? null : cookies.clone());
+    final List<Locale> locales = list((Enumeration<Locale>) request.getLocales());
+
+    final Map<String, String[]> parameters = new LinkedHashMap<String, String[]>();
+    Map<String, String[]> parameterMap = request.getParameterMap();
+    if (parameterMap != null) {
+      for (Map.Entry<String, String[]> parameter : parameterMap.entrySet()) {
+        parameters.put(parameter.getKey(), parameter.getValue().clone());
+      }
+    }
+
+    final Map<String, List<String>> headers =
+        new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+    Enumeration<String> headerNames = request.getHeaderNames();
+    while (headerNames != null && headerNames.hasMoreElements()) {
+      String name = headerNames.nextElement();
+      headers.put(name, list((Enumeration<String>) request.getHeaders(name)));
+    }
+
+    final Map<String, Object> attributes = new LinkedHashMap<String, Object>();
+    Enumeration<String> attributeNames = request.getAttributeNames();
+    while (attributeNames != null && attributeNames.hasMoreElements()) {
+      String name = attributeNames.nextElement();
+      attributes.put(name, request.getAttribute(name));
+    }
+
+    return proxy(HttpServletRequest.class, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        String name = method.getName();
+        if (properties.containsKey(name) && method.getParameterTypes().length == 0) {
+          Object value = properties.get(name);
+          if (name.equals("getRequestURL") && value != null) {
+            return new StringBuffer((String) value);
+          }
+          if (value instanceof Cookie[]) {
+            return ((Cookie[]) value).clone();
+          }
+          return value;
+        }
+        if (name.equals("getLocales")) {
+          return Collections.enumeration(locales);
+        }
+        if (name.equals("getParameter")) {
+          String[] values = parameters.get(args[0]);
+          return values == null || values.length == 0 ? null : values[0];
+        }
+        if (name.equals("getParameterValues")) {
+          String[] values = parameters.get(args[0]);
+          return values == null ? null : values.clone();
+        }
+        if (name.equals("getParameterNames")) {
+          return Collections.enumeration(parameters.keySet());
+        }
+        if (name.equals("getParameterMap")) {
+          return Collections.unmodifiableMap(parameters);
+        }
+        if (name.equals("getHeader")) {
+          List<String> values = headers.get(args[0]);
+          return values == null || values.isEmpty() ? null : values.get(0);
+        }
+        if (name.equals("getHeaders")) {
+          List<String> values = headers.get(args[0]);
+          return Collections.enumeration(values == null ? Collections.<String> emptyList()
+              : values);
+        }
+        if (name.equals("getHeaderNames")) {
+          return Collections.enumeration(new ArrayList<String>(headers.keySet()));
+        }
+        if (name.equals("getIntHeader")) {
+          List<String> values = headers.get(args[0]);
+          return values == null || values.isEmpty() ? -1 : Integer.parseInt(values.get(0));
+        }
+        if (name.equals("getDateHeader")) {
+          List<String> values = headers.get(args[0]);
+          return values == null || values.isEmpty() ? -1L : parseDate(values.get(0));
+        }
+        if (name.equals("getAttribute")) {
+          return attributes.get(args[0]);
+        }
+        if (name.equals("getAttributeNames")) {
+          return Collections.enumeration(attributes.keySet());
+        }
+        return unsupported(proxy, method, args);
+      }
+    });
+  }
+
+  /**
+   * Creates a read-only copy of the given response. It must be called from the request's
+   * thread.
+   *
+   * @param response The HTTP response.
+   * @return A read-only copy of the given response.
+   */
+  public static HttpServletResponse response(final HttpServletResponse response) {
+    final Map<String, Object> properties =
+        properties(HttpServletResponse.class, response, RESPONSE_PROPERTIES);
+    return proxy(HttpServletResponse.class, new InvocationHandler() {
+      @Override
+      public Object invoke(final Object proxy, final Method method, final Object[] args) {
+        String name = method.getName();
+        if (properties.containsKey(name) && method.getParameterTypes().length == 0) {
+          return properties.get(name);
+        }
+        return unsupported(proxy, method, args);
+      }
+    });
+  }
+
+  /**
+   * Copy the value of the given methods. Methods missing in the Servlet API in use are ignored.
+   *
+   * @param type The request or response type.
+   * @param target The request or response.
+   * @param methods The methods without arguments.
+   * @return The copied values by method's name.
+   */
+  private static Map<String, Object> properties(final Class<?> type, final Object target,
+      final String[] methods) {
+    Map<String, Object> properties = new HashMap<String, Object>();
+    for (String name : methods) {
+      Method method;
+      try {
+        method = type.getMethod(name);
+      } catch (NoSuchMethodException ex) {
+        continue;
+      }
+      try {
+        properties.put(name, method.invoke(target));
+      } catch (Exception ex) {
+        throw new IllegalStateException("Can't copy: " + name + " of: " + target, ex);
+      }
+    }
+    return properties;
+  }
+
+  /**
+   * Handle the {@link Object} methods and reject anything else.
+   *
+   * @param proxy The proxy.
+   * @param method The method.
+   * @param args The arguments.
+   * @return The result of the {@link Object} methods.
+   */
+  private static Object unsupported(final Object proxy, final Method method,
+      final Object[] args) {
+    String name = method.getName();
+    if (name.equals("equals")) {
+      return proxy == args[0];
+    }
+    if (name.equals("hashCode")) {
+      return System.identityHashCode(proxy);
+    }
+    if (name.equals("toString")) {
+      return "snapshot of: " + method.getDeclaringClass().getSimpleName();
+    }
+    throw new UnsupportedOperationException("Not available from a bounded contribution: "
+        + method.getDeclaringClass().getSimpleName() + "." + name);
+  }
+
+  /**
+   * Copy an enumeration.
+   *
+   * @param enumeration The enumeration or <code>null</code>.
+   * @param <T> The element's type.
+   * @return A new list.
+   */
+  private static <T> List<T> list(final Enumeration<T> enumeration) {
+    if (enumeration == null) {
+      return new ArrayList<T>();
+    }
+    return Collections.list(enumeration);
+  }
+
+  /**
+   * Parse a HTTP date header.
+   *
+   * @param value The header's value.
+   * @return The date in millis.
+   */
+  private static long parseDate(final String value) {
+    SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE, Locale.US);
+    format.setTimeZone(TimeZone.getTimeZone("GMT"));
+    try {
+      return format.parse(value).getTime();
+    } catch (ParseException ex) {
+      throw new IllegalArgumentException("Not a date: " + value, ex);
+    }
+  }
+
+  /**
+   * Creates a proxy.
+   *
+   * @param type The proxy's type.
+   * @param handler The invocation handler.
+   * @param <T> The proxy's type.
+   * @return A new proxy.
+   */
+  private static <T> T proxy(final Class<T> type, final InvocationHandler handler) {
+    return type.cast(Proxy.newProxyInstance(RequestSnapshot.class.getClassLoader(),
+        new Class<?>[]{type }, handler));
+  }
+}
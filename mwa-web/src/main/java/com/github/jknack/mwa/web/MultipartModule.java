@@ -0,0 +1,60 @@
+package com.github.jknack.mwa.web;
+
+import java.io.IOException;
+
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.env.Environment;
+import org.springframework.web.servlet.DispatcherServlet;
+
+/**
+ * Opt-in streaming multipart support: publish a {@link StreamingMultipartResolver} and resolve
+ * {@link PartIterator} arguments. Without this module, the application's own multipart resolver
+ * (if any) is used. Usage:
+ *
+ * <pre>
+ * public class Main extends Startup {
+ *   protected Class&lt;?&gt;[] imports() {
+ *     return new Class&lt;?&gt;[] {MultipartModule.class };
+ *   }
+ * }
+ * </pre>
+ *
+ * See {@link StreamingMultipartResolver} for configuration options.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+@Configuration
+public class MultipartModule {
+
+  /**
+   * Publish a multipart resolver that parses on demand or streams the request (see
+   * {@link PartIterator}).
+   *
+   * @param env The application's environment. Required.
+   * @return A new multipart resolver.
+   * @throws IOException If the temp directory can't be created.
+   */
+  @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+  @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+  public StreamingMultipartResolver multipartResolver(final Environment env)
+      throws IOException {
+    return new StreamingMultipartResolver(env);
+  }
+
+  /**
+   * Resolve {@link PartIterator} arguments.
+   *
+   * @param multipartResolver The multipart resolver. Required.
+   * @return A {@link PartIterator} argument resolver.
+   */
+  @Bean
+  @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+  public PartIteratorArgumentResolver partIteratorArgumentResolver(
+      final StreamingMultipartResolver multipartResolver) {
+    return new PartIteratorArgumentResolver(multipartResolver);
+  }
+}
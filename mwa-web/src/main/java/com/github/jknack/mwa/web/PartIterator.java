@@ -0,0 +1,100 @@
+package com.github.jknack.mwa.web;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+
+import org.apache.commons.fileupload.FileItemIterator;
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+
+/**
+ * Iterate over the parts of a multipart request as they arrive. Nothing is buffered in memory or
+ * in disk: the content of a part must be consumed (see {@link FileItemStream#openStream()})
+ * before moving to the next part. A handler gets one by declaring an argument of this type:
+ *
+ * <pre>
+ * &#64;RequestMapping(value = "/upload", method = RequestMethod.POST)
+ * public void upload(final PartIterator parts) throws IOException {
+ *   while (parts.hasNext()) {
+ *     FileItemStream part = parts.next();
+ *     ...
+ *   }
+ * }
+ * </pre>
+ * <p>
+ * It requires the {@link MultipartModule}. Upload limits of the
+ * {@link StreamingMultipartResolver} apply, and request parameters of the multipart body can't be
+ * accessed once the parts are streamed.
+ * </p>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public final class PartIterator {
+
+  /**
+   * The multipart stream.
+   */
+  private final FileItemIterator iterator;
+
+  /**
+   * The max upload size.
+   */
+  private final long maxUploadSize;
+
+  /**
+   * Creates a new {@link PartIterator}.
+   *
+   * @param iterator The multipart stream. Required.
+   * @param maxUploadSize The max upload size.
+   */
+  PartIterator(final FileItemIterator iterator, final long maxUploadSize) {
+    this.iterator = notNull(iterator, "The iterator is required.");
+    this.maxUploadSize = maxUploadSize;
+  }
+
+  /**
+   * True, if there is a next part.
+   *
+   * @return True, if there is a next part.
+   * @throws IOException If the request can't be read.
+   */
+  public boolean hasNext() throws IOException {
+    try {
+      return iterator.hasNext();
+    } catch (FileUploadException ex) {
+      throw translate(ex);
+    }
+  }
+
+  /**
+   * The next part.
+   *
+   * @return The next part.
+   * @throws IOException If the request can't be read.
+   */
+  public FileItemStream next() throws IOException {
+    try {
+      return iterator.next();
+    } catch (FileUploadException ex) {
+      throw translate(ex);
+    }
+  }
+
+  /**
+   * Translate a commons-fileupload exception.
+   *
+   * @param ex The commons-fileupload exception.
+   * @return A Spring multipart exception.
+   */
+  private MultipartException translate(final FileUploadException ex) {
+    if (ex instanceof FileUploadBase.SizeLimitExceededException) {
+      return new MaxUploadSizeExceededException(maxUploadSize, ex);
+    }
+    return new MultipartException("Could not parse multipart servlet request", ex);
+  }
+}
@@ -0,0 +1,47 @@
+package com.github.jknack.mwa.web;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+
+/**
+ * Resolve {@link PartIterator} arguments.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class PartIteratorArgumentResolver implements HandlerMethodArgumentResolver {
+
+  /**
+   * The multipart resolver.
+   */
+  private final StreamingMultipartResolver multipartResolver;
+
+  /**
+   * Creates a new {@link PartIteratorArgumentResolver}.
+   *
+   * @param multipartResolver The multipart resolver. Required.
+   */
+  public PartIteratorArgumentResolver(final StreamingMultipartResolver multipartResolver) {
+    this.multipartResolver = notNull(multipartResolver, "The multipart resolver is required.");
+  }
+
+  @Override
+  public boolean supportsParameter(final MethodParameter parameter) {
+    return parameter.getParameterType() == PartIterator.class;
+  }
+
+  @Override
+  public Object resolveArgument(final MethodParameter parameter,
+      final ModelAndViewContainer mavContainer, final NativeWebRequest webRequest,
+      final WebDataBinderFactory binderFactory) throws Exception {
+    return multipartResolver.partIterator(
+        webRequest.getNativeRequest(HttpServletRequest.class));
+  }
+}
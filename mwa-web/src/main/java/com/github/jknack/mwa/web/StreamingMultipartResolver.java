@@ -0,0 +1,191 @@
+package com.github.jknack.mwa.web;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.fileupload.FileUploadBase;
+import org.apache.commons.fileupload.FileUploadException;
+import org.apache.commons.fileupload.servlet.ServletFileUpload;
+import org.springframework.core.env.Environment;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.commons.CommonsMultipartResolver;
+import org.springframework.web.multipart.support.DefaultMultipartHttpServletRequest;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * A {@link CommonsMultipartResolver} that never parses a multipart request up-front:
+ * <ul>
+ * <li>Handlers with a {@link PartIterator} argument read the parts straight from the request's
+ * stream.</li>
+ * <li>Handlers with {@link org.springframework.web.multipart.MultipartFile} arguments (or request
+ * parameters) parse the request on first access. Parts bigger than the in-memory threshold are
+ * written to the temp directory.</li>
+ * </ul>
+ * A request is read once: a {@link PartIterator} can't be created after a parameter or file was
+ * accessed, and parameters or files can't be accessed after a {@link PartIterator} was created.
+ * Both cases fail with an {@link IllegalStateException}.
+ * <p>
+ * It isn't published by default, see {@link MultipartModule}.
+ * </p>
+ * Configuration:
+ * <ul>
+ * <li>multipart.maxInMemorySize: max size in bytes of a part that is kept in memory. Default is:
+ * 10240.</li>
+ * <li>multipart.tmpdir: directory for parts bigger than the in-memory threshold. Default is:
+ * java.io.tmpdir.</li>
+ * <li>multipart.maxUploadSize: max size in bytes of a request. Default is: -1 (no limit).</li>
+ * <li>multipart.maxFileSize: max size in bytes of a part. Default is: -1 (no limit).</li>
+ * <li>multipart.encoding: the default character encoding. Default is: UTF-8.</li>
+ * </ul>
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+public class StreamingMultipartResolver extends CommonsMultipartResolver {
+
+  /**
+   * A multipart request that is parsed on first access.
+   *
+   * @author edgar.espina
+   */
+  private class LazyMultipartRequest extends DefaultMultipartHttpServletRequest {
+
+    /**
+     * True, if the request has been parsed.
+     */
+    private boolean resolved;
+
+    /**
+     * True, if the request has been streamed by a {@link PartIterator}.
+     */
+    private boolean streamed;
+
+    /**
+     * Creates a new {@link LazyMultipartRequest}.
+     *
+     * @param request The HTTP request.
+     */
+    public LazyMultipartRequest(final HttpServletRequest request) {
+      super(request);
+    }
+
+    @Override
+    protected void initializeMultipart() {
+      if (streamed) {
+        throw new IllegalStateException("The multipart request was streamed by a PartIterator: "
+            + getRequestURI());
+      }
+      resolved = true;
+      MultipartParsingResult result = parseRequest(getRequest());
+      setMultipartFiles(result.getMultipartFiles());
+      setMultipartParameters(result.getMultipartParameters());
+      setMultipartParameterContentTypes(result.getMultipartParameterContentTypes());
+    }
+  }
+
+  /**
+   * Max size in bytes of a part that is kept in memory.
+   */
+  public static final String MAX_IN_MEMORY_SIZE = "multipart.maxInMemorySize";
+
+  /**
+   * Directory for parts bigger than the in-memory threshold.
+   */
+  public static final String TMPDIR = "multipart.tmpdir";
+
+  /**
+   * Max size in bytes of a request.
+   */
+  public static final String MAX_UPLOAD_SIZE = "multipart.maxUploadSize";
+
+  /**
+   * Max size in bytes of a part.
+   */
+  public static final String MAX_FILE_SIZE = "multipart.maxFileSize";
+
+  /**
+   * The default character encoding.
+   */
+  public static final String ENCODING = "multipart.encoding";
+
+  /**
+   * Default value for {@link #MAX_IN_MEMORY_SIZE}.
+   */
+  private static final int DEFAULT_MAX_IN_MEMORY_SIZE = 10240;
+
+  /**
+   * Creates a new {@link StreamingMultipartResolver}.
+   *
+   * @param env The application's environment. Required.
+   * @throws IOException If the temp directory can't be created.
+   */
+  public StreamingMultipartResolver(final Environment env) throws IOException {
+    notNull(env, "The environment is required.");
+    setMaxInMemorySize(env.getProperty(MAX_IN_MEMORY_SIZE, Integer.class,
+        DEFAULT_MAX_IN_MEMORY_SIZE));
+    setMaxUploadSize(env.getProperty(MAX_UPLOAD_SIZE, Long.class, -1L));
+    getFileUpload().setFileSizeMax(env.getProperty(MAX_FILE_SIZE, Long.class, -1L));
+    setDefaultEncoding(env.getProperty(ENCODING, "UTF-8"));
+    File tmpdir = new File(env.getProperty(TMPDIR, System.getProperty("java.io.tmpdir")));
+    tmpdir.mkdirs();
+    setUploadTempDir(new FileSystemResource(tmpdir));
+  }
+
+  @Override
+  public MultipartHttpServletRequest resolveMultipart(final HttpServletRequest request) {
+    notNull(request, "The request is required.");
+    return new LazyMultipartRequest(request);
+  }
+
+  @Override
+  public void cleanupMultipart(final MultipartHttpServletRequest request) {
+    if (request instanceof LazyMultipartRequest && !((LazyMultipartRequest) request).resolved) {
+      // Never parsed: streamed by a PartIterator or not used at all.
+      return;
+    }
+    super.cleanupMultipart(request);
+  }
+
+  /**
+   * Creates a {@link PartIterator} for a multipart request.
+   *
+   * @param request The multipart request. Required.
+   * @return A new {@link PartIterator}.
+   * @throws IOException If the request can't be read.
+   * @throws IllegalStateException If the request was parsed already by a call to getParameter*
+   *         or getFile*.
+   */
+  public PartIterator partIterator(final HttpServletRequest request) throws IOException {
+    notNull(request, "The request is required.");
+    if (!isMultipart(request)) {
+      throw new MultipartException("Not a multipart request: " + request.getRequestURI());
+    }
+    LazyMultipartRequest multipartRequest =
+        WebUtils.getNativeRequest(request, LazyMultipartRequest.class);
+    if (multipartRequest != null) {
+      if (multipartRequest.resolved) {
+        throw new IllegalStateException("The multipart request was consumed already by "
+            + "getParameter* or getFile*: " + request.getRequestURI());
+      }
+      multipartRequest.streamed = true;
+    }
+    ServletFileUpload upload = new ServletFileUpload();
+    upload.setSizeMax(getFileUpload().getSizeMax());
+    upload.setFileSizeMax(getFileUpload().getFileSizeMax());
+    upload.setHeaderEncoding(determineEncoding(request));
+    try {
+      return new PartIterator(upload.getItemIterator(request), upload.getSizeMax());
+    } catch (FileUploadBase.SizeLimitExceededException ex) {
+      throw new MaxUploadSizeExceededException(upload.getSizeMax(), ex);
+    } catch (FileUploadException ex) {
+      throw new MultipartException("Could not parse multipart servlet request", ex);
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.github.jknack.mwa;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+
+public class RequestWatchdogTest {
+
+  @Test
+  public void collapse() {
+    StackTraceElement[] stackTrace = {
+        new StackTraceElement("Leaf", "sleep", "Leaf.java", 1),
+        new StackTraceElement("Root", "run", "Root.java", 1) };
+    assertEquals("Root.run;Leaf.sleep", RequestWatchdog.collapse(stackTrace));
+  }
+
+  @Test
+  public void sampleSlowRequests() throws Exception {
+    File file = new File(Files.createTempDir(), "stacks.txt");
+    RequestWatchdog watchdog = new RequestWatchdog(20, 5, file, 60000, 100);
+    RequestWatchdog.Ticket fast = watchdog.enter("GET /fast");
+    watchdog.exit(fast);
+
+    RequestWatchdog.Ticket slow = watchdog.enter("GET /slow");
+    assertNotNull(slow);
+    // nested dispatches keep the outer ticket
+    assertNull(watchdog.enter("GET /forward"));
+    Thread.sleep(200);
+    watchdog.exit(slow);
+    watchdog.destroy();
+
+    Map<String, Long> stacks = watchdog.getStacks();
+    assertTrue(stacks.size() > 0);
+    boolean sleep = false;
+    for (String stack : stacks.keySet()) {
+      sleep |= stack.endsWith("java.lang.Thread.sleep");
+    }
+    assertTrue(stacks.toString(), sleep);
+    String content = Files.toString(file, Charsets.UTF_8);
+    assertTrue(content, content.contains("java.lang.Thread.sleep "));
+  }
+
+  @Test
+  public void disabledByDefault() {
+    assertNull(RequestWatchdog.get(env()));
+  }
+
+  @Test
+  public void noFileByDefault() throws Exception {
+    File tmpdir = Files.createTempDir();
+    String tmp = System.getProperty("java.io.tmpdir");
+    System.setProperty("java.io.tmpdir", tmpdir.getAbsolutePath());
+    try {
+      RequestWatchdog watchdog = RequestWatchdog.get(env(RequestWatchdog.WATCHDOG_ENABLED, "true",
+          RequestWatchdog.WATCHDOG_THRESHOLD, "20", RequestWatchdog.WATCHDOG_INTERVAL, "5",
+          RequestWatchdog.WATCHDOG_FLUSH_INTERVAL, "10"));
+      assertNotNull(watchdog);
+      RequestWatchdog.Ticket slow = watchdog.enter("GET /slow");
+      Thread.sleep(100);
+      watchdog.exit(slow);
+      watchdog.destroy();
+
+      assertFalse(watchdog.getStacks().isEmpty());
+      assertEquals(0, tmpdir.list().length);
+    } finally {
+      System.setProperty("java.io.tmpdir", tmp);
+    }
+  }
+
+  private static StandardEnvironment env(final String... properties) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("test", map));
+    return env;
+  }
+}
@@ -0,0 +1,195 @@
+package com.github.jknack.mwa.mvc;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.ServletResponse;
+
+import org.easymock.IAnswer;
+import org.junit.Test;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class EventBroadcasterTest {
+
+  @Test
+  public void frame() {
+    EventBroadcaster broadcaster = new EventBroadcaster(new ObjectMapper());
+    assertEquals("id: 1\nevent: price\ndata: {\"a\":1}\n\n",
+        broadcaster.frame("price", Collections.singletonMap("a", 1)));
+    assertEquals("id: 2\ndata: line1\ndata: line2\n\n", broadcaster.frame(null, "line1\nline2"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void eventNameWithLineBreak() {
+    // it would inject a data field
+    new EventBroadcaster(new ObjectMapper()).frame("price\ndata: fake", "10");
+  }
+
+  @Test
+  public void slowConsumer() {
+    EventBroadcaster broadcaster = new EventBroadcaster(new ObjectMapper()).setQueueSize(2);
+    EventStream stream = broadcaster.subscribe("prices");
+    assertTrue(stream.send("price", "1"));
+    assertTrue(stream.send("price", "2"));
+    assertFalse(stream.isClosed());
+    assertFalse(stream.send("price", "3"));
+    assertTrue(stream.isClosed());
+  }
+
+  @Test
+  public void publish() throws Exception {
+    EventBroadcaster broadcaster = new EventBroadcaster(new ObjectMapper())
+        .setMaxStreams(1)
+        .setHeartbeat(0);
+    StringWriter output = new StringWriter();
+    EventStream prices = broadcaster.subscribe("prices");
+    assertTrue(prices.open(asyncContext(output)));
+    assertFalse(broadcaster.subscribe("news").open(asyncContext(new StringWriter())));
+    assertEquals(1, broadcaster.size());
+    assertEquals(1, broadcaster.size("prices"));
+    assertEquals(0, broadcaster.size("news"));
+    assertEquals(1, broadcaster.topicCount());
+
+    assertEquals(1, broadcaster.publish("prices", "price", "10"));
+    assertEquals(0, broadcaster.publish("news", null, "ignored"));
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!output.toString().endsWith("data: 10\n\n") && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(":\n\nid: 1\nevent: price\ndata: 10\n\n", output.toString());
+
+    prices.close();
+    assertEquals(0, broadcaster.size());
+    // no streams: the topic is gone
+    assertEquals(0, broadcaster.topicCount());
+    assertEquals(0, broadcaster.publish("prices", "price", "11"));
+    broadcaster.destroy();
+  }
+
+  @Test
+  public void evictCompletesAfterWrite() throws Exception {
+    EventBroadcaster broadcaster = new EventBroadcaster(new ObjectMapper())
+        .setQueueSize(1)
+        .setHeartbeat(0);
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Writer blocking = new StringWriter() {
+      @Override
+      public void write(final String str, final int off, final int len) {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    CompletionRecorder completion = new CompletionRecorder();
+    EventStream stream = broadcaster.subscribe("prices");
+    assertTrue(stream.open(asyncContext(new PrintWriter(blocking), completion)));
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+    // the writer is busy with the heartbeat: fill the queue and overflow it
+    assertTrue(stream.send("price", "1"));
+    assertFalse(stream.send("price", "2"));
+    assertTrue(stream.isClosed());
+    assertEquals(0, completion.calls.get());
+
+    release.countDown();
+    assertTrue(completion.done.await(5, TimeUnit.SECONDS));
+    assertEquals(1, completion.calls.get());
+    assertTrue(completion.thread.getName().startsWith("event-writer-"));
+    broadcaster.destroy();
+  }
+
+  @Test
+  public void writerQueueFull() throws Exception {
+    EventBroadcaster broadcaster = new EventBroadcaster(new ObjectMapper())
+        .setThreads(1)
+        .setWriterQueueSize(1)
+        .setHeartbeat(0);
+    final CountDownLatch writing = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    Writer blocking = new StringWriter() {
+      @Override
+      public void write(final String str, final int off, final int len) {
+        writing.countDown();
+        try {
+          release.await();
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+    EventStream busy = broadcaster.subscribe("prices");
+    assertTrue(busy.open(asyncContext(new PrintWriter(blocking), new CompletionRecorder())));
+    assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+    EventStream queued = broadcaster.subscribe("prices");
+    assertTrue(queued.open(asyncContext(new PrintWriter(new StringWriter()),
+        new CompletionRecorder())));
+    CompletionRecorder completion = new CompletionRecorder();
+    EventStream rejected = broadcaster.subscribe("prices");
+    rejected.open(asyncContext(new PrintWriter(new StringWriter()), completion));
+
+    assertTrue(rejected.isClosed());
+    assertEquals(1, completion.calls.get());
+    assertFalse(queued.isClosed());
+    assertEquals(2, broadcaster.size());
+    release.countDown();
+    broadcaster.destroy();
+  }
+
+  static class CompletionRecorder implements IAnswer<Object> {
+    final AtomicInteger calls = new AtomicInteger();
+
+    final CountDownLatch done = new CountDownLatch(1);
+
+    volatile Thread thread;
+
+    @Override
+    public Object answer() {
+      thread = Thread.currentThread();
+      calls.incrementAndGet();
+      done.countDown();
+      return null;
+    }
+  }
+
+  private static AsyncContext asyncContext(final PrintWriter writer,
+      final CompletionRecorder completion) throws IOException {
+    ServletResponse response = createNiceMock(ServletResponse.class);
+    expect(response.getWriter()).andReturn(writer).anyTimes();
+    AsyncContext asyncContext = createNiceMock(AsyncContext.class);
+    expect(asyncContext.getResponse()).andReturn(response).anyTimes();
+    asyncContext.complete();
+    expectLastCall().andAnswer(completion).anyTimes();
+    replay(response, asyncContext);
+    return asyncContext;
+  }
+
+  private static AsyncContext asyncContext(final StringWriter output) throws IOException {
+    ServletResponse response = createNiceMock(ServletResponse.class);
+    expect(response.getWriter()).andReturn(new PrintWriter(output)).anyTimes();
+    AsyncContext asyncContext = createNiceMock(AsyncContext.class);
+    expect(asyncContext.getResponse()).andReturn(response).anyTimes();
+    replay(response, asyncContext);
+    return asyncContext;
+  }
+}
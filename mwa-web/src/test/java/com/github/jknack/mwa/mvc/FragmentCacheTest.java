@@ -0,0 +1,152 @@
+package com.github.jknack.mwa.mvc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import com.google.common.base.Ticker;
+
+public class FragmentCacheTest {
+
+  static class FakeTicker extends Ticker {
+    final AtomicLong nanos = new AtomicLong();
+
+    @Override
+    public long read() {
+      return nanos.get();
+    }
+
+    void advance(final long seconds) {
+      nanos.addAndGet(TimeUnit.SECONDS.toNanos(seconds));
+    }
+  }
+
+  @Test
+  public void ttl() {
+    FakeTicker ticker = new FakeTicker();
+    FragmentCache cache = new FragmentCache(1000, 60, true, ticker);
+    cache.put("sidebar", "<aside/>", 10);
+    ticker.advance(9);
+    assertEquals("<aside/>", cache.get("sidebar"));
+    ticker.advance(1);
+    assertNull(cache.get("sidebar"));
+    assertEquals(1, cache.expirations());
+  }
+
+  @Test
+  public void render() throws Exception {
+    FragmentCache cache = new FragmentCache(1000, 60, true);
+    final AtomicInteger renders = new AtomicInteger();
+    Callable<String> renderer = new Callable<String>() {
+      @Override
+      public String call() {
+        return "render " + renders.incrementAndGet();
+      }
+    };
+    assertEquals("render 1", cache.get("header", 60, renderer));
+    assertEquals("render 1", cache.get("header", 60, renderer));
+    assertEquals(1, renders.get());
+  }
+
+  @Test
+  public void invalidate() {
+    FragmentCache cache = new FragmentCache(1000, 60, true);
+    cache.put("user:1:header", "h1");
+    cache.put("user:1:footer", "f1");
+    cache.put("user:2:header", "h2");
+
+    cache.invalidate("user:2:header");
+    assertNull(cache.get("user:2:header"));
+    assertEquals("h1", cache.get("user:1:header"));
+
+    cache.invalidatePrefix("user:1:");
+    assertNull(cache.get("user:1:header"));
+    assertNull(cache.get("user:1:footer"));
+
+    cache.put("user:3:header", "h3");
+    cache.invalidateAll();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void invalidateWhileRendering() throws Exception {
+    final FragmentCache cache = new FragmentCache(1000, 60, true);
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch invalidated = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> stale = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return cache.get("sidebar", 60, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              rendering.countDown();
+              assertTrue(invalidated.await(5, TimeUnit.SECONDS));
+              return "stale";
+            }
+          });
+        }
+      });
+      assertTrue(rendering.await(5, TimeUnit.SECONDS));
+      cache.invalidate("sidebar");
+      invalidated.countDown();
+
+      assertEquals("stale", stale.get(5, TimeUnit.SECONDS));
+      assertNull(cache.get("sidebar"));
+
+      // next render is kept
+      assertEquals("fresh", cache.get("sidebar", 60, new Callable<String>() {
+        @Override
+        public String call() {
+          return "fresh";
+        }
+      }));
+      assertEquals("fresh", cache.get("sidebar"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void invalidatePrefixWhileRendering() throws Exception {
+    final FragmentCache cache = new FragmentCache(1000, 60, true);
+    final CountDownLatch rendering = new CountDownLatch(1);
+    final CountDownLatch invalidated = new CountDownLatch(1);
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<String> stale = executor.submit(new Callable<String>() {
+        @Override
+        public String call() throws Exception {
+          return cache.get("user:1:header", 60, new Callable<String>() {
+            @Override
+            public String call() throws Exception {
+              rendering.countDown();
+              assertTrue(invalidated.await(5, TimeUnit.SECONDS));
+              return "stale";
+            }
+          });
+        }
+      });
+      assertTrue(rendering.await(5, TimeUnit.SECONDS));
+      cache.invalidatePrefix("user:1:");
+      invalidated.countDown();
+
+      assertEquals("stale", stale.get(5, TimeUnit.SECONDS));
+      assertNull(cache.get("user:1:header"));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
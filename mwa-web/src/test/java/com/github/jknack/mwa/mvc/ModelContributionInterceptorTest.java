@@ -0,0 +1,218 @@
+package com.github.jknack.mwa.mvc;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.i18n.LocaleContextHolder;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.ModelAndView;
+
+public class ModelContributionInterceptorTest {
+
+  static class Contribution implements ModelContribution {
+    @Override
+    public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+        final ModelAndView modelAndView) throws IOException {
+    }
+
+    @Override
+    public void setUseCache(final boolean cache) {
+    }
+  }
+
+  static class Snapshot extends Contribution {
+    HttpServletRequest request;
+
+    Thread thread;
+
+    Object attributes;
+
+    Locale locale;
+
+    @Override
+    public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+        final ModelAndView modelAndView) {
+      this.request = request;
+      this.thread = Thread.currentThread();
+      this.attributes = RequestContextHolder.getRequestAttributes();
+      this.locale = LocaleContextHolder.getLocale();
+      modelAndView.getModel().put("uri", request.getRequestURI());
+      modelAndView.getModel().remove("x");
+      modelAndView.setViewName("other");
+    }
+  }
+
+  static class Sleep extends Contribution {
+    @Override
+    public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+        final ModelAndView modelAndView) {
+      try {
+        Thread.sleep(1000);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  static class Sleep2 extends Sleep {
+  }
+
+  static class Late extends Contribution {
+    CountDownLatch release = new CountDownLatch(1);
+
+    CountDownLatch done = new CountDownLatch(1);
+
+    @Override
+    public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+        final ModelAndView modelAndView) {
+      try {
+        release.await();
+      } catch (InterruptedException ex) {
+        // ignore the cancellation, keep going
+      }
+      modelAndView.getModel().put("late", true);
+      done.countDown();
+    }
+  }
+
+  static class Flaky extends Contribution {
+    int calls;
+
+    @Override
+    public void contribute(final HttpServletRequest request, final HttpServletResponse response,
+        final ModelAndView modelAndView) {
+      if (calls++ > 0) {
+        throw new IllegalStateException("intentional err");
+      }
+      modelAndView.getModel().put("a", 1);
+      modelAndView.getModel().remove("x");
+      modelAndView.setViewName("other");
+    }
+  }
+
+  @After
+  public void reset() {
+    LocaleContextHolder.resetLocaleContext();
+  }
+
+  @Test
+  public void boundedContributionSeesSnapshot() throws Exception {
+    LocaleContextHolder.setLocale(Locale.FRENCH);
+    Snapshot snapshot = new Snapshot();
+    ModelContributionInterceptor interceptor =
+        new ModelContributionInterceptor(Arrays.<ModelContribution> asList(snapshot))
+            .setTimeout(5000);
+    ModelAndView modelAndView = new ModelAndView("view");
+    modelAndView.getModel().put("x", "x");
+
+    HttpServletRequest request = request();
+    interceptor.postHandle(request, response(), null, modelAndView);
+    interceptor.destroy();
+
+    assertNotSame(Thread.currentThread(), snapshot.thread);
+    assertNotSame(request, snapshot.request);
+    assertEquals(Locale.FRENCH, snapshot.locale);
+    assertEquals(snapshot.request,
+        ((ServletRequestAttributes) snapshot.attributes).getRequest());
+    assertEquals("/path", snapshot.request.getRequestURI());
+    try {
+      snapshot.request.setAttribute("a", "b");
+      fail("read-only");
+    } catch (UnsupportedOperationException ex) {
+      // expected
+    }
+
+    assertEquals("/path", modelAndView.getModel().get("uri"));
+    assertFalse(modelAndView.getModel().containsKey("x"));
+    assertEquals("other", modelAndView.getViewName());
+  }
+
+  @Test
+  public void sharedDeadline() throws Exception {
+    ModelContributionInterceptor interceptor =
+        new ModelContributionInterceptor(Arrays.<ModelContribution> asList(new Sleep(),
+            new Sleep2()))
+            .setTimeout(300);
+
+    long start = System.nanoTime();
+    interceptor.postHandle(request(), response(), null, new ModelAndView("view"));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    interceptor.destroy();
+
+    assertTrue("took: " + elapsed, elapsed < 600);
+    assertEquals(1, interceptor.getStats().get("Sleep").getTimeouts());
+    assertEquals(1, interceptor.getStats().get("Sleep2").getTimeouts());
+  }
+
+  @Test
+  public void lateChangesAreDiscarded() throws Exception {
+    Late late = new Late();
+    ModelContributionInterceptor interceptor =
+        new ModelContributionInterceptor(Arrays.<ModelContribution> asList(late))
+            .setTimeout(100);
+    ModelAndView modelAndView = new ModelAndView("view");
+
+    interceptor.postHandle(request(), response(), null, modelAndView);
+    late.release.countDown();
+    assertTrue(late.done.await(5, TimeUnit.SECONDS));
+    interceptor.destroy();
+
+    assertNull(modelAndView.getModel().get("late"));
+    assertEquals(1, interceptor.getStats().get("Late").getTimeouts());
+  }
+
+  @Test
+  public void fallbackKeepsRemovalsAndView() throws Exception {
+    ModelContributionInterceptor interceptor =
+        new ModelContributionInterceptor(Arrays.<ModelContribution> asList(new Flaky()))
+            .setFallbackCacheSize(10);
+
+    ModelAndView first = new ModelAndView("view");
+    first.getModel().put("x", "x");
+    interceptor.postHandle(request(), response(), null, first);
+    assertEquals(1, first.getModel().get("a"));
+    assertFalse(first.getModel().containsKey("x"));
+    assertEquals("other", first.getViewName());
+
+    ModelAndView second = new ModelAndView("view");
+    second.getModel().put("x", "x");
+    interceptor.postHandle(request(), response(), null, second);
+    assertEquals(1, second.getModel().get("a"));
+    assertFalse(second.getModel().containsKey("x"));
+    assertEquals("other", second.getViewName());
+    assertEquals(1, interceptor.getStats().get("Flaky").getFallbacks());
+  }
+
+  private static HttpServletRequest request() {
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getRequestURI()).andReturn("/path").anyTimes();
+    expect(request.getContextPath()).andReturn("").anyTimes();
+    replay(request);
+    return request;
+  }
+
+  private static HttpServletResponse response() {
+    HttpServletResponse response = createNiceMock(HttpServletResponse.class);
+    replay(response);
+    return response;
+  }
+}
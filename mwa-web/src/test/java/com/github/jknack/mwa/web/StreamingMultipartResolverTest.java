@@ -0,0 +1,142 @@
+package com.github.jknack.mwa.web;
+
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.servlet.ServletInputStream;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.fileupload.FileItemStream;
+import org.apache.commons.fileupload.util.Streams;
+import org.junit.Test;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.core.env.StandardEnvironment;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+
+public class StreamingMultipartResolverTest {
+
+  private static final String BOUNDARY = "----mwa";
+
+  private static final String BODY = "--" + BOUNDARY + "\r\n"
+      + "Content-Disposition: form-data; name=\"name\"\r\n"
+      + "\r\n"
+      + "x\r\n"
+      + "--" + BOUNDARY + "\r\n"
+      + "Content-Disposition: form-data; name=\"file\"; filename=\"hello.txt\"\r\n"
+      + "Content-Type: text/plain\r\n"
+      + "\r\n"
+      + "hello\r\n"
+      + "--" + BOUNDARY + "--\r\n";
+
+  @Test
+  public void stream() throws IOException {
+    StreamingMultipartResolver resolver = new StreamingMultipartResolver(env());
+    MultipartHttpServletRequest request = resolver.resolveMultipart(request());
+
+    PartIterator parts = resolver.partIterator(request);
+    assertTrue(parts.hasNext());
+    FileItemStream name = parts.next();
+    assertEquals("name", name.getFieldName());
+    assertTrue(name.isFormField());
+    assertEquals("x", Streams.asString(name.openStream()));
+
+    assertTrue(parts.hasNext());
+    FileItemStream file = parts.next();
+    assertEquals("file", file.getFieldName());
+    assertEquals("hello.txt", file.getName());
+    assertEquals("hello", Streams.asString(file.openStream()));
+
+    assertFalse(parts.hasNext());
+    resolver.cleanupMultipart(request);
+  }
+
+  @Test
+  public void parseOnDemand() throws IOException {
+    StreamingMultipartResolver resolver = new StreamingMultipartResolver(env());
+    MultipartHttpServletRequest request = resolver.resolveMultipart(request());
+
+    assertEquals("x", request.getParameter("name"));
+    assertEquals("hello", new String(request.getFile("file").getBytes(), "UTF-8"));
+    resolver.cleanupMultipart(request);
+  }
+
+  @Test
+  public void streamAfterParameters() throws IOException {
+    StreamingMultipartResolver resolver = new StreamingMultipartResolver(env());
+    MultipartHttpServletRequest request = resolver.resolveMultipart(request());
+
+    assertEquals("x", request.getParameter("name"));
+    try {
+      resolver.partIterator(request);
+      fail("The request was consumed already");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  @Test
+  public void parametersAfterStream() throws IOException {
+    StreamingMultipartResolver resolver = new StreamingMultipartResolver(env());
+    MultipartHttpServletRequest request = resolver.resolveMultipart(request());
+
+    resolver.partIterator(request);
+    try {
+      request.getParameter("name");
+      fail("The request was streamed already");
+    } catch (IllegalStateException ex) {
+      // expected
+    }
+  }
+
+  @Test(expected = MaxUploadSizeExceededException.class)
+  public void maxUploadSize() throws IOException {
+    StreamingMultipartResolver resolver =
+        new StreamingMultipartResolver(env(StreamingMultipartResolver.MAX_UPLOAD_SIZE, "10"));
+    resolver.partIterator(resolver.resolveMultipart(request()));
+  }
+
+  private static StandardEnvironment env(final String... properties) {
+    Map<String, Object> map = new HashMap<String, Object>();
+    for (int i = 0; i < properties.length; i += 2) {
+      map.put(properties[i], properties[i + 1]);
+    }
+    StandardEnvironment env = new StandardEnvironment();
+    env.getPropertySources().addFirst(new MapPropertySource("test", map));
+    return env;
+  }
+
+  private static HttpServletRequest request() throws IOException {
+    byte[] body = BODY.getBytes("UTF-8");
+    final ByteArrayInputStream in = new ByteArrayInputStream(body);
+    HttpServletRequest request = createNiceMock(HttpServletRequest.class);
+    expect(request.getMethod()).andReturn("POST").anyTimes();
+    expect(request.getRequestURI()).andReturn("/upload").anyTimes();
+    expect(request.getContentType()).andReturn("multipart/form-data; boundary=" + BOUNDARY)
+        .anyTimes();
+    expect(request.getContentLength()).andReturn(body.length).anyTimes();
+    expect(request.getInputStream()).andReturn(new ServletInputStream() {
+      @Override
+      public int read() throws IOException {
+        return in.read();
+      }
+
+      @Override
+      public int read(final byte[] buffer, final int off, final int len) throws IOException {
+        return in.read(buffer, off, len);
+      }
+    }).anyTimes();
+    replay(request);
+    return request;
+  }
+}
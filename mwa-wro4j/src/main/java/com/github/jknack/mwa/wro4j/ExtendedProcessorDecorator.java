@@ -7,10 +7,14 @@ import java.io.Writer;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
 
+import ro.isdc.wro.model.group.processor.Minimize;
 import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.model.resource.SupportedResourceType;
 import ro.isdc.wro.model.resource.locator.factory.UriLocatorFactory;
+import ro.isdc.wro.model.resource.processor.MinimizeAware;
 import ro.isdc.wro.model.resource.processor.ResourcePostProcessor;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
+import ro.isdc.wro.model.resource.processor.SupportedResourceTypeAware;
 import ro.isdc.wro.model.resource.processor.decorator.ProcessorDecorator;
 
 import com.github.jknack.mwa.Mode;
@@ -26,13 +30,14 @@ public class ExtendedProcessorDecorator extends ProcessorDecorator implements
     EnvironmentAware, ModeAware, UriLocatorFactoryAware {
 
   /**
-   * A resource post processor with MWA callbacks.
+   * A resource post processor with MWA callbacks. It reports the resource type and the minimize
+   * flag of the post processor, so wro4j applies it to the same resources.
    *
    * @author edgar.espina
    */
   private abstract static class ResourcePostProcessorWrapper implements
       ResourcePreProcessor, EnvironmentAware, ModeAware,
-      UriLocatorFactoryAware {
+      UriLocatorFactoryAware, SupportedResourceTypeAware, MinimizeAware {
   }
 
   /**
@@ -85,6 +90,22 @@ public class ExtendedProcessorDecorator extends ProcessorDecorator implements
           }
         }
 
+        @Override
+        public SupportedResourceType getSupportedResourceType() {
+          if (processor instanceof SupportedResourceTypeAware) {
+            return ((SupportedResourceTypeAware) processor).getSupportedResourceType();
+          }
+          return processor.getClass().getAnnotation(SupportedResourceType.class);
+        }
+
+        @Override
+        public boolean isMinimize() {
+          if (processor instanceof MinimizeAware) {
+            return ((MinimizeAware) processor).isMinimize();
+          }
+          return processor.getClass().isAnnotationPresent(Minimize.class);
+        }
+
         @Override
         public String toString() {
           return processor.toString();
@@ -7,11 +7,14 @@ import java.io.Reader;
 import java.io.Writer;
 
 import org.apache.commons.io.IOUtils;
+import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.PropertyResolver;
 
 import ro.isdc.wro.model.resource.Resource;
 import ro.isdc.wro.model.resource.processor.ResourcePreProcessor;
 
+import com.github.jknack.mwa.PropertySnapshot;
+
 /**
  * A processor which parse a resource and search for placeholders of this type:
  * <code>${}</code> and replace them with the values found in a map provided the
@@ -28,13 +31,18 @@ class PropertyResolverProcessor implements ResourcePreProcessor {
   private PropertyResolver resolver;
 
   /**
-   * Creates a new {@link PropertyResolverProcessor}.
+   * Creates a new {@link PropertyResolverProcessor}. An environment is replaced by its
+   * {@link PropertySnapshot}.
    *
    * @param resolver The property resolver. Required.
    */
   public PropertyResolverProcessor(final PropertyResolver resolver) {
-    this.resolver =
-        checkNotNull(resolver, "The application's environment is required.");
+    checkNotNull(resolver, "The application's environment is required.");
+    if (resolver instanceof ConfigurableEnvironment) {
+      this.resolver = PropertySnapshot.get((ConfigurableEnvironment) resolver);
+    } else {
+      this.resolver = resolver;
+    }
   }
 
   /**
@@ -0,0 +1,68 @@
+package com.github.jknack.mwa.wro4j;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import ro.isdc.wro.model.resource.Resource;
+import ro.isdc.wro.util.AbstractDecorator;
+
+import com.github.jknack.mwa.TraceEvent;
+
+/**
+ * Emit a {@link TraceEvent#WRO_PROCESSOR} event per processor and resource. Processors are
+ * decorated only if there is a recorder for {@link TraceEvent#WRO_PROCESSOR} at startup time.
+ * The resource type and the minimize flag are the ones of the target processor.
+ *
+ * @author edgar.espina
+ * @since 0.4.3
+ */
+class TracingProcessorDecorator extends ExtendedProcessorDecorator {
+
+  /**
+   * The target processor, before {@link ExtendedProcessorDecorator} wraps post-processors.
+   */
+  private final Object processor;
+
+  /**
+   * The processor's name. Resolved on first use, lazy processors must not be created here.
+   */
+  private String name;
+
+  /**
+   * Creates a new {@link TracingProcessorDecorator}.
+   *
+   * @param processor The target processor.
+   */
+  public TracingProcessorDecorator(final Object processor) {
+    super(processor);
+    this.processor = processor;
+  }
+
+  @Override
+  public void process(final Resource resource, final Reader reader, final Writer writer)
+      throws IOException {
+    TraceEvent event = TraceEvent.begin(TraceEvent.WRO_PROCESSOR);
+    try {
+      super.process(resource, reader, writer);
+    } finally {
+      if (event.isEnabled()) {
+        event.set("processor", name())
+            .set("resource", resource == null ? null : resource.getUri())
+            .commit();
+      }
+    }
+  }
+
+  /**
+   * The class name of the target processor, unwrapping any wro4j decorator.
+   *
+   * @return The class name of the target processor.
+   */
+  private String name() {
+    if (name == null) {
+      name = AbstractDecorator.getOriginalDecoratedObject(processor).getClass().getName();
+    }
+    return name;
+  }
+}
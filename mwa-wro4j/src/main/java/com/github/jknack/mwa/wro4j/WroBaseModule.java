@@ -46,6 +46,7 @@ import com.github.jknack.mwa.FilterMapping;
 import com.github.jknack.mwa.Mode;
 import com.github.jknack.mwa.ModeAware;
 import com.github.jknack.mwa.ModeCallback;
+import com.github.jknack.mwa.TraceEvent;
 import com.github.jknack.mwa.mvc.MvcModule;
 
 import ro.isdc.wro.WroRuntimeException;
@@ -706,13 +707,15 @@ public class WroBaseModule {
       final UriLocatorFactory uriLocatorFactory,
       final Environment environment) {
     SimpleProcessorsFactory result = new SimpleProcessorsFactory();
+    // processors are decorated only if their events are going to be recorded
+    boolean trace = TraceEvent.isRecorded(TraceEvent.WRO_PROCESSOR);
     for (ResourcePreProcessor processor : processors.getPreProcessors()) {
       configureProcessor(mode, uriLocatorFactory, environment, processor);
-      result.addPreProcessor(processor);
+      result.addPreProcessor(trace ? new TracingProcessorDecorator(processor) : processor);
     }
     for (ResourcePostProcessor processor : processors.getPostProcessors()) {
       configureProcessor(mode, uriLocatorFactory, environment, processor);
-      result.addPostProcessor(processor);
+      result.addPostProcessor(trace ? new TracingProcessorDecorator(processor) : processor);
     }
     return result;
   }
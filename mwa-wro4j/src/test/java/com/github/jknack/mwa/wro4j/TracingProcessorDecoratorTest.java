@@ -0,0 +1,50 @@
+package com.github.jknack.mwa.wro4j;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import org.junit.Test;
+
+import ro.isdc.wro.model.group.processor.Minimize;
+import ro.isdc.wro.model.resource.ResourceType;
+import ro.isdc.wro.model.resource.SupportedResourceType;
+import ro.isdc.wro.model.resource.processor.ResourcePostProcessor;
+
+public class TracingProcessorDecoratorTest {
+
+  @Minimize
+  @SupportedResourceType(ResourceType.JS)
+  static class Minimizer implements ResourcePostProcessor {
+    @Override
+    public void process(final Reader reader, final Writer writer) throws IOException {
+    }
+  }
+
+  @Test
+  public void resourceType() {
+    TracingProcessorDecorator processor = new TracingProcessorDecorator(new LessCssProcessor());
+
+    assertEquals(ResourceType.CSS, processor.getSupportedResourceType().value());
+    assertFalse(processor.isMinimize());
+    assertTrue(processor.isEligible(false, ResourceType.CSS));
+    // skipped for JS
+    assertFalse(processor.isEligible(false, ResourceType.JS));
+    assertFalse(processor.isEligible(true, ResourceType.JS));
+  }
+
+  @Test
+  public void minimize() {
+    TracingProcessorDecorator processor = new TracingProcessorDecorator(new Minimizer());
+
+    assertEquals(ResourceType.JS, processor.getSupportedResourceType().value());
+    assertTrue(processor.isMinimize());
+    assertTrue(processor.isEligible(true, ResourceType.JS));
+    // skipped if minimize is off
+    assertFalse(processor.isEligible(false, ResourceType.JS));
+  }
+}